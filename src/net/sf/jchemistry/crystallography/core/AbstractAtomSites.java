@@ -0,0 +1,153 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+
+/**
+ * Skeleton of a set of atom sites. Subclasses decide how the atom sites are
+ * stored. They share the periodic grid of buckets over the fractional
+ * coordinates used to check whether a position is already occupied, i.e.
+ * closer than <code>DELTA</code> to another atom along each axis.
+ * <p/>
+ * Two sets of atom sites are equal if they contain the same atom sites,
+ * regardless of the type of <code>Collection</code> the other set is.
+ * 
+ * @author Philippe T. Pinard
+ */
+public abstract class AbstractAtomSites extends AbstractSet<AtomSite> {
+
+    /** How close two atoms can be next to each other. */
+    static final double DELTA = 1e-6;
+
+    /** Number of buckets along each axis of the grid. */
+    static final int GRID = 1024;
+
+
+
+    /**
+     * Returns the index of the bucket containing the specified fractional
+     * coordinate.
+     * 
+     * @param value
+     *            fractional coordinate
+     * @return index of the bucket, between 0 and <code>GRID - 1</code>
+     */
+    static int bucket(double value) {
+        return wrap((int) Math.floor(value * GRID));
+    }
+
+
+
+    /**
+     * Wraps the index of a bucket inside the grid.
+     * 
+     * @param index
+     *            index of the bucket
+     * @return index between 0 and <code>GRID - 1</code>
+     */
+    static int wrap(int index) {
+        int wrapped = index % GRID;
+        return wrapped < 0 ? wrapped + GRID : wrapped;
+    }
+
+
+
+    /**
+     * Returns the key of a bucket.
+     * 
+     * @param ix
+     *            index of the bucket along x
+     * @param iy
+     *            index of the bucket along y
+     * @param iz
+     *            index of the bucket along z
+     * @return key
+     */
+    static long key(int ix, int iy, int iz) {
+        return ((long) ix * GRID + iy) * GRID + iz;
+    }
+
+
+
+    /**
+     * Returns the distance between two fractional coordinates, taking into
+     * account the periodicity of the cell.
+     * 
+     * @param a
+     *            first coordinate
+     * @param b
+     *            second coordinate
+     * @return periodic distance
+     */
+    static double distance(double a, double b) {
+        double d = Math.abs(a - b);
+        d -= Math.floor(d);
+        return Math.min(d, 1.0 - d);
+    }
+
+
+
+    /**
+     * Returns the indexes of the buckets to check along an axis, i.e. the
+     * bucket of the coordinate and its neighbours if the coordinate is
+     * closer than <code>DELTA</code> to their border.
+     * 
+     * @param value
+     *            fractional coordinate
+     * @param out
+     *            array where to store the indexes (at least 3)
+     * @return number of indexes
+     */
+    static int neighbours(double value, int[] out) {
+        int index = (int) Math.floor(value * GRID);
+        double fraction = value * GRID - index;
+        int count = 0;
+
+        out[count++] = wrap(index);
+        if (fraction < DELTA * GRID)
+            out[count++] = wrap(index - 1);
+        if (fraction > 1.0 - DELTA * GRID)
+            out[count++] = wrap(index + 1);
+
+        return count;
+    }
+
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+
+        if (!(o instanceof Collection)) // Collection instead of Set
+            return false;
+        Collection<?> c = (Collection<?>) o;
+        if (c.size() != size())
+            return false;
+        try {
+            return containsAll(c);
+        } catch (ClassCastException unused) {
+            return false;
+        } catch (NullPointerException unused) {
+            return false;
+        }
+    }
+
+}
@@ -17,10 +17,12 @@
  */
 package net.sf.jchemistry.crystallography.core;
 
-import java.util.AbstractSet;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.math.geometry.Vector3D;
@@ -29,16 +31,26 @@ import org.apache.commons.math.geometry.Vector3D;
  * Set of all the atom sites of a phase. Only atoms that are further apart than
  * a specified minimum distance can be added to this set. This distance is set
  * in the constructor.
+ * <p/>
+ * The atoms are also hashed in a grid of buckets over the fractional
+ * coordinates, so that checking whether a position is occupied only looks at
+ * the bucket of the position and, close to its borders, at the neighbouring
+ * buckets. The grid is periodic: positions on both sides of the cell
+ * boundary (e.g. 0.9999999 and 0.0) are compared with their periodic
+ * distance.
  * 
  * @author Philippe T. Pinard
  */
-public class AtomSites extends AbstractSet<AtomSite> {
+public class AtomSites extends AbstractAtomSites {
 
     /** Internal set of the atom sites. */
     private final Set<AtomSite> set;
 
-    /** How close two atoms can be next to each other. */
-    private static final double DELTA = 1e-6;
+    /** Atom sites in each bucket of the grid. */
+    private final Map<Long, List<AtomSite>> buckets;
+
+    /** Number of modifications of the set. */
+    private int modificationCount;
 
 
 
@@ -48,6 +60,7 @@ public class AtomSites extends AbstractSet<AtomSite> {
      */
     public AtomSites() {
         set = new HashSet<AtomSite>();
+        buckets = new HashMap<Long, List<AtomSite>>();
     }
 
 
@@ -57,28 +70,80 @@ public class AtomSites extends AbstractSet<AtomSite> {
         if (isPositionOccupied(atom))
             return false;
 
-        return set.add(atom);
+        if (!set.add(atom))
+            return false;
+        modificationCount++;
+
+        Vector3D pos = atom.getPosition();
+        Long key =
+                key(bucket(pos.getX()), bucket(pos.getY()), bucket(pos.getZ()));
+        List<AtomSite> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<AtomSite>(1);
+            buckets.put(key, bucket);
+        }
+        bucket.add(atom);
+
+        return true;
     }
 
 
 
     @Override
-    public boolean equals(Object o) {
-        if (o == this)
-            return true;
+    public boolean contains(Object o) {
+        return set.contains(o);
+    }
 
-        if (!(o instanceof Collection)) // Collection instead of Set
-            return false;
-        Collection<?> c = (Collection<?>) o;
-        if (c.size() != size())
-            return false;
-        try {
-            return containsAll(c);
-        } catch (ClassCastException unused) {
-            return false;
-        } catch (NullPointerException unused) {
+
+
+    @Override
+    public boolean remove(Object o) {
+        if (!set.remove(o))
             return false;
-        }
+        modificationCount++;
+
+        removeFromBucket((AtomSite) o);
+        return true;
+    }
+
+
+
+    /**
+     * Removes the atom site from its bucket.
+     * 
+     * @param atom
+     *            atom site
+     */
+    private void removeFromBucket(AtomSite atom) {
+        Vector3D pos = atom.getPosition();
+        Long key =
+                key(bucket(pos.getX()), bucket(pos.getY()), bucket(pos.getZ()));
+        List<AtomSite> bucket = buckets.get(key);
+        bucket.remove(atom);
+        if (bucket.isEmpty())
+            buckets.remove(key);
+    }
+
+
+
+    @Override
+    public void clear() {
+        set.clear();
+        buckets.clear();
+        modificationCount++;
+    }
+
+
+
+    /**
+     * Returns the number of modifications of this set. The number changes
+     * every time an atom site is added or removed, so that a result derived
+     * from the set can be cached until the set changes.
+     * 
+     * @return number of modifications
+     */
+    int getModificationCount() {
+        return modificationCount;
     }
 
 
@@ -94,16 +159,34 @@ public class AtomSites extends AbstractSet<AtomSite> {
      */
     private boolean isPositionOccupied(AtomSite newAtom) {
         Vector3D newPos = newAtom.getPosition();
-        Vector3D pos;
+        double x = newPos.getX();
+        double y = newPos.getY();
+        double z = newPos.getZ();
 
-        Iterator<AtomSite> e = iterator();
-        while (e.hasNext()) {
-            pos = e.next().getPosition();
-            if (Math.abs(pos.getX() - newPos.getX()) <= DELTA
-                    && Math.abs(pos.getY() - newPos.getY()) <= DELTA
-                    && Math.abs(pos.getZ() - newPos.getZ()) <= DELTA)
-                return true;
-        }
+        int[] ixs = new int[3];
+        int[] iys = new int[3];
+        int[] izs = new int[3];
+        int nx = neighbours(x, ixs);
+        int ny = neighbours(y, iys);
+        int nz = neighbours(z, izs);
+
+        Vector3D pos;
+        for (int i = 0; i < nx; i++)
+            for (int j = 0; j < ny; j++)
+                for (int k = 0; k < nz; k++) {
+                    List<AtomSite> bucket =
+                            buckets.get(key(ixs[i], iys[j], izs[k]));
+                    if (bucket == null)
+                        continue;
+
+                    for (AtomSite atom : bucket) {
+                        pos = atom.getPosition();
+                        if (distance(pos.getX(), x) <= DELTA
+                                && distance(pos.getY(), y) <= DELTA
+                                && distance(pos.getZ(), z) <= DELTA)
+                            return true;
+                    }
+                }
 
         return false;
     }
@@ -112,7 +195,37 @@ public class AtomSites extends AbstractSet<AtomSite> {
 
     @Override
     public Iterator<AtomSite> iterator() {
-        return set.iterator();
+        final Iterator<AtomSite> iterator = set.iterator();
+
+        return new Iterator<AtomSite>() {
+
+            /** Last returned atom site. */
+            private AtomSite last;
+
+
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+
+
+            @Override
+            public AtomSite next() {
+                last = iterator.next();
+                return last;
+            }
+
+
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                modificationCount++;
+                removeFromBucket(last);
+            }
+        };
     }
 
 
@@ -17,6 +17,9 @@
  */
 package net.sf.jchemistry.crystallography.core;
 
+import java.util.Arrays;
+
+import net.sf.jchemistry.core.Element;
 import net.sf.jchemistry.util.MathUtils;
 
 import org.apache.commons.math.complex.Complex;
@@ -30,7 +33,9 @@ import edu.umd.cs.findbugs.annotations.CheckReturnValue;
 
 import static java.lang.Math.PI;
 import static java.lang.Math.asin;
+import static java.lang.Math.cos;
 import static java.lang.Math.pow;
+import static java.lang.Math.sin;
 import static java.lang.Math.sqrt;
 import static net.sf.jchemistry.crystallography.core.Constants.C;
 import static net.sf.jchemistry.crystallography.core.Constants.CHARGE_ELECTRON;
@@ -199,7 +204,7 @@ public final class Calculations {
      * @return diffraction intensity
      */
     public static double diffractionIntensity(Vector3D plane,
-            UnitCell unitCell, AtomSites atomSites,
+            UnitCell unitCell, AbstractAtomSites atomSites,
             ScatteringFactors scatteringFactors) {
         Complex formFactor =
                 formFactor(plane, unitCell, atomSites, scatteringFactors);
@@ -232,7 +237,10 @@ public final class Calculations {
 
     /**
      * Applies the space group symmetry on the specified atom positions and
-     * returns all the possible equivalent atom positions.
+     * returns all the possible equivalent atom positions. The positions of
+     * each atom are generated from its orbit (see
+     * {@link #orbit(AtomSite, SpaceGroup)}), so atoms on special positions do
+     * not produce duplicates.
      * 
      * @param atomSites
      *            positions of atoms
@@ -241,13 +249,13 @@ public final class Calculations {
      * @return all possible atom positions
      */
     @CheckReturnValue
-    public static AtomSites equivalentPositions(AtomSites atomSites,
+    public static AtomSites equivalentPositions(AbstractAtomSites atomSites,
             SpaceGroup spaceGroup) {
         AtomSites newAtomSites = new AtomSites();
 
         for (AtomSite atom : atomSites)
-            for (Generator generator : spaceGroup.getGenerators())
-                newAtomSites.add(generator.apply(atom));
+            for (AtomSite equivalent : orbit(atom, spaceGroup))
+                newAtomSites.add(equivalent);
 
         return newAtomSites;
     }
@@ -269,10 +277,14 @@ public final class Calculations {
      * @return form factor (complex form)
      */
     public static Complex formFactor(Vector3D plane, UnitCell unitCell,
-            AtomSites atomSites, ScatteringFactors scatteringFactors) {
-        Complex f = new Complex(0.0, 0.0); // Form factor
+            AbstractAtomSites atomSites, ScatteringFactors scatteringFactors) {
         double s = 2 * Math.PI / planeSpacing(plane, unitCell);
 
+        if (atomSites instanceof ColumnarAtomSites)
+            return formFactor(plane, (ColumnarAtomSites) atomSites,
+                    scatteringFactors, s);
+
+        Complex f = new Complex(0.0, 0.0); // Form factor
         double fi;
         Complex x;
         for (AtomSite atom : atomSites) {
@@ -291,6 +303,57 @@ public final class Calculations {
 
 
 
+    /**
+     * Returns the form factor (F) for a given plane from the columns of a set
+     * of atoms, without creating objects per atom.
+     * 
+     * @param plane
+     *            crystallography plane
+     * @param atomSites
+     *            atoms contained in the unit cell
+     * @param scatteringFactors
+     *            scattering factors to calculate for the form factor
+     * @param s
+     *            scattering vector length
+     * @return form factor (complex form)
+     */
+    private static Complex formFactor(Vector3D plane,
+            ColumnarAtomSites atomSites, ScatteringFactors scatteringFactors,
+            double s) {
+        double h = plane.getX();
+        double k = plane.getY();
+        double l = plane.getZ();
+        double[] xs = atomSites.getXs();
+        double[] ys = atomSites.getYs();
+        double[] zs = atomSites.getZs();
+        byte[] atomicNumbers = atomSites.getAtomicNumbers();
+        byte[] charges = atomSites.getCharges();
+
+        double real = 0.0;
+        double imaginary = 0.0;
+        int lastZ = -1;
+        int lastCharge = 0;
+        double fi = 0.0;
+        for (int i = 0; i < atomSites.size(); i++) {
+            // Sites of the same species are often consecutive
+            if (atomicNumbers[i] != lastZ || charges[i] != lastCharge) {
+                lastZ = atomicNumbers[i];
+                lastCharge = charges[i];
+                fi =
+                        scatteringFactors.getIntensity(Element.fromZ(lastZ),
+                                lastCharge, s);
+            }
+
+            double phase = 2 * PI * (h * xs[i] + k * ys[i] + l * zs[i]);
+            real += fi * cos(phase);
+            imaginary += fi * sin(phase);
+        }
+
+        return new Complex(real, imaginary);
+    }
+
+
+
     /**
      * Returns the interplanar direction cosine between <code>plane1</code> and
      * <code>plane2</code> of a unit cell.
@@ -379,7 +442,7 @@ public final class Calculations {
      * @return <code>true</code> plane is diffraction
      */
     public static boolean isDiffracting(Vector3D plane, UnitCell unitCell,
-            AtomSites atomSites, ScatteringFactors scatteringFactors,
+            AbstractAtomSites atomSites, ScatteringFactors scatteringFactors,
             double fraction) {
         double maxIntensity =
                 maximumDiffractionIntensity(unitCell, atomSites,
@@ -407,7 +470,7 @@ public final class Calculations {
      * @return maximum diffraction intensity
      */
     public static double maximumDiffractionIntensity(UnitCell unitCell,
-            AtomSites atomSites, ScatteringFactors scatteringFactors) {
+            AbstractAtomSites atomSites, ScatteringFactors scatteringFactors) {
         Complex formFactor =
                 maximumFormFactor(unitCell, atomSites, scatteringFactors);
 
@@ -432,7 +495,7 @@ public final class Calculations {
      * @return maximum form factor (complex form)
      */
     public static Complex maximumFormFactor(UnitCell unitCell,
-            AtomSites atomSites, ScatteringFactors scatteringFactors) {
+            AbstractAtomSites atomSites, ScatteringFactors scatteringFactors) {
         // NOTE: The maximum form factor is a real number, but a Complex number
         // is used for consistency with the form factor.
         double f = 0.0;
@@ -448,6 +511,63 @@ public final class Calculations {
 
 
 
+    /**
+     * Returns the multiplicity of a position in a space group, i.e. the number
+     * of equivalent positions in the unit cell (the multiplicity of its
+     * Wyckoff position). The multiplicity is the order of the space group
+     * divided by the order of the site-symmetry group of the position.
+     * 
+     * @param position
+     *            fractional coordinates of the position
+     * @param spaceGroup
+     *            space group
+     * @return multiplicity
+     */
+    public static int multiplicity(Vector3D position, SpaceGroup spaceGroup) {
+        return spaceGroup.getOrder()
+                / siteSymmetry(position, spaceGroup).length;
+    }
+
+
+
+    /**
+     * Returns the orbit of an atom, i.e. its positions equivalent by the
+     * symmetry of the space group. The site-symmetry group (stabiliser) of the
+     * atom is calculated first; then one position is generated for each of
+     * its cosets using the Cayley table of the space group. Exactly
+     * <code>|G| / |stabiliser|</code> positions are therefore generated,
+     * without any duplicate. The first position is always the specified atom.
+     * 
+     * @param atom
+     *            an atom
+     * @param spaceGroup
+     *            space group
+     * @return equivalent positions of the atom
+     */
+    @CheckReturnValue
+    public static AtomSite[] orbit(AtomSite atom, SpaceGroup spaceGroup) {
+        SeitzOperator[] ops = spaceGroup.getSeitzOperators();
+        int[] stabilizer = siteSymmetry(atom.getPosition(), ops);
+
+        AtomSite[] orbit = new AtomSite[ops.length / stabilizer.length];
+        boolean[] covered = new boolean[ops.length];
+        int count = 0;
+        for (int i = 0; i < ops.length && count < orbit.length; i++) {
+            if (covered[i])
+                continue;
+
+            // All the operators of the coset i * H give the same position
+            for (int h : stabilizer)
+                covered[spaceGroup.getProduct(i, h)] = true;
+
+            orbit[count++] = ops[i].isIdentity() ? atom : ops[i].apply(atom);
+        }
+
+        return orbit;
+    }
+
+
+
     /**
      * Returns the plane spacing (in angstroms) between two adjacent planes of a
      * unit cell.
@@ -569,6 +689,56 @@ public final class Calculations {
 
 
 
+    /**
+     * Returns the site-symmetry group (stabiliser) of a position, i.e. the
+     * symmetry operators of the space group which map the position onto
+     * itself, modulo a lattice translation.
+     * 
+     * @param position
+     *            fractional coordinates of the position
+     * @param spaceGroup
+     *            space group
+     * @return indexes of the operators (see
+     *         {@link SpaceGroup#getSeitzOperators()}) in the site-symmetry
+     *         group, in increasing order
+     */
+    public static int[] siteSymmetry(Vector3D position, SpaceGroup spaceGroup) {
+        return siteSymmetry(position, spaceGroup.getSeitzOperators());
+    }
+
+
+
+    /**
+     * Returns the indexes of the operators which map the position onto itself,
+     * modulo a lattice translation.
+     * 
+     * @param position
+     *            fractional coordinates of the position
+     * @param ops
+     *            symmetry operators
+     * @return indexes of the operators in increasing order
+     */
+    private static int[] siteSymmetry(Vector3D position, SeitzOperator[] ops) {
+        double x = position.getX();
+        double y = position.getY();
+        double z = position.getZ();
+        double[] out = new double[3];
+
+        int[] indexes = new int[ops.length];
+        int count = 0;
+        for (int i = 0; i < ops.length; i++) {
+            ops[i].apply(x, y, z, out);
+            if (AtomSites.distance(out[0], x) < AtomSites.DELTA
+                    && AtomSites.distance(out[1], y) < AtomSites.DELTA
+                    && AtomSites.distance(out[2], z) < AtomSites.DELTA)
+                indexes[count++] = i;
+        }
+
+        return Arrays.copyOf(indexes, count);
+    }
+
+
+
     /**
      * Returns the zone axis of <code>plane1</code> and <code>plane2</code> of a
      * unit cell.
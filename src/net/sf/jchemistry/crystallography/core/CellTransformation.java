@@ -0,0 +1,653 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.math.geometry.Vector3D;
+import org.apache.commons.math.linear.MatrixUtils;
+import org.apache.commons.math.linear.RealMatrix;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.cbrt;
+import static java.lang.Math.rint;
+import static java.lang.Math.signum;
+
+/**
+ * Transformation of the basis vectors of a unit cell. The columns of the
+ * transformation matrix <b>P</b> are the new basis vectors expressed in the
+ * old basis: (<b>a'</b>, <b>b'</b>, <b>c'</b>) = (<b>a</b>, <b>b</b>,
+ * <b>c</b>) <b>P</b>. The transformation may also shift the origin of the
+ * cell by <b>p</b>, expressed in the old basis. The fractional coordinates
+ * are transformed by <b>x'</b> = <b>P</b><sup>-1</sup> (<b>x</b> -
+ * <b>p</b>) and the Miller indices by <b>P</b>, the origin shift leaving the
+ * unit cell and the Miller indices unchanged.
+ * <p/>
+ * The transformations to the primitive cell of a centred lattice (see
+ * {@link #primitive(SpaceGroup)}) reduce the number of atoms, and therefore
+ * the cost of the form factors, by the number of lattice points of the
+ * conventional cell. The Miller indices of the conventional cell which are
+ * not integers in the primitive cell are the reflections extinct by the
+ * centring.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public final class CellTransformation {
+
+    /** Identity transformation. */
+    public static final CellTransformation IDENTITY = new CellTransformation(
+            new double[][] { { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 } });
+
+    /** Tolerance on the integer Miller indices. */
+    private static final double EPSILON = 1e-6;
+
+    /** Relative tolerance of the Niggli reduction. */
+    private static final double NIGGLI_EPSILON = 1e-5;
+
+    /** Maximum number of iterations of the Niggli reduction. */
+    private static final int NIGGLI_MAX_ITERATIONS = 1000;
+
+    /** Transformation matrix. */
+    private final double[][] p;
+
+    /** Inverse of the transformation matrix. */
+    private final double[][] q;
+
+    /** Determinant of the transformation matrix. */
+    private final double determinant;
+
+    /** Origin shift, in the old basis. */
+    private final double[] shift;
+
+
+
+    /**
+     * Returns the transformation to a primitive cell of the lattice of a space
+     * group. The primitive cells are the ones of the International Tables
+     * (e.g. the rhombohedral cell for a face-centred lattice). For a primitive
+     * lattice, the identity is returned.
+     * 
+     * @param spaceGroup
+     *            space group
+     * @return transformation to the primitive cell
+     * @throws NullPointerException
+     *             if the space group is null
+     */
+    public static CellTransformation primitive(SpaceGroup spaceGroup) {
+        if (spaceGroup == null)
+            throw new NullPointerException("space group == null");
+
+        double h = 0.5;
+        double t = 1.0 / 3.0;
+
+        switch (spaceGroup.getSymbol().charAt(0)) {
+        case 'A':
+            return new CellTransformation(new double[][] { { 1, 0, 0 },
+                    { 0, h, h }, { 0, -h, h } });
+        case 'B':
+            return new CellTransformation(new double[][] { { h, 0, h },
+                    { 0, 1, 0 }, { -h, 0, h } });
+        case 'C':
+            return new CellTransformation(new double[][] { { h, -h, 0 },
+                    { h, h, 0 }, { 0, 0, 1 } });
+        case 'I':
+            return new CellTransformation(new double[][] { { -h, h, h },
+                    { h, -h, h }, { h, h, -h } });
+        case 'F':
+            return new CellTransformation(new double[][] { { 0, h, h },
+                    { h, 0, h }, { h, h, 0 } });
+        case 'H': // Rhombohedral lattice on hexagonal axes (obverse)
+            return new CellTransformation(new double[][] {
+                    { 2 * t, -t, -t }, { t, t, -2 * t }, { t, t, t } });
+        default:
+            return IDENTITY;
+        }
+    }
+
+
+
+    /**
+     * Returns the transformation to the Niggli reduced cell of a unit cell.
+     * The reduction follows the algorithm of Krivy and Gruber (Acta Cryst.
+     * A32, 297-298, 1976) with the relative tolerance of Grosse-Kunstleve et
+     * al. (Acta Cryst. A60, 1-6, 2004). The unit cell must be primitive,
+     * otherwise the reduced cell is the one of the sublattice of the unit
+     * cell.
+     * 
+     * @param unitCell
+     *            unit cell
+     * @return transformation to the Niggli reduced cell
+     * @throws NullPointerException
+     *             if the unit cell is null
+     * @throws IllegalStateException
+     *             if the reduction does not converge
+     */
+    public static CellTransformation niggli(UnitCell unitCell) {
+        if (unitCell == null)
+            throw new NullPointerException("unit cell == null");
+
+        double[][] g = unitCell.getMetricalMatrix().getData();
+        double volume = unitCell.getVolume();
+        double e = NIGGLI_EPSILON * cbrt(volume * volume);
+
+        // Basis vectors (columns) in the original basis
+        int[][] m = new int[][] { { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 } };
+
+        for (int n = 0; n < NIGGLI_MAX_ITERATIONS; n++) {
+            double[][] r = metric(g, m);
+            double a = r[0][0];
+            double b = r[1][1];
+            double c = r[2][2];
+            double xi = 2 * r[1][2];
+            double eta = 2 * r[0][2];
+            double zeta = 2 * r[0][1];
+
+            // Step 1: A <= B
+            if (a > b + e || (abs(a - b) <= e && abs(xi) > abs(eta) + e)) {
+                swap(m, 0, 1);
+                continue;
+            }
+
+            // Step 2: B <= C
+            if (b > c + e || (abs(b - c) <= e && abs(eta) > abs(zeta) + e)) {
+                swap(m, 1, 2);
+                continue;
+            }
+
+            // Steps 3 and 4: signs of xi, eta and zeta
+            if (normalizeSigns(m, xi, eta, zeta, e))
+                continue;
+
+            // Step 5: reduce b.c
+            if (abs(xi) > b + e || (abs(xi - b) <= e && 2 * eta < zeta - e)
+                    || (abs(xi + b) <= e && zeta < -e)) {
+                add(m, 2, 1, (int) -signum(xi));
+                continue;
+            }
+
+            // Step 6: reduce a.c
+            if (abs(eta) > a + e || (abs(eta - a) <= e && 2 * xi < zeta - e)
+                    || (abs(eta + a) <= e && zeta < -e)) {
+                add(m, 2, 0, (int) -signum(eta));
+                continue;
+            }
+
+            // Step 7: reduce a.b
+            if (abs(zeta) > a + e || (abs(zeta - a) <= e && 2 * xi < eta - e)
+                    || (abs(zeta + a) <= e && eta < -e)) {
+                add(m, 1, 0, (int) -signum(zeta));
+                continue;
+            }
+
+            // Step 8: c' = a + b + c
+            double sum = xi + eta + zeta + a + b;
+            if (sum < -e || (abs(sum) <= e && 2 * (a + eta) + zeta > e)) {
+                add(m, 2, 0, 1);
+                add(m, 2, 1, 1);
+                continue;
+            }
+
+            double[][] p = new double[3][3];
+            for (int i = 0; i < 3; i++)
+                for (int j = 0; j < 3; j++)
+                    p[i][j] = m[i][j];
+            return new CellTransformation(p);
+        }
+
+        throw new IllegalStateException(
+                "Niggli reduction did not converge for " + unitCell);
+    }
+
+
+
+    /**
+     * Returns the metrical matrix of the basis vectors <code>m</code>
+     * (columns) from the metrical matrix of the original basis.
+     * 
+     * @param g
+     *            metrical matrix of the original basis
+     * @param m
+     *            basis vectors in the original basis
+     * @return metrical matrix of the basis vectors
+     */
+    private static double[][] metric(double[][] g, int[][] m) {
+        double[][] r = new double[3][3];
+
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++) {
+                double value = 0.0;
+                for (int k = 0; k < 3; k++)
+                    for (int l = 0; l < 3; l++)
+                        value += m[k][i] * g[k][l] * m[l][j];
+                r[i][j] = value;
+            }
+
+        return r;
+    }
+
+
+
+    /**
+     * Swaps two basis vectors and negates the third one, which keeps the
+     * basis right-handed.
+     * 
+     * @param m
+     *            basis vectors (columns)
+     * @param i
+     *            first vector
+     * @param j
+     *            second vector
+     */
+    private static void swap(int[][] m, int i, int j) {
+        int k = 3 - i - j;
+        for (int row = 0; row < 3; row++) {
+            int tmp = m[row][i];
+            m[row][i] = m[row][j];
+            m[row][j] = tmp;
+            m[row][k] = -m[row][k];
+        }
+    }
+
+
+
+    /**
+     * Adds a multiple of a basis vector to another one.
+     * 
+     * @param m
+     *            basis vectors (columns)
+     * @param target
+     *            modified vector
+     * @param source
+     *            added vector
+     * @param factor
+     *            multiple of the added vector
+     */
+    private static void add(int[][] m, int target, int source, int factor) {
+        for (int row = 0; row < 3; row++)
+            m[row][target] += factor * m[row][source];
+    }
+
+
+
+    /**
+     * Changes the signs of the basis vectors so that xi, eta and zeta are all
+     * positive (if their product is positive) or all negative or zero
+     * (otherwise). Two vectors are negated at a time to keep the basis
+     * right-handed, which changes the signs of the two products involving
+     * the third vector.
+     * 
+     * @param m
+     *            basis vectors (columns)
+     * @param xi
+     *            twice the product b.c
+     * @param eta
+     *            twice the product a.c
+     * @param zeta
+     *            twice the product a.b
+     * @param e
+     *            tolerance
+     * @return <code>true</code> if the basis was modified
+     */
+    private static boolean normalizeSigns(int[][] m, double xi, double eta,
+            double zeta, double e) {
+        // Signs of the products: -1, 0 or 1
+        int[] signs = new int[3];
+        double[] values = new double[] { xi, eta, zeta };
+        for (int i = 0; i < 3; i++)
+            signs[i] = values[i] > e ? 1 : (values[i] < -e ? -1 : 0);
+
+        boolean positive = signs[0] * signs[1] * signs[2] > 0;
+
+        // Products to change: (first, second)
+        int first = -1;
+        int second = -1;
+        for (int i = 0; i < 3 && second < 0; i++) {
+            boolean wrong = positive ? signs[i] < 0 : signs[i] > 0;
+            if (!wrong)
+                continue;
+            if (first < 0)
+                first = i;
+            else
+                second = i;
+        }
+
+        if (first < 0)
+            return false;
+
+        if (second < 0) {
+            // Only one product with the wrong sign: pair it with a zero
+            for (int i = 0; i < 3 && second < 0; i++)
+                if (i != first && signs[i] == 0)
+                    second = i;
+            if (second < 0)
+                return false;
+        }
+
+        // Product i involves all the vectors but vector i, so the vector
+        // common to the two products is the third one. Its two partners are
+        // negated.
+        int common = 3 - first - second;
+        for (int row = 0; row < 3; row++)
+            for (int col = 0; col < 3; col++)
+                if (col != common)
+                    m[row][col] = -m[row][col];
+
+        return true;
+    }
+
+
+
+    /**
+     * Creates a new <code>CellTransformation</code> without origin shift.
+     * 
+     * @param matrix
+     *            transformation matrix whose columns are the new basis vectors
+     *            expressed in the old basis
+     * @throws NullPointerException
+     *             if the matrix is null
+     * @throws IllegalArgumentException
+     *             if the matrix is not 3x3
+     * @throws IllegalArgumentException
+     *             if the determinant of the matrix is not positive
+     */
+    public CellTransformation(double[][] matrix) {
+        this(matrix, new double[3]);
+    }
+
+
+
+    /**
+     * Creates a new <code>CellTransformation</code>.
+     * 
+     * @param matrix
+     *            transformation matrix whose columns are the new basis vectors
+     *            expressed in the old basis
+     * @param shift
+     *            origin of the new cell, in fractional coordinates of the old
+     *            cell
+     * @throws NullPointerException
+     *             if the matrix or the shift is null
+     * @throws IllegalArgumentException
+     *             if the matrix is not 3x3 or the shift does not have 3
+     *             components
+     * @throws IllegalArgumentException
+     *             if the determinant of the matrix is not positive
+     */
+    public CellTransformation(double[][] matrix, double[] shift) {
+        if (matrix == null)
+            throw new NullPointerException("matrix == null");
+        if (shift == null)
+            throw new NullPointerException("shift == null");
+        if (shift.length != 3)
+            throw new IllegalArgumentException("Shift must have 3 components.");
+        if (matrix.length != 3)
+            throw new IllegalArgumentException("Matrix must be 3x3.");
+        for (double[] row : matrix)
+            if (row.length != 3)
+                throw new IllegalArgumentException("Matrix must be 3x3.");
+
+        p = new double[3][3];
+        for (int i = 0; i < 3; i++)
+            p[i] = matrix[i].clone();
+        this.shift = shift.clone();
+
+        determinant =
+                p[0][0] * (p[1][1] * p[2][2] - p[1][2] * p[2][1]) - p[0][1]
+                        * (p[1][0] * p[2][2] - p[1][2] * p[2][0]) + p[0][2]
+                        * (p[1][0] * p[2][1] - p[1][1] * p[2][0]);
+        if (determinant <= EPSILON)
+            throw new IllegalArgumentException("Determinant (" + determinant
+                    + ") must be greater than 0.");
+
+        // Inverse from the adjugate
+        q = new double[3][3];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++) {
+                int r0 = (j + 1) % 3;
+                int r1 = (j + 2) % 3;
+                int c0 = (i + 1) % 3;
+                int c1 = (i + 2) % 3;
+                q[i][j] =
+                        (p[r0][c0] * p[r1][c1] - p[r0][c1] * p[r1][c0])
+                                / determinant;
+            }
+    }
+
+
+
+    /**
+     * Returns the transformation equivalent to this transformation followed
+     * by the specified one.
+     * 
+     * @param other
+     *            transformation applied after this one
+     * @return combined transformation
+     */
+    public CellTransformation compose(CellTransformation other) {
+        double[][] m = new double[3][3];
+        double[] origin = shift.clone();
+
+        for (int i = 0; i < 3; i++)
+            for (int k = 0; k < 3; k++) {
+                for (int j = 0; j < 3; j++)
+                    m[i][j] += p[i][k] * other.p[k][j];
+                origin[i] += p[i][k] * other.shift[k];
+            }
+
+        return new CellTransformation(m, origin);
+    }
+
+
+
+    /**
+     * Returns the determinant of the transformation matrix, i.e. the ratio
+     * of the volume of the new cell to the one of the old cell.
+     * 
+     * @return determinant
+     */
+    public double getDeterminant() {
+        return determinant;
+    }
+
+
+
+    /**
+     * Returns the transformation matrix. The columns are the new basis
+     * vectors expressed in the old basis.
+     * 
+     * @return transformation matrix
+     */
+    public RealMatrix getMatrix() {
+        return MatrixUtils.createRealMatrix(p);
+    }
+
+
+
+    /**
+     * Returns the origin shift, i.e. the origin of the new cell in fractional
+     * coordinates of the old cell.
+     * 
+     * @return origin shift
+     */
+    public Vector3D getShift() {
+        return new Vector3D(shift[0], shift[1], shift[2]);
+    }
+
+
+
+    /**
+     * Returns the inverse transformation, from the new cell to the old one.
+     * 
+     * @return inverse transformation
+     */
+    public CellTransformation inverse() {
+        double[] origin = new double[3];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                origin[i] -= q[i][j] * shift[j];
+
+        return new CellTransformation(q, origin);
+    }
+
+
+
+    /**
+     * Returns the atoms of the old cell in the new cell. The positions are
+     * transformed and brought back in the new cell, so the atoms which are
+     * translations of each other by a vector of the new lattice are only
+     * included once. The returned set stores its sites in columns (see
+     * {@link ColumnarAtomSites}).
+     * 
+     * @param atoms
+     *            atoms in the old cell
+     * @return atoms in the new cell
+     */
+    public ColumnarAtomSites transform(AbstractAtomSites atoms) {
+        if (atoms == null)
+            throw new NullPointerException("atoms == null");
+
+        ColumnarAtomSites out = new ColumnarAtomSites(atoms.size());
+
+        for (AtomSite atom : atoms)
+            out.add(new AtomSite(atom.getElement(), atom.getCharge(),
+                    transformPosition(atom.getPosition()), atom
+                            .getOccupancy()));
+
+        return out;
+    }
+
+
+
+    /**
+     * Returns the unit cell defined by the new basis vectors.
+     * 
+     * @param unitCell
+     *            old unit cell
+     * @return new unit cell
+     */
+    public UnitCell transform(UnitCell unitCell) {
+        if (unitCell == null)
+            throw new NullPointerException("unit cell == null");
+
+        double[][] g = unitCell.getMetricalMatrix().getData();
+        double[][] r = new double[3][3];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                for (int k = 0; k < 3; k++)
+                    for (int l = 0; l < 3; l++)
+                        r[i][j] += p[k][i] * g[k][l] * p[l][j];
+
+        double a = Math.sqrt(r[0][0]);
+        double b = Math.sqrt(r[1][1]);
+        double c = Math.sqrt(r[2][2]);
+        double alpha = Math.acos(r[1][2] / (b * c));
+        double beta = Math.acos(r[0][2] / (a * c));
+        double gamma = Math.acos(r[0][1] / (a * b));
+
+        return UnitCellFactory.triclinic(a, b, c, alpha, beta, gamma);
+    }
+
+
+
+    /**
+     * Returns the Miller indices of a plane in the new cell. The indices may
+     * not be integers if the new cell is not a subcell of the old one (e.g.
+     * the reflections extinct by the centring of a lattice).
+     * 
+     * @param plane
+     *            Miller indices in the old cell
+     * @return Miller indices in the new cell
+     */
+    public Vector3D transformIndices(Vector3D plane) {
+        double h = plane.getX();
+        double k = plane.getY();
+        double l = plane.getZ();
+
+        return new Vector3D(h * p[0][0] + k * p[1][0] + l * p[2][0], h
+                * p[0][1] + k * p[1][1] + l * p[2][1], h * p[0][2] + k
+                * p[1][2] + l * p[2][2]);
+    }
+
+
+
+    /**
+     * Returns the Miller indices of a plane in the new cell, if they are
+     * integers.
+     * 
+     * @param h
+     *            Miller index h in the old cell
+     * @param k
+     *            Miller index k in the old cell
+     * @param l
+     *            Miller index l in the old cell
+     * @return Miller indices in the new cell or <code>null</code> if they are
+     *         not integers
+     */
+    Vector3D transformIntegerIndices(int h, int k, int l) {
+        double[] out = new double[3];
+
+        for (int j = 0; j < 3; j++) {
+            double value = h * p[0][j] + k * p[1][j] + l * p[2][j];
+            out[j] = rint(value);
+            if (abs(value - out[j]) > EPSILON)
+                return null;
+        }
+
+        return new Vector3D(out[0], out[1], out[2]);
+    }
+
+
+
+    /**
+     * Returns the fractional coordinates of a position in the new cell. The
+     * coordinates are not brought back in the new cell.
+     * 
+     * @param position
+     *            fractional coordinates in the old cell
+     * @return fractional coordinates in the new cell
+     */
+    public Vector3D transformPosition(Vector3D position) {
+        double x = position.getX() - shift[0];
+        double y = position.getY() - shift[1];
+        double z = position.getZ() - shift[2];
+
+        return new Vector3D(q[0][0] * x + q[0][1] * y + q[0][2] * z, q[1][0]
+                * x + q[1][1] * y + q[1][2] * z, q[2][0] * x + q[2][1] * y
+                + q[2][2] * z);
+    }
+
+
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CellTransformation [");
+
+        for (int i = 0; i < 3; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append("(" + p[0][i] + ", " + p[1][i] + ", " + p[2][i] + ")");
+        }
+
+        if (shift[0] != 0.0 || shift[1] != 0.0 || shift[2] != 0.0)
+            sb.append(", origin (" + shift[0] + ", " + shift[1] + ", "
+                    + shift[2] + ")");
+
+        return sb.append("]").toString();
+    }
+}
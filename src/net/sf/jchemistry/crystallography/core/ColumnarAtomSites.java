@@ -0,0 +1,594 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import net.sf.jchemistry.core.Element;
+
+import org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Set of atom sites stored column by column in primitive arrays: the
+ * fractional coordinates and occupancy in <code>double</code> arrays, the
+ * atomic number and charge in <code>byte</code> arrays. It uses about 40
+ * bytes per site, instead of the objects of an {@link AtomSite} and its
+ * position, which makes it suitable for large supercells. Kernels can read
+ * the columns directly (e.g. {@link #getXs()}), where only the first
+ * {@link #size()} values are valid.
+ * <p/>
+ * As in {@link AtomSites}, an atom cannot be added at a position already
+ * occupied. The sites are chained in a hash table of the buckets of a
+ * periodic grid over the fractional coordinates, using only primitive arrays.
+ * Removing a site moves the last site in its place.
+ * <p/>
+ * Since the set does not keep the {@link AtomSite} objects, it differs from
+ * {@link AtomSites} in two ways:
+ * <ul>
+ * <li>the fractional coordinates are brought back between 0.0 and 1.0 when a
+ * site is added, so the atom sites returned by the iterator may have a
+ * different position than the ones added, translated by a lattice vector;</li>
+ * <li>{@link #contains(Object)} and {@link #remove(Object)} compare atom
+ * sites by value, not by identity: an atom site is found if a site at the
+ * same position (within <code>DELTA</code>, taking into account the
+ * periodicity) has the same element, charge and occupancy. The iterator
+ * creates a new {@link AtomSite} on every call.</li>
+ * </ul>
+ * 
+ * @author Philippe T. Pinard
+ */
+public class ColumnarAtomSites extends AbstractAtomSites {
+
+    /** Default initial capacity. */
+    private static final int CAPACITY = 16;
+
+    /** x fractional coordinate of each site. */
+    private double[] xs;
+
+    /** y fractional coordinate of each site. */
+    private double[] ys;
+
+    /** z fractional coordinate of each site. */
+    private double[] zs;
+
+    /** Occupancy of each site. */
+    private double[] occupancies;
+
+    /** Atomic number of each site. */
+    private byte[] atomicNumbers;
+
+    /** Charge of each site. */
+    private byte[] charges;
+
+    /** Index of the next site in the same hash chain, -1 if none. */
+    private int[] next;
+
+    /** Index of the first site of each hash chain, -1 if none. */
+    private int[] heads;
+
+    /** Number of sites. */
+    private int size;
+
+    /** Number of modifications of the set. */
+    private int modificationCount;
+
+
+
+    /**
+     * Creates a new empty <code>ColumnarAtomSites</code>.
+     */
+    public ColumnarAtomSites() {
+        this(CAPACITY);
+    }
+
+
+
+    /**
+     * Creates a new empty <code>ColumnarAtomSites</code> with the specified
+     * initial capacity.
+     * 
+     * @param capacity
+     *            initial capacity
+     * @throws IllegalArgumentException
+     *             if the capacity is negative
+     */
+    public ColumnarAtomSites(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Capacity (" + capacity
+                    + ") must be greater or equal to 0");
+
+        allocate(Math.max(capacity, 1));
+    }
+
+
+
+    /**
+     * Allocates the arrays for the specified capacity and rebuilds the hash
+     * table.
+     * 
+     * @param capacity
+     *            capacity
+     */
+    private void allocate(int capacity) {
+        if (xs == null) {
+            xs = new double[capacity];
+            ys = new double[capacity];
+            zs = new double[capacity];
+            occupancies = new double[capacity];
+            atomicNumbers = new byte[capacity];
+            charges = new byte[capacity];
+        } else {
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            zs = Arrays.copyOf(zs, capacity);
+            occupancies = Arrays.copyOf(occupancies, capacity);
+            atomicNumbers = Arrays.copyOf(atomicNumbers, capacity);
+            charges = Arrays.copyOf(charges, capacity);
+        }
+
+        // Hash table with a load factor below 0.75
+        int tableSize = 1;
+        while (tableSize * 3 < capacity * 4)
+            tableSize <<= 1;
+
+        next = new int[capacity];
+        heads = new int[tableSize];
+        Arrays.fill(heads, -1);
+        for (int i = 0; i < size; i++)
+            link(i);
+    }
+
+
+
+    /**
+     * Returns the hash chain of a bucket.
+     * 
+     * @param ix
+     *            index of the bucket along x
+     * @param iy
+     *            index of the bucket along y
+     * @param iz
+     *            index of the bucket along z
+     * @return index of the chain in the hash table
+     */
+    private int chain(int ix, int iy, int iz) {
+        long key = key(ix, iy, iz);
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 40) & (heads.length - 1);
+    }
+
+
+
+    /**
+     * Returns the hash chain of a site.
+     * 
+     * @param index
+     *            index of the site
+     * @return index of the chain in the hash table
+     */
+    private int chain(int index) {
+        return chain(bucket(xs[index]), bucket(ys[index]), bucket(zs[index]));
+    }
+
+
+
+    /**
+     * Inserts a site at the head of its hash chain.
+     * 
+     * @param index
+     *            index of the site
+     */
+    private void link(int index) {
+        int chain = chain(index);
+        next[index] = heads[chain];
+        heads[chain] = index;
+    }
+
+
+
+    /**
+     * Removes a site from its hash chain.
+     * 
+     * @param index
+     *            index of the site
+     */
+    private void unlink(int index) {
+        int chain = chain(index);
+        int previous = -1;
+        int current = heads[chain];
+        while (current != index) {
+            previous = current;
+            current = next[current];
+        }
+
+        if (previous < 0)
+            heads[chain] = next[index];
+        else
+            next[previous] = next[index];
+    }
+
+
+
+    /**
+     * Refines a fractional coordinate to be between 0.0 and 1.0.
+     * 
+     * @param value
+     *            fractional coordinate
+     * @return refined coordinate
+     */
+    private static double refine(double value) {
+        value -= Math.floor(value);
+        return value >= 1.0 ? 0.0 : value;
+    }
+
+
+
+    /**
+     * Returns the index of the site at the specified position, taking into
+     * account the periodicity of the cell.
+     * 
+     * @param x
+     *            x fractional coordinate
+     * @param y
+     *            y fractional coordinate
+     * @param z
+     *            z fractional coordinate
+     * @return index of the site or -1 if the position is not occupied
+     */
+    public int indexOf(double x, double y, double z) {
+        x = refine(x);
+        y = refine(y);
+        z = refine(z);
+
+        int[] ixs = new int[3];
+        int[] iys = new int[3];
+        int[] izs = new int[3];
+        int nx = neighbours(x, ixs);
+        int ny = neighbours(y, iys);
+        int nz = neighbours(z, izs);
+
+        for (int i = 0; i < nx; i++)
+            for (int j = 0; j < ny; j++)
+                for (int k = 0; k < nz; k++) {
+                    int index = heads[chain(ixs[i], iys[j], izs[k])];
+                    while (index >= 0) {
+                        if (distance(xs[index], x) <= DELTA
+                                && distance(ys[index], y) <= DELTA
+                                && distance(zs[index], z) <= DELTA)
+                            return index;
+                        index = next[index];
+                    }
+                }
+
+        return -1;
+    }
+
+
+
+    @Override
+    public boolean add(AtomSite atom) {
+        Vector3D pos = atom.getPosition();
+        return add(atom.getElement(), atom.getCharge(), pos.getX(), pos
+                .getY(), pos.getZ(), atom.getOccupancy());
+    }
+
+
+
+    /**
+     * Adds an atom site if its position is not already occupied.
+     * 
+     * @param element
+     *            element of the atom
+     * @param charge
+     *            electron charge of the atom
+     * @param x
+     *            x fractional coordinate
+     * @param y
+     *            y fractional coordinate
+     * @param z
+     *            z fractional coordinate
+     * @param occupancy
+     *            occupancy of the atom at this position
+     * @return <code>true</code> if the site was added, <code>false</code> if
+     *         the position is already occupied
+     * @throws IllegalArgumentException
+     *             if the occupancy is outside [0, 1]
+     * @throws IllegalArgumentException
+     *             if the charge is outside [-128, 127]
+     */
+    public boolean add(Element element, int charge, double x, double y,
+            double z, double occupancy) {
+        if (element == null)
+            throw new NullPointerException("element == null");
+        if (occupancy < 0 || occupancy > 1)
+            throw new IllegalArgumentException("The occupancy (" + occupancy
+                    + ") must be between [0,1].");
+        if (charge < Byte.MIN_VALUE || charge > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("The charge (" + charge
+                    + ") must be between [-128,127].");
+
+        if (indexOf(x, y, z) >= 0)
+            return false;
+
+        if (size == xs.length)
+            allocate(xs.length * 2);
+
+        xs[size] = refine(x);
+        ys[size] = refine(y);
+        zs[size] = refine(z);
+        occupancies[size] = occupancy;
+        atomicNumbers[size] = (byte) element.z();
+        charges[size] = (byte) charge;
+        link(size);
+        size++;
+        modificationCount++;
+
+        return true;
+    }
+
+
+
+    /**
+     * Returns the atom site at the specified index.
+     * 
+     * @param index
+     *            index of the site
+     * @return new atom site
+     * @throws IndexOutOfBoundsException
+     *             if the index is outside [0, size()[
+     */
+    public AtomSite get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index (" + index
+                    + ") must be between [0," + size + "[");
+
+        return new AtomSite(Element.fromZ(atomicNumbers[index]),
+                charges[index], new Vector3D(xs[index], ys[index],
+                        zs[index]), occupancies[index]);
+    }
+
+
+
+    /**
+     * Returns the index of the specified atom site.
+     * 
+     * @param o
+     *            atom site
+     * @return index or -1 if the set does not contain an equal atom site
+     */
+    private int indexOf(Object o) {
+        if (!(o instanceof AtomSite))
+            return -1;
+        AtomSite atom = (AtomSite) o;
+
+        Vector3D pos = atom.getPosition();
+        int index = indexOf(pos.getX(), pos.getY(), pos.getZ());
+        if (index < 0)
+            return -1;
+
+        if (atomicNumbers[index] != atom.getElement().z()
+                || charges[index] != atom.getCharge()
+                || occupancies[index] != atom.getOccupancy())
+            return -1;
+
+        return index;
+    }
+
+
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+
+        remove(index);
+        return true;
+    }
+
+
+
+    /**
+     * Removes the atom site at the specified index. The last site is moved
+     * at this index.
+     * 
+     * @param index
+     *            index of the site
+     * @throws IndexOutOfBoundsException
+     *             if the index is outside [0, size()[
+     */
+    public void remove(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index (" + index
+                    + ") must be between [0," + size + "[");
+
+        unlink(index);
+
+        int last = size - 1;
+        if (index != last) {
+            unlink(last);
+            xs[index] = xs[last];
+            ys[index] = ys[last];
+            zs[index] = zs[last];
+            occupancies[index] = occupancies[last];
+            atomicNumbers[index] = atomicNumbers[last];
+            charges[index] = charges[last];
+            link(index);
+        }
+
+        size--;
+        modificationCount++;
+    }
+
+
+
+    @Override
+    public void clear() {
+        size = 0;
+        Arrays.fill(heads, -1);
+        modificationCount++;
+    }
+
+
+
+    @Override
+    public Iterator<AtomSite> iterator() {
+        return new Iterator<AtomSite>() {
+
+            /** Index of the next site. */
+            private int cursor;
+
+            /** Index of the last returned site, -1 if none. */
+            private int last = -1;
+
+            /** Expected number of modifications. */
+            private int expected = modificationCount;
+
+
+
+            @Override
+            public boolean hasNext() {
+                return cursor < size;
+            }
+
+
+
+            @Override
+            public AtomSite next() {
+                if (expected != modificationCount)
+                    throw new ConcurrentModificationException();
+                if (cursor >= size)
+                    throw new NoSuchElementException();
+
+                last = cursor;
+                cursor++;
+                return get(last);
+            }
+
+
+
+            @Override
+            public void remove() {
+                if (last < 0)
+                    throw new IllegalStateException();
+                if (expected != modificationCount)
+                    throw new ConcurrentModificationException();
+
+                // The last site is moved at the removed index
+                ColumnarAtomSites.this.remove(last);
+                cursor = last;
+                last = -1;
+                expected = modificationCount;
+            }
+        };
+    }
+
+
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+
+    /**
+     * Returns the column of the x fractional coordinates. Only the first
+     * {@link #size()} values are valid. The array is replaced when the set
+     * grows.
+     * 
+     * @return x fractional coordinates
+     */
+    public double[] getXs() {
+        return xs;
+    }
+
+
+
+    /**
+     * Returns the column of the y fractional coordinates. Only the first
+     * {@link #size()} values are valid. The array is replaced when the set
+     * grows.
+     * 
+     * @return y fractional coordinates
+     */
+    public double[] getYs() {
+        return ys;
+    }
+
+
+
+    /**
+     * Returns the column of the z fractional coordinates. Only the first
+     * {@link #size()} values are valid. The array is replaced when the set
+     * grows.
+     * 
+     * @return z fractional coordinates
+     */
+    public double[] getZs() {
+        return zs;
+    }
+
+
+
+    /**
+     * Returns the column of the occupancies. Only the first {@link #size()}
+     * values are valid. The array is replaced when the set grows.
+     * 
+     * @return occupancies
+     */
+    public double[] getOccupancies() {
+        return occupancies;
+    }
+
+
+
+    /**
+     * Returns the column of the atomic numbers. Only the first
+     * {@link #size()} values are valid. The array is replaced when the set
+     * grows.
+     * 
+     * @return atomic numbers
+     */
+    public byte[] getAtomicNumbers() {
+        return atomicNumbers;
+    }
+
+
+
+    /**
+     * Returns the column of the charges. Only the first {@link #size()} values
+     * are valid. The array is replaced when the set grows.
+     * 
+     * @return charges
+     */
+    public byte[] getCharges() {
+        return charges;
+    }
+
+}
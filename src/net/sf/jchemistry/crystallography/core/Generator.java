@@ -81,4 +81,18 @@ public final class Generator {
                 x, y, z), atom.getOccupancy());
     }
 
+
+
+    /**
+     * Converts this generator to an exact symmetry operator.
+     * 
+     * @return exact symmetry operator
+     * @throws IllegalArgumentException
+     *             if the generator cannot be represented exactly
+     * @see SeitzOperator
+     */
+    public SeitzOperator toSeitzOperator() {
+        return SeitzOperator.fromDoubles(m, t);
+    }
+
 }
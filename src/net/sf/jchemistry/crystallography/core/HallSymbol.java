@@ -0,0 +1,397 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser of the Hall symbols of the space groups (S. R. Hall, Acta Cryst.
+ * A37, 517-525, 1981). A Hall symbol lists the lattice centring, an optional
+ * inversion and the generators of a space group, for example
+ * <code>-P 2ac 2n</code> for <i>Pnma</i>. The parser returns the operators
+ * generated by the symbol, which are then identified with
+ * {@link SpaceGroups#fromOperators(java.util.Collection)}.
+ * 
+ * @author Philippe T. Pinard
+ */
+public final class HallSymbol {
+
+    /**
+     * Rotation matrices along a, b and c (first index) for the orders 2, 3, 4
+     * and 6 (second index).
+     */
+    private static final int[][][][] ROTATIONS = new int[][][][] {
+            { { { 1, 0, 0 }, { 0, -1, 0 }, { 0, 0, -1 } },
+                    { { 1, 0, 0 }, { 0, 0, -1 }, { 0, 1, -1 } },
+                    { { 1, 0, 0 }, { 0, 0, -1 }, { 0, 1, 0 } },
+                    { { 1, 0, 0 }, { 0, 1, -1 }, { 0, 1, 0 } } },
+            { { { -1, 0, 0 }, { 0, 1, 0 }, { 0, 0, -1 } },
+                    { { -1, 0, 1 }, { 0, 1, 0 }, { -1, 0, 0 } },
+                    { { 0, 0, 1 }, { 0, 1, 0 }, { -1, 0, 0 } },
+                    { { 0, 0, 1 }, { 0, 1, 0 }, { -1, 0, 1 } } },
+            { { { -1, 0, 0 }, { 0, -1, 0 }, { 0, 0, 1 } },
+                    { { 0, -1, 0 }, { 1, -1, 0 }, { 0, 0, 1 } },
+                    { { 0, -1, 0 }, { 1, 0, 0 }, { 0, 0, 1 } },
+                    { { 1, -1, 0 }, { 1, 0, 0 }, { 0, 0, 1 } } } };
+
+    /**
+     * Rotation matrices of the 2-fold axes along the face diagonals, with
+     * respect to the preceding axis a, b or c (first index). The first matrix
+     * of each pair is for the <code>'</code> axis and the second for the
+     * <code>"</code> axis.
+     */
+    private static final int[][][][] DIAGONALS = new int[][][][] {
+            { { { -1, 0, 0 }, { 0, 0, -1 }, { 0, -1, 0 } },
+                    { { -1, 0, 0 }, { 0, 0, 1 }, { 0, 1, 0 } } },
+            { { { 0, 0, -1 }, { 0, -1, 0 }, { -1, 0, 0 } },
+                    { { 0, 0, 1 }, { 0, -1, 0 }, { 1, 0, 0 } } },
+            { { { 0, -1, 0 }, { -1, 0, 0 }, { 0, 0, -1 } },
+                    { { 0, 1, 0 }, { 1, 0, 0 }, { 0, 0, -1 } } } };
+
+    /** Rotation matrix of the 3-fold axis along the body diagonal. */
+    private static final int[][] BODY_DIAGONAL = new int[][] { { 0, 0, 1 },
+            { 1, 0, 0 }, { 0, 1, 0 } };
+
+    /** Identity matrix. */
+    private static final int[][] IDENTITY = new int[][] { { 1, 0, 0 },
+            { 0, 1, 0 }, { 0, 0, 1 } };
+
+
+
+    /**
+     * Returns the centring translations (in units of
+     * {@link SeitzOperator#DENOMINATOR}) of a lattice symbol.
+     * 
+     * @param lattice
+     *            lattice symbol
+     * @return centring translations
+     * @throws IllegalArgumentException
+     *             if the lattice symbol is unknown
+     */
+    private static int[][] centring(char lattice) {
+        switch (Character.toUpperCase(lattice)) {
+        case 'P':
+            return new int[0][];
+        case 'A':
+            return new int[][] { { 0, 6, 6 } };
+        case 'B':
+            return new int[][] { { 6, 0, 6 } };
+        case 'C':
+            return new int[][] { { 6, 6, 0 } };
+        case 'I':
+            return new int[][] { { 6, 6, 6 } };
+        case 'R':
+            return new int[][] { { 8, 4, 4 }, { 4, 8, 8 } };
+        case 'S':
+            return new int[][] { { 4, 4, 8 }, { 8, 8, 4 } };
+        case 'T':
+            return new int[][] { { 4, 8, 4 }, { 8, 4, 8 } };
+        case 'F':
+            return new int[][] { { 0, 6, 6 }, { 6, 0, 6 }, { 6, 6, 0 } };
+        default:
+            throw new IllegalArgumentException("Unknown lattice symbol ("
+                    + lattice + ").");
+        }
+    }
+
+
+
+    /**
+     * Returns whether a symbol is written like a Hall symbol rather than a
+     * Hermann-Mauguin symbol: either the lattice symbol is preceded by a minus
+     * sign (e.g. <code>-P 2ybc</code>), or it is followed by at least two
+     * space-separated generators (e.g. <code>P 4 2</code>), or by a single
+     * generator with an axis or a translation that does not exist in the
+     * Hermann-Mauguin symbols (e.g. <code>P 2yb</code>). A generator starts
+     * with its order and is never the identity <code>1</code>, which only
+     * appears in the Hermann-Mauguin symbols (e.g. <code>P 3 2 1</code>).
+     * 
+     * @param symbol
+     *            symbol
+     * @return <code>true</code> if the symbol looks like a Hall symbol,
+     *         <code>false</code> otherwise
+     */
+    public static boolean matches(String symbol) {
+        if (symbol == null)
+            throw new NullPointerException("symbol == null");
+
+        String s = symbol.trim();
+        int parenthesis = s.indexOf('(');
+        if (parenthesis >= 0)
+            s = s.substring(0, parenthesis).trim();
+
+        if (s.startsWith("-"))
+            return true;
+
+        String[] tokens = s.split("\\s+");
+        if (tokens.length < 2 || tokens[0].length() != 1)
+            return false;
+
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            int pos = token.charAt(0) == '-' ? 1 : 0;
+            if (pos >= token.length() || !Character.isDigit(token.charAt(pos))
+                    || token.equals("1") || token.indexOf('/') >= 0)
+                return false;
+        }
+
+        if (tokens.length == 2)
+            return tokens[1].toLowerCase().matches(".*[xyzuvw'\"*].*");
+
+        return true;
+    }
+
+
+
+    /**
+     * Returns the operators generated by a Hall symbol, including the lattice
+     * translations. The operators form a group.
+     * 
+     * @param symbol
+     *            Hall symbol (e.g. <code>-P 2ybc</code>)
+     * @return operators generated by the symbol
+     * @throws IllegalArgumentException
+     *             if the symbol is not a valid Hall symbol
+     */
+    public static List<SeitzOperator> parse(String symbol) {
+        if (symbol == null)
+            throw new NullPointerException("symbol == null");
+
+        String s = symbol.trim();
+        int[] shift = null;
+        int parenthesis = s.indexOf('(');
+        if (parenthesis >= 0) {
+            shift = parseShift(s, parenthesis);
+            s = s.substring(0, parenthesis).trim();
+        }
+
+        String[] tokens = s.split("\\s+");
+        String lattice = tokens[0];
+        if (tokens.length < 2 || lattice.length() < 1 || lattice.length() > 2
+                || (lattice.length() == 2 && lattice.charAt(0) != '-'))
+            throw new IllegalArgumentException("Invalid Hall symbol ("
+                    + symbol + ").");
+
+        List<SeitzOperator> generators = new ArrayList<SeitzOperator>();
+        generators.add(SeitzOperator.IDENTITY);
+
+        if (lattice.charAt(0) == '-')
+            generators.add(new SeitzOperator(negate(IDENTITY), new int[3]));
+        for (int[] t : centring(lattice.charAt(lattice.length() - 1)))
+            generators.add(new SeitzOperator(IDENTITY, t));
+
+        int previousOrder = 0;
+        int previousAxis = -1;
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            int pos = 0;
+
+            boolean improper = token.charAt(pos) == '-';
+            if (improper)
+                pos++;
+
+            if (pos >= token.length())
+                throw new IllegalArgumentException("Invalid Hall symbol ("
+                        + symbol + ").");
+            int order = token.charAt(pos++) - '0';
+            if (order != 1 && order != 2 && order != 3 && order != 4
+                    && order != 6)
+                throw new IllegalArgumentException("Invalid Hall symbol ("
+                        + symbol + ").");
+
+            // Screw component
+            int screw = 0;
+            if (pos < token.length() && Character.isDigit(token.charAt(pos)))
+                screw = token.charAt(pos++) - '0';
+
+            // Axis and translations
+            char axisSymbol = 0;
+            int[] t = new int[3];
+            for (; pos < token.length(); pos++) {
+                char c = Character.toLowerCase(token.charAt(pos));
+                switch (c) {
+                case 'x':
+                case 'y':
+                case 'z':
+                case '\'':
+                case '"':
+                case '*':
+                    axisSymbol = c;
+                    break;
+                case 'a':
+                    t[0] += 6;
+                    break;
+                case 'b':
+                    t[1] += 6;
+                    break;
+                case 'c':
+                    t[2] += 6;
+                    break;
+                case 'n':
+                    t[0] += 6;
+                    t[1] += 6;
+                    t[2] += 6;
+                    break;
+                case 'u':
+                    t[0] += 3;
+                    break;
+                case 'v':
+                    t[1] += 3;
+                    break;
+                case 'w':
+                    t[2] += 3;
+                    break;
+                case 'd':
+                    t[0] += 3;
+                    t[1] += 3;
+                    t[2] += 3;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid Hall symbol ("
+                            + symbol + ").");
+                }
+            }
+
+            // Default axis
+            if (axisSymbol == 0) {
+                if (i == 1)
+                    axisSymbol = 'z';
+                else if (i == 2 && order == 2) {
+                    if (previousOrder == 2 || previousOrder == 4)
+                        axisSymbol = 'x';
+                    else if (previousOrder == 3 || previousOrder == 6)
+                        axisSymbol = '\'';
+                } else if (i == 3 && order == 3)
+                    axisSymbol = '*';
+
+                if (axisSymbol == 0 && order != 1)
+                    throw new IllegalArgumentException("Invalid Hall symbol ("
+                            + symbol + ").");
+            }
+
+            // Rotation
+            int[][] m;
+            int axis = -1;
+            if (order == 1)
+                m = IDENTITY;
+            else if (axisSymbol == '\'' || axisSymbol == '"') {
+                if (order != 2 || previousAxis < 0)
+                    throw new IllegalArgumentException("Invalid Hall symbol ("
+                            + symbol + ").");
+                m = DIAGONALS[previousAxis][axisSymbol == '\'' ? 0 : 1];
+            } else if (axisSymbol == '*') {
+                if (order != 3)
+                    throw new IllegalArgumentException("Invalid Hall symbol ("
+                            + symbol + ").");
+                m = BODY_DIAGONAL;
+            } else {
+                axis = axisSymbol - 'x';
+                m = ROTATIONS[axis][order == 6 ? 3 : order - 2];
+            }
+
+            if (screw != 0) {
+                if (axis < 0 || screw >= order)
+                    throw new IllegalArgumentException("Invalid Hall symbol ("
+                            + symbol + ").");
+                t[axis] += screw * SeitzOperator.DENOMINATOR / order;
+            }
+
+            generators.add(new SeitzOperator(improper ? negate(m) : m, t));
+
+            previousOrder = order;
+            if (axis >= 0)
+                previousAxis = axis;
+        }
+
+        List<SeitzOperator> ops = SeitzOperator.closure(generators);
+
+        if (shift != null) {
+            // Change of origin {I|v} S {I|-v}
+            SeitzOperator to = new SeitzOperator(IDENTITY, shift);
+            SeitzOperator from = to.inverse();
+            for (int i = 0; i < ops.size(); i++)
+                ops.set(i, to.compose(ops.get(i)).compose(from));
+        }
+
+        return ops;
+    }
+
+
+
+    /**
+     * Parses the change of origin of a Hall symbol, written as three integers
+     * in units of 1/12 between parentheses (e.g. <code>(0 0 1)</code>).
+     * 
+     * @param symbol
+     *            Hall symbol
+     * @param start
+     *            index of the opening parenthesis
+     * @return shift of the origin (in units of
+     *         {@link SeitzOperator#DENOMINATOR})
+     * @throws IllegalArgumentException
+     *             if the change of origin is invalid
+     */
+    private static int[] parseShift(String symbol, int start) {
+        int end = symbol.indexOf(')', start);
+        if (end < 0 || end != symbol.length() - 1)
+            throw new IllegalArgumentException("Invalid Hall symbol ("
+                    + symbol + ").");
+
+        String[] tokens = symbol.substring(start + 1, end).trim().split("\\s+");
+        if (tokens.length != 3)
+            throw new IllegalArgumentException("Invalid Hall symbol ("
+                    + symbol + ").");
+
+        int[] shift = new int[3];
+        try {
+            for (int i = 0; i < 3; i++)
+                shift[i] = Integer.parseInt(tokens[i]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid Hall symbol ("
+                    + symbol + ").");
+        }
+
+        return shift;
+    }
+
+
+
+    /**
+     * Returns the negative of a matrix.
+     * 
+     * @param m
+     *            matrix
+     * @return negative matrix
+     */
+    private static int[][] negate(int[][] m) {
+        int[][] out = new int[3][3];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                out[i][j] = -m[i][j];
+        return out;
+    }
+
+
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private HallSymbol() {
+    }
+}
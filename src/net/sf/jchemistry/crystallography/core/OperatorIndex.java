@@ -0,0 +1,435 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the space groups by their symmetry operators. The operators of a
+ * space group are canonicalised as the sorted array of their codes (see
+ * {@link SeitzOperator#getCode()}), so that a space group can be identified
+ * from a list of operators in constant time, without comparing the operators
+ * to the ones of every space group.
+ * <p/>
+ * If the operators do not match a space group exactly, two fallbacks are
+ * tried:
+ * <ul>
+ * <li>origin shift: the space groups with the same rotations are compared
+ * after shifting the origin by multiples of 1/24 of the lattice vectors;</li>
+ * <li>setting: the operators are transformed by the permutations of the axes
+ * (e.g. <i>Pbnm</i> to <i>Pnma</i>) and compared again, with the origin
+ * shift fallback.</li>
+ * </ul>
+ * The transformation from the setting of the operators to the one of the
+ * matching space group is also available (see
+ * {@link #findSetting(Collection)}).
+ * 
+ * @author Philippe T. Pinard
+ */
+final class OperatorIndex {
+
+    /**
+     * Space group matching a set of operators.
+     */
+    private static final class Match {
+
+        /** Space group. */
+        private final SpaceGroup spaceGroup;
+
+        /** Transformation to the setting of the space group. */
+        private final CellTransformation setting;
+
+
+
+        /**
+         * Creates a new <code>Match</code>.
+         * 
+         * @param spaceGroup
+         *            space group
+         * @param setting
+         *            transformation from the setting of the operators to the
+         *            one of the space group
+         */
+        public Match(SpaceGroup spaceGroup, CellTransformation setting) {
+            this.spaceGroup = spaceGroup;
+            this.setting = setting;
+        }
+    }
+
+
+
+    /**
+     * Canonical key of a set of operators.
+     */
+    private static final class Key {
+
+        /** Sorted codes. */
+        private final int[] codes;
+
+        /** Hash code. */
+        private final int hash;
+
+
+
+        /**
+         * Creates a new <code>Key</code>.
+         * 
+         * @param codes
+         *            sorted codes
+         */
+        public Key(int[] codes) {
+            this.codes = codes;
+            this.hash = Arrays.hashCode(codes);
+        }
+
+
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+
+            return Arrays.equals(codes, ((Key) obj).codes);
+        }
+
+
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** Denominator of the origin shifts. */
+    private static final int SHIFT_DENOMINATOR = 2 * SeitzOperator.DENOMINATOR;
+
+    /**
+     * Rotation matrices of the permutations of the axes (determinant +1). The
+     * first one is the identity.
+     */
+    private static final int[][][] PERMUTATIONS = new int[][][] {
+            { { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 } },
+            { { 0, 1, 0 }, { 0, 0, 1 }, { 1, 0, 0 } },
+            { { 0, 0, 1 }, { 1, 0, 0 }, { 0, 1, 0 } },
+            { { 0, 1, 0 }, { 1, 0, 0 }, { 0, 0, -1 } },
+            { { 1, 0, 0 }, { 0, 0, 1 }, { 0, -1, 0 } },
+            { { 0, 0, 1 }, { 0, -1, 0 }, { 1, 0, 0 } } };
+
+
+
+    /**
+     * Returns the canonical key of the operators.
+     * 
+     * @param ops
+     *            operators
+     * @return key
+     */
+    private static Key key(Collection<SeitzOperator> ops) {
+        int[] codes = new int[ops.size()];
+        int n = 0;
+        for (SeitzOperator op : ops)
+            codes[n++] = op.getCode();
+
+        Arrays.sort(codes);
+
+        // Remove duplicates
+        int size = 0;
+        for (int i = 0; i < n; i++)
+            if (size == 0 || codes[size - 1] != codes[i])
+                codes[size++] = codes[i];
+
+        return new Key(Arrays.copyOf(codes, size));
+    }
+
+
+
+    /**
+     * Returns the key of the rotations of the operators, i.e. the sorted codes
+     * of the operators without their translation.
+     * 
+     * @param ops
+     *            operators
+     * @return key
+     */
+    private static Key rotationKey(Collection<SeitzOperator> ops) {
+        int[] codes = new int[ops.size()];
+        int n = 0;
+        for (SeitzOperator op : ops)
+            codes[n++] = op.getCode() >>> 12;
+
+        Arrays.sort(codes);
+
+        int size = 0;
+        for (int i = 0; i < n; i++)
+            if (size == 0 || codes[size - 1] != codes[i])
+                codes[size++] = codes[i];
+
+        return new Key(Arrays.copyOf(codes, size));
+    }
+
+    /** Space groups by the key of their operators. */
+    private final Map<Key, SpaceGroup> groups;
+
+    /** Space groups by the key of their rotations. */
+    private final Map<Key, List<SpaceGroup>> rotations;
+
+
+
+    /**
+     * Creates a new <code>OperatorIndex</code>. The generators of each space
+     * group must form a group modulo the lattice translations. When two space
+     * groups have the same operators, the first one is kept.
+     * 
+     * @param spaceGroups
+     *            space groups to index
+     */
+    public OperatorIndex(SpaceGroup[] spaceGroups) {
+        groups = new HashMap<Key, SpaceGroup>();
+        rotations = new HashMap<Key, List<SpaceGroup>>();
+
+        for (SpaceGroup sg : spaceGroups) {
+            List<SeitzOperator> ops = new ArrayList<SeitzOperator>();
+            for (Generator generator : sg.getGenerators())
+                ops.add(generator.toSeitzOperator());
+
+            Key key = key(ops);
+            if (!groups.containsKey(key))
+                groups.put(key, sg);
+
+            key = rotationKey(ops);
+            List<SpaceGroup> list = rotations.get(key);
+            if (list == null) {
+                list = new ArrayList<SpaceGroup>(1);
+                rotations.put(key, list);
+            }
+            list.add(sg);
+        }
+    }
+
+
+
+    /**
+     * Searches for an origin shift which maps the operators onto the
+     * operators of the space group.
+     * 
+     * @param ops
+     *            operators (a group modulo the lattice translations)
+     * @param sg
+     *            space group with the same rotations
+     * @return origin shift (in units of 1/{@link #SHIFT_DENOMINATOR}) or
+     *         <code>null</code> if no origin shift is found
+     */
+    private static int[] originShift(List<SeitzOperator> ops, SpaceGroup sg) {
+        if (ops.size() != sg.getOrder())
+            return null;
+
+        int[][] r = new int[3][3];
+        int[] t = new int[3];
+        int[] p = new int[3];
+        int total = SHIFT_DENOMINATOR * SHIFT_DENOMINATOR * SHIFT_DENOMINATOR;
+
+        for (int shift = 0; shift < total; shift++) {
+            p[0] = shift % SHIFT_DENOMINATOR;
+            p[1] = (shift / SHIFT_DENOMINATOR) % SHIFT_DENOMINATOR;
+            p[2] = shift / (SHIFT_DENOMINATOR * SHIFT_DENOMINATOR);
+
+            boolean match = true;
+            for (int k = 0; k < ops.size() && match; k++) {
+                SeitzOperator op = ops.get(k);
+
+                // {I|-p}{R|t}{I|p} = {R|t + (R - I)p}
+                for (int i = 0; i < 3 && match; i++) {
+                    int value = 2 * op.getTranslation(i) - p[i];
+                    for (int j = 0; j < 3; j++) {
+                        r[i][j] = op.getRotation(i, j);
+                        value += r[i][j] * p[j];
+                    }
+
+                    if (value % 2 != 0)
+                        match = false;
+                    t[i] = value / 2;
+                }
+
+                if (match)
+                    match = sg.indexOf(new SeitzOperator(r, t)) >= 0;
+            }
+
+            if (match)
+                return p;
+        }
+
+        return null;
+    }
+
+
+
+    /**
+     * Transforms the operators by a change of basis.
+     * 
+     * @param ops
+     *            operators
+     * @param permutation
+     *            rotation matrix of the change of basis
+     * @return transformed operators
+     */
+    private static List<SeitzOperator> transform(List<SeitzOperator> ops,
+            int[][] permutation) {
+        SeitzOperator p = new SeitzOperator(permutation, new int[3]);
+        SeitzOperator inverse = p.inverse();
+
+        List<SeitzOperator> transformed =
+                new ArrayList<SeitzOperator>(ops.size());
+        for (SeitzOperator op : ops)
+            transformed.add(inverse.compose(op).compose(p));
+
+        return transformed;
+    }
+
+
+
+    /**
+     * Returns the space group with the specified operators or
+     * <code>null</code> if no space group matches. The operators do not need
+     * to form a complete group: they are closed under composition if they do
+     * not match a space group exactly.
+     * 
+     * @param ops
+     *            operators
+     * @return space group or <code>null</code>
+     */
+    public SpaceGroup find(Collection<SeitzOperator> ops) {
+        Match match = match(ops);
+        return match == null ? null : match.spaceGroup;
+    }
+
+
+
+    /**
+     * Returns the transformation from the setting of the specified operators
+     * to the one of the matching space group (see {@link #find(Collection)})
+     * or <code>null</code> if no space group matches. The transformation
+     * combines a permutation of the axes and an origin shift.
+     * 
+     * @param ops
+     *            operators
+     * @return transformation to the setting of the space group or
+     *         <code>null</code>
+     */
+    public CellTransformation findSetting(Collection<SeitzOperator> ops) {
+        Match match = match(ops);
+        return match == null ? null : match.setting;
+    }
+
+
+
+    /**
+     * Returns the space group with the specified operators and the
+     * transformation to its setting, or <code>null</code> if no space group
+     * matches.
+     * 
+     * @param ops
+     *            operators
+     * @return match or <code>null</code>
+     */
+    private Match match(Collection<SeitzOperator> ops) {
+        // Exact match of the listed operators
+        SpaceGroup sg = groups.get(key(ops));
+        if (sg != null)
+            return new Match(sg, CellTransformation.IDENTITY);
+
+        // Origin shift, then other settings
+        List<SeitzOperator> closure = SeitzOperator.closure(ops);
+        for (int[][] permutation : PERMUTATIONS) {
+            Match match =
+                    findShifted(transform(closure, permutation), permutation);
+            if (match != null)
+                return match;
+        }
+
+        return null;
+    }
+
+
+
+    /**
+     * Returns the space group with the specified operators, exactly or after
+     * an origin shift, or <code>null</code> if no space group matches.
+     * 
+     * @param ops
+     *            operators (a group modulo the lattice translations)
+     *            transformed by the permutation
+     * @param permutation
+     *            permutation of the axes applied to the operators
+     * @return match or <code>null</code>
+     */
+    private Match findShifted(List<SeitzOperator> ops, int[][] permutation) {
+        SpaceGroup sg = groups.get(key(ops));
+        if (sg != null)
+            return new Match(sg, setting(permutation, new int[3]));
+
+        List<SpaceGroup> candidates = rotations.get(rotationKey(ops));
+        if (candidates == null)
+            return null;
+
+        for (SpaceGroup candidate : candidates) {
+            int[] shift = originShift(ops, candidate);
+            if (shift != null)
+                return new Match(candidate, setting(permutation, shift));
+        }
+
+        return null;
+    }
+
+
+
+    /**
+     * Returns the transformation to the setting of a space group from a
+     * permutation of the axes followed by an origin shift.
+     * 
+     * @param permutation
+     *            permutation of the axes
+     * @param shift
+     *            origin shift in the permuted basis (in units of
+     *            1/{@link #SHIFT_DENOMINATOR})
+     * @return transformation
+     */
+    private static CellTransformation setting(int[][] permutation,
+            int[] shift) {
+        double[][] m = new double[3][3];
+        double[] origin = new double[3];
+
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++) {
+                m[i][j] = permutation[i][j];
+                origin[i] +=
+                        permutation[i][j] * shift[j]
+                                / (double) SHIFT_DENOMINATOR;
+            }
+
+        return new CellTransformation(m, origin);
+    }
+}
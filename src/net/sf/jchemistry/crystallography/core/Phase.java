@@ -17,7 +17,7 @@
  */
 package net.sf.jchemistry.crystallography.core;
 
-import java.util.ArrayList;
+import java.util.Iterator;
 
 import net.sf.jchemistry.util.Citable;
 
@@ -40,8 +40,17 @@ public class Phase implements Citable {
     /** Unit cell. */
     private final UnitCell unitCell;
 
-    /** Atom positions. */
-    private final AtomSites atoms;
+    /** Atom positions of the asymmetric unit. */
+    private final AtomSites asymmetricUnit;
+
+    /** View of all the atom positions (see {@link #getAllAtoms()}). */
+    private final EquivalentAtomSites atoms;
+
+    /** View returned by the deprecated {@link #getAtoms()}. */
+    private volatile LegacyAtomSites legacyAtoms;
+
+    /** Cached equivalent positions of the asymmetric unit. */
+    private volatile EquivalentAtoms equivalentAtoms;
 
     /** Reflectors. */
     private final Reflectors reflectors;
@@ -80,7 +89,8 @@ public class Phase implements Citable {
             throw new NullPointerException("unit cell == null");
         this.unitCell = unitCell;
 
-        atoms = new AtomSites();
+        asymmetricUnit = new AtomSites();
+        atoms = new EquivalentAtomSites();
         reflectors = new Reflectors();
     }
 
@@ -140,19 +150,89 @@ public class Phase implements Citable {
 
 
     /**
-     * Returns the atom positions of this phase. The equivalent positions based
-     * on the space group are automatically calculated when this method is
-     * called.
+     * Returns all the atom positions of this phase, i.e. the asymmetric unit
+     * and its equivalent positions based on the space group. The equivalent
+     * positions are calculated the first time this method is called after
+     * the asymmetric unit changed, then cached.
+     * <p/>
+     * The returned set is a view: atoms added to or removed from it are added
+     * to or removed from the asymmetric unit (see
+     * {@link #getAsymmetricUnit()}), and the view then contains all their
+     * equivalent positions.
+     * <p/>
+     * Only atoms of the asymmetric unit can be removed. Removing an equivalent
+     * position generated by the space group, either with
+     * {@link java.util.Set#remove(Object)} or with the
+     * {@link Iterator#remove()} of the view, throws an
+     * <code>UnsupportedOperationException</code>. Removing an atom that is
+     * not in the view returns <code>false</code>.
+     * <p/>
+     * The view can be read by several threads at the same time, as long as
+     * the asymmetric unit is not modified.
+     * 
+     * @return atom positions
+     */
+    public AbstractAtomSites getAllAtoms() {
+        return atoms;
+    }
+
+
+
+    /**
+     * Returns the atom positions of this phase. The returned set is the same
+     * view as {@link #getAllAtoms()}, as an <code>AtomSites</code>.
      * 
      * @return atom positions
+     * @deprecated use {@link #getAllAtoms()} to read the atom positions and
+     *             {@link #getAsymmetricUnit()} to modify them
      */
+    @Deprecated
     public AtomSites getAtoms() {
-        // Calculate equivalent positions
-        for (AtomSite atom : new ArrayList<AtomSite>(atoms))
-            for (Generator generator : spaceGroup.getGenerators())
-                atoms.add(generator.apply(atom));
+        LegacyAtomSites legacy = legacyAtoms;
+        if (legacy == null) {
+            legacy = new LegacyAtomSites();
+            legacyAtoms = legacy;
+        }
 
-        return atoms;
+        return legacy;
+    }
+
+
+
+    /**
+     * Returns the atom positions of the asymmetric unit of this phase, i.e.
+     * without the equivalent positions based on the space group.
+     * 
+     * @return atom positions of the asymmetric unit
+     */
+    public AtomSites getAsymmetricUnit() {
+        return asymmetricUnit;
+    }
+
+
+
+    /**
+     * Returns the equivalent positions of the atoms of the asymmetric unit.
+     * The positions are only recalculated if the asymmetric unit changed
+     * since the last call.
+     * 
+     * @return all atom positions
+     */
+    private AtomSites expand() {
+        int count = asymmetricUnit.getModificationCount();
+        EquivalentAtoms cache = equivalentAtoms;
+        if (cache == null || cache.count != count) {
+            AtomSites all = new AtomSites();
+            all.addAll(asymmetricUnit);
+            for (AtomSite atom : asymmetricUnit)
+                for (AtomSite equivalent : Calculations.orbit(atom, spaceGroup))
+                    all.add(equivalent);
+
+            cache = new EquivalentAtoms(count, all);
+            equivalentAtoms = cache;
+        }
+
+        return cache.atoms;
     }
 
 
@@ -183,7 +263,8 @@ public class Phase implements Citable {
 
     /**
      * Computes the reflectors based on the given scattering factors and maximum
-     * index.
+     * index. The intensities are computed in the primitive cell, which skips
+     * the reflections extinct by the centring of the lattice.
      * 
      * @param scatter
      *            scattering factors
@@ -195,9 +276,213 @@ public class Phase implements Citable {
      */
     public void computeReflectors(ScatteringFactors scatter, int maxIndex,
             double minRelativeIntensity) {
+        CellTransformation primitive =
+                CellTransformation.primitive(spaceGroup);
+
         reflectors.clear();
-        reflectors.addAll(Reflectors.generate(getUnitCell(), getAtoms(),
-                scatter, maxIndex, minRelativeIntensity));
+        reflectors.addAll(Reflectors.generate(primitive.transform(unitCell),
+                primitive.transform(getAllAtoms()), primitive, scatter,
+                maxIndex, minRelativeIntensity));
+    }
+
+
+
+    /**
+     * Returns the atom positions of this phase in the primitive cell of its
+     * lattice (see {@link #getPrimitiveCell()}). A centred cell contains as
+     * many copies of these atoms as lattice points.
+     * 
+     * @return atom positions in the primitive cell
+     */
+    public AbstractAtomSites getPrimitiveAtoms() {
+        return CellTransformation.primitive(spaceGroup).transform(
+                getAllAtoms());
+    }
+
+
+
+    /**
+     * Returns the primitive cell of the lattice of this phase (see
+     * {@link CellTransformation#primitive(SpaceGroup)}).
+     * 
+     * @return primitive cell
+     */
+    public UnitCell getPrimitiveCell() {
+        return UnitCellFactory.primitive(unitCell, spaceGroup);
+    }
+
+
+
+    /**
+     * Equivalent positions of the asymmetric unit and the modification count
+     * of the asymmetric unit they were calculated from. The positions are not
+     * modified once the cache is published, so that several threads can read
+     * them without synchronisation.
+     */
+    private static final class EquivalentAtoms {
+
+        /** Modification count of the asymmetric unit. */
+        private final int count;
+
+        /** All atom positions. */
+        private final AtomSites atoms;
+
+
+
+        /**
+         * Creates a new <code>EquivalentAtoms</code>.
+         * 
+         * @param count
+         *            modification count of the asymmetric unit
+         * @param atoms
+         *            all atom positions
+         */
+        public EquivalentAtoms(int count, AtomSites atoms) {
+            this.count = count;
+            this.atoms = atoms;
+        }
+
+    }
+
+
+
+    /**
+     * View of the equivalent positions of the asymmetric unit. Modifications
+     * are applied to the asymmetric unit. Removing a position generated by
+     * the space group throws an <code>UnsupportedOperationException</code>.
+     */
+    private class EquivalentAtomSites extends AbstractAtomSites {
+
+        @Override
+        public boolean add(AtomSite atom) {
+            return asymmetricUnit.add(atom);
+        }
+
+
+
+        @Override
+        public boolean contains(Object o) {
+            return expand().contains(o);
+        }
+
+
+
+        @Override
+        public boolean remove(Object o) {
+            if (asymmetricUnit.remove(o))
+                return true;
+            if (expand().contains(o))
+                throw new UnsupportedOperationException(
+                        "Only atoms of the asymmetric unit can be removed.");
+            return false;
+        }
+
+
+
+        @Override
+        public void clear() {
+            asymmetricUnit.clear();
+        }
+
+
+
+        @Override
+        public Iterator<AtomSite> iterator() {
+            final Iterator<AtomSite> iterator =
+                    expand().iterator();
+
+            return new Iterator<AtomSite>() {
+
+                /** Last returned atom site. */
+                private AtomSite last;
+
+
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+
+
+                @Override
+                public AtomSite next() {
+                    last = iterator.next();
+                    return last;
+                }
+
+
+
+                @Override
+                public void remove() {
+                    if (last == null)
+                        throw new IllegalStateException();
+                    if (!asymmetricUnit.remove(last))
+                        throw new UnsupportedOperationException("Only atoms "
+                                + "of the asymmetric unit can be removed.");
+                    last = null;
+                }
+            };
+        }
+
+
+
+        @Override
+        public int size() {
+            return expand().size();
+        }
+
+    }
+
+
+
+    /**
+     * View of {@link #getAllAtoms()} as an <code>AtomSites</code>, for the
+     * deprecated {@link #getAtoms()}. All the operations are delegated to the
+     * view, so the storage inherited from <code>AtomSites</code> stays empty.
+     */
+    private class LegacyAtomSites extends AtomSites {
+
+        @Override
+        public boolean add(AtomSite atom) {
+            return atoms.add(atom);
+        }
+
+
+
+        @Override
+        public boolean contains(Object o) {
+            return atoms.contains(o);
+        }
+
+
+
+        @Override
+        public boolean remove(Object o) {
+            return atoms.remove(o);
+        }
+
+
+
+        @Override
+        public void clear() {
+            atoms.clear();
+        }
+
+
+
+        @Override
+        public Iterator<AtomSite> iterator() {
+            return atoms.iterator();
+        }
+
+
+
+        @Override
+        public int size() {
+            return atoms.size();
+        }
+
     }
 
 }
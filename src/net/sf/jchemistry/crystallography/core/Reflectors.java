@@ -75,8 +75,9 @@ public final class Reflectors extends AbstractSet<Reflector> {
      *             if the maxIndex is less than 0
      * @return reflectors for the given phase
      */
-    public static Reflectors generate(UnitCell unitCell, AtomSites atoms,
-            ScatteringFactors scatter, int maxIndex, double minRelativeIntensity) {
+    public static Reflectors generate(UnitCell unitCell,
+            AbstractAtomSites atoms, ScatteringFactors scatter, int maxIndex,
+            double minRelativeIntensity) {
         if (unitCell == null)
             throw new NullPointerException("unit cell == null.");
         if (atoms == null)
@@ -90,23 +91,90 @@ public final class Reflectors extends AbstractSet<Reflector> {
             throw new IllegalArgumentException("Minimum relative intensity ("
                     + minRelativeIntensity + ") must be between ]0.0, 1.0[.");
 
+        return generate(unitCell, atoms, CellTransformation.IDENTITY, scatter,
+                maxIndex, minRelativeIntensity);
+    }
+
+
+
+    /**
+     * Generates a new list of <code>Reflector</code>s for the given crystal
+     * from a transformed cell, for instance the primitive cell of a centred
+     * lattice (see {@link CellTransformation#primitive(SpaceGroup)}). The
+     * reflectors are computed for all planes of the original cell with
+     * indices less or equal to <code>maxIndex</code> and are returned with
+     * these indices. The planes whose indices are not integers in the
+     * transformed cell are extinct and skipped, and the intensity of the
+     * other planes is computed from the atoms of the transformed cell only.
+     * The transformed cell must contain the same lattice as the original
+     * cell.
+     * 
+     * @param unitCell
+     *            transformed unit cell
+     * @param atoms
+     *            atoms of the transformed unit cell
+     * @param transformation
+     *            transformation from the original cell to the transformed
+     *            cell
+     * @param scatter
+     *            scattering factors
+     * @param maxIndex
+     *            maximum index of the planes to compute
+     * @param minRelativeIntensity
+     *            minimum intensity relative to the most intense reflector, i.e.
+     *            percentage of the maximum intensity
+     * @throws NullPointerException
+     *             if the transformation is null
+     * @throws IllegalArgumentException
+     *             if the maxIndex is less than 0
+     * @return reflectors with the indices of the original cell
+     */
+    public static Reflectors generate(UnitCell unitCell,
+            AbstractAtomSites atoms, CellTransformation transformation,
+            ScatteringFactors scatter, int maxIndex,
+            double minRelativeIntensity) {
+        if (unitCell == null)
+            throw new NullPointerException("unit cell == null.");
+        if (atoms == null)
+            throw new NullPointerException("atoms == null.");
+        if (transformation == null)
+            throw new NullPointerException("transformation == null.");
+        if (scatter == null)
+            throw new NullPointerException("Scattering factors == null.");
+        if (maxIndex < 1)
+            throw new IllegalArgumentException(
+                    "The maximum index has to greater or equal to 1.");
+        if (minRelativeIntensity <= 0 || minRelativeIntensity >= 1)
+            throw new IllegalArgumentException("Minimum relative intensity ("
+                    + minRelativeIntensity + ") must be between ]0.0, 1.0[.");
+
         Reflectors refls = new Reflectors();
 
+        // The original cell contains 1/det copies of the transformed cell,
+        // so its form factors are 1/det times larger
+        double scale = 1.0 / transformation.getDeterminant();
+        scale *= scale;
+
         double minIntensity =
                 Calculations.maximumDiffractionIntensity(unitCell, atoms,
-                        scatter) * minRelativeIntensity;
+                        scatter) * scale * minRelativeIntensity;
 
         // Find reflectors
         double intensity;
+        Vector3D plane;
         for (int h = -maxIndex; h <= maxIndex; h++) {
             for (int k = -maxIndex; k <= maxIndex; k++) {
                 for (int l = -maxIndex; l <= maxIndex; l++) {
                     if (h == 0 && k == 0 & l == 0)
                         continue;
 
+                    plane = transformation.transformIntegerIndices(h, k, l);
+                    if (plane == null)
+                        continue;
+
                     intensity =
-                            Calculations.diffractionIntensity(new Vector3D(h,
-                                    k, l), unitCell, atoms, scatter);
+                            Calculations.diffractionIntensity(plane, unitCell,
+                                    atoms, scatter) * scale;
                     if (intensity >= minIntensity)
                         refls.add(new Reflector(h, k, l, intensity));
                 }
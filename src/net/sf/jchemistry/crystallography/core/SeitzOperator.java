@@ -0,0 +1,675 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Exact representation of a space group's symmetry operator (Seitz operator
+ * <code>{R|t}</code>). The rotation matrix <code>R</code> is stored as
+ * integers (expressed in the basis of the direct lattice, its elements are
+ * always -1, 0 or 1) and the translation <code>t</code> as integers in units
+ * of 1/{@link #DENOMINATOR} of a lattice translation. The translation is
+ * always reduced modulo a lattice translation.
+ * <p/>
+ * Since all the elements are integers, the composition, inversion, equality
+ * and hashing of operators are exact and do not require any tolerance. Every
+ * operator is also uniquely identified by an integer code (see
+ * {@link #getCode()}).
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public final class SeitzOperator {
+
+    /**
+     * Denominator of the translations. All the translations of the space
+     * groups are multiples of 1/2, 1/3, 1/4 or 1/6.
+     */
+    public static final int DENOMINATOR = 12;
+
+    /** Identity operator. */
+    public static final SeitzOperator IDENTITY = new SeitzOperator(new int[] {
+            1, 0, 0, 0, 1, 0, 0, 0, 1 }, new int[] { 0, 0, 0 });
+
+    /** Tolerance to convert a floating point translation to an integer. */
+    private static final double EPSILON = 1e-6;
+
+    /**
+     * Tolerance to convert a parsed translation to an integer. Decimal
+     * translations are often truncated in files (e.g. 0.3333).
+     */
+    private static final double PARSE_EPSILON = 1e-3;
+
+    /** Unique code of the operator. */
+    private final int code;
+
+    /** Rotation matrix (row major). */
+    private final int[] r;
+
+    /** Translation in units of 1/{@link #DENOMINATOR}. */
+    private final int[] t;
+
+
+
+    /**
+     * Returns the closure of a set of operators under composition, i.e. the
+     * smallest group (modulo the lattice translations) containing them. The
+     * operators of the specified list come first, in the same order, without
+     * duplicates.
+     * 
+     * @param ops
+     *            operators
+     * @return closure of the operators
+     */
+    static List<SeitzOperator> closure(Collection<SeitzOperator> ops) {
+        List<SeitzOperator> list = new ArrayList<SeitzOperator>();
+        Set<Integer> codes = new HashSet<Integer>();
+        for (SeitzOperator op : ops)
+            if (codes.add(op.code))
+                list.add(op);
+
+        for (int i = 0; i < list.size(); i++)
+            for (int j = 0; j <= i; j++) {
+                SeitzOperator op = list.get(i).compose(list.get(j));
+                if (codes.add(op.code))
+                    list.add(op);
+
+                op = list.get(j).compose(list.get(i));
+                if (codes.add(op.code))
+                    list.add(op);
+            }
+
+        return list;
+    }
+
+
+
+    /**
+     * Creates the operator with the specified code.
+     * 
+     * @param code
+     *            code of the operator (see {@link #getCode()})
+     * @return operator
+     * @throws IllegalArgumentException
+     *             if the code is invalid
+     */
+    public static SeitzOperator fromCode(int code) {
+        if (code < 0)
+            throw new IllegalArgumentException("Code (" + code
+                    + ") must be greater or equal to 0.");
+
+        int[] t = new int[3];
+        for (int i = 2; i >= 0; i--) {
+            t[i] = code & 0xF;
+            code >>>= 4;
+        }
+
+        int[] r = new int[9];
+        for (int i = 8; i >= 0; i--) {
+            r[i] = (code & 0x3) - 1;
+            code >>>= 2;
+        }
+
+        if (code != 0)
+            throw new IllegalArgumentException("Invalid code.");
+
+        return new SeitzOperator(r, t);
+    }
+
+
+
+    /**
+     * Converts a rotation matrix and translation vector, as used by a
+     * {@link Generator}, to an exact operator.
+     * 
+     * @param m
+     *            3x3 rotation matrix
+     * @param t
+     *            translation vector
+     * @return operator
+     * @throws IllegalArgumentException
+     *             if an element of the matrix is not -1, 0 or 1, or if a
+     *             translation is not a multiple of 1/{@link #DENOMINATOR}
+     */
+    static SeitzOperator fromDoubles(double[][] m, double[] t) {
+        int[] r = new int[9];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                r[i * 3 + j] = toInteger(m[i][j], 1, EPSILON);
+
+        int[] tr = new int[3];
+        for (int i = 0; i < 3; i++)
+            tr[i] = toInteger(t[i], DENOMINATOR, EPSILON);
+
+        return new SeitzOperator(r, tr);
+    }
+
+
+
+    /**
+     * Reduces the translation modulo a lattice translation.
+     * 
+     * @param t
+     *            translation in units of 1/{@link #DENOMINATOR}
+     * @return translation between 0 (inclusive) and {@link #DENOMINATOR}
+     *         (exclusive)
+     */
+    private static int reduce(int t) {
+        t %= DENOMINATOR;
+        return t < 0 ? t + DENOMINATOR : t;
+    }
+
+
+
+    /**
+     * Flattens a 3x3 matrix.
+     * 
+     * @param m
+     *            3x3 matrix
+     * @return array of 9 elements (row major)
+     */
+    private static int[] flatten(int[][] m) {
+        if ((m.length != 3) || (m[0].length != 3) || (m[1].length != 3)
+                || (m[2].length != 3))
+            throw new IllegalArgumentException(
+                    "The matrix must be a 3x3 matrix.");
+
+        int[] r = new int[9];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                r[i * 3 + j] = m[i][j];
+        return r;
+    }
+
+
+
+    /**
+     * Returns the greatest common divisor of two positive integers.
+     * 
+     * @param a
+     *            first integer
+     * @param b
+     *            second integer
+     * @return greatest common divisor
+     */
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int tmp = b;
+            b = a % b;
+            a = tmp;
+        }
+        return a;
+    }
+
+
+
+    /**
+     * Converts a value to an integer number of 1/<code>denominator</code>.
+     * 
+     * @param value
+     *            value
+     * @param denominator
+     *            denominator
+     * @param epsilon
+     *            tolerance on the value
+     * @return integer
+     * @throws IllegalArgumentException
+     *             if the value is not a multiple of 1/<code>denominator</code>
+     */
+    private static int toInteger(double value, int denominator,
+            double epsilon) {
+        double scaled = value * denominator;
+        long rounded = Math.round(scaled);
+        if (Math.abs(scaled - rounded) > epsilon * denominator)
+            throw new IllegalArgumentException("Value (" + value
+                    + ") must be a multiple of 1/" + denominator + ".");
+        return (int) rounded;
+    }
+
+
+
+    /**
+     * Parses an operator written in the notation of the International Tables
+     * for Crystallography, as found in CIF files (e.g.
+     * <code>-x+y,y,-z+1/2</code>, <code>1/2+X, 1/2-Y, Z</code> or
+     * <code>x,y,z+0.5</code>). The parsing is exact: no expression is
+     * evaluated.
+     * 
+     * @param symbol
+     *            symbol of the operator
+     * @return operator
+     * @throws IllegalArgumentException
+     *             if the symbol is invalid or the translation is not a
+     *             multiple of 1/{@link #DENOMINATOR}
+     */
+    public static SeitzOperator parse(String symbol) {
+        if (symbol == null)
+            throw new NullPointerException("symbol == null");
+
+        String[] components = symbol.split(",");
+        if (components.length != 3)
+            throw new IllegalArgumentException("Invalid operator (" + symbol
+                    + "): 3 components are required.");
+
+        int[] r = new int[9];
+        int[] t = new int[3];
+        for (int i = 0; i < 3; i++) {
+            double translation = parseComponent(components[i], r, i);
+            t[i] = toInteger(translation, DENOMINATOR, PARSE_EPSILON);
+        }
+
+        return new SeitzOperator(r, t);
+    }
+
+
+
+    /**
+     * Parses one component of an operator (e.g. <code>-x+y+1/2</code>).
+     * 
+     * @param component
+     *            component
+     * @param r
+     *            rotation matrix where the coefficients of the variables are
+     *            stored
+     * @param row
+     *            row of the component in the rotation matrix
+     * @return translation of the component
+     * @throws IllegalArgumentException
+     *             if the component is invalid
+     */
+    private static double parseComponent(String component, int[] r, int row) {
+        double translation = 0.0;
+        int sign = 1;
+        boolean empty = true;
+
+        int length = component.length();
+        int pos = 0;
+        while (pos < length) {
+            char c = component.charAt(pos);
+
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '+') {
+                pos++;
+            } else if (c == '-') {
+                sign = -sign;
+                pos++;
+            } else {
+                // Number
+                double value = 1.0;
+                boolean number = false;
+                int start = pos;
+                while (pos < length
+                        && (Character.isDigit(component.charAt(pos))
+                                || component.charAt(pos) == '.' || component
+                                .charAt(pos) == '/'))
+                    pos++;
+                if (pos > start) {
+                    value = parseNumber(component.substring(start, pos));
+                    number = true;
+                }
+
+                while (pos < length
+                        && (component.charAt(pos) == '*' || Character
+                                .isWhitespace(component.charAt(pos))))
+                    pos++;
+
+                // Variable
+                int axis = -1;
+                if (pos < length)
+                    axis = "xyz".indexOf(Character.toLowerCase(component
+                            .charAt(pos)));
+
+                if (axis >= 0) {
+                    r[row * 3 + axis] += sign * (int) Math.round(value);
+                    pos++;
+                } else if (number) {
+                    translation += sign * value;
+                } else {
+                    throw new IllegalArgumentException("Invalid component ("
+                            + component + ").");
+                }
+
+                sign = 1;
+                empty = false;
+            }
+        }
+
+        if (empty)
+            throw new IllegalArgumentException("Invalid component ("
+                    + component + ").");
+
+        return translation;
+    }
+
+
+
+    /**
+     * Parses a number written as an integer, a decimal or a fraction.
+     * 
+     * @param value
+     *            number
+     * @return value of the number
+     * @throws IllegalArgumentException
+     *             if the number is invalid
+     */
+    private static double parseNumber(String value) {
+        try {
+            int slash = value.indexOf('/');
+            if (slash < 0)
+                return Double.parseDouble(value);
+            else
+                return Double.parseDouble(value.substring(0, slash))
+                        / Double.parseDouble(value.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number (" + value
+                    + ").", e);
+        }
+    }
+
+
+
+    /**
+     * Creates a new <code>SeitzOperator</code>.
+     * 
+     * @param m
+     *            3x3 rotation matrix, with elements equal to -1, 0 or 1
+     * @param t
+     *            translation vector in units of 1/{@link #DENOMINATOR}
+     * @throws IllegalArgumentException
+     *             if the dimensions of the matrix or translation are
+     *             incorrect, or if an element of the matrix is not -1, 0 or 1
+     */
+    public SeitzOperator(int[][] m, int[] t) {
+        this(flatten(m), t);
+    }
+
+
+
+    /**
+     * Creates a new <code>SeitzOperator</code>.
+     * 
+     * @param r
+     *            rotation matrix as an array of 9 elements (row major)
+     * @param t
+     *            translation vector in units of 1/{@link #DENOMINATOR}
+     */
+    private SeitzOperator(int[] r, int[] t) {
+        if (t.length != 3)
+            throw new IllegalArgumentException("The translation array ("
+                    + t.length + ") must have a length of 3.");
+
+        int code = 0;
+        for (int i = 0; i < 9; i++) {
+            if (r[i] < -1 || r[i] > 1)
+                throw new IllegalArgumentException("Element of the matrix ("
+                        + r[i] + ") must be -1, 0 or 1.");
+            code = (code << 2) | (r[i] + 1);
+        }
+
+        this.r = r;
+        this.t = new int[3];
+        for (int i = 0; i < 3; i++) {
+            this.t[i] = reduce(t[i]);
+            code = (code << 4) | this.t[i];
+        }
+
+        this.code = code;
+    }
+
+
+
+    /**
+     * Applies this operator on a position.
+     * 
+     * @param x
+     *            fractional x coordinate
+     * @param y
+     *            fractional y coordinate
+     * @param z
+     *            fractional z coordinate
+     * @param out
+     *            array of length 3 where the resultant position is stored
+     */
+    public void apply(double x, double y, double z, double[] out) {
+        out[0] = r[0] * x + r[1] * y + r[2] * z + (double) t[0] / DENOMINATOR;
+        out[1] = r[3] * x + r[4] * y + r[5] * z + (double) t[1] / DENOMINATOR;
+        out[2] = r[6] * x + r[7] * y + r[8] * z + (double) t[2] / DENOMINATOR;
+    }
+
+
+
+    /**
+     * Applies this operator on an atom position.
+     * 
+     * @param atom
+     *            an atom
+     * @return resultant atom after applying the operator
+     */
+    public AtomSite apply(AtomSite atom) {
+        Vector3D p = atom.getPosition();
+        double[] out = new double[3];
+        apply(p.getX(), p.getY(), p.getZ(), out);
+
+        return new AtomSite(atom.getElement(), atom.getCharge(), new Vector3D(
+                out[0], out[1], out[2]), atom.getOccupancy());
+    }
+
+
+
+    /**
+     * Returns the composition of this operator with the specified one, i.e.
+     * the operator equivalent to applying <code>other</code> first and then
+     * this operator: <code>{R1|t1}{R2|t2} = {R1 R2|R1 t2 + t1}</code>.
+     * 
+     * @param other
+     *            operator applied first
+     * @return composed operator
+     */
+    public SeitzOperator compose(SeitzOperator other) {
+        int[] b = other.r;
+        int[] m = new int[9];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                m[i * 3 + j] =
+                        r[i * 3] * b[j] + r[i * 3 + 1] * b[3 + j]
+                                + r[i * 3 + 2] * b[6 + j];
+
+        int[] tr = new int[3];
+        for (int i = 0; i < 3; i++)
+            tr[i] =
+                    r[i * 3] * other.t[0] + r[i * 3 + 1] * other.t[1]
+                            + r[i * 3 + 2] * other.t[2] + t[i];
+
+        return new SeitzOperator(m, tr);
+    }
+
+
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+
+        SeitzOperator other = (SeitzOperator) obj;
+        return code == other.code;
+    }
+
+
+
+    /**
+     * Returns the unique code of this operator. The code packs the rotation
+     * matrix (2 bits per element) and the translation (4 bits per component)
+     * in a positive integer. Two operators are equal if and only if their
+     * codes are equal.
+     * 
+     * @return code
+     */
+    public int getCode() {
+        return code;
+    }
+
+
+
+    /**
+     * Returns the element of the rotation matrix at the specified row and
+     * column.
+     * 
+     * @param row
+     *            row (0 to 2)
+     * @param column
+     *            column (0 to 2)
+     * @return element of the rotation matrix (-1, 0 or 1)
+     */
+    public int getRotation(int row, int column) {
+        return r[row * 3 + column];
+    }
+
+
+
+    /**
+     * Returns the component of the translation, in units of 1/
+     * {@link #DENOMINATOR}.
+     * 
+     * @param i
+     *            component (0 to 2)
+     * @return translation (0 to {@link #DENOMINATOR} - 1)
+     */
+    public int getTranslation(int i) {
+        return t[i];
+    }
+
+
+
+    /**
+     * Returns the determinant of the rotation matrix.
+     * 
+     * @return 1 for a proper rotation, -1 for an improper rotation
+     */
+    public int getDeterminant() {
+        return r[0] * (r[4] * r[8] - r[5] * r[7]) - r[1]
+                * (r[3] * r[8] - r[5] * r[6]) + r[2]
+                * (r[3] * r[7] - r[4] * r[6]);
+    }
+
+
+
+    @Override
+    public int hashCode() {
+        return code;
+    }
+
+
+
+    /**
+     * Returns the inverse of this operator:
+     * <code>{R|t}<sup>-1</sup> = {R<sup>-1</sup>|-R<sup>-1</sup> t}</code>.
+     * Since the determinant of the rotation matrix is +/-1, its inverse is
+     * the adjugate matrix multiplied by the determinant.
+     * 
+     * @return inverse operator
+     */
+    public SeitzOperator inverse() {
+        int det = getDeterminant();
+
+        int[] m = new int[9];
+        m[0] = det * (r[4] * r[8] - r[5] * r[7]);
+        m[1] = det * (r[2] * r[7] - r[1] * r[8]);
+        m[2] = det * (r[1] * r[5] - r[2] * r[4]);
+        m[3] = det * (r[5] * r[6] - r[3] * r[8]);
+        m[4] = det * (r[0] * r[8] - r[2] * r[6]);
+        m[5] = det * (r[2] * r[3] - r[0] * r[5]);
+        m[6] = det * (r[3] * r[7] - r[4] * r[6]);
+        m[7] = det * (r[1] * r[6] - r[0] * r[7]);
+        m[8] = det * (r[0] * r[4] - r[1] * r[3]);
+
+        int[] tr = new int[3];
+        for (int i = 0; i < 3; i++)
+            tr[i] =
+                    -(m[i * 3] * t[0] + m[i * 3 + 1] * t[1] + m[i * 3 + 2]
+                            * t[2]);
+
+        return new SeitzOperator(m, tr);
+    }
+
+
+
+    /**
+     * Returns whether this operator is the identity.
+     * 
+     * @return <code>true</code> if the operator is the identity,
+     *         <code>false</code> otherwise
+     */
+    public boolean isIdentity() {
+        return code == IDENTITY.code;
+    }
+
+
+
+    /**
+     * Returns the operator in the notation of the International Tables for
+     * Crystallography (e.g. <code>-x+y,y,-z+1/2</code>).
+     * 
+     * @return symbol of the operator
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        final char[] axes = new char[] { 'x', 'y', 'z' };
+
+        for (int i = 0; i < 3; i++) {
+            if (i > 0)
+                sb.append(',');
+
+            int length = sb.length();
+            for (int j = 0; j < 3; j++) {
+                int value = r[i * 3 + j];
+                if (value == 0)
+                    continue;
+                if (value < 0)
+                    sb.append('-');
+                else if (sb.length() > length)
+                    sb.append('+');
+                sb.append(axes[j]);
+            }
+
+            if (t[i] != 0) {
+                int gcd = gcd(t[i], DENOMINATOR);
+                if (sb.length() > length)
+                    sb.append('+');
+                sb.append(t[i] / gcd).append('/').append(DENOMINATOR / gcd);
+            } else if (sb.length() == length)
+                sb.append('0');
+        }
+
+        return sb.toString();
+    }
+}
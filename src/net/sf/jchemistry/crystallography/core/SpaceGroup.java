@@ -17,6 +17,12 @@
  */
 package net.sf.jchemistry.crystallography.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.commons.math.geometry.Rotation;
 
 /**
@@ -27,8 +33,14 @@ import org.apache.commons.math.geometry.Rotation;
  */
 public final class SpaceGroup implements Comparable<SpaceGroup> {
 
-    /** Array of generators. */
-    private final Generator[] generators;
+    /** Array of generators, decoded on demand for the built-in groups. */
+    private volatile Generator[] generators;
+
+    /**
+     * Row of the space group in the table of {@link SpaceGroups}, or -1 if
+     * the generators are given to the constructor.
+     */
+    private final int row;
 
     /** Index/number of the space group (1 to 203). */
     private final int index;
@@ -39,6 +51,21 @@ public final class SpaceGroup implements Comparable<SpaceGroup> {
     /** Symbol of the space group. */
     private final String symbol;
 
+    /** Exact symmetry operators, calculated on demand. */
+    private volatile SeitzOperator[] operators;
+
+    /**
+     * Cayley table: index of the product of the operators <code>i</code> and
+     * <code>j</code> at <code>i * n + j</code>.
+     */
+    private int[] products;
+
+    /** Index of the inverse of each operator. */
+    private int[] inverses;
+
+    /** Index of each operator by its code. */
+    private Map<Integer, Integer> codes;
+
 
 
     /**
@@ -59,6 +86,74 @@ public final class SpaceGroup implements Comparable<SpaceGroup> {
         this.symbol = symbol;
         this.laueGroup = laueGroup;
         this.generators = generators.clone();
+        this.row = -1;
+    }
+
+
+
+    /**
+     * Creates a new <code>SpaceGroup</code> of the table of
+     * {@link SpaceGroups}. The generators are only decoded from the table
+     * when they are first requested.
+     * 
+     * @param index
+     *            index/number of the space group (1 to 230)
+     * @param symbol
+     *            Hermann-Mauguin symbol of the space group
+     * @param laueGroup
+     *            Laue group
+     * @param row
+     *            row of the space group in the table
+     */
+    SpaceGroup(int index, String symbol, LaueGroup laueGroup, int row) {
+        this.index = index;
+        this.symbol = symbol;
+        this.laueGroup = laueGroup;
+        this.row = row;
+    }
+
+
+
+    /**
+     * Calculates the exact symmetry operators of the space group from its
+     * generators, closes them under composition and computes the Cayley table
+     * of the group.
+     */
+    private void initOperators() {
+        if (operators != null)
+            return;
+
+        synchronized (this) {
+            if (operators != null)
+                return;
+
+            // The identity comes first, whatever the order of the generators
+            List<SeitzOperator> ops = new ArrayList<SeitzOperator>();
+            ops.add(SeitzOperator.IDENTITY);
+            for (Generator generator : getGenerators())
+                ops.add(generator.toSeitzOperator());
+            ops = SeitzOperator.closure(ops);
+
+            Map<Integer, Integer> map = new HashMap<Integer, Integer>();
+            for (int i = 0; i < ops.size(); i++)
+                map.put(ops.get(i).getCode(), i);
+
+            int n = ops.size();
+            int[] table = new int[n * n];
+            int[] inv = new int[n];
+            for (int i = 0; i < n; i++) {
+                SeitzOperator a = ops.get(i);
+                for (int j = 0; j < n; j++)
+                    table[i * n + j] =
+                            map.get(a.compose(ops.get(j)).getCode());
+                inv[i] = map.get(a.inverse().getCode());
+            }
+
+            products = table;
+            inverses = inv;
+            codes = map;
+            operators = ops.toArray(new SeitzOperator[n]);
+        }
     }
 
 
@@ -111,7 +206,36 @@ public final class SpaceGroup implements Comparable<SpaceGroup> {
      * @return generators
      */
     public Generator[] getGenerators() {
-        return generators;
+        Generator[] gens = generators;
+        if (gens != null)
+            return gens;
+
+        synchronized (this) {
+            if (generators == null)
+                generators = SpaceGroups.createGenerators(row);
+            return generators;
+        }
+    }
+
+
+
+    /**
+     * Returns the Cayley table (multiplication table) of the symmetry
+     * operators. The element <code>[i][j]</code> is the index, in the array
+     * returned by {@link #getSeitzOperators()}, of the product of the
+     * operators <code>i</code> and <code>j</code>.
+     * 
+     * @return Cayley table
+     */
+    public int[][] getCayleyTable() {
+        initOperators();
+
+        int n = operators.length;
+        int[][] table = new int[n][];
+        for (int i = 0; i < n; i++)
+            table[i] = Arrays.copyOfRange(products, i * n, (i + 1) * n);
+
+        return table;
     }
 
 
@@ -140,6 +264,66 @@ public final class SpaceGroup implements Comparable<SpaceGroup> {
 
 
 
+    /**
+     * Returns the index of the inverse of the specified symmetry operator.
+     * 
+     * @param i
+     *            index of a symmetry operator
+     * @return index of the inverse operator
+     */
+    public int getInverse(int i) {
+        initOperators();
+        return inverses[i];
+    }
+
+
+
+    /**
+     * Returns the number of symmetry operators of the space group, i.e. the
+     * order of the group modulo the lattice translations.
+     * 
+     * @return number of symmetry operators
+     */
+    public int getOrder() {
+        initOperators();
+        return operators.length;
+    }
+
+
+
+    /**
+     * Returns the index of the product of two symmetry operators, i.e. the
+     * operator equivalent to applying the operator <code>j</code> first and
+     * then the operator <code>i</code>.
+     * 
+     * @param i
+     *            index of the first symmetry operator
+     * @param j
+     *            index of the second symmetry operator
+     * @return index of the product
+     */
+    public int getProduct(int i, int j) {
+        initOperators();
+        return products[i * operators.length + j];
+    }
+
+
+
+    /**
+     * Returns the exact symmetry operators of the space group. The operators
+     * are the generators (see {@link #getGenerators()}), completed if
+     * necessary so that they form a group modulo the lattice translations.
+     * The first operator is always the identity.
+     * 
+     * @return symmetry operators
+     */
+    public SeitzOperator[] getSeitzOperators() {
+        initOperators();
+        return operators.clone();
+    }
+
+
+
     /**
      * Returns the symmetry operators of the Laue group.
      * 
@@ -162,6 +346,26 @@ public final class SpaceGroup implements Comparable<SpaceGroup> {
 
 
 
+    /**
+     * Returns the index of the specified symmetry operator in the array
+     * returned by {@link #getSeitzOperators()}.
+     * 
+     * @param operator
+     *            symmetry operator
+     * @return index of the operator or -1 if the operator is not part of the
+     *         space group
+     */
+    public int indexOf(SeitzOperator operator) {
+        if (operator == null)
+            throw new NullPointerException("operator == null");
+
+        initOperators();
+        Integer index = codes.get(operator.getCode());
+        return index == null ? -1 : index;
+    }
+
+
+
     @Override
     public int hashCode() {
         final int prime = 31;
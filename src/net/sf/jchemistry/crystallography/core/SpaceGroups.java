@@ -17,21 +17,364 @@
  */
 package net.sf.jchemistry.crystallography.core;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-import static net.sf.jchemistry.crystallography.core.CrystalSystem.*;
-import static net.sf.jchemistry.crystallography.core.LaueGroup.*;
+import net.sf.jchemistry.util.IOUtils;
 
 /**
  * Utilities to get and list space groups.
+ * <p/>
+ * The space groups are stored in a compact binary table in which the
+ * generators are encoded as integer codes (see
+ * {@link SeitzOperator#getCode()}). The binary table is compiled from the text
+ * table <code>data/space_groups.txt</code> by
+ * <code>SpaceGroupsTableWriter</code>, a build tool kept in the
+ * <code>tools</code> directory. The table is only read the first time a space group is requested, each
+ * space group is created the first time it is requested and its generators
+ * are only decoded when they are first needed. The generators are shared
+ * between the space groups.
  * 
  * @author Philippe T. Pinard
  */
 public final class SpaceGroups implements SpaceGroups1, SpaceGroups2 {
 
+    /**
+     * Table of the space groups, loaded when a space group is requested for the
+     * first time. The table is a binary file (big-endian) with the following
+     * layout:
+     * <ul>
+     * <li>number of distinct operators (u2), followed by their codes (u4, see
+     * {@link SeitzOperator#getCode()});</li>
+     * <li>number of space groups (u2), followed for each space group, sorted
+     * by index, by its index (u2), the index of its Laue group (u1, see
+     * {@link LaueGroup#getIndex()}) and its number of generators (u1);</li>
+     * <li>the symbol of each space group (u1 length and ASCII
+     * characters);</li>
+     * <li>the generators of all the space groups, as indexes in the list of
+     * operators (u2).</li>
+     * </ul>
+     * Only the indexes and the offsets of the symbols and generators are
+     * decoded when the table is loaded.
+     */
+    private static final class Table {
+
+        /** Filename of the table. */
+        private static final String FILENAME =
+                "net/sf/jchemistry/crystallography/data/space_groups.bin";
+
+        /** Raw content of the table. */
+        private static final byte[] DATA;
+
+        /** Offset in the data of the header of the first row. */
+        private static final int HEADER_OFFSET;
+
+        /** Offset in the data of the generators of each row. */
+        private static final int[] GENERATOR_OFFSETS;
+
+        /** Index/number of the space group of each row, in ascending order. */
+        private static final int[] INDEXES;
+
+        /** Offset in the data of the symbol of each row. */
+        private static final int[] SYMBOL_OFFSETS;
+
+        /** Space group of each row, created on demand. */
+        private static final SpaceGroup[] SPACE_GROUPS;
+
+        static {
+            try {
+                DATA = read();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            // Skip operators
+            int pos = 2 + 4 * readU2(0);
+
+            int size = readU2(pos);
+            pos += 2;
+            HEADER_OFFSET = pos;
+
+            INDEXES = new int[size];
+            SYMBOL_OFFSETS = new int[size];
+            GENERATOR_OFFSETS = new int[size];
+            SPACE_GROUPS = new SpaceGroup[size];
+
+            for (int row = 0; row < size; row++)
+                INDEXES[row] = readU2(HEADER_OFFSET + 4 * row);
+
+            pos = HEADER_OFFSET + 4 * size;
+            for (int row = 0; row < size; row++) {
+                SYMBOL_OFFSETS[row] = pos;
+                pos += 1 + (DATA[pos] & 0xFF);
+            }
+
+            for (int row = 0; row < size; row++) {
+                GENERATOR_OFFSETS[row] = pos;
+                pos += 2 * generatorCount(row);
+            }
+        }
+
+
+
+        /**
+         * Decodes the codes of the generators of a row.
+         * 
+         * @param row
+         *            row of the table
+         * @return codes of the generators
+         */
+        private static int[] codes(int row) {
+            int[] codes = new int[generatorCount(row)];
+
+            for (int i = 0; i < codes.length; i++) {
+                int operator = readU2(GENERATOR_OFFSETS[row] + 2 * i);
+                int pos = 2 + 4 * operator;
+                codes[i] = (readU2(pos) << 16) | readU2(pos + 2);
+            }
+
+            return codes;
+        }
+
+
+
+        /**
+         * Returns the number of generators of a row.
+         * 
+         * @param row
+         *            row of the table
+         * @return number of generators
+         */
+        private static int generatorCount(int row) {
+            return DATA[HEADER_OFFSET + 4 * row + 3] & 0xFF;
+        }
+
+
+
+        /**
+         * Returns the Laue group of a row.
+         * 
+         * @param row
+         *            row of the table
+         * @return Laue group
+         * @throws IllegalArgumentException
+         *             if the index of the Laue group is unknown
+         */
+        private static LaueGroup laueGroup(int row) {
+            int index = DATA[HEADER_OFFSET + 4 * row + 2] & 0xFF;
+
+            for (LaueGroup laueGroup : LaueGroup.values())
+                if (laueGroup.getIndex() == index)
+                    return laueGroup;
+
+            throw new IllegalArgumentException("Unknown Laue group index ("
+                    + index + ").");
+        }
+
+
+
+        /**
+         * Reads the raw content of the table.
+         * 
+         * @return content of the table
+         * @throws IOException
+         *             if an error occurs while reading the file
+         */
+        private static byte[] read() throws IOException {
+            InputStream in = IOUtils.getURL(FILENAME).openStream();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            byte[] buffer = new byte[16384];
+            int length;
+            while ((length = in.read(buffer)) != -1)
+                out.write(buffer, 0, length);
+
+            in.close();
+
+            return out.toByteArray();
+        }
+
+
+
+        /**
+         * Reads an unsigned 2-byte integer (big-endian) from the data.
+         * 
+         * @param pos
+         *            offset in the data
+         * @return integer
+         */
+        private static int readU2(int pos) {
+            return ((DATA[pos] & 0xFF) << 8) | (DATA[pos + 1] & 0xFF);
+        }
+
+
+
+        /**
+         * Returns the row of the space group with the specified index.
+         * 
+         * @param index
+         *            index/number of the space group
+         * @return row or a negative value if the index is unknown
+         */
+        private static int row(int index) {
+            return Arrays.binarySearch(INDEXES, index);
+        }
+
+
+
+        /**
+         * Decodes the symbol of a row.
+         * 
+         * @param row
+         *            row of the table
+         * @return symbol
+         */
+        private static String symbol(int row) {
+            int pos = SYMBOL_OFFSETS[row];
+            char[] chars = new char[DATA[pos] & 0xFF];
+            for (int i = 0; i < chars.length; i++)
+                chars[i] = (char) DATA[pos + 1 + i];
+            return new String(chars);
+        }
+    }
+
+    /**
+     * Index of the space groups by their operators, created when a space group
+     * is identified from its operators for the first time.
+     */
+    private static final class Operators {
+
+        /** Index of the space groups. */
+        private static final OperatorIndex INDEX;
+
+        static {
+            SpaceGroup[] sgs = new SpaceGroup[Table.INDEXES.length];
+            for (int row = 0; row < sgs.length; row++)
+                sgs[row] = get(row);
+            INDEX = new OperatorIndex(sgs);
+        }
+    }
+
+    /**
+     * Rows of the space groups by their symbols, created when a space group is
+     * requested by its symbol for the first time.
+     */
+    private static final class Symbols {
+
+        /** Symbol of each row. */
+        private static final String[] SYMBOLS =
+                new String[Table.INDEXES.length];
+
+        /** Row of each space group symbol. */
+        private static final Map<String, Integer> ROWS =
+                new HashMap<String, Integer>();
+
+        static {
+            for (int row = 0; row < SYMBOLS.length; row++) {
+                SYMBOLS[row] = Table.symbol(row);
+                ROWS.put(SYMBOLS[row], row);
+            }
+        }
+    }
+
+    /**
+     * Index of the space groups by their normalised symbols, created when a
+     * symbol is not found as is for the first time.
+     */
+    private static final class NormalizedSymbols {
+
+        /** Index of the Hermann-Mauguin symbols. */
+        private static final SymbolIndex INDEX =
+                new SymbolIndex(Symbols.SYMBOLS, Table.INDEXES);
+
+        /** Space groups of the Hall symbols already resolved. */
+        private static final Map<String, SpaceGroup> HALL =
+                new HashMap<String, SpaceGroup>();
+    }
+
+    /** Generators shared between the space groups, by code. */
+    private static final Map<Integer, Generator> GENERATORS =
+            new HashMap<Integer, Generator>();
+
+    /** Rotation matrices shared between the generators, by code. */
+    private static final Map<Integer, double[][]> ROTATIONS =
+            new HashMap<Integer, double[][]>();
+
+    /** Translation vectors shared between the generators, by code. */
+    private static final Map<Integer, double[]> TRANSLATIONS =
+            new HashMap<Integer, double[]>();
+
+
+
+    /**
+     * Decodes the generators of the space group of the specified row of the
+     * table.
+     * 
+     * @param row
+     *            row of the table
+     * @return generators
+     */
+    static synchronized Generator[] createGenerators(int row) {
+        int[] codes = Table.codes(row);
+        Generator[] generators = new Generator[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            Generator generator = GENERATORS.get(codes[i]);
+            if (generator == null) {
+                generator = createGenerator(codes[i]);
+                GENERATORS.put(codes[i], generator);
+            }
+
+            generators[i] = generator;
+        }
+
+        return generators;
+    }
+
+
+
+    /**
+     * Creates the generator of the operator with the specified code. The
+     * rotation matrix and translation vector are shared with the other
+     * generators having the same rotation or translation. The code is decoded
+     * directly, without creating the {@link SeitzOperator}.
+     * 
+     * @param code
+     *            code of the operator (see {@link SeitzOperator#getCode()})
+     * @return generator
+     */
+    private static Generator createGenerator(int code) {
+        // Rotation in the upper 18 bits of the code (2 bits per element, row
+        // major), translation in the lower 12 bits (4 bits per component)
+        double[][] m = ROTATIONS.get(code >>> 12);
+        if (m == null) {
+            m = new double[3][3];
+            for (int i = 0; i < 3; i++)
+                for (int j = 0; j < 3; j++)
+                    m[i][j] = ((code >>> (12 + 2 * (8 - 3 * i - j))) & 0x3) - 1;
+            ROTATIONS.put(code >>> 12, m);
+        }
+
+        double[] t = TRANSLATIONS.get(code & 0xFFF);
+        if (t == null) {
+            t = new double[3];
+            for (int i = 0; i < 3; i++)
+                t[i] = (double) ((code >>> (4 * (2 - i))) & 0xF)
+                        / SeitzOperator.DENOMINATOR;
+            TRANSLATIONS.put(code & 0xFFF, t);
+        }
+
+        return new Generator(m, t);
+    }
+
+
+
     /**
      * Return the space group with the specified index/number.
      * 
@@ -42,19 +385,56 @@ public final class SpaceGroups implements SpaceGroups1, SpaceGroups2 {
      *             if the index is unknown
      */
     public static SpaceGroup fromIndex(int index) {
-        SpaceGroup result = INDEXES.get(index);
+        int row = Table.row(index);
 
-        if (result == null)
+        if (row < 0)
             throw new IllegalArgumentException("Unknown space group index ("
                     + index + ").");
 
+        return get(row);
+    }
+
+
+
+    /**
+     * Returns the space group with the specified symmetry operators, as listed
+     * for example in a CIF file. The operators are canonicalised and looked up
+     * in an index of the operators of all the space groups, so the
+     * identification does not depend on the number of space groups. The
+     * operators may be expressed with a shifted origin or in another setting
+     * obtained by permuting the axes.
+     * 
+     * @param ops
+     *            symmetry operators
+     * @return space group
+     * @throws IllegalArgumentException
+     *             if no space group matches the operators
+     */
+    public static SpaceGroup fromOperators(Collection<SeitzOperator> ops) {
+        if (ops == null)
+            throw new NullPointerException("ops == null");
+
+        SpaceGroup result = Operators.INDEX.find(ops);
+
+        if (result == null)
+            throw new IllegalArgumentException(
+                    "No space group matches the operators " + ops + ".");
+
         return result;
     }
 
 
 
     /**
-     * Return the space group with the specified symbol/name.
+     * Return the space group with the specified symbol/name. Besides the
+     * short Hermann-Mauguin symbols returned by {@link SpaceGroup#getSymbol()},
+     * the full symbols (e.g. <code>P 1 21/c 1</code>), the symbols with
+     * whitespaces, subscripts or overbars (e.g. <code>P 2_1/c</code>), the
+     * settings of the rhombohedral space groups (e.g. <code>R-3m:H</code>),
+     * a few aliases (e.g. <code>Cmce</code>) and the Hall symbols (e.g.
+     * <code>-P 2ybc</code>) are accepted. The symbols that look like Hall
+     * symbols (e.g. <code>P 4 2</code>, <i>P422</i>) are parsed as such before
+     * being read as Hermann-Mauguin symbols.
      * 
      * @param symbol
      *            symbol/name of the space group
@@ -63,859 +443,181 @@ public final class SpaceGroups implements SpaceGroups1, SpaceGroups2 {
      *             if the symbol is unknown
      */
     public static SpaceGroup fromSymbol(String symbol) {
-        SpaceGroup result = SYMBOLS.get(symbol);
-
-        if (result == null)
+        if (symbol == null)
+            throw new NullPointerException("symbol == null");
+
+        Integer row = Symbols.ROWS.get(symbol);
+        if (row != null)
+            return get(row);
+
+        // Hall symbols first, so that their generators (e.g. P 4 2) are not
+        // read as a screw axis. The other symbols are only read as
+        // Hermann-Mauguin symbols.
+        if (HallSymbol.matches(symbol)) {
+            SpaceGroup sg = fromHallSymbol(symbol);
+            if (sg != null)
+                return sg;
+        }
+
+        int normalized = NormalizedSymbols.INDEX.find(symbol);
+        if (normalized < 0)
             throw new IllegalArgumentException("Unknown space group symbol ("
                     + symbol + ").");
 
-        return result;
+        return get(normalized);
     }
 
 
 
     /**
-     * Returns all the space groups with the specified crystal system.
+     * Returns the space group with the specified Hall symbol. The space group
+     * is identified from the operators generated by the symbol. The valid
+     * symbols are cached.
      * 
-     * @param crystalSystem
-     *            crystal system
-     * @return space groups in the crystal system
+     * @param symbol
+     *            Hall symbol
+     * @return space group or <code>null</code> if the symbol is not a valid
+     *         Hall symbol of a space group
      */
-    public static Set<SpaceGroup> list(CrystalSystem crystalSystem) {
-        return CRYSTAL_SYSTEMS.get(crystalSystem);
+    private static SpaceGroup fromHallSymbol(String symbol) {
+        synchronized (NormalizedSymbols.HALL) {
+            SpaceGroup sg = NormalizedSymbols.HALL.get(symbol);
+            if (sg != null)
+                return sg;
+        }
+
+        SpaceGroup sg;
+        try {
+            sg = fromOperators(HallSymbol.parse(symbol));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        synchronized (NormalizedSymbols.HALL) {
+            NormalizedSymbols.HALL.put(symbol, sg);
+        }
+
+        return sg;
     }
 
 
 
     /**
-     * Returns all the space groups with the specified Laue group.
+     * Returns the space group of the specified row of the table. The space
+     * group is created the first time it is requested.
      * 
-     * @param laueGroup
-     *            Laue Group
-     * @return space groups in the Laue group
+     * @param row
+     *            row of the table
+     * @return space group
      */
-    public static Set<SpaceGroup> list(LaueGroup laueGroup) {
-        return LAUE_GROUPS.get(laueGroup);
+    private static synchronized SpaceGroup get(int row) {
+        SpaceGroup sg = Table.SPACE_GROUPS[row];
+        if (sg == null) {
+            sg =
+                    new SpaceGroup(Table.INDEXES[row], Table.symbol(row),
+                            Table.laueGroup(row), row);
+            Table.SPACE_GROUPS[row] = sg;
+        }
+
+        return sg;
     }
 
-    /** Lookup table with the space group's crystal system. */
-    private static final Map<CrystalSystem, Set<SpaceGroup>> CRYSTAL_SYSTEMS =
-            new HashMap<CrystalSystem, Set<SpaceGroup>>();
 
-    /** Lookup table with the space group's index. */
-    private static final Map<Integer, SpaceGroup> INDEXES =
-            new HashMap<Integer, SpaceGroup>();
 
-    /** Lookup table with the space group's Laue group. */
-    private static final Map<LaueGroup, Set<SpaceGroup>> LAUE_GROUPS =
-            new HashMap<LaueGroup, Set<SpaceGroup>>();
+    /**
+     * Returns the transformation from the setting of the specified symmetry
+     * operators to the standard setting of their space group (see
+     * {@link #fromOperators(Collection)}). The transformation permutes the
+     * axes and shifts the origin, for instance from <i>Pbnm</i> to
+     * <i>Pnma</i>. For the operators of a space group of the table, the
+     * transformation is {@link CellTransformation#IDENTITY}.
+     * 
+     * @param ops
+     *            symmetry operators
+     * @return transformation to the standard setting
+     * @throws IllegalArgumentException
+     *             if no space group matches the operators
+     */
+    public static CellTransformation getStandardSetting(
+            Collection<SeitzOperator> ops) {
+        if (ops == null)
+            throw new NullPointerException("ops == null");
+
+        CellTransformation result = Operators.INDEX.findSetting(ops);
 
-    /** Lookup table with the space group's symbol. */
-    private static final Map<String, SpaceGroup> SYMBOLS =
-            new HashMap<String, SpaceGroup>();
+        if (result == null)
+            throw new IllegalArgumentException(
+                    "No space group matches the operators " + ops + ".");
 
-    static {
-        initIndexes();
-        initSymbols();
-        initLaueGroups();
-        initCrystalSystems();
+        return result;
     }
 
 
 
     /**
-     * Don't let anyone instantiate this class.
+     * Returns whether a Hermann-Mauguin symbol accepted by
+     * {@link #fromSymbol(String)} denotes the standard setting of its space
+     * group. The symbols of other settings (e.g. <code>Pbnm</code> for
+     * <i>Pnma</i>) and the symbols followed by an origin choice (e.g.
+     * <code>Fd-3m:1</code>) resolve to the space group of the standard
+     * setting, but the positions expressed in these settings must first be
+     * transformed.
+     * 
+     * @param symbol
+     *            Hermann-Mauguin symbol
+     * @return <code>true</code> if the symbol denotes the standard setting,
+     *         <code>false</code> otherwise
      */
-    private SpaceGroups() {
+    public static boolean isStandardSymbol(String symbol) {
+        if (symbol == null)
+            throw new NullPointerException("symbol == null");
+
+        return SymbolIndex.isStandard(symbol);
     }
 
 
 
     /**
-     * Initializes the crystal systems lookup table.
+     * Returns all the space groups with the specified crystal system.
+     * 
+     * @param crystalSystem
+     *            crystal system
+     * @return space groups in the crystal system
      */
-    private static void initCrystalSystems() {
-        CRYSTAL_SYSTEMS.put(TRICLINIC, new HashSet<SpaceGroup>());
-        CRYSTAL_SYSTEMS.get(TRICLINIC).addAll(LAUE_GROUPS.get(LG1));
-
-        CRYSTAL_SYSTEMS.put(MONOCLINIC, new HashSet<SpaceGroup>());
-        CRYSTAL_SYSTEMS.get(MONOCLINIC).addAll(LAUE_GROUPS.get(LG2m));
-
-        CRYSTAL_SYSTEMS.put(ORTHORHOMBIC, new HashSet<SpaceGroup>());
-        CRYSTAL_SYSTEMS.get(ORTHORHOMBIC).addAll(LAUE_GROUPS.get(LGmmm));
-
-        CRYSTAL_SYSTEMS.put(TETRAGONAL, new HashSet<SpaceGroup>());
-        CRYSTAL_SYSTEMS.get(TETRAGONAL).addAll(LAUE_GROUPS.get(LG4m));
-        CRYSTAL_SYSTEMS.get(TETRAGONAL).addAll(LAUE_GROUPS.get(LG4mmm));
-
-        CRYSTAL_SYSTEMS.put(TRIGONAL, new HashSet<SpaceGroup>());
-        CRYSTAL_SYSTEMS.get(TRIGONAL).addAll(LAUE_GROUPS.get(LG3));
-        CRYSTAL_SYSTEMS.get(TRIGONAL).addAll(LAUE_GROUPS.get(LG3m));
+    public static Set<SpaceGroup> list(CrystalSystem crystalSystem) {
+        Set<SpaceGroup> sgs = new HashSet<SpaceGroup>();
 
-        CRYSTAL_SYSTEMS.put(HEXAGONAL, new HashSet<SpaceGroup>());
-        CRYSTAL_SYSTEMS.get(HEXAGONAL).addAll(LAUE_GROUPS.get(LG6m));
-        CRYSTAL_SYSTEMS.get(HEXAGONAL).addAll(LAUE_GROUPS.get(LG6mmm));
+        for (int row = 0; row < Table.INDEXES.length; row++)
+            if (Table.laueGroup(row).getCrystalSystem() == crystalSystem)
+                sgs.add(get(row));
 
-        CRYSTAL_SYSTEMS.put(CUBIC, new HashSet<SpaceGroup>());
-        CRYSTAL_SYSTEMS.get(CUBIC).addAll(LAUE_GROUPS.get(LGm3));
-        CRYSTAL_SYSTEMS.get(CUBIC).addAll(LAUE_GROUPS.get(LGm3m));
+        return sgs;
     }
 
 
 
     /**
-     * Initializes the INDEXES lookup table.
+     * Returns all the space groups with the specified Laue group.
+     * 
+     * @param laueGroup
+     *            Laue Group
+     * @return space groups in the Laue group
      */
-    private static void initIndexes() {
-        INDEXES.put(1, SG1);
-        INDEXES.put(2, SG2);
-        INDEXES.put(3, SG3);
-        INDEXES.put(4, SG4);
-        INDEXES.put(5, SG5);
-        INDEXES.put(6, SG6);
-        INDEXES.put(7, SG7);
-        INDEXES.put(8, SG8);
-        INDEXES.put(9, SG9);
-        INDEXES.put(10, SG10);
-        INDEXES.put(11, SG11);
-        INDEXES.put(12, SG12);
-        INDEXES.put(13, SG13);
-        INDEXES.put(14, SG14);
-        INDEXES.put(15, SG15);
-        INDEXES.put(16, SG16);
-        INDEXES.put(17, SG17);
-        INDEXES.put(18, SG18);
-        INDEXES.put(19, SG19);
-        INDEXES.put(20, SG20);
-        INDEXES.put(21, SG21);
-        INDEXES.put(22, SG22);
-        INDEXES.put(23, SG23);
-        INDEXES.put(24, SG24);
-        INDEXES.put(25, SG25);
-        INDEXES.put(26, SG26);
-        INDEXES.put(27, SG27);
-        INDEXES.put(28, SG28);
-        INDEXES.put(29, SG29);
-        INDEXES.put(30, SG30);
-        INDEXES.put(31, SG31);
-        INDEXES.put(32, SG32);
-        INDEXES.put(33, SG33);
-        INDEXES.put(34, SG34);
-        INDEXES.put(35, SG35);
-        INDEXES.put(36, SG36);
-        INDEXES.put(37, SG37);
-        INDEXES.put(38, SG38);
-        INDEXES.put(39, SG39);
-        INDEXES.put(40, SG40);
-        INDEXES.put(41, SG41);
-        INDEXES.put(42, SG42);
-        INDEXES.put(43, SG43);
-        INDEXES.put(44, SG44);
-        INDEXES.put(45, SG45);
-        INDEXES.put(46, SG46);
-        INDEXES.put(47, SG47);
-        INDEXES.put(48, SG48);
-        INDEXES.put(49, SG49);
-        INDEXES.put(50, SG50);
-        INDEXES.put(51, SG51);
-        INDEXES.put(52, SG52);
-        INDEXES.put(53, SG53);
-        INDEXES.put(54, SG54);
-        INDEXES.put(55, SG55);
-        INDEXES.put(56, SG56);
-        INDEXES.put(57, SG57);
-        INDEXES.put(58, SG58);
-        INDEXES.put(59, SG59);
-        INDEXES.put(60, SG60);
-        INDEXES.put(61, SG61);
-        INDEXES.put(62, SG62);
-        INDEXES.put(63, SG63);
-        INDEXES.put(64, SG64);
-        INDEXES.put(65, SG65);
-        INDEXES.put(66, SG66);
-        INDEXES.put(67, SG67);
-        INDEXES.put(68, SG68);
-        INDEXES.put(69, SG69);
-        INDEXES.put(70, SG70);
-        INDEXES.put(71, SG71);
-        INDEXES.put(72, SG72);
-        INDEXES.put(73, SG73);
-        INDEXES.put(74, SG74);
-        INDEXES.put(75, SG75);
-        INDEXES.put(76, SG76);
-        INDEXES.put(77, SG77);
-        INDEXES.put(78, SG78);
-        INDEXES.put(79, SG79);
-        INDEXES.put(80, SG80);
-        INDEXES.put(81, SG81);
-        INDEXES.put(82, SG82);
-        INDEXES.put(83, SG83);
-        INDEXES.put(84, SG84);
-        INDEXES.put(85, SG85);
-        INDEXES.put(86, SG86);
-        INDEXES.put(87, SG87);
-        INDEXES.put(88, SG88);
-        INDEXES.put(89, SG89);
-        INDEXES.put(90, SG90);
-        INDEXES.put(91, SG91);
-        INDEXES.put(92, SG92);
-        INDEXES.put(93, SG93);
-        INDEXES.put(94, SG94);
-        INDEXES.put(95, SG95);
-        INDEXES.put(96, SG96);
-        INDEXES.put(97, SG97);
-        INDEXES.put(98, SG98);
-        INDEXES.put(99, SG99);
-        INDEXES.put(100, SG100);
-        INDEXES.put(101, SG101);
-        INDEXES.put(102, SG102);
-        INDEXES.put(103, SG103);
-        INDEXES.put(104, SG104);
-        INDEXES.put(105, SG105);
-        INDEXES.put(106, SG106);
-        INDEXES.put(107, SG107);
-        INDEXES.put(108, SG108);
-        INDEXES.put(109, SG109);
-        INDEXES.put(110, SG110);
-        INDEXES.put(111, SG111);
-        INDEXES.put(112, SG112);
-        INDEXES.put(113, SG113);
-        INDEXES.put(114, SG114);
-        INDEXES.put(115, SG115);
-        INDEXES.put(116, SG116);
-        INDEXES.put(117, SG117);
-        INDEXES.put(118, SG118);
-        INDEXES.put(119, SG119);
-        INDEXES.put(120, SG120);
-        INDEXES.put(121, SG121);
-        INDEXES.put(122, SG122);
-        INDEXES.put(123, SG123);
-        INDEXES.put(124, SG124);
-        INDEXES.put(125, SG125);
-        INDEXES.put(126, SG126);
-        INDEXES.put(127, SG127);
-        INDEXES.put(128, SG128);
-        INDEXES.put(129, SG129);
-        INDEXES.put(130, SG130);
-        INDEXES.put(131, SG131);
-        INDEXES.put(132, SG132);
-        INDEXES.put(133, SG133);
-        INDEXES.put(134, SG134);
-        INDEXES.put(135, SG135);
-        INDEXES.put(136, SG136);
-        INDEXES.put(137, SG137);
-        INDEXES.put(138, SG138);
-        INDEXES.put(139, SG139);
-        INDEXES.put(140, SG140);
-        INDEXES.put(141, SG141);
-        INDEXES.put(142, SG142);
-        INDEXES.put(143, SG143);
-        INDEXES.put(144, SG144);
-        INDEXES.put(145, SG145);
-        INDEXES.put(146, SG146);
-        INDEXES.put(147, SG147);
-        INDEXES.put(148, SG148);
-        INDEXES.put(149, SG149);
-        INDEXES.put(150, SG150);
-        INDEXES.put(151, SG151);
-        INDEXES.put(152, SG152);
-        INDEXES.put(153, SG153);
-        INDEXES.put(154, SG154);
-        INDEXES.put(155, SG155);
-        INDEXES.put(156, SG156);
-        INDEXES.put(157, SG157);
-        INDEXES.put(158, SG158);
-        INDEXES.put(159, SG159);
-        INDEXES.put(160, SG160);
-        INDEXES.put(161, SG161);
-        INDEXES.put(162, SG162);
-        INDEXES.put(163, SG163);
-        INDEXES.put(164, SG164);
-        INDEXES.put(165, SG165);
-        INDEXES.put(166, SG166);
-        INDEXES.put(167, SG167);
-        INDEXES.put(168, SG168);
-        INDEXES.put(169, SG169);
-        INDEXES.put(170, SG170);
-        INDEXES.put(171, SG171);
-        INDEXES.put(172, SG172);
-        INDEXES.put(173, SG173);
-        INDEXES.put(174, SG174);
-        INDEXES.put(175, SG175);
-        INDEXES.put(176, SG176);
-        INDEXES.put(177, SG177);
-        INDEXES.put(178, SG178);
-        INDEXES.put(179, SG179);
-        INDEXES.put(180, SG180);
-        INDEXES.put(181, SG181);
-        INDEXES.put(182, SG182);
-        INDEXES.put(183, SG183);
-        INDEXES.put(184, SG184);
-        INDEXES.put(185, SG185);
-        INDEXES.put(186, SG186);
-        INDEXES.put(187, SG187);
-        INDEXES.put(188, SG188);
-        INDEXES.put(189, SG189);
-        INDEXES.put(190, SG190);
-        INDEXES.put(191, SG191);
-        INDEXES.put(192, SG192);
-        INDEXES.put(193, SG193);
-        INDEXES.put(194, SG194);
-        INDEXES.put(195, SG195);
-        INDEXES.put(196, SG196);
-        INDEXES.put(197, SG197);
-        INDEXES.put(198, SG198);
-        INDEXES.put(199, SG199);
-        INDEXES.put(200, SG200);
-        INDEXES.put(201, SG201);
-        INDEXES.put(202, SG202);
-        INDEXES.put(203, SG203);
-        INDEXES.put(204, SG204);
-        INDEXES.put(205, SG205);
-        INDEXES.put(206, SG206);
-        INDEXES.put(207, SG207);
-        INDEXES.put(208, SG208);
-        INDEXES.put(209, SG209);
-        INDEXES.put(210, SG210);
-        INDEXES.put(211, SG211);
-        INDEXES.put(212, SG212);
-        INDEXES.put(213, SG213);
-        INDEXES.put(214, SG214);
-        INDEXES.put(215, SG215);
-        INDEXES.put(216, SG216);
-        INDEXES.put(217, SG217);
-        INDEXES.put(218, SG218);
-        INDEXES.put(219, SG219);
-        INDEXES.put(220, SG220);
-        INDEXES.put(221, SG221);
-        INDEXES.put(222, SG222);
-        INDEXES.put(223, SG223);
-        INDEXES.put(224, SG224);
-        INDEXES.put(225, SG225);
-        INDEXES.put(226, SG226);
-        INDEXES.put(227, SG227);
-        INDEXES.put(228, SG228);
-        INDEXES.put(229, SG229);
-        INDEXES.put(230, SG230);
-
-        // 7 extras
-        INDEXES.put(1146, SG1146);
-        INDEXES.put(1148, SG1148);
-        INDEXES.put(1155, SG1155);
-        INDEXES.put(1160, SG1160);
-        INDEXES.put(1161, SG1161);
-        INDEXES.put(1166, SG1166);
-        INDEXES.put(1167, SG1167);
-    }
-
+    public static Set<SpaceGroup> list(LaueGroup laueGroup) {
+        Set<SpaceGroup> sgs = new HashSet<SpaceGroup>();
 
+        for (int row = 0; row < Table.INDEXES.length; row++)
+            if (Table.laueGroup(row) == laueGroup)
+                sgs.add(get(row));
 
-    /**
-     * Initializes the Laue group lookup table.
-     */
-    private static void initLaueGroups() {
-        LAUE_GROUPS.put(LG1, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LG1).add(SG1);
-        LAUE_GROUPS.get(LG1).add(SG2);
-
-        LAUE_GROUPS.put(LG2m, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LG2m).add(SG3);
-        LAUE_GROUPS.get(LG2m).add(SG4);
-        LAUE_GROUPS.get(LG2m).add(SG5);
-        LAUE_GROUPS.get(LG2m).add(SG6);
-        LAUE_GROUPS.get(LG2m).add(SG7);
-        LAUE_GROUPS.get(LG2m).add(SG8);
-        LAUE_GROUPS.get(LG2m).add(SG9);
-        LAUE_GROUPS.get(LG2m).add(SG10);
-        LAUE_GROUPS.get(LG2m).add(SG11);
-        LAUE_GROUPS.get(LG2m).add(SG12);
-        LAUE_GROUPS.get(LG2m).add(SG13);
-        LAUE_GROUPS.get(LG2m).add(SG14);
-        LAUE_GROUPS.get(LG2m).add(SG15);
-
-        LAUE_GROUPS.put(LGmmm, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LGmmm).add(SG16);
-        LAUE_GROUPS.get(LGmmm).add(SG17);
-        LAUE_GROUPS.get(LGmmm).add(SG18);
-        LAUE_GROUPS.get(LGmmm).add(SG19);
-        LAUE_GROUPS.get(LGmmm).add(SG20);
-        LAUE_GROUPS.get(LGmmm).add(SG21);
-        LAUE_GROUPS.get(LGmmm).add(SG22);
-        LAUE_GROUPS.get(LGmmm).add(SG23);
-        LAUE_GROUPS.get(LGmmm).add(SG24);
-        LAUE_GROUPS.get(LGmmm).add(SG25);
-        LAUE_GROUPS.get(LGmmm).add(SG26);
-        LAUE_GROUPS.get(LGmmm).add(SG27);
-        LAUE_GROUPS.get(LGmmm).add(SG28);
-        LAUE_GROUPS.get(LGmmm).add(SG29);
-        LAUE_GROUPS.get(LGmmm).add(SG30);
-        LAUE_GROUPS.get(LGmmm).add(SG31);
-        LAUE_GROUPS.get(LGmmm).add(SG32);
-        LAUE_GROUPS.get(LGmmm).add(SG33);
-        LAUE_GROUPS.get(LGmmm).add(SG34);
-        LAUE_GROUPS.get(LGmmm).add(SG35);
-        LAUE_GROUPS.get(LGmmm).add(SG36);
-        LAUE_GROUPS.get(LGmmm).add(SG37);
-        LAUE_GROUPS.get(LGmmm).add(SG38);
-        LAUE_GROUPS.get(LGmmm).add(SG39);
-        LAUE_GROUPS.get(LGmmm).add(SG40);
-        LAUE_GROUPS.get(LGmmm).add(SG41);
-        LAUE_GROUPS.get(LGmmm).add(SG42);
-        LAUE_GROUPS.get(LGmmm).add(SG43);
-        LAUE_GROUPS.get(LGmmm).add(SG44);
-        LAUE_GROUPS.get(LGmmm).add(SG45);
-        LAUE_GROUPS.get(LGmmm).add(SG46);
-        LAUE_GROUPS.get(LGmmm).add(SG47);
-        LAUE_GROUPS.get(LGmmm).add(SG48);
-        LAUE_GROUPS.get(LGmmm).add(SG49);
-        LAUE_GROUPS.get(LGmmm).add(SG50);
-        LAUE_GROUPS.get(LGmmm).add(SG51);
-        LAUE_GROUPS.get(LGmmm).add(SG52);
-        LAUE_GROUPS.get(LGmmm).add(SG53);
-        LAUE_GROUPS.get(LGmmm).add(SG54);
-        LAUE_GROUPS.get(LGmmm).add(SG55);
-        LAUE_GROUPS.get(LGmmm).add(SG56);
-        LAUE_GROUPS.get(LGmmm).add(SG57);
-        LAUE_GROUPS.get(LGmmm).add(SG58);
-        LAUE_GROUPS.get(LGmmm).add(SG59);
-        LAUE_GROUPS.get(LGmmm).add(SG60);
-        LAUE_GROUPS.get(LGmmm).add(SG61);
-        LAUE_GROUPS.get(LGmmm).add(SG62);
-        LAUE_GROUPS.get(LGmmm).add(SG63);
-        LAUE_GROUPS.get(LGmmm).add(SG64);
-        LAUE_GROUPS.get(LGmmm).add(SG65);
-        LAUE_GROUPS.get(LGmmm).add(SG66);
-        LAUE_GROUPS.get(LGmmm).add(SG67);
-        LAUE_GROUPS.get(LGmmm).add(SG68);
-        LAUE_GROUPS.get(LGmmm).add(SG69);
-        LAUE_GROUPS.get(LGmmm).add(SG70);
-        LAUE_GROUPS.get(LGmmm).add(SG71);
-        LAUE_GROUPS.get(LGmmm).add(SG72);
-        LAUE_GROUPS.get(LGmmm).add(SG73);
-        LAUE_GROUPS.get(LGmmm).add(SG74);
-
-        LAUE_GROUPS.put(LG4m, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LG4m).add(SG75);
-        LAUE_GROUPS.get(LG4m).add(SG76);
-        LAUE_GROUPS.get(LG4m).add(SG77);
-        LAUE_GROUPS.get(LG4m).add(SG78);
-        LAUE_GROUPS.get(LG4m).add(SG79);
-        LAUE_GROUPS.get(LG4m).add(SG80);
-        LAUE_GROUPS.get(LG4m).add(SG81);
-        LAUE_GROUPS.get(LG4m).add(SG82);
-        LAUE_GROUPS.get(LG4m).add(SG83);
-        LAUE_GROUPS.get(LG4m).add(SG84);
-        LAUE_GROUPS.get(LG4m).add(SG85);
-        LAUE_GROUPS.get(LG4m).add(SG86);
-        LAUE_GROUPS.get(LG4m).add(SG87);
-        LAUE_GROUPS.get(LG4m).add(SG88);
-
-        LAUE_GROUPS.put(LG4mmm, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LG4mmm).add(SG89);
-        LAUE_GROUPS.get(LG4mmm).add(SG90);
-        LAUE_GROUPS.get(LG4mmm).add(SG91);
-        LAUE_GROUPS.get(LG4mmm).add(SG92);
-        LAUE_GROUPS.get(LG4mmm).add(SG93);
-        LAUE_GROUPS.get(LG4mmm).add(SG94);
-        LAUE_GROUPS.get(LG4mmm).add(SG95);
-        LAUE_GROUPS.get(LG4mmm).add(SG96);
-        LAUE_GROUPS.get(LG4mmm).add(SG97);
-        LAUE_GROUPS.get(LG4mmm).add(SG98);
-        LAUE_GROUPS.get(LG4mmm).add(SG99);
-        LAUE_GROUPS.get(LG4mmm).add(SG100);
-        LAUE_GROUPS.get(LG4mmm).add(SG101);
-        LAUE_GROUPS.get(LG4mmm).add(SG102);
-        LAUE_GROUPS.get(LG4mmm).add(SG103);
-        LAUE_GROUPS.get(LG4mmm).add(SG104);
-        LAUE_GROUPS.get(LG4mmm).add(SG105);
-        LAUE_GROUPS.get(LG4mmm).add(SG106);
-        LAUE_GROUPS.get(LG4mmm).add(SG107);
-        LAUE_GROUPS.get(LG4mmm).add(SG108);
-        LAUE_GROUPS.get(LG4mmm).add(SG109);
-        LAUE_GROUPS.get(LG4mmm).add(SG110);
-        LAUE_GROUPS.get(LG4mmm).add(SG111);
-        LAUE_GROUPS.get(LG4mmm).add(SG112);
-        LAUE_GROUPS.get(LG4mmm).add(SG113);
-        LAUE_GROUPS.get(LG4mmm).add(SG114);
-        LAUE_GROUPS.get(LG4mmm).add(SG115);
-        LAUE_GROUPS.get(LG4mmm).add(SG116);
-        LAUE_GROUPS.get(LG4mmm).add(SG117);
-        LAUE_GROUPS.get(LG4mmm).add(SG118);
-        LAUE_GROUPS.get(LG4mmm).add(SG119);
-        LAUE_GROUPS.get(LG4mmm).add(SG120);
-        LAUE_GROUPS.get(LG4mmm).add(SG121);
-        LAUE_GROUPS.get(LG4mmm).add(SG122);
-        LAUE_GROUPS.get(LG4mmm).add(SG123);
-        LAUE_GROUPS.get(LG4mmm).add(SG124);
-        LAUE_GROUPS.get(LG4mmm).add(SG125);
-        LAUE_GROUPS.get(LG4mmm).add(SG126);
-        LAUE_GROUPS.get(LG4mmm).add(SG127);
-        LAUE_GROUPS.get(LG4mmm).add(SG128);
-        LAUE_GROUPS.get(LG4mmm).add(SG129);
-        LAUE_GROUPS.get(LG4mmm).add(SG130);
-        LAUE_GROUPS.get(LG4mmm).add(SG131);
-        LAUE_GROUPS.get(LG4mmm).add(SG132);
-        LAUE_GROUPS.get(LG4mmm).add(SG133);
-        LAUE_GROUPS.get(LG4mmm).add(SG134);
-        LAUE_GROUPS.get(LG4mmm).add(SG135);
-        LAUE_GROUPS.get(LG4mmm).add(SG136);
-        LAUE_GROUPS.get(LG4mmm).add(SG137);
-        LAUE_GROUPS.get(LG4mmm).add(SG138);
-        LAUE_GROUPS.get(LG4mmm).add(SG139);
-        LAUE_GROUPS.get(LG4mmm).add(SG140);
-        LAUE_GROUPS.get(LG4mmm).add(SG141);
-        LAUE_GROUPS.get(LG4mmm).add(SG142);
-
-        LAUE_GROUPS.put(LG3, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LG3).add(SG143);
-        LAUE_GROUPS.get(LG3).add(SG144);
-        LAUE_GROUPS.get(LG3).add(SG145);
-        LAUE_GROUPS.get(LG3).add(SG146);
-        LAUE_GROUPS.get(LG3).add(SG1146);
-        LAUE_GROUPS.get(LG3).add(SG147);
-        LAUE_GROUPS.get(LG3).add(SG148);
-        LAUE_GROUPS.get(LG3).add(SG1148);
-
-        LAUE_GROUPS.put(LG3m, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LG3m).add(SG149);
-        LAUE_GROUPS.get(LG3m).add(SG150);
-        LAUE_GROUPS.get(LG3m).add(SG151);
-        LAUE_GROUPS.get(LG3m).add(SG152);
-        LAUE_GROUPS.get(LG3m).add(SG153);
-        LAUE_GROUPS.get(LG3m).add(SG154);
-        LAUE_GROUPS.get(LG3m).add(SG155);
-        LAUE_GROUPS.get(LG3m).add(SG1155);
-        LAUE_GROUPS.get(LG3m).add(SG156);
-        LAUE_GROUPS.get(LG3m).add(SG157);
-        LAUE_GROUPS.get(LG3m).add(SG158);
-        LAUE_GROUPS.get(LG3m).add(SG159);
-        LAUE_GROUPS.get(LG3m).add(SG160);
-        LAUE_GROUPS.get(LG3m).add(SG1160);
-        LAUE_GROUPS.get(LG3m).add(SG161);
-        LAUE_GROUPS.get(LG3m).add(SG1161);
-        LAUE_GROUPS.get(LG3m).add(SG162);
-        LAUE_GROUPS.get(LG3m).add(SG163);
-        LAUE_GROUPS.get(LG3m).add(SG164);
-        LAUE_GROUPS.get(LG3m).add(SG165);
-        LAUE_GROUPS.get(LG3m).add(SG166);
-        LAUE_GROUPS.get(LG3m).add(SG1166);
-        LAUE_GROUPS.get(LG3m).add(SG167);
-        LAUE_GROUPS.get(LG3m).add(SG1167);
-
-        LAUE_GROUPS.put(LG6m, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LG6m).add(SG168);
-        LAUE_GROUPS.get(LG6m).add(SG169);
-        LAUE_GROUPS.get(LG6m).add(SG170);
-        LAUE_GROUPS.get(LG6m).add(SG171);
-        LAUE_GROUPS.get(LG6m).add(SG172);
-        LAUE_GROUPS.get(LG6m).add(SG173);
-        LAUE_GROUPS.get(LG6m).add(SG174);
-        LAUE_GROUPS.get(LG6m).add(SG175);
-        LAUE_GROUPS.get(LG6m).add(SG176);
-
-        LAUE_GROUPS.put(LG6mmm, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LG6mmm).add(SG177);
-        LAUE_GROUPS.get(LG6mmm).add(SG178);
-        LAUE_GROUPS.get(LG6mmm).add(SG179);
-        LAUE_GROUPS.get(LG6mmm).add(SG180);
-        LAUE_GROUPS.get(LG6mmm).add(SG181);
-        LAUE_GROUPS.get(LG6mmm).add(SG182);
-        LAUE_GROUPS.get(LG6mmm).add(SG183);
-        LAUE_GROUPS.get(LG6mmm).add(SG184);
-        LAUE_GROUPS.get(LG6mmm).add(SG185);
-        LAUE_GROUPS.get(LG6mmm).add(SG186);
-        LAUE_GROUPS.get(LG6mmm).add(SG187);
-        LAUE_GROUPS.get(LG6mmm).add(SG188);
-        LAUE_GROUPS.get(LG6mmm).add(SG189);
-        LAUE_GROUPS.get(LG6mmm).add(SG190);
-        LAUE_GROUPS.get(LG6mmm).add(SG191);
-        LAUE_GROUPS.get(LG6mmm).add(SG192);
-        LAUE_GROUPS.get(LG6mmm).add(SG193);
-        LAUE_GROUPS.get(LG6mmm).add(SG194);
-
-        LAUE_GROUPS.put(LGm3, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LGm3).add(SG195);
-        LAUE_GROUPS.get(LGm3).add(SG196);
-        LAUE_GROUPS.get(LGm3).add(SG197);
-        LAUE_GROUPS.get(LGm3).add(SG198);
-        LAUE_GROUPS.get(LGm3).add(SG199);
-        LAUE_GROUPS.get(LGm3).add(SG200);
-        LAUE_GROUPS.get(LGm3).add(SG201);
-        LAUE_GROUPS.get(LGm3).add(SG202);
-        LAUE_GROUPS.get(LGm3).add(SG203);
-        LAUE_GROUPS.get(LGm3).add(SG204);
-        LAUE_GROUPS.get(LGm3).add(SG205);
-        LAUE_GROUPS.get(LGm3).add(SG206);
-
-        LAUE_GROUPS.put(LGm3m, new HashSet<SpaceGroup>());
-        LAUE_GROUPS.get(LGm3m).add(SG207);
-        LAUE_GROUPS.get(LGm3m).add(SG208);
-        LAUE_GROUPS.get(LGm3m).add(SG209);
-        LAUE_GROUPS.get(LGm3m).add(SG210);
-        LAUE_GROUPS.get(LGm3m).add(SG211);
-        LAUE_GROUPS.get(LGm3m).add(SG212);
-        LAUE_GROUPS.get(LGm3m).add(SG213);
-        LAUE_GROUPS.get(LGm3m).add(SG214);
-        LAUE_GROUPS.get(LGm3m).add(SG215);
-        LAUE_GROUPS.get(LGm3m).add(SG216);
-        LAUE_GROUPS.get(LGm3m).add(SG217);
-        LAUE_GROUPS.get(LGm3m).add(SG218);
-        LAUE_GROUPS.get(LGm3m).add(SG219);
-        LAUE_GROUPS.get(LGm3m).add(SG220);
-        LAUE_GROUPS.get(LGm3m).add(SG221);
-        LAUE_GROUPS.get(LGm3m).add(SG222);
-        LAUE_GROUPS.get(LGm3m).add(SG223);
-        LAUE_GROUPS.get(LGm3m).add(SG224);
-        LAUE_GROUPS.get(LGm3m).add(SG225);
-        LAUE_GROUPS.get(LGm3m).add(SG226);
-        LAUE_GROUPS.get(LGm3m).add(SG227);
-        LAUE_GROUPS.get(LGm3m).add(SG228);
-        LAUE_GROUPS.get(LGm3m).add(SG229);
-        LAUE_GROUPS.get(LGm3m).add(SG230);
+        return sgs;
     }
 
 
 
     /**
-     * Initializes the SYMBOLS lookup table.
+     * Don't let anyone instantiate this class.
      */
-    private static void initSymbols() {
-        SYMBOLS.put("P1", SG1);
-        SYMBOLS.put("P-1", SG2);
-        SYMBOLS.put("P2", SG3);
-        SYMBOLS.put("P21", SG4);
-        SYMBOLS.put("C2", SG5);
-        SYMBOLS.put("Pm", SG6);
-        SYMBOLS.put("Pc", SG7);
-        SYMBOLS.put("Cm", SG8);
-        SYMBOLS.put("Cc", SG9);
-        SYMBOLS.put("P2/m", SG10);
-        SYMBOLS.put("P21/m", SG11);
-        SYMBOLS.put("C2/m", SG12);
-        SYMBOLS.put("P2/c", SG13);
-        SYMBOLS.put("P21/c", SG14);
-        SYMBOLS.put("C2/c", SG15);
-        SYMBOLS.put("P222", SG16);
-        SYMBOLS.put("P2221", SG17);
-        SYMBOLS.put("P21212", SG18);
-        SYMBOLS.put("P212121", SG19);
-        SYMBOLS.put("C2221", SG20);
-        SYMBOLS.put("C222", SG21);
-        SYMBOLS.put("F222", SG22);
-        SYMBOLS.put("I222", SG23);
-        SYMBOLS.put("I212121", SG24);
-        SYMBOLS.put("Pmm2", SG25);
-        SYMBOLS.put("Pmc21", SG26);
-        SYMBOLS.put("Pcc2", SG27);
-        SYMBOLS.put("Pma2", SG28);
-        SYMBOLS.put("Pca21", SG29);
-        SYMBOLS.put("Pnc2", SG30);
-        SYMBOLS.put("Pmn21", SG31);
-        SYMBOLS.put("Pba2", SG32);
-        SYMBOLS.put("Pna21", SG33);
-        SYMBOLS.put("Pnn2", SG34);
-        SYMBOLS.put("Cmm2", SG35);
-        SYMBOLS.put("Cmc21", SG36);
-        SYMBOLS.put("Ccc2", SG37);
-        SYMBOLS.put("Amm2", SG38);
-        SYMBOLS.put("Abm2", SG39);
-        SYMBOLS.put("Ama2", SG40);
-        SYMBOLS.put("Aba2", SG41);
-        SYMBOLS.put("Fmm2", SG42);
-        SYMBOLS.put("Fdd2", SG43);
-        SYMBOLS.put("Imm2", SG44);
-        SYMBOLS.put("Iba2", SG45);
-        SYMBOLS.put("Ima2", SG46);
-        SYMBOLS.put("Pmmm", SG47);
-        SYMBOLS.put("Pnnn", SG48);
-        SYMBOLS.put("Pccm", SG49);
-        SYMBOLS.put("Pban", SG50);
-        SYMBOLS.put("Pmma", SG51);
-        SYMBOLS.put("Pnna", SG52);
-        SYMBOLS.put("Pmna", SG53);
-        SYMBOLS.put("Pcca", SG54);
-        SYMBOLS.put("Pbam", SG55);
-        SYMBOLS.put("Pccn", SG56);
-        SYMBOLS.put("Pbcm", SG57);
-        SYMBOLS.put("Pnnm", SG58);
-        SYMBOLS.put("Pmmn", SG59);
-        SYMBOLS.put("Pbcn", SG60);
-        SYMBOLS.put("Pbca", SG61);
-        SYMBOLS.put("Pnma", SG62);
-        SYMBOLS.put("Cmcm", SG63);
-        SYMBOLS.put("Cmca", SG64);
-        SYMBOLS.put("Cmmm", SG65);
-        SYMBOLS.put("Cccm", SG66);
-        SYMBOLS.put("Cmma", SG67);
-        SYMBOLS.put("Ccca", SG68);
-        SYMBOLS.put("Fmmm", SG69);
-        SYMBOLS.put("Fddd", SG70);
-        SYMBOLS.put("Immm", SG71);
-        SYMBOLS.put("Ibam", SG72);
-        SYMBOLS.put("Ibca", SG73);
-        SYMBOLS.put("Imma", SG74);
-        SYMBOLS.put("P4", SG75);
-        SYMBOLS.put("P41", SG76);
-        SYMBOLS.put("P42", SG77);
-        SYMBOLS.put("P43", SG78);
-        SYMBOLS.put("I4", SG79);
-        SYMBOLS.put("I41", SG80);
-        SYMBOLS.put("P-4", SG81);
-        SYMBOLS.put("I-4", SG82);
-        SYMBOLS.put("P4/m", SG83);
-        SYMBOLS.put("P42/m", SG84);
-        SYMBOLS.put("P4/n", SG85);
-        SYMBOLS.put("P42/n", SG86);
-        SYMBOLS.put("I4/m", SG87);
-        SYMBOLS.put("I41/a", SG88);
-        SYMBOLS.put("P422", SG89);
-        SYMBOLS.put("P4212", SG90);
-        SYMBOLS.put("P4122", SG91);
-        SYMBOLS.put("P41212", SG92);
-        SYMBOLS.put("P4222", SG93);
-        SYMBOLS.put("P42212", SG94);
-        SYMBOLS.put("P4322", SG95);
-        SYMBOLS.put("P43212", SG96);
-        SYMBOLS.put("I422", SG97);
-        SYMBOLS.put("I4122", SG98);
-        SYMBOLS.put("P4mm", SG99);
-        SYMBOLS.put("P4bm", SG100);
-        SYMBOLS.put("P42cm", SG101);
-        SYMBOLS.put("P42nm", SG102);
-        SYMBOLS.put("P4cc", SG103);
-        SYMBOLS.put("P4nc", SG104);
-        SYMBOLS.put("P42mc", SG105);
-        SYMBOLS.put("P42bc", SG106);
-        SYMBOLS.put("I4mm", SG107);
-        SYMBOLS.put("I4cm", SG108);
-        SYMBOLS.put("I41md", SG109);
-        SYMBOLS.put("I41cd", SG110);
-        SYMBOLS.put("P-42m", SG111);
-        SYMBOLS.put("P-42c", SG112);
-        SYMBOLS.put("P-421m", SG113);
-        SYMBOLS.put("P-421c", SG114);
-        SYMBOLS.put("P-4m2", SG115);
-        SYMBOLS.put("P-4c2", SG116);
-        SYMBOLS.put("P-4b2", SG117);
-        SYMBOLS.put("P-4n2", SG118);
-        SYMBOLS.put("I-4m2", SG119);
-        SYMBOLS.put("I-4c2", SG120);
-        SYMBOLS.put("I-42m", SG121);
-        SYMBOLS.put("I-42d", SG122);
-        SYMBOLS.put("P4/mmm", SG123);
-        SYMBOLS.put("P4/mcc", SG124);
-        SYMBOLS.put("P4/nbm", SG125);
-        SYMBOLS.put("P4/nnc", SG126);
-        SYMBOLS.put("P4/mbm", SG127);
-        SYMBOLS.put("P4/mnc", SG128);
-        SYMBOLS.put("P4/nmm", SG129);
-        SYMBOLS.put("P4/ncc", SG130);
-        SYMBOLS.put("P42/mmc", SG131);
-        SYMBOLS.put("P42/mcm", SG132);
-        SYMBOLS.put("P42/nbc", SG133);
-        SYMBOLS.put("P42/nnm", SG134);
-        SYMBOLS.put("P42/mbc", SG135);
-        SYMBOLS.put("P42/mnm", SG136);
-        SYMBOLS.put("P42/nmc", SG137);
-        SYMBOLS.put("P42/ncm", SG138);
-        SYMBOLS.put("I4/mmm", SG139);
-        SYMBOLS.put("I4/mcm", SG140);
-        SYMBOLS.put("I41/amd", SG141);
-        SYMBOLS.put("I41/acd", SG142);
-        SYMBOLS.put("P3", SG143);
-        SYMBOLS.put("P31", SG144);
-        SYMBOLS.put("P32", SG145);
-        SYMBOLS.put("H3", SG146);
-        SYMBOLS.put("R3", SG1146);
-        SYMBOLS.put("P-3", SG147);
-        SYMBOLS.put("H-3", SG148);
-        SYMBOLS.put("R-3", SG1148);
-        SYMBOLS.put("P312", SG149);
-        SYMBOLS.put("P321", SG150);
-        SYMBOLS.put("P3112", SG151);
-        SYMBOLS.put("P3121", SG152);
-        SYMBOLS.put("P3212", SG153);
-        SYMBOLS.put("P3221", SG154);
-        SYMBOLS.put("H32", SG155);
-        SYMBOLS.put("R32", SG1155);
-        SYMBOLS.put("P3m1", SG156);
-        SYMBOLS.put("P31m", SG157);
-        SYMBOLS.put("P3c1", SG158);
-        SYMBOLS.put("P31c", SG159);
-        SYMBOLS.put("H3m", SG160);
-        SYMBOLS.put("R3m", SG1160);
-        SYMBOLS.put("H3c", SG161);
-        SYMBOLS.put("R3c", SG1161);
-        SYMBOLS.put("P-31m", SG162);
-        SYMBOLS.put("P-31c", SG163);
-        SYMBOLS.put("P-3m1", SG164);
-        SYMBOLS.put("P-3c1", SG165);
-        SYMBOLS.put("H-3m", SG166);
-        SYMBOLS.put("R-3m", SG1166);
-        SYMBOLS.put("H-3c", SG167);
-        SYMBOLS.put("R-3c", SG1167);
-        SYMBOLS.put("P6", SG168);
-        SYMBOLS.put("P61", SG169);
-        SYMBOLS.put("P65", SG170);
-        SYMBOLS.put("P62", SG171);
-        SYMBOLS.put("P64", SG172);
-        SYMBOLS.put("P63", SG173);
-        SYMBOLS.put("P-6", SG174);
-        SYMBOLS.put("P6/m", SG175);
-        SYMBOLS.put("P63/m", SG176);
-        SYMBOLS.put("P622", SG177);
-        SYMBOLS.put("P6122", SG178);
-        SYMBOLS.put("P6522", SG179);
-        SYMBOLS.put("P6222", SG180);
-        SYMBOLS.put("P6422", SG181);
-        SYMBOLS.put("P6322", SG182);
-        SYMBOLS.put("P6mm", SG183);
-        SYMBOLS.put("P6cc", SG184);
-        SYMBOLS.put("P63cm", SG185);
-        SYMBOLS.put("P63mc", SG186);
-        SYMBOLS.put("P-6m2", SG187);
-        SYMBOLS.put("P-6c2", SG188);
-        SYMBOLS.put("P-62m", SG189);
-        SYMBOLS.put("P-62c", SG190);
-        SYMBOLS.put("P6/mmm", SG191);
-        SYMBOLS.put("P6/mcc", SG192);
-        SYMBOLS.put("P63/mcm", SG193);
-        SYMBOLS.put("P63/mmc", SG194);
-        SYMBOLS.put("P23", SG195);
-        SYMBOLS.put("F23", SG196);
-        SYMBOLS.put("I23", SG197);
-        SYMBOLS.put("P213", SG198);
-        SYMBOLS.put("I213", SG199);
-        SYMBOLS.put("Pm-3", SG200);
-        SYMBOLS.put("Pn-3", SG201);
-        SYMBOLS.put("Fm-3", SG202);
-        SYMBOLS.put("Fd-3", SG203);
-        SYMBOLS.put("Im-3", SG204);
-        SYMBOLS.put("Pa-3", SG205);
-        SYMBOLS.put("Ia-3", SG206);
-        SYMBOLS.put("P432", SG207);
-        SYMBOLS.put("P4232", SG208);
-        SYMBOLS.put("F432", SG209);
-        SYMBOLS.put("F4132", SG210);
-        SYMBOLS.put("I432", SG211);
-        SYMBOLS.put("P4332", SG212);
-        SYMBOLS.put("P4132", SG213);
-        SYMBOLS.put("I4132", SG214);
-        SYMBOLS.put("P-43m", SG215);
-        SYMBOLS.put("F-43m", SG216);
-        SYMBOLS.put("I-43m", SG217);
-        SYMBOLS.put("P-43n", SG218);
-        SYMBOLS.put("F-43c", SG219);
-        SYMBOLS.put("I-43d", SG220);
-        SYMBOLS.put("Pm-3m", SG221);
-        SYMBOLS.put("Pn-3n", SG222);
-        SYMBOLS.put("Pm-3n", SG223);
-        SYMBOLS.put("Pn-3m", SG224);
-        SYMBOLS.put("Fm-3m", SG225);
-        SYMBOLS.put("Fm-3c", SG226);
-        SYMBOLS.put("Fd-3m", SG227);
-        SYMBOLS.put("Fd-3c", SG228);
-        SYMBOLS.put("Im-3m", SG229);
-        SYMBOLS.put("Ia-3d", SG230);
+    private SpaceGroups() {
     }
 }
@@ -0,0 +1,588 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.core.Element;
+import net.sf.jchemistry.util.ParallelUtils;
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+/**
+ * Supercell of a phase, built from the atoms of its unit cell and an integer
+ * transformation matrix. The columns of the matrix are the basis vectors of
+ * the supercell expressed in the basis of the unit cell (see
+ * {@link CellTransformation}), e.g. a diagonal matrix for a supercell of
+ * <i>na</i> x <i>nb</i> x <i>nc</i> unit cells.
+ * <p/>
+ * The sites are not stored: they are computed on the fly from the atoms of
+ * the unit cell and the lattice translations inside the supercell, and
+ * streamed to a {@link SiteConsumer} or copied into primitive arrays. The
+ * sites of a supercell of millions of atoms therefore never pass through
+ * {@link AtomSites} and its duplicate check. Site <code>i</code> is the atom
+ * <code>i % n</code> of the unit cell (<code>n</code> atoms) translated by
+ * the lattice translation <code>i / n</code>, so the order of the sites is
+ * the same whether they are computed sequentially or in parallel. The
+ * Cartesian coordinates are expressed in the frame of the unit cell of the
+ * phase (see {@link UnitCell#getCartesianMatrix()}).
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public final class Supercell {
+
+    /**
+     * Consumer of the sites of a supercell.
+     */
+    public static interface SiteConsumer {
+
+        /**
+         * Receives a site of the supercell. When the sites are streamed in
+         * parallel, this method is called concurrently from several threads.
+         * 
+         * @param index
+         *            index of the site
+         * @param element
+         *            element of the atom
+         * @param charge
+         *            charge of the atom
+         * @param occupancy
+         *            occupancy of the site
+         * @param x
+         *            x coordinate (fractional or in angstroms)
+         * @param y
+         *            y coordinate (fractional or in angstroms)
+         * @param z
+         *            z coordinate (fractional or in angstroms)
+         */
+        public void accept(int index, Element element, int charge,
+                double occupancy, double x, double y, double z);
+    }
+
+    /** Default number of lattice translations per chunk in parallel. */
+    public static final int CHUNK_SIZE = 1024;
+
+    /** Tolerance on the fractional coordinates of the lattice translations. */
+    private static final double EPSILON = 1e-9;
+
+    /** Elements of the atoms of the unit cell. */
+    private final Element[] elements;
+
+    /** Charges of the atoms of the unit cell. */
+    private final int[] charges;
+
+    /** Occupancies of the atoms of the unit cell. */
+    private final double[] occupancies;
+
+    /** Fractional coordinates of the atoms of the unit cell (x, y, z). */
+    private final double[] positions;
+
+    /** Lattice translations inside the supercell (x, y, z). */
+    private final int[] translations;
+
+    /** Inverse of the transformation matrix. */
+    private final double[][] inverse;
+
+    /**
+     * Cartesian matrix of the supercell, in the Cartesian frame of the unit
+     * cell of the phase.
+     */
+    private final double[][] cartesianMatrix;
+
+    /** Unit cell of the supercell. */
+    private final UnitCell unitCell;
+
+
+
+    /**
+     * Creates a new supercell of <i>na</i> x <i>nb</i> x <i>nc</i> unit cells
+     * of a phase.
+     * 
+     * @param phase
+     *            phase
+     * @param na
+     *            number of unit cells along a
+     * @param nb
+     *            number of unit cells along b
+     * @param nc
+     *            number of unit cells along c
+     * @throws IllegalArgumentException
+     *             if a number of unit cells is less than 1
+     */
+    public Supercell(Phase phase, int na, int nb, int nc) {
+        this(phase, diagonal(na, nb, nc));
+    }
+
+
+
+    /**
+     * Creates a new supercell of a phase.
+     * 
+     * @param phase
+     *            phase
+     * @param matrix
+     *            transformation matrix whose columns are the basis vectors of
+     *            the supercell expressed in the basis of the unit cell
+     * @throws NullPointerException
+     *             if the phase or matrix is null
+     * @throws IllegalArgumentException
+     *             if the matrix is not 3x3
+     * @throws IllegalArgumentException
+     *             if the determinant of the matrix is not positive
+     * @throws IllegalArgumentException
+     *             if the supercell has too many sites to be indexed
+     */
+    public Supercell(Phase phase, int[][] matrix) {
+        if (phase == null)
+            throw new NullPointerException("phase == null");
+        if (matrix == null)
+            throw new NullPointerException("matrix == null");
+        if (matrix.length != 3)
+            throw new IllegalArgumentException("Matrix must be 3x3.");
+
+        double[][] p = new double[3][3];
+        for (int i = 0; i < 3; i++) {
+            if (matrix[i].length != 3)
+                throw new IllegalArgumentException("Matrix must be 3x3.");
+            for (int j = 0; j < 3; j++)
+                p[i][j] = matrix[i][j];
+        }
+
+        CellTransformation transformation = new CellTransformation(p);
+        inverse = transformation.inverse().getMatrix().getData();
+        unitCell = transformation.transform(phase.getUnitCell());
+        cartesianMatrix =
+                phase.getUnitCell().getCartesianMatrix().multiply(
+                        transformation.getMatrix()).getData();
+
+        // Atoms of the unit cell
+        AbstractAtomSites atoms = phase.getAllAtoms();
+        int n = atoms.size();
+        elements = new Element[n];
+        charges = new int[n];
+        occupancies = new double[n];
+        positions = new double[3 * n];
+        int i = 0;
+        for (AtomSite atom : atoms) {
+            elements[i] = atom.getElement();
+            charges[i] = atom.getCharge();
+            occupancies[i] = atom.getOccupancy();
+            positions[3 * i] = atom.getPosition().getX();
+            positions[3 * i + 1] = atom.getPosition().getY();
+            positions[3 * i + 2] = atom.getPosition().getZ();
+            i++;
+        }
+
+        long count = Math.round(transformation.getDeterminant());
+        if (count * n > Integer.MAX_VALUE / 3)
+            throw new IllegalArgumentException("Number of sites (" + count
+                    * n + ") must be less than " + Integer.MAX_VALUE / 3);
+
+        translations = translations(matrix, inverse, (int) count);
+    }
+
+
+
+    /**
+     * Returns a diagonal matrix.
+     * 
+     * @param na
+     *            first diagonal element
+     * @param nb
+     *            second diagonal element
+     * @param nc
+     *            third diagonal element
+     * @return diagonal matrix
+     * @throws IllegalArgumentException
+     *             if an element is less than 1
+     */
+    private static int[][] diagonal(int na, int nb, int nc) {
+        if (na < 1)
+            throw new IllegalArgumentException("Number of unit cells along a ("
+                    + na + ") must be greater than 0.");
+        if (nb < 1)
+            throw new IllegalArgumentException("Number of unit cells along b ("
+                    + nb + ") must be greater than 0.");
+        if (nc < 1)
+            throw new IllegalArgumentException("Number of unit cells along c ("
+                    + nc + ") must be greater than 0.");
+
+        return new int[][] { { na, 0, 0 }, { 0, nb, 0 }, { 0, 0, nc } };
+    }
+
+
+
+    /**
+     * Returns the lattice translations of the unit cell inside the supercell,
+     * i.e. the integer vectors whose fractional coordinates in the supercell
+     * are in [0, 1[.
+     * 
+     * @param matrix
+     *            transformation matrix
+     * @param inverse
+     *            inverse of the transformation matrix
+     * @param count
+     *            number of lattice translations (determinant of the matrix)
+     * @return lattice translations (x, y, z)
+     */
+    private static int[] translations(int[][] matrix, double[][] inverse,
+            int count) {
+        // Bounding box of the corners of the supercell
+        int[] min = new int[3];
+        int[] max = new int[3];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++) {
+                if (matrix[i][j] < 0)
+                    min[i] += matrix[i][j];
+                else
+                    max[i] += matrix[i][j];
+            }
+
+        int[] translations = new int[3 * count];
+        int size = 0;
+        for (int x = min[0]; x < max[0]; x++)
+            for (int y = min[1]; y < max[1]; y++)
+                for (int z = min[2]; z < max[2]; z++) {
+                    if (!isInside(inverse, x, y, z))
+                        continue;
+
+                    translations[size++] = x;
+                    translations[size++] = y;
+                    translations[size++] = z;
+                }
+
+        if (size != translations.length)
+            throw new IllegalStateException("Found " + size / 3
+                    + " lattice translations instead of " + count);
+
+        return translations;
+    }
+
+
+
+    /**
+     * Returns whether a lattice translation is inside the supercell.
+     * 
+     * @param inverse
+     *            inverse of the transformation matrix
+     * @param x
+     *            x component of the translation
+     * @param y
+     *            y component of the translation
+     * @param z
+     *            z component of the translation
+     * @return <code>true</code> if the translation is inside the supercell
+     */
+    private static boolean isInside(double[][] inverse, int x, int y, int z) {
+        for (int i = 0; i < 3; i++) {
+            double f =
+                    inverse[i][0] * x + inverse[i][1] * y + inverse[i][2] * z;
+            if (f < -EPSILON || f >= 1 - EPSILON)
+                return false;
+        }
+
+        return true;
+    }
+
+
+
+    /**
+     * Streams the sites of this supercell to a consumer.
+     * 
+     * @param consumer
+     *            consumer of the sites
+     * @param cartesian
+     *            whether to stream Cartesian coordinates (in angstroms)
+     *            instead of fractional coordinates of the supercell
+     */
+    public void forEach(SiteConsumer consumer, boolean cartesian) {
+        if (consumer == null)
+            throw new NullPointerException("consumer == null");
+
+        forEach(consumer, cartesian, 0, getCellCount());
+    }
+
+
+
+    /**
+     * Streams the sites of this supercell to a consumer in parallel. The
+     * consumer must be thread-safe; the index of each site can be used to
+     * write the sites into arrays without synchronisation.
+     * 
+     * @param consumer
+     *            consumer of the sites
+     * @param cartesian
+     *            whether to stream Cartesian coordinates (in angstroms)
+     *            instead of fractional coordinates of the supercell
+     * @param executor
+     *            executor service running the chunks
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public void forEach(final SiteConsumer consumer, final boolean cartesian,
+            ExecutorService executor) throws InterruptedException {
+        if (consumer == null)
+            throw new NullPointerException("consumer == null");
+
+        ParallelUtils.run(executor, getCellCount(), CHUNK_SIZE,
+                new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        forEach(consumer, cartesian, from, to);
+                    }
+                });
+    }
+
+
+
+    /**
+     * Streams the sites of a range of lattice translations to a consumer.
+     * 
+     * @param consumer
+     *            consumer of the sites
+     * @param cartesian
+     *            whether to stream Cartesian coordinates
+     * @param from
+     *            first lattice translation (inclusive)
+     * @param to
+     *            last lattice translation (exclusive)
+     */
+    private void forEach(SiteConsumer consumer, boolean cartesian, int from,
+            int to) {
+        double[] out = new double[3];
+        int n = elements.length;
+
+        for (int cell = from; cell < to; cell++)
+            for (int atom = 0; atom < n; atom++) {
+                compute(cell, atom, cartesian, out);
+                consumer.accept(cell * n + atom, elements[atom],
+                        charges[atom], occupancies[atom], out[0], out[1],
+                        out[2]);
+            }
+    }
+
+
+
+    /**
+     * Computes the coordinates of a site.
+     * 
+     * @param cell
+     *            index of the lattice translation
+     * @param atom
+     *            index of the atom of the unit cell
+     * @param cartesian
+     *            whether to compute Cartesian coordinates
+     * @param out
+     *            array where to store the coordinates
+     */
+    private void compute(int cell, int atom, boolean cartesian, double[] out) {
+        double x = positions[3 * atom] + translations[3 * cell];
+        double y = positions[3 * atom + 1] + translations[3 * cell + 1];
+        double z = positions[3 * atom + 2] + translations[3 * cell + 2];
+
+        // Fractional coordinates in the supercell, brought back inside
+        double fx = inverse[0][0] * x + inverse[0][1] * y + inverse[0][2] * z;
+        double fy = inverse[1][0] * x + inverse[1][1] * y + inverse[1][2] * z;
+        double fz = inverse[2][0] * x + inverse[2][1] * y + inverse[2][2] * z;
+        fx -= Math.floor(fx);
+        fy -= Math.floor(fy);
+        fz -= Math.floor(fz);
+
+        if (cartesian) {
+            out[0] =
+                    cartesianMatrix[0][0] * fx + cartesianMatrix[0][1] * fy
+                            + cartesianMatrix[0][2] * fz;
+            out[1] =
+                    cartesianMatrix[1][0] * fx + cartesianMatrix[1][1] * fy
+                            + cartesianMatrix[1][2] * fz;
+            out[2] =
+                    cartesianMatrix[2][0] * fx + cartesianMatrix[2][1] * fy
+                            + cartesianMatrix[2][2] * fz;
+        } else {
+            out[0] = fx;
+            out[1] = fy;
+            out[2] = fz;
+        }
+    }
+
+
+
+    /**
+     * Returns the atomic number of each site.
+     * 
+     * @return atomic numbers
+     */
+    public byte[] getAtomicNumbers() {
+        byte[] out = new byte[size()];
+        int n = elements.length;
+
+        for (int i = 0; i < out.length; i++)
+            out[i] = (byte) elements[i % n].z();
+
+        return out;
+    }
+
+
+
+    /**
+     * Returns the number of unit cells (lattice translations) in this
+     * supercell.
+     * 
+     * @return number of unit cells
+     */
+    public int getCellCount() {
+        return translations.length / 3;
+    }
+
+
+
+    /**
+     * Returns the charge of each site.
+     * 
+     * @return charges
+     */
+    public byte[] getCharges() {
+        byte[] out = new byte[size()];
+        int n = elements.length;
+
+        for (int i = 0; i < out.length; i++)
+            out[i] = (byte) charges[i % n];
+
+        return out;
+    }
+
+
+
+    /**
+     * Returns the coordinates of the sites, as consecutive (x, y, z) triplets.
+     * 
+     * @param cartesian
+     *            whether to return Cartesian coordinates (in angstroms)
+     *            instead of fractional coordinates of the supercell
+     * @return coordinates of the sites
+     */
+    public double[] getCoordinates(boolean cartesian) {
+        double[] out = new double[3 * size()];
+        fill(out, cartesian, 0, getCellCount());
+        return out;
+    }
+
+
+
+    /**
+     * Returns the coordinates of the sites, as consecutive (x, y, z) triplets,
+     * computed in parallel.
+     * 
+     * @param cartesian
+     *            whether to return Cartesian coordinates (in angstroms)
+     *            instead of fractional coordinates of the supercell
+     * @param executor
+     *            executor service running the chunks
+     * @return coordinates of the sites
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public double[] getCoordinates(final boolean cartesian,
+            ExecutorService executor) throws InterruptedException {
+        final double[] out = new double[3 * size()];
+        ParallelUtils.run(executor, getCellCount(), CHUNK_SIZE,
+                new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        fill(out, cartesian, from, to);
+                    }
+                });
+        return out;
+    }
+
+
+
+    /**
+     * Fills the coordinates of the sites of a range of lattice translations.
+     * 
+     * @param out
+     *            coordinates of all the sites
+     * @param cartesian
+     *            whether to compute Cartesian coordinates
+     * @param from
+     *            first lattice translation (inclusive)
+     * @param to
+     *            last lattice translation (exclusive)
+     */
+    private void fill(double[] out, boolean cartesian, int from, int to) {
+        double[] site = new double[3];
+        int n = elements.length;
+
+        for (int cell = from; cell < to; cell++)
+            for (int atom = 0; atom < n; atom++) {
+                compute(cell, atom, cartesian, site);
+                int index = 3 * (cell * n + atom);
+                out[index] = site[0];
+                out[index + 1] = site[1];
+                out[index + 2] = site[2];
+            }
+    }
+
+
+
+    /**
+     * Returns the occupancy of each site.
+     * 
+     * @return occupancies
+     */
+    public double[] getOccupancies() {
+        double[] out = new double[size()];
+        int n = elements.length;
+
+        for (int i = 0; i < out.length; i++)
+            out[i] = occupancies[i % n];
+
+        return out;
+    }
+
+
+
+    /**
+     * Returns the unit cell of this supercell.
+     * 
+     * @return unit cell
+     */
+    public UnitCell getUnitCell() {
+        return unitCell;
+    }
+
+
+
+    /**
+     * Returns the number of sites in this supercell.
+     * 
+     * @return number of sites
+     */
+    public int size() {
+        return getCellCount() * elements.length;
+    }
+
+
+
+    @Override
+    public String toString() {
+        return "Supercell [cells=" + getCellCount() + ", sites=" + size()
+                + ", " + unitCell + "]";
+    }
+}
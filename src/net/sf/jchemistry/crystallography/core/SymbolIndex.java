@@ -0,0 +1,359 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of the space groups by the normalised form of their Hermann-Mauguin
+ * symbol. The normalisation removes the whitespaces and the subscript
+ * notations, converts the overbars to minus signs and reduces the full
+ * symbols to the short ones, so that for instance <code>P 21/c</code>,
+ * <code>P2_1/c</code>, <code>P121/c1</code> and <code>P 1 21/c 1</code> are
+ * all resolved to <i>P2<sub>1</sub>/c</i>. The normalised keys of all the
+ * space groups are computed once, so a symbol is resolved with a single
+ * lookup.
+ * <p/>
+ * The settings are specified after a colon: <code>:H</code> and
+ * <code>:R</code> select the hexagonal and rhombohedral axes of the
+ * rhombohedral space groups, whereas the origin choices (<code>:1</code>,
+ * <code>:2</code>) and the unique axis b (<code>:b</code>) are ignored.
+ * <p/>
+ * When a symbol only consists of rotation axes separated by whitespaces
+ * (e.g. <code>P 4 2 2</code>), the number of axes must match the number of
+ * symmetry directions of the short symbol of the space group. A screw axis
+ * is therefore only read from digits written without a space between them:
+ * <code>P 42</code> is <i>P4<sub>2</sub></i>, whereas <code>P 4 2</code> is
+ * not a Hermann-Mauguin symbol. The symbols of the
+ * e-glide planes (e.g. <code>Cmce</code>) and <code>Pbnm</code>, the usual
+ * setting of <i>Pnma</i> for the olivines, are accepted as aliases. Since
+ * <code>Pbnm</code> and the origin choices denote other settings than the
+ * one of the table, they are not standard symbols (see
+ * {@link #isStandard(String)}).
+ * 
+ * @author Philippe T. Pinard
+ */
+final class SymbolIndex {
+
+    /** Aliases (first item) of the short symbols (second item). */
+    private static final String[][] ALIASES = new String[][] {
+            { "Aem2", "Abm2" }, { "Aea2", "Aba2" }, { "Cmce", "Cmca" },
+            { "Cmme", "Cmma" }, { "Ccce", "Ccca" } };
+
+    /**
+     * Symbols of other settings (first item) of the short symbols (second
+     * item).
+     */
+    private static final String[][] SETTINGS = new String[][] { { "Pbnm",
+            "Pnma" } };
+
+    /** Rows of the table of space groups by normalised symbol. */
+    private final Map<String, Integer> rows = new HashMap<String, Integer>();
+
+    /** Number of symmetry directions in the short symbol of each row. */
+    private final int[] directions;
+
+
+
+    /**
+     * Creates a new <code>SymbolIndex</code>.
+     * 
+     * @param symbols
+     *            short symbol of the space group of each row
+     * @param indexes
+     *            index/number of the space group of each row
+     */
+    public SymbolIndex(String[] symbols, int[] indexes) {
+        directions = new int[symbols.length];
+
+        for (int row = 0; row < symbols.length; row++) {
+            directions[row] = directions(indexes[row]);
+            String symbol = symbols[row];
+            rows.put(symbol, row);
+
+            // Full symbol of the monoclinic space groups (unique axis b)
+            if (indexes[row] >= 3 && indexes[row] <= 15)
+                rows.put(symbol.charAt(0) + "1" + symbol.substring(1) + "1",
+                        row);
+
+            // Former notation of the cubic space groups (e.g. Fm3m)
+            if (indexes[row] >= 200 && indexes[row] <= 230)
+                rows.put(symbol.replace("-3", "3"), row);
+        }
+
+        for (String[] alias : ALIASES) {
+            Integer row = rows.get(alias[1]);
+            if (row != null)
+                rows.put(alias[0], row);
+        }
+
+        for (String[] setting : SETTINGS) {
+            Integer row = rows.get(setting[1]);
+            if (row != null)
+                rows.put(setting[0], row);
+        }
+    }
+
+
+
+    /**
+     * Returns the number of symmetry directions in the short Hermann-Mauguin
+     * symbol of a space group (e.g. 3 for <i>P422</i> and 1 for
+     * <i>P4<sub>2</sub></i>).
+     * 
+     * @param index
+     *            index/number of the space group (the rhombohedral settings
+     *            are numbered from 1001)
+     * @return number of symmetry directions
+     */
+    private static int directions(int index) {
+        int number = index % 1000;
+
+        if (number <= 15) // Triclinic and monoclinic
+            return 1;
+        if (number <= 74) // Orthorhombic
+            return 3;
+        if (number <= 88) // Tetragonal, e.g. P4/m
+            return 1;
+        if (number <= 142) // Tetragonal, e.g. P4/mmm
+            return 3;
+        if (number <= 148) // Trigonal, e.g. P-3
+            return 1;
+        if (number == 155 || number == 160 || number == 161 || number == 166
+                || number == 167) // Rhombohedral, e.g. R-3m
+            return 2;
+        if (number <= 167) // Trigonal, e.g. P-3m1
+            return 3;
+        if (number <= 176) // Hexagonal, e.g. P6/m
+            return 1;
+        if (number <= 194) // Hexagonal, e.g. P6/mmm
+            return 3;
+        if (number <= 206) // Cubic, e.g. Pm-3
+            return 2;
+        return 3; // Cubic, e.g. Pm-3m
+    }
+
+
+
+    /**
+     * Returns the row of the space group with the specified symbol.
+     * 
+     * @param symbol
+     *            Hermann-Mauguin symbol
+     * @return row of the space group or <code>-1</code> if the symbol is
+     *         unknown
+     */
+    public int find(String symbol) {
+        String key = normalize(symbol);
+        if (key == null)
+            return -1;
+
+        Integer row = rows.get(key);
+        if (row == null)
+            return -1;
+
+        // Rotation axes separated by whitespaces (e.g. P 4 2 2)
+        String[] tokens = tokenize(stripSetting(symbol));
+        if (tokens.length > 2 && tokens[0].length() == 1) {
+            int count = 0;
+            for (int i = 1; i < tokens.length; i++) {
+                if (tokens[i] == null)
+                    continue;
+                if (!tokens[i].matches("-?[0-9]+"))
+                    return row;
+                count++;
+            }
+
+            if (count > 1 && count != directions[row])
+                return -1;
+        }
+
+        return row;
+    }
+
+
+
+    /**
+     * Returns whether a Hermann-Mauguin symbol denotes the setting of the
+     * table, i.e. it is neither the symbol of another setting (e.g.
+     * <code>Pbnm</code>) nor followed by an origin choice (<code>:1</code> or
+     * <code>:2</code>).
+     * 
+     * @param symbol
+     *            Hermann-Mauguin symbol
+     * @return <code>true</code> if the symbol denotes the setting of the
+     *         table, <code>false</code> otherwise
+     */
+    public static boolean isStandard(String symbol) {
+        int colon = symbol.indexOf(':');
+        if (colon >= 0) {
+            String setting = symbol.substring(colon + 1).trim();
+            if (setting.equals("1") || setting.equals("2"))
+                return false;
+        }
+
+        String key = normalize(symbol);
+        for (String[] setting : SETTINGS)
+            if (setting[0].equals(key))
+                return false;
+
+        return true;
+    }
+
+
+
+    /**
+     * Returns the normalised form of a Hermann-Mauguin symbol.
+     * 
+     * @param symbol
+     *            Hermann-Mauguin symbol
+     * @return normalised symbol or <code>null</code> if the setting is not
+     *         supported
+     */
+    protected static String normalize(String symbol) {
+        String setting = null;
+        int colon = symbol.indexOf(':');
+        if (colon >= 0)
+            setting = symbol.substring(colon + 1).trim().toUpperCase();
+
+        String[] tokens = tokenize(stripSetting(symbol));
+        if (tokens[0].length() == 0)
+            return null;
+
+        // Short symbol
+        StringBuilder sb = new StringBuilder(symbol.length());
+        for (String token : tokens)
+            if (token != null)
+                sb.append(token.toLowerCase());
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+
+        if (setting != null) {
+            if (setting.equals("H")) {
+                if (sb.charAt(0) == 'R')
+                    sb.setCharAt(0, 'H');
+            } else if (!setting.equals("R") && !setting.equals("1")
+                    && !setting.equals("2") && !setting.equals("B"))
+                return null;
+        }
+
+        return sb.toString();
+    }
+
+
+
+    /**
+     * Returns a Hermann-Mauguin symbol without its setting.
+     * 
+     * @param symbol
+     *            Hermann-Mauguin symbol
+     * @return symbol without the setting
+     */
+    private static String stripSetting(String symbol) {
+        int colon = symbol.indexOf(':');
+        return colon >= 0 ? symbol.substring(0, colon) : symbol;
+    }
+
+
+
+    /**
+     * Splits a Hermann-Mauguin symbol (without setting) into the lattice
+     * symbol and the symmetry directions of its short symbol. The subscripts
+     * and the overbars are normalised. The directions removed from a full
+     * symbol are <code>null</code>. If the lattice symbol is not separated
+     * from the directions, the tokens are the ones written in the symbol.
+     * 
+     * @param symbol
+     *            Hermann-Mauguin symbol
+     * @return lattice symbol followed by the symmetry directions
+     */
+    private static String[] tokenize(String symbol) {
+        // Characters
+        StringBuilder sb = new StringBuilder(symbol.length());
+        for (int i = 0; i < symbol.length(); i++) {
+            char c = symbol.charAt(i);
+
+            if (c >= '\u2080' && c <= '\u2089') // Subscript digits
+                sb.append((char) ('0' + c - '\u2080'));
+            else if (c == '\u0304' || c == '\u0305') { // Combining overbars
+                int last = sb.length() - 1;
+                if (last >= 0 && Character.isDigit(sb.charAt(last)))
+                    sb.insert(last, '-');
+            } else if (c == '\u00AF' || c == '\u2212' || c == '\u2013')
+                sb.append('-');
+            else if (c == '_' || c == '{' || c == '}')
+                continue;
+            else if (Character.isWhitespace(c))
+                sb.append(' ');
+            else
+                sb.append(c);
+        }
+
+        // Overbars written as "bar"
+        for (int i = sb.indexOf("bar"); i >= 0; i = sb.indexOf("bar", i)) {
+            if (i + 3 < sb.length() && Character.isDigit(sb.charAt(i + 3)))
+                sb.replace(i, i + 3, "-");
+            else
+                i += 3;
+        }
+
+        String[] tokens = sb.toString().trim().split(" +");
+        if (tokens.length > 1 && tokens[0].length() == 1)
+            reduce(tokens);
+
+        return tokens;
+    }
+
+
+
+    /**
+     * Reduces the positions of a full Hermann-Mauguin symbol to the ones of
+     * the short symbol. The first token is the lattice symbol. The removed
+     * positions are replaced by <code>null</code>.
+     * 
+     * @param tokens
+     *            lattice symbol followed by the symmetry directions
+     */
+    private static void reduce(String[] tokens) {
+        // Monoclinic (unique axis b), e.g. P 1 21/c 1
+        if (tokens.length == 4 && tokens[1].equals("1")
+                && tokens[3].equals("1") && !tokens[2].equals("1")) {
+            tokens[1] = null;
+            tokens[3] = null;
+            return;
+        }
+
+        if (tokens.length < 3)
+            return;
+
+        // Axes of the primary direction are only kept in the tetragonal,
+        // trigonal and hexagonal symbols
+        boolean cubic = tokens[2].equals("3") || tokens[2].equals("-3");
+        boolean orthorhombic =
+                tokens.length == 4
+                        && (tokens[1].startsWith("2/") || tokens[1]
+                                .startsWith("21/"));
+
+        int start = (cubic || orthorhombic) ? 1 : 2;
+        for (int i = start; i < tokens.length; i++) {
+            int slash = tokens[i].indexOf('/');
+            if (slash >= 0)
+                tokens[i] = tokens[i].substring(slash + 1);
+        }
+    }
+}
@@ -376,6 +376,20 @@ public class UnitCellFactory {
 
 
 
+    /**
+     * Returns the Niggli reduced cell of a unit cell (see
+     * {@link CellTransformation#niggli(UnitCell)}).
+     * 
+     * @param unitCell
+     *            primitive unit cell
+     * @return Niggli reduced cell
+     */
+    public static UnitCell niggli(UnitCell unitCell) {
+        return CellTransformation.niggli(unitCell).transform(unitCell);
+    }
+
+
+
     /**
      * Returns a orthorhombic unit cell. * a != b != c * alpha = beta = gamma =
      * pi/2
@@ -394,6 +408,22 @@ public class UnitCellFactory {
 
 
 
+    /**
+     * Returns the primitive cell of a unit cell with the lattice of a space
+     * group (see {@link CellTransformation#primitive(SpaceGroup)}).
+     * 
+     * @param unitCell
+     *            conventional unit cell
+     * @param spaceGroup
+     *            space group of the unit cell
+     * @return primitive unit cell
+     */
+    public static UnitCell primitive(UnitCell unitCell, SpaceGroup spaceGroup) {
+        return CellTransformation.primitive(spaceGroup).transform(unitCell);
+    }
+
+
+
     /**
      * Returns a tetragonal unit cell. * a = b * alpha = beta = gamma = pi/2
      * 
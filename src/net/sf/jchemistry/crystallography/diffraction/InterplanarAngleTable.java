@@ -0,0 +1,516 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.core.UnitCell;
+import net.sf.jchemistry.util.MathUtils;
+
+import org.apache.commons.math.linear.LUDecompositionImpl;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.sqrt;
+import static net.sf.jchemistry.util.ArrayUtils.lowerBound;
+import static net.sf.jchemistry.util.ArrayUtils.upperBound;
+
+/**
+ * Lookup table of the interplanar angles between all pairs of planes of a
+ * set of reflectors. The table is used to index diffraction patterns by
+ * finding the pairs or triplets of planes matching measured angles.
+ * <p/>
+ * The plane normals and spacings are computed once with the inverse of the
+ * Cartesian matrix of the unit cell. The ordered pairs of planes are bucketed
+ * by the distinct plane spacings of their two planes and sorted by angle
+ * inside each bucket, so that a query only requires a binary search in the
+ * buckets matching the measured plane spacings. All pairs are also sorted by
+ * angle to answer queries without plane spacing information. Angles are in
+ * radians, between 0 and <code>PI</code>.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class InterplanarAngleTable {
+
+    /** Relative tolerance to consider two plane spacings as equal. */
+    private static final double SPACING_EPSILON = 1e-6;
+
+    /** Planes. */
+    private final Reflector[] planes;
+
+    /** Plane spacing of each plane. */
+    private final double[] planeSpacings;
+
+    /** Unit normal of each plane in Cartesian coordinates (x, y, z). */
+    private final double[] normals;
+
+    /** Distinct plane spacings in ascending order. */
+    private final double[] spacings;
+
+    /** Index of the distinct plane spacing of each plane. */
+    private final int[] spacingIndexes;
+
+    /** Offset of each bucket in the pair arrays. */
+    private final int[] bucketOffsets;
+
+    /** Angle of the ordered pairs, sorted by bucket and angle. */
+    private final double[] bucketAngles;
+
+    /** First plane of the ordered pairs, sorted by bucket and angle. */
+    private final int[] bucketFirsts;
+
+    /** Second plane of the ordered pairs, sorted by bucket and angle. */
+    private final int[] bucketSeconds;
+
+    /** Angle of the unordered pairs, sorted by angle. */
+    private final double[] angles;
+
+    /** First plane of the unordered pairs, sorted by angle. */
+    private final int[] firsts;
+
+    /** Second plane of the unordered pairs, sorted by angle. */
+    private final int[] seconds;
+
+
+
+    /**
+     * Creates a new <code>InterplanarAngleTable</code> for the specified
+     * planes. The number of stored pairs grows with the square of the number
+     * of planes.
+     * 
+     * @param unitCell
+     *            unit cell
+     * @param reflectors
+     *            planes (e.g. the reflectors of a phase)
+     */
+    public InterplanarAngleTable(UnitCell unitCell,
+            Collection<Reflector> reflectors) {
+        if (unitCell == null)
+            throw new NullPointerException("unit cell == null");
+        if (reflectors == null)
+            throw new NullPointerException("reflectors == null");
+
+        planes = reflectors.toArray(new Reflector[0]);
+        int size = planes.length;
+
+        // Normals and plane spacings
+        double[][] b =
+                new LUDecompositionImpl(unitCell.getCartesianMatrix()
+                        .transpose()).getSolver().getInverse().getData();
+
+        planeSpacings = new double[size];
+        normals = new double[size * 3];
+        for (int i = 0; i < size; i++) {
+            double h = planes[i].getH();
+            double k = planes[i].getK();
+            double l = planes[i].getL();
+
+            double x = b[0][0] * h + b[0][1] * k + b[0][2] * l;
+            double y = b[1][0] * h + b[1][1] * k + b[1][2] * l;
+            double z = b[2][0] * h + b[2][1] * k + b[2][2] * l;
+            double norm = sqrt(x * x + y * y + z * z);
+
+            planeSpacings[i] = 1.0 / norm;
+            normals[i * 3] = x / norm;
+            normals[i * 3 + 1] = y / norm;
+            normals[i * 3 + 2] = z / norm;
+        }
+
+        // Distinct plane spacings
+        double[] sorted = planeSpacings.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (count == 0
+                    || sorted[i] - sorted[count - 1] > SPACING_EPSILON
+                            * sorted[i])
+                sorted[count++] = sorted[i];
+        spacings = new double[count];
+        System.arraycopy(sorted, 0, spacings, 0, count);
+
+        spacingIndexes = new int[size];
+        for (int i = 0; i < size; i++)
+            spacingIndexes[i] =
+                    findSpacings(planeSpacings[i], SPACING_EPSILON
+                            * planeSpacings[i])[0];
+
+        // Ordered pairs by bucket
+        int bucketCount = count * count;
+        bucketOffsets = new int[bucketCount + 1];
+        for (int i = 0; i < size; i++)
+            for (int j = 0; j < size; j++)
+                if (i != j)
+                    bucketOffsets[getBucket(i, j) + 1]++;
+        for (int i = 0; i < bucketCount; i++)
+            bucketOffsets[i + 1] += bucketOffsets[i];
+
+        int pairCount = size * (size - 1);
+        bucketAngles = new double[pairCount];
+        bucketFirsts = new int[pairCount];
+        bucketSeconds = new int[pairCount];
+        int[] positions = bucketOffsets.clone();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i == j)
+                    continue;
+
+                int position = positions[getBucket(i, j)]++;
+                bucketAngles[position] = angle(i, j);
+                bucketFirsts[position] = i;
+                bucketSeconds[position] = j;
+            }
+        }
+
+        for (int i = 0; i < bucketCount; i++)
+            sortByAngle(bucketAngles, bucketFirsts, bucketSeconds,
+                    bucketOffsets[i], bucketOffsets[i + 1]);
+
+        // Unordered pairs
+        pairCount /= 2;
+        angles = new double[pairCount];
+        firsts = new int[pairCount];
+        seconds = new int[pairCount];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                angles[position] = angle(i, j);
+                firsts[position] = i;
+                seconds[position] = j;
+                position++;
+            }
+        }
+
+        sortByAngle(angles, firsts, seconds, 0, pairCount);
+    }
+
+
+
+    /**
+     * Sorts the pairs between the specified indexes by ascending angle.
+     * 
+     * @param angles
+     *            angles of the pairs
+     * @param firsts
+     *            first plane of the pairs
+     * @param seconds
+     *            second plane of the pairs
+     * @param from
+     *            first index (inclusive)
+     * @param to
+     *            last index (exclusive)
+     */
+    private static void sortByAngle(final double[] angles, int[] firsts,
+            int[] seconds, int from, int to) {
+        int length = to - from;
+        if (length < 2)
+            return;
+
+        Integer[] order = new Integer[length];
+        for (int i = 0; i < length; i++)
+            order[i] = from + i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(angles[o1], angles[o2]);
+            }
+        });
+
+        double[] sortedAngles = new double[length];
+        int[] sortedFirsts = new int[length];
+        int[] sortedSeconds = new int[length];
+        for (int i = 0; i < length; i++) {
+            sortedAngles[i] = angles[order[i]];
+            sortedFirsts[i] = firsts[order[i]];
+            sortedSeconds[i] = seconds[order[i]];
+        }
+
+        System.arraycopy(sortedAngles, 0, angles, from, length);
+        System.arraycopy(sortedFirsts, 0, firsts, from, length);
+        System.arraycopy(sortedSeconds, 0, seconds, from, length);
+    }
+
+
+
+    /**
+     * Returns the bucket of an ordered pair of planes.
+     * 
+     * @param plane1
+     *            index of the first plane
+     * @param plane2
+     *            index of the second plane
+     * @return index of the bucket
+     */
+    private int getBucket(int plane1, int plane2) {
+        return spacingIndexes[plane1] * spacings.length
+                + spacingIndexes[plane2];
+    }
+
+
+
+    /**
+     * Returns the number of planes.
+     * 
+     * @return number of planes
+     */
+    public int getPlaneCount() {
+        return planes.length;
+    }
+
+
+
+    /**
+     * Returns the plane at the specified index.
+     * 
+     * @param index
+     *            index of the plane
+     * @return plane
+     */
+    public Reflector getPlane(int index) {
+        return planes[index];
+    }
+
+
+
+    /**
+     * Returns the plane spacing of the plane at the specified index.
+     * 
+     * @param index
+     *            index of the plane
+     * @return plane spacing (in angstroms)
+     */
+    public double getPlaneSpacing(int index) {
+        return planeSpacings[index];
+    }
+
+
+
+    /**
+     * Returns the distinct plane spacings of the planes in ascending order.
+     * 
+     * @return distinct plane spacings (in angstroms)
+     */
+    public double[] getSpacings() {
+        return spacings;
+    }
+
+
+
+    /**
+     * Returns the number of unordered pairs of planes.
+     * 
+     * @return number of pairs
+     */
+    public int getPairCount() {
+        return angles.length;
+    }
+
+
+
+    /**
+     * Returns the angle between two planes of the table.
+     * 
+     * @param plane1
+     *            index of the first plane
+     * @param plane2
+     *            index of the second plane
+     * @return angle (in radians)
+     */
+    public double angle(int plane1, int plane2) {
+        int i = plane1 * 3;
+        int j = plane2 * 3;
+        double cos =
+                normals[i] * normals[j] + normals[i + 1] * normals[j + 1]
+                        + normals[i + 2] * normals[j + 2];
+        return MathUtils.acos(cos);
+    }
+
+
+
+    /**
+     * Returns the range of indexes of the distinct plane spacings within the
+     * tolerance of the specified plane spacing.
+     * 
+     * @param spacing
+     *            plane spacing
+     * @param tolerance
+     *            tolerance on the plane spacing
+     * @return first (inclusive) and last (exclusive) indexes
+     */
+    private int[] findSpacings(double spacing, double tolerance) {
+        return new int[] { lowerBound(spacings, 0, spacings.length,
+                spacing - tolerance),
+                upperBound(spacings, 0, spacings.length, spacing + tolerance) };
+    }
+
+
+
+    /**
+     * Returns the unordered pairs of planes whose angle is within the
+     * tolerance of the specified angle.
+     * 
+     * @param angle
+     *            angle (in radians)
+     * @param tolerance
+     *            tolerance on the angle (in radians)
+     * @return pairs of plane indexes, each as an array
+     *         <code>{plane1, plane2}</code>
+     */
+    public int[][] findPairs(double angle, double tolerance) {
+        int from = lowerBound(angles, 0, angles.length, angle - tolerance);
+        int to = upperBound(angles, from, angles.length, angle + tolerance);
+
+        int[][] pairs = new int[to - from][];
+        for (int i = from; i < to; i++)
+            pairs[i - from] = new int[] { firsts[i], seconds[i] };
+
+        return pairs;
+    }
+
+
+
+    /**
+     * Returns the ordered pairs of planes whose plane spacings and angle are
+     * within the tolerances of the specified values. The first plane of each
+     * pair matches <code>spacing1</code> and the second plane matches
+     * <code>spacing2</code>.
+     * 
+     * @param spacing1
+     *            plane spacing of the first plane (in angstroms)
+     * @param spacing2
+     *            plane spacing of the second plane (in angstroms)
+     * @param spacingTolerance
+     *            tolerance on the plane spacings (in angstroms)
+     * @param angle
+     *            angle between the planes (in radians)
+     * @param angleTolerance
+     *            tolerance on the angle (in radians)
+     * @return pairs of plane indexes, each as an array
+     *         <code>{plane1, plane2}</code>
+     */
+    public int[][] findPairs(double spacing1, double spacing2,
+            double spacingTolerance, double angle, double angleTolerance) {
+        List<int[]> pairs = new ArrayList<int[]>();
+
+        int[] range1 = findSpacings(spacing1, spacingTolerance);
+        int[] range2 = findSpacings(spacing2, spacingTolerance);
+        for (int s1 = range1[0]; s1 < range1[1]; s1++) {
+            for (int s2 = range2[0]; s2 < range2[1]; s2++) {
+                int bucket = s1 * spacings.length + s2;
+                int end = bucketOffsets[bucket + 1];
+                int from =
+                        lowerBound(bucketAngles, bucketOffsets[bucket], end,
+                                angle - angleTolerance);
+                int to =
+                        upperBound(bucketAngles, from, end, angle
+                                + angleTolerance);
+
+                for (int i = from; i < to; i++)
+                    pairs.add(new int[] { bucketFirsts[i], bucketSeconds[i] });
+            }
+        }
+
+        return pairs.toArray(new int[0][]);
+    }
+
+
+
+    /**
+     * Returns the triplets of planes whose plane spacings and angles are
+     * within the tolerances of the specified values. The candidates of the
+     * pairs (1, 2) and (1, 3) are found in the buckets and joined on the
+     * first plane; the angle (2, 3) is then verified directly.
+     * 
+     * @param spacing1
+     *            plane spacing of the first plane (in angstroms)
+     * @param spacing2
+     *            plane spacing of the second plane (in angstroms)
+     * @param spacing3
+     *            plane spacing of the third plane (in angstroms)
+     * @param spacingTolerance
+     *            tolerance on the plane spacings (in angstroms)
+     * @param angle12
+     *            angle between the first and second planes (in radians)
+     * @param angle13
+     *            angle between the first and third planes (in radians)
+     * @param angle23
+     *            angle between the second and third planes (in radians)
+     * @param angleTolerance
+     *            tolerance on the angles (in radians)
+     * @return triplets of plane indexes, each as an array
+     *         <code>{plane1, plane2, plane3}</code>
+     */
+    public int[][] findTriplets(double spacing1, double spacing2,
+            double spacing3, double spacingTolerance, double angle12,
+            double angle13, double angle23, double angleTolerance) {
+        int[][] pairs12 =
+                findPairs(spacing1, spacing2, spacingTolerance, angle12,
+                        angleTolerance);
+        if (pairs12.length == 0)
+            return new int[0][];
+
+        int[][] pairs13 =
+                findPairs(spacing1, spacing3, spacingTolerance, angle13,
+                        angleTolerance);
+        if (pairs13.length == 0)
+            return new int[0][];
+
+        // Group the pairs (1, 3) by first plane
+        Integer[] order = new Integer[pairs13.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        final int[][] pairs = pairs13;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return pairs[o1][0] - pairs[o2][0];
+            }
+        });
+        int[] keys = new int[order.length];
+        for (int i = 0; i < order.length; i++)
+            keys[i] = pairs13[order[i]][0];
+
+        List<int[]> triplets = new ArrayList<int[]>();
+        for (int[] pair12 : pairs12) {
+            int plane1 = pair12[0];
+            int plane2 = pair12[1];
+
+            int start = Arrays.binarySearch(keys, plane1);
+            if (start < 0)
+                continue;
+            while (start > 0 && keys[start - 1] == plane1)
+                start--;
+
+            for (int i = start; i < keys.length && keys[i] == plane1; i++) {
+                int plane3 = pairs13[order[i]][1];
+                if (plane3 == plane2)
+                    continue;
+                if (abs(angle(plane2, plane3) - angle23) <= angleTolerance)
+                    triplets.add(new int[] { plane1, plane2, plane3 });
+            }
+        }
+
+        return triplets.toArray(new int[0][]);
+    }
+
+}
@@ -0,0 +1,500 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.core.UnitCell;
+import net.sf.jchemistry.crystallography.orientation.FundamentalZoneReducer;
+import net.sf.jchemistry.util.ParallelUtils;
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+import org.apache.commons.math.geometry.Rotation;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.asin;
+import static java.lang.Math.atan;
+import static java.lang.Math.atan2;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+import static java.lang.Math.tan;
+
+/**
+ * Kinematical simulation of the geometry of the Kikuchi bands of electron
+ * backscatter diffraction (EBSD) patterns.
+ * <p/>
+ * The most intense reflectors are selected once and their unit plane normals
+ * and Bragg angles are stored in primitive arrays. For an orientation, the
+ * normals are rotated into the laboratory frame, where the detector is normal
+ * to <code>+z</code>, and each band is projected on the gnomonic plane
+ * <code>z = 1</code>, whose origin is the pattern centre. Lengths on this
+ * plane are in units of the detector distance.
+ * <p/>
+ * A band is described by {@link #BAND_SIZE} values: the angle
+ * <code>&phi;</code> of its normal on the plane, the signed distance
+ * <code>&rho;</code> of its centre line from the pattern centre (Hough
+ * parameters, <code>x cos&phi; + y sin&phi; = &rho;</code>) and the
+ * distances of its two edges, at <code>&plusmn;&theta;<sub>B</sub></code>
+ * from the plane. The values of a band parallel to the detector are
+ * <code>NaN</code>.
+ * <p/>
+ * As in the {@link net.sf.jchemistry.crystallography.orientation} package, an
+ * orientation <code>q</code> rotates the laboratory frame into the crystal
+ * frame, i.e. a crystal vector <code>v</code> is expressed in the laboratory
+ * frame by <code>q.applyInverseTo(v)</code>. Orientations are given either as
+ * {@link Rotation} or as quaternions stored in a flat array (<code>q0, q1,
+ * q2, q3</code> of each orientation one after the other).
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class KikuchiBandSimulator {
+
+    /** Number of values describing a band. */
+    public static final int BAND_SIZE = 4;
+
+    /** Default number of orientations per chunk in parallel. */
+    public static final int CHUNK_SIZE = 1024;
+
+    /** Tolerance to consider a band as parallel to the detector. */
+    private static final double EPSILON = 1e-12;
+
+    /** Reflector of each band. */
+    private final Reflector[] reflectors;
+
+    /** Unit plane normal of each band in the crystal frame (x, y, z). */
+    private final double[] normals;
+
+    /** Bragg angle of each band. */
+    private final double[] braggAngles;
+
+    /** Sine of the Bragg angle of each band. */
+    private final double[] sinBraggAngles;
+
+    /** Relative intensity of each band. */
+    private final double[] intensities;
+
+    /** Wavelength (in angstroms). */
+    private final double wavelength;
+
+
+
+    /**
+     * Creates a new <code>KikuchiBandSimulator</code>.
+     * 
+     * @param unitCell
+     *            unit cell
+     * @param reflectors
+     *            reflectors (e.g. the reflectors of a phase)
+     * @param wavelength
+     *            wavelength of the electrons (in angstroms)
+     * @param maxBands
+     *            maximum number of bands, the most intense reflectors are
+     *            kept
+     * @throws IllegalArgumentException
+     *             if the wavelength is not greater than zero
+     * @throws IllegalArgumentException
+     *             if the maximum number of bands is less than 1
+     */
+    public KikuchiBandSimulator(UnitCell unitCell,
+            Collection<Reflector> reflectors, double wavelength, int maxBands) {
+        if (unitCell == null)
+            throw new NullPointerException("unit cell == null");
+        if (reflectors == null)
+            throw new NullPointerException("reflectors == null");
+        if (wavelength <= 0)
+            throw new IllegalArgumentException("Wavelength (" + wavelength
+                    + ") must be greater than 0");
+        if (maxBands < 1)
+            throw new IllegalArgumentException("Maximum number of bands ("
+                    + maxBands + ") must be greater or equal to 1");
+
+        this.wavelength = wavelength;
+
+        // Most intense reflectors which can diffract
+        final Reflector[] refls = reflectors.toArray(new Reflector[0]);
+        double[] vectors = ReciprocalLatticeIndex.vectors(unitCell, refls);
+        Integer[] order = new Integer[refls.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(refls[o2].getIntensity(),
+                        refls[o1].getIntensity());
+            }
+        });
+
+        Reflector[] tmpReflectors = new Reflector[Math.min(maxBands,
+                order.length)];
+        double[] tmpNormals = new double[tmpReflectors.length * 3];
+        double[] tmpAngles = new double[tmpReflectors.length];
+        double[] tmpIntensities = new double[tmpReflectors.length];
+        int count = 0;
+        for (int n = 0; n < order.length && count < tmpReflectors.length; n++) {
+            int i = order[n];
+            double x = vectors[i * 3];
+            double y = vectors[i * 3 + 1];
+            double z = vectors[i * 3 + 2];
+            double length = sqrt(x * x + y * y + z * z);
+
+            // Bragg's law: sin(theta) = lambda / 2d
+            double sinTheta = wavelength * length / 2.0;
+            if (sinTheta > 1.0)
+                continue;
+
+            tmpReflectors[count] = refls[i];
+            tmpNormals[count * 3] = x / length;
+            tmpNormals[count * 3 + 1] = y / length;
+            tmpNormals[count * 3 + 2] = z / length;
+            tmpAngles[count] = asin(sinTheta);
+            tmpIntensities[count] = refls[i].getIntensity();
+            count++;
+        }
+
+        this.reflectors = Arrays.copyOf(tmpReflectors, count);
+        normals = Arrays.copyOf(tmpNormals, count * 3);
+        braggAngles = Arrays.copyOf(tmpAngles, count);
+        intensities = Arrays.copyOf(tmpIntensities, count);
+
+        sinBraggAngles = new double[count];
+        double max = 0.0;
+        for (int i = 0; i < count; i++) {
+            sinBraggAngles[i] = sin(braggAngles[i]);
+            max = Math.max(max, intensities[i]);
+        }
+        if (max > 0)
+            for (int i = 0; i < count; i++)
+                intensities[i] /= max;
+    }
+
+
+
+    /**
+     * Returns the number of bands.
+     * 
+     * @return number of bands
+     */
+    public int getBandCount() {
+        return reflectors.length;
+    }
+
+
+
+    /**
+     * Returns the reflector of the specified band. The bands are sorted by
+     * descending intensity.
+     * 
+     * @param index
+     *            index of the band
+     * @return reflector
+     */
+    public Reflector getReflector(int index) {
+        return reflectors[index];
+    }
+
+
+
+    /**
+     * Returns the Bragg angle of the specified band, i.e. half of its angular
+     * width.
+     * 
+     * @param index
+     *            index of the band
+     * @return Bragg angle (in radians)
+     */
+    public double getBraggAngle(int index) {
+        return braggAngles[index];
+    }
+
+
+
+    /**
+     * Returns the intensity of the specified band, relative to the most
+     * intense one.
+     * 
+     * @param index
+     *            index of the band
+     * @return intensity, between 0 and 1
+     */
+    public double getIntensity(int index) {
+        return intensities[index];
+    }
+
+
+
+    /**
+     * Returns the wavelength.
+     * 
+     * @return wavelength (in angstroms)
+     */
+    public double getWavelength() {
+        return wavelength;
+    }
+
+
+
+    /**
+     * Rotates the plane normals into the laboratory frame.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @param index
+     *            index of the orientation
+     * @param out
+     *            array where to store the normals (x, y, z of each band)
+     */
+    private void rotate(double[] quaternions, int index, double[] out) {
+        int o = index * 4;
+        double q0 = quaternions[o];
+        double q1 = quaternions[o + 1];
+        double q2 = quaternions[o + 2];
+        double q3 = quaternions[o + 3];
+
+        // Matrix of Rotation#applyInverseTo(Vector3D)
+        double m00 = 1.0 - 2.0 * (q2 * q2 + q3 * q3);
+        double m01 = 2.0 * (q1 * q2 - q0 * q3);
+        double m02 = 2.0 * (q1 * q3 + q0 * q2);
+        double m10 = 2.0 * (q1 * q2 + q0 * q3);
+        double m11 = 1.0 - 2.0 * (q1 * q1 + q3 * q3);
+        double m12 = 2.0 * (q2 * q3 - q0 * q1);
+        double m20 = 2.0 * (q1 * q3 - q0 * q2);
+        double m21 = 2.0 * (q2 * q3 + q0 * q1);
+        double m22 = 1.0 - 2.0 * (q1 * q1 + q2 * q2);
+
+        for (int i = 0; i < normals.length; i += 3) {
+            double x = normals[i];
+            double y = normals[i + 1];
+            double z = normals[i + 2];
+            out[i] = m00 * x + m01 * y + m02 * z;
+            out[i + 1] = m10 * x + m11 * y + m12 * z;
+            out[i + 2] = m20 * x + m21 * y + m22 * z;
+        }
+    }
+
+
+
+    /**
+     * Computes the bands of an orientation.
+     * 
+     * @param orientation
+     *            orientation
+     * @return bands ({@link #BAND_SIZE} values per band)
+     */
+    public double[] getBands(Rotation orientation) {
+        double[] q =
+                new double[] { orientation.getQ0(), orientation.getQ1(),
+                        orientation.getQ2(), orientation.getQ3() };
+        double[] bands = new double[reflectors.length * BAND_SIZE];
+        getBands(q, 0, bands, 0);
+        return bands;
+    }
+
+
+
+    /**
+     * Computes the bands of an orientation.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @param index
+     *            index of the orientation
+     * @param out
+     *            array where to store the bands ({@link #BAND_SIZE} values
+     *            per band)
+     * @param offset
+     *            index of the first value in the array
+     */
+    public void getBands(double[] quaternions, int index, double[] out,
+            int offset) {
+        double[] lab = new double[normals.length];
+        rotate(quaternions, index, lab);
+
+        for (int i = 0; i < reflectors.length; i++) {
+            double nx = lab[i * 3];
+            double ny = lab[i * 3 + 1];
+            double nz = lab[i * 3 + 2];
+            double r = sqrt(nx * nx + ny * ny);
+            int o = offset + i * BAND_SIZE;
+
+            if (r < EPSILON) {
+                out[o] = Double.NaN;
+                out[o + 1] = Double.NaN;
+                out[o + 2] = Double.NaN;
+                out[o + 3] = Double.NaN;
+                continue;
+            }
+
+            // Centre line: nx x + ny y + nz = 0
+            double rho = -nz / r;
+            double alpha = atan(rho);
+
+            out[o] = atan2(ny, nx);
+            out[o + 1] = rho;
+            out[o + 2] = tan(alpha - braggAngles[i]);
+            out[o + 3] = tan(alpha + braggAngles[i]);
+        }
+    }
+
+
+
+    /**
+     * Computes the bands of a range of orientations.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @param bands
+     *            array where to store the bands of each orientation
+     *            ({@link #BAND_SIZE} values per band, one orientation after
+     *            the other)
+     * @param from
+     *            index of the first orientation (inclusive)
+     * @param to
+     *            index of the last orientation (exclusive)
+     */
+    public void getBands(double[] quaternions, double[] bands, int from,
+            int to) {
+        int stride = reflectors.length * BAND_SIZE;
+        for (int i = from; i < to; i++)
+            getBands(quaternions, i, bands, i * stride);
+    }
+
+
+
+    /**
+     * Computes the bands of orientations.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @return bands of each orientation ({@link #BAND_SIZE} values per band,
+     *         one orientation after the other)
+     */
+    public double[] getBands(double[] quaternions) {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+
+        int size = quaternions.length / 4;
+        double[] bands = new double[size * reflectors.length * BAND_SIZE];
+        getBands(quaternions, bands, 0, size);
+        return bands;
+    }
+
+
+
+    /**
+     * Computes the bands of orientations in parallel.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @param executor
+     *            executor service running the chunks
+     * @return bands of each orientation ({@link #BAND_SIZE} values per band,
+     *         one orientation after the other)
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public double[] getBands(final double[] quaternions,
+            ExecutorService executor) throws InterruptedException {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+
+        int size = quaternions.length / 4;
+        final double[] bands = new double[size * reflectors.length * BAND_SIZE];
+        ParallelUtils.run(executor, size, CHUNK_SIZE, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                getBands(quaternions, bands, from, to);
+            }
+        });
+        return bands;
+    }
+
+
+
+    /**
+     * Rasterises the bands of an orientation on a detector. The intensity of
+     * a pixel is the sum of the intensities of the bands containing its
+     * direction.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @param index
+     *            index of the orientation
+     * @param width
+     *            width of the detector (in pixels)
+     * @param height
+     *            height of the detector (in pixels)
+     * @param centreX
+     *            horizontal position of the pattern centre (in pixels)
+     * @param centreY
+     *            vertical position of the pattern centre (in pixels)
+     * @param distance
+     *            detector distance (in pixels)
+     * @return intensity of each pixel (row by row)
+     * @throws IllegalArgumentException
+     *             if the width or height is negative
+     * @throws IllegalArgumentException
+     *             if the detector distance is not greater than zero
+     */
+    public double[] rasterize(double[] quaternions, int index, int width,
+            int height, double centreX, double centreY, double distance) {
+        if (width < 0)
+            throw new IllegalArgumentException("Width (" + width
+                    + ") must be greater or equal to 0");
+        if (height < 0)
+            throw new IllegalArgumentException("Height (" + height
+                    + ") must be greater or equal to 0");
+        if (distance <= 0)
+            throw new IllegalArgumentException("Distance (" + distance
+                    + ") must be greater than 0");
+
+        double[] lab = new double[normals.length];
+        rotate(quaternions, index, lab);
+
+        double[] raster = new double[width * height];
+        for (int py = 0; py < height; py++) {
+            double y = (py - centreY) / distance;
+            for (int px = 0; px < width; px++) {
+                double x = (px - centreX) / distance;
+                double norm = 1.0 / sqrt(x * x + y * y + 1.0);
+
+                double value = 0.0;
+                for (int i = 0; i < reflectors.length; i++) {
+                    int j = i * 3;
+                    double dot =
+                            (lab[j] * x + lab[j + 1] * y + lab[j + 2]) * norm;
+                    if (abs(dot) <= sinBraggAngles[i])
+                        value += intensities[i];
+                }
+                raster[py * width + px] = value;
+            }
+        }
+
+        return raster;
+    }
+
+}
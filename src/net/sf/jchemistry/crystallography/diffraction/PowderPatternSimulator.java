@@ -0,0 +1,406 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.core.UnitCell;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.abs;
+import static java.lang.Math.asin;
+import static java.lang.Math.cos;
+import static java.lang.Math.exp;
+import static java.lang.Math.log;
+import static java.lang.Math.sqrt;
+
+/**
+ * Kinematical simulation of powder diffraction patterns.
+ * <p/>
+ * The reflectors are merged once into families of equivalent reflections,
+ * i.e. reflections with the same plane spacing and the same intensity, which
+ * is the case of all the reflections related by symmetry. Each family keeps
+ * its multiplicity, where a reflector counts for the reflection and its
+ * Friedel pair. For a wavelength, the intensity of a family is its
+ * multiplicity times the intensity of one reflection, optionally multiplied
+ * by the Lorentz-polarisation factor of an unpolarised beam,
+ * <code>(1 + cos<sup>2</sup>2&theta;) / (sin<sup>2</sup>&theta;
+ * cos&theta;)</code>.
+ * <p/>
+ * The pattern is rendered on a regular <code>2&theta;</code> grid with
+ * pseudo-Voigt profiles of unit area truncated at a multiple of their full
+ * width at half maximum, so that the cost is proportional to the number of
+ * families times the number of grid points covered by a profile. All angles
+ * are in radians.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class PowderPatternSimulator {
+
+    /** Default truncation of the profiles in multiples of their FWHM. */
+    public static final double TRUNCATION = 10.0;
+
+    /** Relative tolerance to consider two reflections as equivalent. */
+    private static final double EPSILON = 1e-6;
+
+    /** Representative reflector of each family, sorted by plane spacing. */
+    private final Reflector[] families;
+
+    /** Plane spacing of each family (in angstroms), in descending order. */
+    private final double[] planeSpacings;
+
+    /** Multiplicity of each family. */
+    private final int[] multiplicities;
+
+    /** Intensity of one reflection of each family. */
+    private final double[] intensities;
+
+    /** Whether to apply the Lorentz-polarisation factor. */
+    private final boolean lorentzPolarization;
+
+
+
+    /**
+     * Creates a new <code>PowderPatternSimulator</code>.
+     * 
+     * @param unitCell
+     *            unit cell
+     * @param reflectors
+     *            reflectors, including all the equivalent reflections (e.g.
+     *            from <code>Reflectors.generate</code>)
+     * @param lorentzPolarization
+     *            whether to apply the Lorentz-polarisation factor (X-rays)
+     */
+    public PowderPatternSimulator(UnitCell unitCell,
+            Collection<Reflector> reflectors, boolean lorentzPolarization) {
+        if (unitCell == null)
+            throw new NullPointerException("unit cell == null");
+        if (reflectors == null)
+            throw new NullPointerException("reflectors == null");
+
+        this.lorentzPolarization = lorentzPolarization;
+
+        final Reflector[] refls = reflectors.toArray(new Reflector[0]);
+        double[] vectors = ReciprocalLatticeIndex.vectors(unitCell, refls);
+        final double[] spacings = new double[refls.length];
+        Integer[] order = new Integer[refls.length];
+        for (int i = 0; i < refls.length; i++) {
+            double x = vectors[i * 3];
+            double y = vectors[i * 3 + 1];
+            double z = vectors[i * 3 + 2];
+            spacings[i] = 1.0 / sqrt(x * x + y * y + z * z);
+            order[i] = i;
+        }
+
+        // Sort by descending plane spacing, then intensity
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int cmp = Double.compare(spacings[o2], spacings[o1]);
+                if (cmp != 0)
+                    return cmp;
+                return Double.compare(refls[o2].getIntensity(),
+                        refls[o1].getIntensity());
+            }
+        });
+
+        // Merge the equivalent reflections
+        Reflector[] tmpFamilies = new Reflector[refls.length];
+        double[] tmpSpacings = new double[refls.length];
+        int[] tmpMultiplicities = new int[refls.length];
+        double[] tmpIntensities = new double[refls.length];
+        int count = 0;
+        for (int n = 0; n < order.length; n++) {
+            int i = order[n];
+            Reflector refl = refls[i];
+
+            // Compare with the families of the same plane spacing
+            int family = -1;
+            double tolerance = EPSILON * spacings[i];
+            for (int f = count - 1; f >= 0
+                    && tmpSpacings[f] - spacings[i] <= tolerance; f--) {
+                if (abs(tmpIntensities[f] - refl.getIntensity()) <= EPSILON
+                        * Math.max(tmpIntensities[f], refl.getIntensity())) {
+                    family = f;
+                    break;
+                }
+            }
+
+            if (family < 0) {
+                tmpFamilies[count] = refl;
+                tmpSpacings[count] = spacings[i];
+                tmpIntensities[count] = refl.getIntensity();
+                family = count;
+                count++;
+            } else if (isPreferred(refl, tmpFamilies[family])) {
+                tmpFamilies[family] = refl;
+            }
+
+            // A reflector stands for the reflections hkl and -h-k-l
+            tmpMultiplicities[family] += 2;
+        }
+
+        families = Arrays.copyOf(tmpFamilies, count);
+        planeSpacings = Arrays.copyOf(tmpSpacings, count);
+        multiplicities = Arrays.copyOf(tmpMultiplicities, count);
+        intensities = Arrays.copyOf(tmpIntensities, count);
+    }
+
+
+
+    /**
+     * Returns whether the first reflector is preferred to the second one as
+     * representative of a family, i.e. it has the largest indices.
+     * 
+     * @param refl1
+     *            first reflector
+     * @param refl2
+     *            second reflector
+     * @return <code>true</code> if the first reflector is preferred
+     */
+    private static boolean isPreferred(Reflector refl1, Reflector refl2) {
+        if (refl1.getH() != refl2.getH())
+            return refl1.getH() > refl2.getH();
+        if (refl1.getK() != refl2.getK())
+            return refl1.getK() > refl2.getK();
+        return refl1.getL() > refl2.getL();
+    }
+
+
+
+    /**
+     * Returns the number of families of equivalent reflections.
+     * 
+     * @return number of families
+     */
+    public int getFamilyCount() {
+        return families.length;
+    }
+
+
+
+    /**
+     * Returns the representative reflector of the specified family. The
+     * families are sorted by descending plane spacing.
+     * 
+     * @param index
+     *            index of the family
+     * @return reflector with the largest indices in the family
+     */
+    public Reflector getFamily(int index) {
+        return families[index];
+    }
+
+
+
+    /**
+     * Returns the plane spacing of the specified family.
+     * 
+     * @param index
+     *            index of the family
+     * @return plane spacing (in angstroms)
+     */
+    public double getPlaneSpacing(int index) {
+        return planeSpacings[index];
+    }
+
+
+
+    /**
+     * Returns the multiplicity of the specified family.
+     * 
+     * @param index
+     *            index of the family
+     * @return multiplicity
+     */
+    public int getMultiplicity(int index) {
+        return multiplicities[index];
+    }
+
+
+
+    /**
+     * Returns the diffraction angle <code>2&theta;</code> of each family.
+     * The angle of the families which cannot diffract at this wavelength is
+     * <code>NaN</code>.
+     * 
+     * @param wavelength
+     *            wavelength (in angstroms)
+     * @return diffraction angle <code>2&theta;</code> of each family (in
+     *         radians)
+     */
+    public double[] getPeakPositions(double wavelength) {
+        double[] positions = new double[families.length];
+        for (int i = 0; i < families.length; i++) {
+            double sinTheta = wavelength / (2.0 * planeSpacings[i]);
+            positions[i] = sinTheta <= 1.0 ? 2.0 * asin(sinTheta) : Double.NaN;
+        }
+        return positions;
+    }
+
+
+
+    /**
+     * Returns the integrated intensity of each family, i.e. the multiplicity
+     * times the intensity of one reflection and the Lorentz-polarisation
+     * factor if enabled. The intensity of the families which cannot diffract
+     * at this wavelength is zero.
+     * 
+     * @param wavelength
+     *            wavelength (in angstroms)
+     * @return integrated intensity of each family
+     */
+    public double[] getPeakIntensities(double wavelength) {
+        double[] peaks = new double[families.length];
+        for (int i = 0; i < families.length; i++) {
+            double sinTheta = wavelength / (2.0 * planeSpacings[i]);
+            if (sinTheta > 1.0)
+                continue;
+
+            double intensity = multiplicities[i] * intensities[i];
+            if (lorentzPolarization) {
+                double theta = asin(sinTheta);
+                double cos2Theta = cos(2.0 * theta);
+                intensity *=
+                        (1.0 + cos2Theta * cos2Theta)
+                                / (sinTheta * sinTheta * cos(theta));
+            }
+            peaks[i] = intensity;
+        }
+        return peaks;
+    }
+
+
+
+    /**
+     * Simulates a powder pattern with the default truncation of the profiles.
+     * 
+     * @param wavelength
+     *            wavelength (in angstroms)
+     * @param start
+     *            <code>2&theta;</code> of the first point of the grid (in
+     *            radians)
+     * @param step
+     *            step of the grid (in radians)
+     * @param count
+     *            number of points of the grid
+     * @param fwhm
+     *            full width at half maximum of the profiles (in radians)
+     * @param eta
+     *            fraction of Lorentzian in the pseudo-Voigt profiles, between
+     *            0 (Gaussian) and 1 (Lorentzian)
+     * @return intensity at each point of the grid
+     */
+    public double[] simulate(double wavelength, double start, double step,
+            int count, double fwhm, double eta) {
+        return simulate(wavelength, start, step, count, fwhm, eta,
+                TRUNCATION);
+    }
+
+
+
+    /**
+     * Simulates a powder pattern.
+     * 
+     * @param wavelength
+     *            wavelength (in angstroms)
+     * @param start
+     *            <code>2&theta;</code> of the first point of the grid (in
+     *            radians)
+     * @param step
+     *            step of the grid (in radians)
+     * @param count
+     *            number of points of the grid
+     * @param fwhm
+     *            full width at half maximum of the profiles (in radians)
+     * @param eta
+     *            fraction of Lorentzian in the pseudo-Voigt profiles, between
+     *            0 (Gaussian) and 1 (Lorentzian)
+     * @param truncation
+     *            half width of the profiles in multiples of their FWHM
+     * @return intensity at each point of the grid
+     * @throws IllegalArgumentException
+     *             if the wavelength, step, FWHM or truncation is not greater
+     *             than zero
+     * @throws IllegalArgumentException
+     *             if the number of points is negative
+     * @throws IllegalArgumentException
+     *             if eta is not between 0 and 1
+     */
+    public double[] simulate(double wavelength, double start, double step,
+            int count, double fwhm, double eta, double truncation) {
+        if (wavelength <= 0)
+            throw new IllegalArgumentException("Wavelength (" + wavelength
+                    + ") must be greater than 0");
+        if (step <= 0)
+            throw new IllegalArgumentException("Step (" + step
+                    + ") must be greater than 0");
+        if (count < 0)
+            throw new IllegalArgumentException("Number of points (" + count
+                    + ") must be greater or equal to 0");
+        if (fwhm <= 0)
+            throw new IllegalArgumentException("FWHM (" + fwhm
+                    + ") must be greater than 0");
+        if (eta < 0 || eta > 1)
+            throw new IllegalArgumentException("Eta (" + eta
+                    + ") must be between [0, 1]");
+        if (truncation <= 0)
+            throw new IllegalArgumentException("Truncation (" + truncation
+                    + ") must be greater than 0");
+
+        double[] positions = getPeakPositions(wavelength);
+        double[] peaks = getPeakIntensities(wavelength);
+        double[] pattern = new double[count];
+
+        // Profile constants
+        double gaussianNorm = (1.0 - eta) * sqrt(4.0 * log(2.0) / PI) / fwhm;
+        double gaussianFactor = -4.0 * log(2.0) / (fwhm * fwhm);
+        double lorentzianNorm = eta * 2.0 / (PI * fwhm);
+        double lorentzianFactor = 4.0 / (fwhm * fwhm);
+        double halfWidth = truncation * fwhm;
+
+        for (int p = 0; p < positions.length; p++) {
+            double position = positions[p];
+            if (Double.isNaN(position) || peaks[p] == 0.0)
+                continue;
+
+            int from = (int) Math.ceil((position - halfWidth - start) / step);
+            int to = (int) Math.floor((position + halfWidth - start) / step);
+            from = Math.max(from, 0);
+            to = Math.min(to, count - 1);
+
+            double peak = peaks[p];
+            for (int i = from; i <= to; i++) {
+                double x = start + i * step - position;
+                double x2 = x * x;
+                double gaussian = gaussianNorm * exp(gaussianFactor * x2);
+                double lorentzian =
+                        lorentzianNorm / (1.0 + lorentzianFactor * x2);
+                pattern[i] += peak * (gaussian + lorentzian);
+            }
+        }
+
+        return pattern;
+    }
+
+}
@@ -0,0 +1,414 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.core.UnitCell;
+
+import org.apache.commons.math.linear.LUDecompositionImpl;
+
+import static java.lang.Math.max;
+
+/**
+ * Spatial index of Cartesian reciprocal lattice vectors to find the vectors
+ * close to the Ewald sphere.
+ * <p/>
+ * The excitation error of a vector <code>g</code> for a unit beam direction
+ * <code>B</code> and a wavelength <code>&lambda;</code> is
+ * <code>s = -(B&middot;g + &lambda; g<sup>2</sup> / 2)</code>. The condition
+ * <code>|s| &lt;= &epsilon;</code> is equivalent to the distance between
+ * <code>g</code> and the centre of the Ewald sphere,
+ * <code>-B / &lambda;</code>, lying inside a spherical shell. The vectors are
+ * stored in a balanced k-d tree, split at the median of the axis of largest
+ * extent, whose nodes keep their bounding box. A query only visits the nodes
+ * whose bounding box intersects the shell.
+ * <p/>
+ * The tree is implicit: the vectors are reordered in flat primitive arrays
+ * and the node <code>n</code> has the children <code>2n + 1</code> and
+ * <code>2n + 2</code>.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class ReciprocalLatticeIndex {
+
+    /** Default maximum number of vectors in a leaf. */
+    public static final int LEAF_SIZE = 16;
+
+
+
+    /**
+     * Returns the Cartesian reciprocal lattice vector of the reflectors, i.e.
+     * <code>(M<sup>T</sup>)<sup>-1</sup> (h, k, l)</code> where
+     * <code>M</code> is the Cartesian matrix of the unit cell.
+     * 
+     * @param unitCell
+     *            unit cell
+     * @param reflectors
+     *            reflectors
+     * @return vectors (x, y, z of each reflector in inverse angstroms)
+     */
+    public static double[] vectors(UnitCell unitCell, Reflector[] reflectors) {
+        if (unitCell == null)
+            throw new NullPointerException("unit cell == null");
+        if (reflectors == null)
+            throw new NullPointerException("reflectors == null");
+
+        double[][] b =
+                new LUDecompositionImpl(unitCell.getCartesianMatrix()
+                        .transpose()).getSolver().getInverse().getData();
+
+        double[] vectors = new double[reflectors.length * 3];
+        for (int i = 0; i < reflectors.length; i++) {
+            double h = reflectors[i].getH();
+            double k = reflectors[i].getK();
+            double l = reflectors[i].getL();
+
+            vectors[i * 3] = b[0][0] * h + b[0][1] * k + b[0][2] * l;
+            vectors[i * 3 + 1] = b[1][0] * h + b[1][1] * k + b[1][2] * l;
+            vectors[i * 3 + 2] = b[2][0] * h + b[2][1] * k + b[2][2] * l;
+        }
+
+        return vectors;
+    }
+
+    /** Maximum number of vectors in a leaf. */
+    private final int leafSize;
+
+    /** x coordinate of the vectors, in tree order. */
+    private final double[] xs;
+
+    /** y coordinate of the vectors, in tree order. */
+    private final double[] ys;
+
+    /** z coordinate of the vectors, in tree order. */
+    private final double[] zs;
+
+    /** Original index of the vectors, in tree order. */
+    private final int[] indexes;
+
+    /** Bounding box of each node (min x, y, z, max x, y, z). */
+    private final double[] boxes;
+
+
+
+    /**
+     * Creates a new <code>ReciprocalLatticeIndex</code> with the default leaf
+     * size.
+     * 
+     * @param vectors
+     *            Cartesian reciprocal lattice vectors (x, y, z of each vector)
+     * @see #vectors(UnitCell, Reflector[])
+     */
+    public ReciprocalLatticeIndex(double[] vectors) {
+        this(vectors, LEAF_SIZE);
+    }
+
+
+
+    /**
+     * Creates a new <code>ReciprocalLatticeIndex</code>.
+     * 
+     * @param vectors
+     *            Cartesian reciprocal lattice vectors (x, y, z of each vector)
+     * @param leafSize
+     *            maximum number of vectors in a leaf
+     * @throws IllegalArgumentException
+     *             if the length of the array is not a multiple of 3
+     * @throws IllegalArgumentException
+     *             if the leaf size is less than 1
+     */
+    public ReciprocalLatticeIndex(double[] vectors, int leafSize) {
+        if (vectors == null)
+            throw new NullPointerException("vectors == null");
+        if (vectors.length % 3 != 0)
+            throw new IllegalArgumentException("Length of the array ("
+                    + vectors.length + ") must be a multiple of 3");
+        if (leafSize < 1)
+            throw new IllegalArgumentException("Leaf size (" + leafSize
+                    + ") must be greater or equal to 1");
+
+        this.leafSize = leafSize;
+
+        int size = vectors.length / 3;
+        xs = new double[size];
+        ys = new double[size];
+        zs = new double[size];
+        indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = vectors[i * 3];
+            ys[i] = vectors[i * 3 + 1];
+            zs[i] = vectors[i * 3 + 2];
+            indexes[i] = i;
+        }
+
+        int leaves = 1;
+        while ((long) leaves * leafSize < size)
+            leaves *= 2;
+        boxes = new double[(2 * leaves - 1) * 6];
+
+        if (size > 0)
+            build(0, 0, size);
+    }
+
+
+
+    /**
+     * Builds the node covering the specified range of vectors and its
+     * children.
+     * 
+     * @param node
+     *            node
+     * @param lo
+     *            index of the first vector (inclusive)
+     * @param hi
+     *            index of the last vector (exclusive)
+     */
+    private void build(int node, int lo, int hi) {
+        int o = node * 6;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = lo; i < hi; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            minZ = Math.min(minZ, zs[i]);
+            maxX = max(maxX, xs[i]);
+            maxY = max(maxY, ys[i]);
+            maxZ = max(maxZ, zs[i]);
+        }
+        boxes[o] = minX;
+        boxes[o + 1] = minY;
+        boxes[o + 2] = minZ;
+        boxes[o + 3] = maxX;
+        boxes[o + 4] = maxY;
+        boxes[o + 5] = maxZ;
+
+        if (hi - lo <= leafSize)
+            return;
+
+        double[] axis;
+        double dx = maxX - minX;
+        double dy = maxY - minY;
+        double dz = maxZ - minZ;
+        if (dx >= dy && dx >= dz)
+            axis = xs;
+        else if (dy >= dz)
+            axis = ys;
+        else
+            axis = zs;
+
+        int mid = (lo + hi) >>> 1;
+        select(axis, lo, hi - 1, mid);
+
+        build(2 * node + 1, lo, mid);
+        build(2 * node + 2, mid, hi);
+    }
+
+
+
+    /**
+     * Partially sorts the vectors so that the vector at the specified rank is
+     * the one of a full sort along the axis (quickselect).
+     * 
+     * @param axis
+     *            coordinates along the axis
+     * @param left
+     *            index of the first vector (inclusive)
+     * @param right
+     *            index of the last vector (inclusive)
+     * @param rank
+     *            rank
+     */
+    private void select(double[] axis, int left, int right, int rank) {
+        while (left < right) {
+            double pivot = axis[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (axis[i] < pivot)
+                    i++;
+                while (axis[j] > pivot)
+                    j--;
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (rank <= j)
+                right = j;
+            else if (rank >= i)
+                left = i;
+            else
+                return;
+        }
+    }
+
+
+
+    /**
+     * Swaps two vectors.
+     * 
+     * @param i
+     *            index of the first vector
+     * @param j
+     *            index of the second vector
+     */
+    private void swap(int i, int j) {
+        double tmp = xs[i];
+        xs[i] = xs[j];
+        xs[j] = tmp;
+        tmp = ys[i];
+        ys[i] = ys[j];
+        ys[j] = tmp;
+        tmp = zs[i];
+        zs[i] = zs[j];
+        zs[j] = tmp;
+        int index = indexes[i];
+        indexes[i] = indexes[j];
+        indexes[j] = index;
+    }
+
+
+
+    /**
+     * Returns the number of vectors.
+     * 
+     * @return number of vectors
+     */
+    public int size() {
+        return indexes.length;
+    }
+
+
+
+    /**
+     * Finds the vectors whose absolute excitation error is less or equal to
+     * the specified maximum.
+     * 
+     * @param bx
+     *            x component of the unit beam direction, in the frame of the
+     *            vectors
+     * @param by
+     *            y component of the unit beam direction
+     * @param bz
+     *            z component of the unit beam direction
+     * @param wavelength
+     *            wavelength (in angstroms)
+     * @param maxExcitationError
+     *            maximum excitation error (in inverse angstroms)
+     * @param out
+     *            array where to store the index of the vectors found. If it
+     *            is too small, only the first vectors found are stored and
+     *            the returned number is greater than its length. An array of
+     *            length {@link #size()} is never too small.
+     * @return number of vectors found
+     * @throws IllegalArgumentException
+     *             if the wavelength is not greater than zero
+     */
+    public int query(double bx, double by, double bz, double wavelength,
+            double maxExcitationError, int[] out) {
+        if (wavelength <= 0)
+            throw new IllegalArgumentException("Wavelength (" + wavelength
+                    + ") must be greater than 0");
+
+        if (indexes.length == 0)
+            return 0;
+
+        // Ewald sphere centre and shell
+        double k = 1.0 / wavelength;
+        double cx = -bx * k;
+        double cy = -by * k;
+        double cz = -bz * k;
+        double rmin2 = max(0.0, k * k - 2.0 * maxExcitationError * k);
+        double rmax2 = k * k + 2.0 * maxExcitationError * k;
+
+        int count = 0;
+        int[] nodes = new int[64];
+        int[] los = new int[64];
+        int[] his = new int[64];
+        nodes[0] = 0;
+        los[0] = 0;
+        his[0] = indexes.length;
+        int top = 1;
+
+        while (top > 0) {
+            top--;
+            int node = nodes[top];
+            int lo = los[top];
+            int hi = his[top];
+            int o = node * 6;
+
+            // Minimum and maximum distances between the box and the centre
+            double min2 = 0.0;
+            double max2 = 0.0;
+            for (int axis = 0; axis < 3; axis++) {
+                double c = axis == 0 ? cx : (axis == 1 ? cy : cz);
+                double low = boxes[o + axis];
+                double high = boxes[o + 3 + axis];
+                double d = max(max(low - c, c - high), 0.0);
+                min2 += d * d;
+                d = max(c - low, high - c);
+                max2 += d * d;
+            }
+
+            if (min2 > rmax2 || max2 < rmin2)
+                continue;
+
+            if (min2 >= rmin2 && max2 <= rmax2) {
+                for (int i = lo; i < hi; i++) {
+                    if (count < out.length)
+                        out[count] = indexes[i];
+                    count++;
+                }
+            } else if (hi - lo <= leafSize) {
+                for (int i = lo; i < hi; i++) {
+                    double dx = xs[i] - cx;
+                    double dy = ys[i] - cy;
+                    double dz = zs[i] - cz;
+                    double d2 = dx * dx + dy * dy + dz * dz;
+                    if (d2 < rmin2 || d2 > rmax2)
+                        continue;
+
+                    if (count < out.length)
+                        out[count] = indexes[i];
+                    count++;
+                }
+            } else {
+                int mid = (lo + hi) >>> 1;
+                nodes[top] = 2 * node + 1;
+                los[top] = lo;
+                his[top] = mid;
+                top++;
+                nodes[top] = 2 * node + 2;
+                los[top] = mid;
+                his[top] = hi;
+                top++;
+            }
+        }
+
+        return count;
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.Reflector;
+
+/**
+ * Diffraction spot pattern returned by a {@link SpotPatternSimulator}. The
+ * spots are expressed in detector coordinates, centred on the transmitted
+ * beam, in the same units as the camera length.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class SpotPattern {
+
+    /** Reflector of each spot. */
+    private final Reflector[] reflectors;
+
+    /** Detector coordinates of each spot (x, y). */
+    private final double[] coordinates;
+
+    /** Intensity of each spot. */
+    private final double[] intensities;
+
+    /** Excitation error of each spot. */
+    private final double[] excitationErrors;
+
+
+
+    /**
+     * Creates a new <code>SpotPattern</code>. The arrays are not copied.
+     * 
+     * @param reflectors
+     *            reflector of each spot
+     * @param coordinates
+     *            detector coordinates of each spot (x, y)
+     * @param intensities
+     *            intensity of each spot
+     * @param excitationErrors
+     *            excitation error of each spot
+     */
+    SpotPattern(Reflector[] reflectors, double[] coordinates,
+            double[] intensities, double[] excitationErrors) {
+        this.reflectors = reflectors;
+        this.coordinates = coordinates;
+        this.intensities = intensities;
+        this.excitationErrors = excitationErrors;
+    }
+
+
+
+    @Override
+    public String toString() {
+        return "SpotPattern [" + reflectors.length + " spots]";
+    }
+
+
+
+    /**
+     * Returns the number of spots.
+     * 
+     * @return number of spots
+     */
+    public int getSpotCount() {
+        return reflectors.length;
+    }
+
+
+
+    /**
+     * Returns the reflector of the specified spot.
+     * 
+     * @param index
+     *            index of the spot
+     * @return reflector
+     */
+    public Reflector getReflector(int index) {
+        return reflectors[index];
+    }
+
+
+
+    /**
+     * Returns the horizontal detector coordinate of the specified spot.
+     * 
+     * @param index
+     *            index of the spot
+     * @return x coordinate
+     */
+    public double getX(int index) {
+        return coordinates[index * 2];
+    }
+
+
+
+    /**
+     * Returns the vertical detector coordinate of the specified spot.
+     * 
+     * @param index
+     *            index of the spot
+     * @return y coordinate
+     */
+    public double getY(int index) {
+        return coordinates[index * 2 + 1];
+    }
+
+
+
+    /**
+     * Returns the intensity of the specified spot, relative to the most
+     * intense reflector of the simulator.
+     * 
+     * @param index
+     *            index of the spot
+     * @return intensity, between 0 and 1
+     */
+    public double getIntensity(int index) {
+        return intensities[index];
+    }
+
+
+
+    /**
+     * Returns the excitation error of the specified spot, i.e. the distance
+     * of its reciprocal lattice point from the Ewald sphere along the beam.
+     * 
+     * @param index
+     *            index of the spot
+     * @return excitation error (in inverse angstroms)
+     */
+    public double getExcitationError(int index) {
+        return excitationErrors[index];
+    }
+
+}
@@ -0,0 +1,474 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.core.UnitCell;
+import net.sf.jchemistry.crystallography.orientation.FundamentalZoneReducer;
+import net.sf.jchemistry.util.ParallelUtils;
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+
+import static java.lang.Math.abs;
+
+/**
+ * Kinematical simulation of electron diffraction spot patterns.
+ * <p/>
+ * The Cartesian reciprocal lattice vector <code>g</code> of each reflector is
+ * computed once and stored in a {@link ReciprocalLatticeIndex}. For an
+ * orientation, the index returns the reflectors close to the Ewald sphere of
+ * the beam, which travels along <code>+z</code> in the laboratory frame. The
+ * reflectors whose excitation error <code>s = -(g<sub>z</sub> + &lambda;
+ * g<sup>2</sup> / 2)</code> is smaller than the maximum are projected on the
+ * detector, placed at the camera length from the specimen. The intensity of a
+ * spot is the intensity of its reflector, relative to the most intense one,
+ * scaled linearly down to zero at the maximum excitation error. In the limit
+ * of a flat Ewald sphere, only the reflectors satisfying the zone law remain.
+ * <p/>
+ * As in the {@link net.sf.jchemistry.crystallography.orientation} package, an
+ * orientation <code>q</code> rotates the laboratory frame into the crystal
+ * frame, i.e. a crystal vector <code>v</code> is expressed in the laboratory
+ * frame by <code>q.applyInverseTo(v)</code>. Orientations are given either as
+ * {@link Rotation} or as quaternions stored in a flat array (<code>q0, q1,
+ * q2, q3</code> of each orientation one after the other).
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class SpotPatternSimulator {
+
+    /** Default number of orientations per chunk in parallel. */
+    public static final int CHUNK_SIZE = 64;
+
+    /** Margin on the excitation error of the candidates from the index. */
+    private static final double EPSILON = 1e-9;
+
+    /** Initial length of the buffers of the candidates. */
+    private static final int BUFFER_SIZE = 64;
+
+    /** Reflectors. */
+    private final Reflector[] reflectors;
+
+    /** Cartesian reciprocal lattice vector of each reflector (x, y, z). */
+    private final double[] vectors;
+
+    /** Spatial index of the reciprocal lattice vectors. */
+    private final ReciprocalLatticeIndex latticeIndex;
+
+    /** Square of the length of each reciprocal lattice vector. */
+    private final double[] lengths2;
+
+    /** Relative intensity of each reflector. */
+    private final double[] intensities;
+
+    /** Direct lattice matrix (fractional to Cartesian). */
+    private final double[][] cartesian;
+
+    /** Wavelength (in angstroms). */
+    private final double wavelength;
+
+    /** Camera length. */
+    private final double cameraLength;
+
+    /** Maximum excitation error (in inverse angstroms). */
+    private final double maxExcitationError;
+
+
+
+    /**
+     * Creates a new <code>SpotPatternSimulator</code>.
+     * 
+     * @param unitCell
+     *            unit cell
+     * @param reflectors
+     *            reflectors (e.g. the reflectors of a phase)
+     * @param wavelength
+     *            wavelength of the electrons (in angstroms), see
+     *            {@link net.sf.jchemistry.crystallography.core.Calculations#electronWavelength(double)}
+     * @param cameraLength
+     *            camera length, in the units of the detector coordinates
+     * @param maxExcitationError
+     *            maximum excitation error (in inverse angstroms)
+     * @throws IllegalArgumentException
+     *             if the wavelength, camera length or maximum excitation
+     *             error is not greater than zero
+     */
+    public SpotPatternSimulator(UnitCell unitCell,
+            Collection<Reflector> reflectors, double wavelength,
+            double cameraLength, double maxExcitationError) {
+        if (unitCell == null)
+            throw new NullPointerException("unit cell == null");
+        if (reflectors == null)
+            throw new NullPointerException("reflectors == null");
+        if (wavelength <= 0)
+            throw new IllegalArgumentException("Wavelength (" + wavelength
+                    + ") must be greater than 0");
+        if (cameraLength <= 0)
+            throw new IllegalArgumentException("Camera length ("
+                    + cameraLength + ") must be greater than 0");
+        if (maxExcitationError <= 0)
+            throw new IllegalArgumentException("Maximum excitation error ("
+                    + maxExcitationError + ") must be greater than 0");
+
+        this.wavelength = wavelength;
+        this.cameraLength = cameraLength;
+        this.maxExcitationError = maxExcitationError;
+
+        this.reflectors = reflectors.toArray(new Reflector[0]);
+        int size = this.reflectors.length;
+
+        cartesian = unitCell.getCartesianMatrix().getData();
+        vectors = ReciprocalLatticeIndex.vectors(unitCell, this.reflectors);
+        latticeIndex = new ReciprocalLatticeIndex(vectors);
+
+        lengths2 = new double[size];
+        intensities = new double[size];
+        double max = 0.0;
+        for (int i = 0; i < size; i++) {
+            double x = vectors[i * 3];
+            double y = vectors[i * 3 + 1];
+            double z = vectors[i * 3 + 2];
+
+            lengths2[i] = x * x + y * y + z * z;
+            intensities[i] = this.reflectors[i].getIntensity();
+            max = Math.max(max, intensities[i]);
+        }
+
+        if (max > 0)
+            for (int i = 0; i < size; i++)
+                intensities[i] /= max;
+    }
+
+
+
+    /**
+     * Returns the number of reflectors.
+     * 
+     * @return number of reflectors
+     */
+    public int getReflectorCount() {
+        return reflectors.length;
+    }
+
+
+
+    /**
+     * Returns the wavelength.
+     * 
+     * @return wavelength (in angstroms)
+     */
+    public double getWavelength() {
+        return wavelength;
+    }
+
+
+
+    /**
+     * Returns the camera length.
+     * 
+     * @return camera length
+     */
+    public double getCameraLength() {
+        return cameraLength;
+    }
+
+
+
+    /**
+     * Returns the maximum excitation error.
+     * 
+     * @return maximum excitation error (in inverse angstroms)
+     */
+    public double getMaxExcitationError() {
+        return maxExcitationError;
+    }
+
+
+
+    /**
+     * Returns an orientation where the beam is parallel to the specified zone
+     * axis.
+     * 
+     * @param u
+     *            first index of the zone axis
+     * @param v
+     *            second index of the zone axis
+     * @param w
+     *            third index of the zone axis
+     * @return orientation
+     * @throws IllegalArgumentException
+     *             if the indices are all zero
+     */
+    public Rotation getZoneAxisOrientation(int u, int v, int w) {
+        if (u == 0 && v == 0 && w == 0)
+            throw new IllegalArgumentException(
+                    "Indices of the zone axis cannot all be zero");
+
+        double[][] m = cartesian;
+        Vector3D axis =
+                new Vector3D(m[0][0] * u + m[0][1] * v + m[0][2] * w, m[1][0]
+                        * u + m[1][1] * v + m[1][2] * w, m[2][0] * u + m[2][1]
+                        * v + m[2][2] * w);
+
+        return new Rotation(Vector3D.PLUS_K, axis);
+    }
+
+
+
+    /**
+     * Simulates the spot pattern of an orientation.
+     * 
+     * @param orientation
+     *            orientation
+     * @return spot pattern
+     */
+    public SpotPattern simulate(Rotation orientation) {
+        double[] q =
+                new double[] { orientation.getQ0(), orientation.getQ1(),
+                        orientation.getQ2(), orientation.getQ3() };
+        return simulate(q, 0);
+    }
+
+
+
+    /**
+     * Simulates the spot pattern of an orientation.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @param index
+     *            index of the orientation
+     * @return spot pattern
+     */
+    public SpotPattern simulate(double[] quaternions, int index) {
+        return simulate(quaternions, index, new Candidates(BUFFER_SIZE));
+    }
+
+
+
+    /**
+     * Simulates the spot pattern of an orientation.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @param index
+     *            index of the orientation
+     * @param candidates
+     *            buffers of the candidates, grown if they are too small
+     * @return spot pattern
+     */
+    private SpotPattern simulate(double[] quaternions, int index,
+            Candidates candidates) {
+        int o = index * 4;
+        double q0 = quaternions[o];
+        double q1 = quaternions[o + 1];
+        double q2 = quaternions[o + 2];
+        double q3 = quaternions[o + 3];
+
+        // Rows of the matrix of Rotation#applyInverseTo(Vector3D)
+        double m00 = 1.0 - 2.0 * (q2 * q2 + q3 * q3);
+        double m01 = 2.0 * (q1 * q2 - q0 * q3);
+        double m02 = 2.0 * (q1 * q3 + q0 * q2);
+        double m10 = 2.0 * (q1 * q2 + q0 * q3);
+        double m11 = 1.0 - 2.0 * (q1 * q1 + q3 * q3);
+        double m12 = 2.0 * (q2 * q3 - q0 * q1);
+        double m20 = 2.0 * (q1 * q3 - q0 * q2);
+        double m21 = 2.0 * (q2 * q3 + q0 * q1);
+        double m22 = 1.0 - 2.0 * (q1 * q1 + q2 * q2);
+
+        // Candidates from the index, with the beam in the crystal frame
+        double error = maxExcitationError + EPSILON;
+        int total =
+                latticeIndex.query(m20, m21, m22, wavelength, error,
+                        candidates.found);
+        if (total > candidates.found.length) {
+            candidates.grow(total);
+            latticeIndex.query(m20, m21, m22, wavelength, error,
+                    candidates.found);
+        }
+        int[] found = candidates.found;
+        double[] errors = candidates.errors;
+
+        double halfWavelength = wavelength / 2.0;
+        int count = 0;
+        for (int n = 0; n < total; n++) {
+            int i = found[n];
+            double x = vectors[i * 3];
+            double y = vectors[i * 3 + 1];
+            double z = vectors[i * 3 + 2];
+            double gz = m20 * x + m21 * y + m22 * z;
+            double s = -(gz + halfWavelength * lengths2[i]);
+
+            if (abs(s) <= maxExcitationError) {
+                found[count] = i;
+                errors[count] = s;
+                count++;
+            }
+        }
+
+        Reflector[] spots = new Reflector[count];
+        double[] coordinates = new double[count * 2];
+        double[] spotIntensities = new double[count];
+        double[] spotErrors = new double[count];
+        for (int n = 0; n < count; n++) {
+            int i = found[n];
+            double x = vectors[i * 3];
+            double y = vectors[i * 3 + 1];
+            double z = vectors[i * 3 + 2];
+            double gx = m00 * x + m01 * y + m02 * z;
+            double gy = m10 * x + m11 * y + m12 * z;
+            double gz = m20 * x + m21 * y + m22 * z;
+
+            // Projection of the diffracted beam k0 + g on the detector
+            double factor = cameraLength * wavelength / (1.0 + wavelength * gz);
+
+            spots[n] = reflectors[i];
+            coordinates[n * 2] = factor * gx;
+            coordinates[n * 2 + 1] = factor * gy;
+            spotIntensities[n] =
+                    intensities[i]
+                            * (1.0 - abs(errors[n]) / maxExcitationError);
+            spotErrors[n] = errors[n];
+        }
+
+        return new SpotPattern(spots, coordinates, spotIntensities,
+                spotErrors);
+    }
+
+
+
+    /**
+     * Simulates the spot patterns of a range of orientations.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @param patterns
+     *            array where to store the spot pattern of each orientation
+     * @param from
+     *            index of the first orientation (inclusive)
+     * @param to
+     *            index of the last orientation (exclusive)
+     */
+    public void simulate(double[] quaternions, SpotPattern[] patterns,
+            int from, int to) {
+        Candidates candidates = new Candidates(BUFFER_SIZE);
+        for (int i = from; i < to; i++)
+            patterns[i] = simulate(quaternions, i, candidates);
+    }
+
+
+
+    /**
+     * Simulates the spot patterns of orientations.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @return spot pattern of each orientation
+     */
+    public SpotPattern[] simulate(double[] quaternions) {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+
+        SpotPattern[] patterns = new SpotPattern[quaternions.length / 4];
+        simulate(quaternions, patterns, 0, patterns.length);
+        return patterns;
+    }
+
+
+
+    /**
+     * Simulates the spot patterns of orientations in parallel.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each
+     *            orientation)
+     * @param executor
+     *            executor service running the chunks
+     * @return spot pattern of each orientation
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public SpotPattern[] simulate(final double[] quaternions,
+            ExecutorService executor) throws InterruptedException {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+
+        final SpotPattern[] patterns = new SpotPattern[quaternions.length / 4];
+        ParallelUtils.run(executor, patterns.length, CHUNK_SIZE,
+                new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        simulate(quaternions, patterns, from, to);
+                    }
+                });
+        return patterns;
+    }
+
+
+
+    /**
+     * Buffers of the candidates of an orientation, reused between the
+     * orientations of a range so that only their spot patterns are allocated.
+     */
+    private static final class Candidates {
+
+        /** Indexes of the reflectors found by the index. */
+        private int[] found;
+
+        /** Excitation errors of the reflectors kept. */
+        private double[] errors;
+
+
+
+        /**
+         * Creates a new <code>Candidates</code>.
+         * 
+         * @param size
+         *            initial length of the buffers
+         */
+        public Candidates(int size) {
+            found = new int[size];
+            errors = new double[size];
+        }
+
+
+
+        /**
+         * Grows the buffers to hold at least the specified number of
+         * candidates. The content of the buffers is discarded.
+         * 
+         * @param size
+         *            number of candidates
+         */
+        public void grow(int size) {
+            int length = Math.max(size, 2 * found.length);
+            found = new int[length];
+            errors = new double[length];
+        }
+
+    }
+
+}
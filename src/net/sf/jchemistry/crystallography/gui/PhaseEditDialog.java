@@ -1063,7 +1063,7 @@ public class PhaseEditDialog extends OkCancelDialog {
         mainPanel.add(atomsPanel, "grow, push, split 2");
 
         AtomsTableModel atomsModel = new AtomsTableModel();
-        for (AtomSite atom : phase.getAtoms())
+        for (AtomSite atom : phase.getAllAtoms())
             atomsModel.append(atom);
 
         atomsTable = new JTable(atomsModel);
@@ -1167,8 +1167,8 @@ public class PhaseEditDialog extends OkCancelDialog {
 
         Phase phase = new Phase(name, citation, sg, unitCell);
 
-        phase.getAtoms().clear();
-        phase.getAtoms().addAll(atoms);
+        phase.getAsymmetricUnit().clear();
+        phase.getAsymmetricUnit().addAll(atoms);
 
         phase.getReflectors().clear();
         phase.getReflectors().addAll(refls);
@@ -141,7 +141,7 @@ public class PhaseInfoPanel extends JPanel {
         add(atomsPanel, "grow, push, split 2");
 
         AtomsTableModel atomsModel = new AtomsTableModel();
-        for (AtomSite atom : phase.getAtoms())
+        for (AtomSite atom : phase.getAllAtoms())
             atomsModel.append(atom);
 
         atomsTable = new JTable(atomsModel);
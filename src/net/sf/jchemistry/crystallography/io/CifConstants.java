@@ -27,9 +27,38 @@ import java.text.NumberFormat;
  */
 public class CifConstants {
 
-    /** Number format. */
-    public static final NumberFormat FORMAT = new DecimalFormat(
-            "##0.0###########");
+    /** Pattern of the number format. */
+    private static final String FORMAT_PATTERN = "##0.0###########";
+
+    /**
+     * Number format. Note that a <code>NumberFormat</code> is not thread-safe,
+     * {@link #getFormat()} should be used when the format may be accessed from
+     * several threads.
+     */
+    public static final NumberFormat FORMAT = new DecimalFormat(FORMAT_PATTERN);
+
+    /** Number format of each thread. */
+    private static final ThreadLocal<NumberFormat> FORMATS =
+            new ThreadLocal<NumberFormat>() {
+
+                @Override
+                protected NumberFormat initialValue() {
+                    return new DecimalFormat(FORMAT_PATTERN);
+                }
+
+            };
+
+
+
+    /**
+     * Returns the number format of the current thread. The format is the same
+     * as {@link #FORMAT}, but one instance is created per thread.
+     * 
+     * @return number format
+     */
+    public static NumberFormat getFormat() {
+        return FORMATS.get();
+    }
 
     /** Tag for <code>_atom_site_fract_x</code>. */
     public static final String ATOM_SITE_FRACT_X = "atom_site_fract_x";
@@ -179,6 +208,13 @@ public class CifConstants {
     /** Tag for <code>_space_group_IT_number</code>. */
     public static final String SPACE_GROUP_IT_NUMBER = "space_group_IT_number";
 
+    /** Tag for <code>_space_group_name_Hall</code>. */
+    public static final String SPACE_GROUP_NAME_HALL = "space_group_name_Hall";
+
+    /** Tag for <code>_space_group_name_H-M_alt</code>. */
+    public static final String SPACE_GROUP_NAME_HM_ALT =
+            "space_group_name_H-M_alt";
+
     /** Tag for <code>_space_group_symop_operation_xyz</code>. */
     public static final String SPACE_GROUP_SYMOP_OPERATION_XYZ =
             "space_group_symop_operation_xyz";
@@ -191,6 +227,10 @@ public class CifConstants {
     public static final String SYMMETRY_INT_TABLES_NUMBER =
             "symmetry_Int_Tables_number";
 
+    /** Tag for <code>_symmetry_space_group_name_Hall</code>. */
+    public static final String SYMMETRY_SPACE_GROUP_NAME_HALL =
+            "symmetry_space_group_name_Hall";
+
     /** Tag for <code>_symmetry_space_group_name_H</code>. */
     public static final String SYMMETRY_SPACE_GROUP_NAME_HM =
             "symmetry_space_group_name_H-M";
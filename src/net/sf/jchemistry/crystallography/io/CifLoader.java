@@ -19,9 +19,10 @@ package net.sf.jchemistry.crystallography.io;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -32,8 +33,11 @@ import java.util.regex.Pattern;
 
 import net.sf.jchemistry.core.Element;
 import net.sf.jchemistry.crystallography.core.AtomSite;
+import net.sf.jchemistry.crystallography.core.CellTransformation;
+import net.sf.jchemistry.crystallography.core.HallSymbol;
 import net.sf.jchemistry.crystallography.core.Phase;
 import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.core.SeitzOperator;
 import net.sf.jchemistry.crystallography.core.SpaceGroup;
 import net.sf.jchemistry.crystallography.core.SpaceGroups;
 import net.sf.jchemistry.crystallography.core.UnitCell;
@@ -41,24 +45,18 @@ import net.sf.jchemistry.crystallography.core.UnitCellFactory;
 
 import org.apache.commons.math.geometry.Vector3D;
 
-import bsh.EvalError;
-import bsh.Interpreter;
 
 import static net.sf.jchemistry.crystallography.io.CifConstants.*;
 
 /**
- * Loader of a phase from a crystallography information file (CIF).
+ * Loader of a phase from a crystallography information file (CIF). The loader
+ * holds no state between calls and a single instance can be used by several
+ * threads at once.
  * 
  * @author Philippe T. Pinard
  */
 public class CifLoader {
 
-    /** Parsed CIF data. */
-    private Map<String, List<String>> cifData;
-
-    /** Beanshell interpreter. */
-    private final Interpreter interpreter = new Interpreter();
-
     /** Logger. */
     private final Logger logger =
             Logger.getLogger("net.sf.jchemistry.crystallography.io.CifLoader");
@@ -71,124 +69,334 @@ public class CifLoader {
     private static final Pattern CHARGE_PATTERN =
             Pattern.compile("(\\d+)([+-]).*");
 
+    /**
+     * Document being loaded by each thread, for the deprecated getters. It is
+     * removed when {@link #load(Reader)} returns.
+     */
+    private final ThreadLocal<CifDocument> currentDocument =
+            new ThreadLocal<CifDocument>();
+
 
 
     /**
-     * Returns the coordinate of a position from the specified symmetrically
-     * equivalent position expression. The expression can contain symbols such
-     * as +, -, *, / and the variables x,y and z. It is evaluated with the
-     * values of x, y and z of the given atom positions.
+     * Data of the CIF being loaded. A new document is created for each call to
+     * {@link CifLoader#load(Reader)}, so that a single loader can be shared
+     * between threads.
      * 
-     * @param coord
-     *            string of the coordinate
-     * @param x
-     *            x value for an atom position
-     * @param y
-     *            y value for an atom position
-     * @param z
-     *            z value for an atom position
-     * @return double value of the coordinate of a position
-     * @throws IOException
-     *             if an error occurs while evaluating the expression of the
-     *             position
+     * @author Philippe T. Pinard
      */
-    private double calculateCoord(String coord, double x, double y, double z)
-            throws IOException {
-        try {
-            return ((Number) interpreter.eval(coord.replace("x",
-                    String.valueOf(x)).replace("y", String.valueOf(y)).replace(
-                    "z", String.valueOf(z)))).doubleValue();
-        } catch (EvalError e) {
-            throw new IOException(e);
+    private static final class CifDocument {
+
+        /** Parsed CIF data. */
+        private final Map<String, List<String>> data;
+
+        /** Parsed CIF loops by their data tags. */
+        private final Map<String, ColumnarLoop> loops;
+
+
+
+        /**
+         * Creates a new <code>CifDocument</code> by parsing the CIF data from
+         * the specified reader.
+         * 
+         * @param in
+         *            reader of a CIF file
+         * @throws IOException
+         *             if an error occurs while reading or parsing the CIF
+         */
+        public CifDocument(Reader in) throws IOException {
+            List<ColumnarLoop> loopList = new ArrayList<ColumnarLoop>();
+            data = new CifParser().parse(in, loopList);
+
+            loops = new HashMap<String, ColumnarLoop>();
+            for (ColumnarLoop loop : loopList)
+                for (int i = 0; i < loop.getColumnCount(); i++)
+                    loops.put(loop.getDataTag(i), loop);
         }
-    }
 
 
 
-    /**
-     * Evaluates the symmetry equivalent position string and returns the
-     * position as a vector.
-     * 
-     * @param position
-     *            string of the three coordinates (separated by commas)
-     * @param x
-     *            x value for an atom position
-     * @param y
-     *            y value for an atom position
-     * @param z
-     *            z value for an atom position
-     * @return coordinate of a position
-     * @throws IOException
-     *             if the <code>position</code> does not contain 3 coordinates
-     * @throws IOException
-     *             if an error occurs while evaluating the expression of the
-     *             position
-     */
-    private Vector3D calculatePosition(String position, double x, double y,
-            double z) throws IOException {
-        String[] coords = position.split(",");
-        if (coords.length != 3)
-            throw new IOException("Invalid symmetry equivalent position: "
-                    + position);
-
-        return new Vector3D(calculateCoord(coords[0], x, y, z), calculateCoord(
-                coords[1], x, y, z), calculateCoord(coords[2], x, y, z));
+        /**
+         * Returns whether the CIF data contains the specified key.
+         * 
+         * @param key
+         *            key
+         * @return <code>true</code> if the key exists, <code>false</code>
+         *         otherwise
+         */
+        public boolean containsKey(String key) {
+            return data.containsKey(key);
+        }
+
+
+
+        /**
+         * Parses a CIF numerical value as a double. The standard uncertainty
+         * between parentheses is discarded, as in the loops.
+         * 
+         * @param value
+         *            string value
+         * @return double value
+         * @throws IOException
+         *             if the string cannot be parsed as a double
+         */
+        public double parseDouble(String value) throws IOException {
+            try {
+                return TypedLoop.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IOException(e);
+            }
+        }
+
+
+
+        /**
+         * Returns the first value in the list for the first match of the
+         * specified keys. The value is parsed as a double.
+         * 
+         * @param keys
+         *            possible keys
+         * @return double value
+         * @throws IOException
+         *             if no value are found for the specified keys
+         */
+        public double getDoubleValue(String... keys) throws IOException {
+            return parseDouble(getStringValue(keys));
+        }
+
+
+
+        /**
+         * Returns the first value in the list for the first match of the
+         * specified keys. The value is parsed as a integer.
+         * 
+         * @param keys
+         *            possible keys
+         * @return integer value
+         * @throws IOException
+         *             if no value are found for the specified keys
+         */
+        public int getIntegerValue(String... keys) throws IOException {
+            try {
+                return TypedLoop.parseInteger(getStringValue(keys));
+            } catch (NumberFormatException e) {
+                throw new IOException(e);
+            }
+        }
+
+
+
+        /**
+         * Returns the loop containing the specified key or <code>null</code> if
+         * the key is not part of a loop.
+         * 
+         * @param key
+         *            key
+         * @return loop or <code>null</code>
+         */
+        public ColumnarLoop getLoop(String key) {
+            return loops.get(key);
+        }
+
+
+
+        /**
+         * Returns the values for the first match of the specified keys as an
+         * array of doubles. Values inside a loop are read column at a time. If
+         * no value is found, an empty array is returned.
+         * 
+         * @param keys
+         *            possible keys
+         * @return double values
+         * @throws IOException
+         *             if a string cannot be parsed as a double
+         */
+        public double[] getDoubleColumn(String... keys) throws IOException {
+            try {
+                ColumnarLoop loop;
+                for (String key : keys) {
+                    loop = getLoop(key);
+                    if (loop != null)
+                        return loop.getDoubleColumn(loop.getColumnIndex(key));
+                }
+
+                String[] values = getStringColumn(keys);
+                double[] newValues = new double[values.length];
+                for (int i = 0; i < values.length; i++)
+                    newValues[i] = TypedLoop.parseDouble(values[i]);
+
+                return newValues;
+            } catch (NumberFormatException e) {
+                throw new IOException(e);
+            }
+        }
+
+
+
+        /**
+         * Returns the values for the first match of the specified keys as an
+         * array of integers. Values inside a loop are read column at a time. If
+         * no value is found, an empty array is returned.
+         * 
+         * @param keys
+         *            possible keys
+         * @return integer values
+         * @throws IOException
+         *             if a string cannot be parsed as an integer
+         */
+        public int[] getIntegerColumn(String... keys) throws IOException {
+            try {
+                ColumnarLoop loop;
+                for (String key : keys) {
+                    loop = getLoop(key);
+                    if (loop != null)
+                        return loop.getIntegerColumn(loop.getColumnIndex(key));
+                }
+
+                String[] values = getStringColumn(keys);
+                int[] newValues = new int[values.length];
+                for (int i = 0; i < values.length; i++)
+                    newValues[i] = TypedLoop.parseInteger(values[i]);
+
+                return newValues;
+            } catch (NumberFormatException e) {
+                throw new IOException(e);
+            }
+        }
+
+
+
+        /**
+         * Returns the values for the first match of the specified keys as an
+         * array of strings. If no value is found, an empty array is returned.
+         * 
+         * @param keys
+         *            possible keys
+         * @return values
+         */
+        public String[] getStringColumn(String... keys) {
+            ColumnarLoop loop;
+            for (String key : keys) {
+                loop = getLoop(key);
+                if (loop != null)
+                    return loop.getStringColumn(loop.getColumnIndex(key));
+            }
+
+            List<String> values = getStringValues(keys);
+            return values.toArray(new String[values.size()]);
+        }
+
+
+
+        /**
+         * Returns the first value in the list for the first match of the
+         * specified keys.
+         * 
+         * @param keys
+         *            possible keys
+         * @return value
+         * @throws IOException
+         *             if no value are found for the specified keys
+         */
+        public String getStringValue(String... keys) throws IOException {
+            List<String> values = getStringValues(keys);
+
+            if (values.isEmpty())
+                throw new IOException("No value found for keys: "
+                        + Arrays.toString(keys));
+            else
+                return values.get(0);
+        }
+
+
+
+        /**
+         * Returns a list of values for the first match of the specified keys.
+         * If no values is found, an empty list is returned.
+         * 
+         * @param keys
+         *            possible keys
+         * @return list of values
+         */
+        public List<String> getStringValues(String... keys) {
+            List<String> values;
+            for (String key : keys) {
+                values = data.get(key);
+                if (values != null)
+                    return values;
+            }
+
+            return new ArrayList<String>();
+        }
     }
 
 
 
     /**
-     * Parses a string as a double.
+     * Returns the document being loaded by the current thread.
      * 
-     * @param value
-     *            string value
-     * @return double value
-     * @throws IOException
-     *             if the string cannot be parsed as a double
+     * @return CIF document
+     * @throws IllegalStateException
+     *             if no CIF is being loaded by the current thread
      */
-    private double parseDouble(String value) throws IOException {
-        try {
-            return FORMAT.parse(value).doubleValue();
-        } catch (ParseException e) {
-            throw new IOException(e);
-        }
+    private CifDocument getCurrentDocument() {
+        CifDocument doc = currentDocument.get();
+        if (doc == null)
+            throw new IllegalStateException(
+                    "No CIF is being loaded by the current thread");
+        return doc;
     }
 
 
 
     /**
      * Returns the first value in the list for the first match of the specified
-     * keys. The value is parsed as a double.
+     * keys in the CIF being loaded by the current thread. The value is parsed
+     * as a double.
      * 
      * @param keys
      *            possible keys
      * @return double value
      * @throws IOException
      *             if no value are found for the specified keys
+     * @throws IllegalStateException
+     *             if no CIF is being loaded by the current thread
+     * @deprecated the parsed data is local to each call to
+     *             {@link #load(Reader)} and released when it returns; this
+     *             method only reads the CIF while the current thread loads
+     *             it
      */
+    @Deprecated
     protected double getDoubleValue(String... keys) throws IOException {
-        return parseDouble(getStringValue(keys));
+        return getCurrentDocument().getDoubleValue(keys);
     }
 
 
 
     /**
-     * Returns a list of values for the first match of the specified keys. If no
-     * values is found, an empty list is returned. These values are parsed as
-     * doubles.
+     * Returns a list of values for the first match of the specified keys in
+     * the CIF being loaded by the current thread. If no values is found, an
+     * empty list is returned. These values are parsed as doubles.
      * 
      * @param keys
      *            possible keys
      * @return list of double values
      * @throws IOException
      *             if a string cannot be parsed as a double
+     * @throws IllegalStateException
+     *             if no CIF is being loaded by the current thread
+     * @deprecated the parsed data is local to each call to
+     *             {@link #load(Reader)} and released when it returns; this
+     *             method only reads the CIF while the current thread loads
+     *             it
      */
+    @Deprecated
     protected List<Double> getDoubleValues(String... keys) throws IOException {
-        List<String> values = getStringValues(keys);
+        CifDocument doc = getCurrentDocument();
 
         List<Double> newValues = new ArrayList<Double>();
-        for (String value : values)
-            newValues.add(parseDouble(value));
+        for (String value : doc.getStringValues(keys))
+            newValues.add(doc.parseDouble(value));
 
         return newValues;
     }
@@ -197,35 +405,48 @@ public class CifLoader {
 
     /**
      * Returns the first value in the list for the first match of the specified
-     * keys. The value is parsed as a integer.
+     * keys in the CIF being loaded by the current thread. The value is parsed
+     * as a integer.
      * 
      * @param keys
      *            possible keys
      * @return integer value
      * @throws IOException
      *             if no value are found for the specified keys
+     * @throws IllegalStateException
+     *             if no CIF is being loaded by the current thread
+     * @deprecated the parsed data is local to each call to
+     *             {@link #load(Reader)} and released when it returns; this
+     *             method only reads the CIF while the current thread loads
+     *             it
      */
+    @Deprecated
     protected int getIntegerValue(String... keys) throws IOException {
-        return Integer.parseInt(getStringValue(keys));
+        return getCurrentDocument().getIntegerValue(keys);
     }
 
 
 
     /**
-     * Returns a list of values for the first match of the specified keys. If no
-     * values is found, an empty list is returned. The values are parsed as
-     * integers.
+     * Returns a list of values for the first match of the specified keys in
+     * the CIF being loaded by the current thread. If no values is found, an
+     * empty list is returned. The values are parsed as integers.
      * 
      * @param keys
      *            possible keys
      * @return list of integer values
+     * @throws IllegalStateException
+     *             if no CIF is being loaded by the current thread
+     * @deprecated the parsed data is local to each call to
+     *             {@link #load(Reader)} and released when it returns; this
+     *             method only reads the CIF while the current thread loads
+     *             it
      */
+    @Deprecated
     protected List<Integer> getIntegerValues(String... keys) {
-        List<String> values = getStringValues(keys);
-
         List<Integer> newValues = new ArrayList<Integer>();
-        for (String value : values)
-            newValues.add(Integer.parseInt(value));
+        for (String value : getCurrentDocument().getStringValues(keys))
+            newValues.add(TypedLoop.parseInteger(value));
 
         return newValues;
     }
@@ -234,49 +455,53 @@ public class CifLoader {
 
     /**
      * Returns the first value in the list for the first match of the specified
-     * keys.
+     * keys in the CIF being loaded by the current thread.
      * 
      * @param keys
      *            possible keys
      * @return value
      * @throws IOException
      *             if no value are found for the specified keys
+     * @throws IllegalStateException
+     *             if no CIF is being loaded by the current thread
+     * @deprecated the parsed data is local to each call to
+     *             {@link #load(Reader)} and released when it returns; this
+     *             method only reads the CIF while the current thread loads
+     *             it
      */
+    @Deprecated
     protected String getStringValue(String... keys) throws IOException {
-        List<String> values = getStringValues(keys);
-
-        if (values.isEmpty())
-            throw new IOException("No value found for keys: "
-                    + Arrays.toString(keys));
-        else
-            return values.get(0);
+        return getCurrentDocument().getStringValue(keys);
     }
 
 
 
     /**
-     * Returns a list of values for the first match of the specified keys. If no
-     * values is found, an empty list is returned.
+     * Returns a list of values for the first match of the specified keys in
+     * the CIF being loaded by the current thread. If no values is found, an
+     * empty list is returned.
      * 
      * @param keys
      *            possible keys
      * @return list of values
+     * @throws IllegalStateException
+     *             if no CIF is being loaded by the current thread
+     * @deprecated the parsed data is local to each call to
+     *             {@link #load(Reader)} and released when it returns; this
+     *             method only reads the CIF while the current thread loads
+     *             it
      */
+    @Deprecated
     protected List<String> getStringValues(String... keys) {
-        List<String> values;
-        for (String key : keys) {
-            values = cifData.get(key);
-            if (values != null)
-                return values;
-        }
-
-        return new ArrayList<String>();
+        return getCurrentDocument().getStringValues(keys);
     }
 
 
 
     /**
-     * Loads a phase from a CIF.
+     * Loads a phase from a CIF. This method can be called concurrently from
+     * several threads, all the data of the CIF being local to the call and
+     * released when it returns.
      * 
      * @param in
      *            reader of a CIF file
@@ -286,115 +511,118 @@ public class CifLoader {
      */
     public Phase load(Reader in) throws IOException {
         // Get CIF data
-        cifData = new CifParser().parse(in);
-
-        // Parse data
-        String name = parseName();
-        String reference = parseCitation();
-        SpaceGroup spaceGroup = parseSpaceGroup();
-        UnitCell unitCell = parseUnitCell();
+        CifDocument doc = new CifDocument(in);
+        currentDocument.set(doc);
 
-        Phase phase = new Phase(name, reference, spaceGroup, unitCell);
-        phase.getAtoms().addAll(parseAtoms());
-        phase.getReflectors().addAll(parseReflectors());
-
-        // Reset
-        cifData = null;
-
-        return phase;
+        try {
+            // Parse data
+            String name = parseName(doc);
+            String reference = parseCitation(doc);
+            SpaceGroup spaceGroup = parseSpaceGroup(doc);
+            CellTransformation setting = parseSetting(doc);
+            UnitCell unitCell = setting.transform(parseUnitCell(doc));
+
+            Phase phase = new Phase(name, reference, spaceGroup, unitCell);
+            phase.getAsymmetricUnit().addAll(parseAtoms(doc, setting));
+            phase.getReflectors().addAll(parseReflectors(doc));
+
+            return phase;
+        } finally {
+            // Do not keep the document alive on pooled threads
+            currentDocument.remove();
+        }
     }
 
 
 
     /**
-     * Returns the atom sites from the CIF data.
+     * Returns the atom sites of the asymmetric unit from the CIF data. The
+     * positions are transformed to the standard setting of the space group.
+     * The equivalent positions are generated by the phase (see
+     * {@link Phase#getAllAtoms()}).
      * 
-     * @return atom sites
+     * @param doc
+     *            CIF document
+     * @param setting
+     *            transformation from the setting of the CIF data to the
+     *            standard setting
+     * @return atom sites of the asymmetric unit
      * @throws IOException
      *             if an error occurs while parsing the atom sites
      */
-    private List<AtomSite> parseAtoms() throws IOException {
+    private List<AtomSite> parseAtoms(CifDocument doc,
+            CellTransformation setting) throws IOException {
         // Positions
-        List<Double> xs = getDoubleValues(ATOM_SITE_FRACT_X);
-        List<Double> ys = getDoubleValues(ATOM_SITE_FRACT_Y);
-        List<Double> zs = getDoubleValues(ATOM_SITE_FRACT_Z);
+        double[] xs = doc.getDoubleColumn(ATOM_SITE_FRACT_X);
+        double[] ys = doc.getDoubleColumn(ATOM_SITE_FRACT_Y);
+        double[] zs = doc.getDoubleColumn(ATOM_SITE_FRACT_Z);
 
         // Occupancies
-        List<Double> occupancies = getDoubleValues(ATOM_SITE_OCCUPANCY);
-        if (occupancies.isEmpty())
-            occupancies = java.util.Collections.nCopies(xs.size(), 1.0);
+        double[] occupancies = doc.getDoubleColumn(ATOM_SITE_OCCUPANCY);
+        if (occupancies.length == 0) {
+            occupancies = new double[xs.length];
+            Arrays.fill(occupancies, 1.0);
+        }
 
         // Element and charge
-        List<String> labels =
-                getStringValues(ATOM_SITE_TYPE_SYMBOL, ATOM_SITE_LABEL);
-        List<Element> elements = new ArrayList<Element>();
-        List<Integer> charges = new ArrayList<Integer>();
+        String[] labels =
+                doc.getStringColumn(ATOM_SITE_TYPE_SYMBOL, ATOM_SITE_LABEL);
+        Element[] elements = new Element[labels.length];
+        int[] charges = new int[labels.length];
 
         Matcher symbolMatch;
         Matcher chargeMatcher;
+        String label;
         String chargeLabel;
         int charge;
-        for (String label : labels) {
+        for (int i = 0; i < labels.length; i++) {
+            label = labels[i];
+
             // Symbol
             symbolMatch = SYMBOL_PATTERN.matcher(label);
             if (!symbolMatch.matches())
                 throw new IOException("Atom symbol is invalid: " + label);
 
-            elements.add(Element.fromSymbol(symbolMatch.group(1)));
+            elements[i] = Element.fromSymbol(symbolMatch.group(1));
 
             // Charge
             chargeLabel = label.substring(symbolMatch.end(1));
             chargeMatcher = CHARGE_PATTERN.matcher(chargeLabel);
 
-            if (!chargeMatcher.matches()) {
-                charges.add(0);
+            if (!chargeMatcher.matches())
                 continue;
-            }
 
             charge = Integer.parseInt(chargeMatcher.group(1));
             if (chargeMatcher.group(2).equals("-"))
-                charges.add(-1 * charge);
+                charges[i] = -1 * charge;
             else
-                charges.add(charge);
+                charges[i] = charge;
         }
 
-        // Check lists size
-        if (xs.size() != ys.size() || xs.size() != zs.size()
-                || xs.size() != occupancies.size()
-                || xs.size() != elements.size() || xs.size() != charges.size())
+        // Check arrays size
+        if (xs.length != ys.length || xs.length != zs.length
+                || xs.length != occupancies.length
+                || xs.length != elements.length)
             throw new IOException(
                     "The number of coordinates in X, Y, Z, elements, occupancies and size do not match: x="
-                            + xs.size()
+                            + xs.length
                             + ", y="
-                            + ys.size()
+                            + ys.length
                             + ", z="
-                            + zs.size()
+                            + zs.length
                             + ", elements="
-                            + elements.size()
+                            + elements.length
                             + ", charges="
-                            + charges.size()
+                            + charges.length
                             + ", occupancies="
-                            + occupancies.size());
-
-        // Symmetric equivalent positions
-        List<String> symEquivPositions =
-                getStringValues(SYMMETRY_EQUIV_POS_AS_XYZ,
-                        SPACE_GROUP_SYMOP_OPERATION_XYZ);
-        if (symEquivPositions.isEmpty())
-            symEquivPositions.add("x,y,z");
+                            + occupancies.length);
 
         // Create atoms
-        List<AtomSite> atoms = new ArrayList<AtomSite>();
-
-        for (int i = 0; i < xs.size(); i++) {
-            for (String pos : symEquivPositions) {
-                atoms.add(new AtomSite(
-                        elements.get(i),
-                        charges.get(i),
-                        calculatePosition(pos, xs.get(i), ys.get(i), zs.get(i)),
-                        occupancies.get(i)));
-            }
-        }
+        List<AtomSite> atoms = new ArrayList<AtomSite>(xs.length);
+        for (int i = 0; i < xs.length; i++)
+            atoms.add(new AtomSite(elements[i], charges[i], setting
+                    .transformPosition(new Vector3D(xs[i], ys[i], zs[i])),
+                    occupancies[i]));
 
         return atoms;
     }
@@ -405,12 +633,14 @@ public class CifLoader {
      * Returns the phase name from the CIF data. The information is extracted
      * from either the common chemical name or mineral chemical name.
      * 
+     * @param doc
+     *            CIF document
      * @return phase's name
      * @throws IOException
      *             if no name is found
      */
-    private String parseName() throws IOException {
-        return getStringValue(CHEMICAL_NAME_COMMON, CHEMICAL_NAME_MINERAL,
+    private String parseName(CifDocument doc) throws IOException {
+        return doc.getStringValue(CHEMICAL_NAME_COMMON, CHEMICAL_NAME_MINERAL,
                 CHEMICAL_NAME_STRUCTURE_TYP, CHEMICAL_NAME_SYSTEMATIC);
     }
 
@@ -419,16 +649,18 @@ public class CifLoader {
     /**
      * Returns a string representing the citation information in the CIF data.
      * 
+     * @param doc
+     *            CIF document
      * @return citation
      */
-    private String parseCitation() {
+    private String parseCitation(CifDocument doc) {
         // Single citation entry
-        List<String> references = getStringValues(PUBL_SECTION_REFERENCES);
+        List<String> references = doc.getStringValues(PUBL_SECTION_REFERENCES);
         if (references.size() == 1)
             return references.get(0);
 
         // Check for multiple citations
-        List<String> ids = getStringValues(CITATION_ID);
+        List<String> ids = doc.getStringValues(CITATION_ID);
         if (ids.size() > 1) {
             logger.warning("Loader does not support multiple citations");
             return "No reference";
@@ -438,13 +670,13 @@ public class CifLoader {
 
         // Authors
         List<String> authors =
-                getStringValues(CITATION_AUTHOR_NAME, PUBL_AUTHOR_NAME);
+                doc.getStringValues(CITATION_AUTHOR_NAME, PUBL_AUTHOR_NAME);
         if (!authors.isEmpty())
             ref.append(net.sf.jchemistry.util.Collections.join(authors, ", "));
         else
             ref.append("-");
 
-        List<String> years = getStringValues(CITATION_YEAR, JOURNAL_YEAR);
+        List<String> years = doc.getStringValues(CITATION_YEAR, JOURNAL_YEAR);
         if (!years.isEmpty()) {
             ref.append(" (");
             ref.append(years.get(0));
@@ -452,23 +684,23 @@ public class CifLoader {
         }
         ref.append(", ");
 
-        if (cifData.containsKey(CITATION_BOOK_TTTLE)) {
+        if (doc.containsKey(CITATION_BOOK_TTTLE)) {
             // Book
             List<String> titles =
-                    getStringValues(CITATION_TITLE, PUBL_SECTION_TITLE);
+                    doc.getStringValues(CITATION_TITLE, PUBL_SECTION_TITLE);
             if (!titles.isEmpty()) {
                 ref.append(titles.get(0));
                 ref.append(", ");
             }
 
-            List<String> bookTitles = getStringValues(CITATION_BOOK_TTTLE);
+            List<String> bookTitles = doc.getStringValues(CITATION_BOOK_TTTLE);
             if (!bookTitles.isEmpty()) {
                 ref.append("in: ");
                 ref.append(bookTitles.get(0).trim());
                 ref.append(", ");
             }
 
-            List<String> editors = getStringValues(CITATION_EDITOR_NAME);
+            List<String> editors = doc.getStringValues(CITATION_EDITOR_NAME);
             if (!editors.isEmpty()) {
                 ref.append("eds. ");
                 ref.append(net.sf.jchemistry.util.Collections.join(editors,
@@ -476,14 +708,15 @@ public class CifLoader {
                 ref.append(", ");
             }
 
-            List<String> publishers = getStringValues(CITATION_BOOK_PUBLISHER);
+            List<String> publishers =
+                    doc.getStringValues(CITATION_BOOK_PUBLISHER);
             if (!publishers.isEmpty()) {
                 ref.append(publishers.get(0));
                 ref.append(", ");
             }
 
             List<String> publisherCities =
-                    getStringValues(CITATION_BOOK_PUBLISHER_CITY);
+                    doc.getStringValues(CITATION_BOOK_PUBLISHER_CITY);
             if (!publisherCities.isEmpty()) {
                 ref.append(publisherCities.get(0));
                 ref.append(", ");
@@ -491,14 +724,14 @@ public class CifLoader {
         } else {
             // Journal
             List<String> titles =
-                    getStringValues(CITATION_TITLE, PUBL_SECTION_TITLE);
+                    doc.getStringValues(CITATION_TITLE, PUBL_SECTION_TITLE);
             if (!titles.isEmpty()) {
                 ref.append(titles.get(0).trim());
                 ref.append(", ");
             }
 
             List<String> journals =
-                    getStringValues(CITATION_JOURNAL_ABBREV,
+                    doc.getStringValues(CITATION_JOURNAL_ABBREV,
                             CITATION_JOURNAL_FULL, JOURNAL_NAME_FULL);
             if (!journals.isEmpty()) {
                 ref.append(journals.get(0));
@@ -506,16 +739,18 @@ public class CifLoader {
             }
 
             List<String> volumes =
-                    getStringValues(CITATION_JOURNAL_VOLUME, JOURNAL_VOLUME);
+                    doc.getStringValues(CITATION_JOURNAL_VOLUME,
+                            JOURNAL_VOLUME);
             if (!volumes.isEmpty()) {
                 ref.append(volumes.get(0));
                 ref.append(", ");
             }
 
             List<String> firsts =
-                    getStringValues(CITATION_PAGE_FIRST, JOURNAL_PAGE_FIRST);
+                    doc.getStringValues(CITATION_PAGE_FIRST,
+                            JOURNAL_PAGE_FIRST);
             List<String> lasts =
-                    getStringValues(CITATION_PAGE_LAST, JOURNAL_PAGE_LAST);
+                    doc.getStringValues(CITATION_PAGE_LAST, JOURNAL_PAGE_LAST);
             if (!firsts.isEmpty() && !lasts.isEmpty()) {
                 ref.append(firsts.get(0));
                 ref.append("-");
@@ -533,37 +768,38 @@ public class CifLoader {
     /**
      * Returns a set of <code>Reflector</code>'s from the data in the CIF.
      * 
+     * @param doc
+     *            CIF document
      * @return reflectors
      * @throws IOException
      *             if an error occurs while parsing the reflectors
      */
-    private Set<Reflector> parseReflectors() throws IOException {
+    private Set<Reflector> parseReflectors(CifDocument doc) throws IOException {
         Set<Reflector> refls = new HashSet<Reflector>();
 
-        List<Integer> hs = getIntegerValues(REFLN_INDEX_H);
-        List<Integer> ks = getIntegerValues(REFLN_INDEX_K);
-        List<Integer> ls = getIntegerValues(REFLN_INDEX_L);
+        int[] hs = doc.getIntegerColumn(REFLN_INDEX_H);
+        int[] ks = doc.getIntegerColumn(REFLN_INDEX_K);
+        int[] ls = doc.getIntegerColumn(REFLN_INDEX_L);
 
-        List<Double> intensities =
-                getDoubleValues(REFLN_INTENSITY_MEAS, REFLN_F_SQUARED_MEAS,
+        double[] intensities =
+                doc.getDoubleColumn(REFLN_INTENSITY_MEAS, REFLN_F_SQUARED_MEAS,
                         REFLN_INTENSITY_CALC, REFLN_F_SQUARED_CALC);
-        if (intensities.isEmpty()) {
-            List<Double> newIntensities =
-                    getDoubleValues(REFLN_F_MEAS, REFLN_F_CALC);
-            for (Double intensity : newIntensities)
-                intensities.add(Math.pow(intensity, 2));
+        if (intensities.length == 0) {
+            double[] fs = doc.getDoubleColumn(REFLN_F_MEAS, REFLN_F_CALC);
+            intensities = new double[fs.length];
+            for (int i = 0; i < fs.length; i++)
+                intensities[i] = fs[i] * fs[i];
         }
 
-        if (hs.size() != ks.size() || hs.size() != ls.size()
-                || hs.size() != intensities.size())
+        if (hs.length != ks.length || hs.length != ls.length
+                || hs.length != intensities.length)
             throw new IOException(
                     "The number of reflectors and intensities do not match: h="
-                            + hs.size() + ", k=" + ks.size() + ", l="
-                            + ls.size() + ", I=" + intensities.size());
+                            + hs.length + ", k=" + ks.length + ", l="
+                            + ls.length + ", I=" + intensities.length);
 
-        for (int i = 0; i < hs.size(); i++) {
-            refls.add(new Reflector(hs.get(i), ks.get(i), ls.get(i),
-                    intensities.get(i)));
+        for (int i = 0; i < hs.length; i++) {
+            refls.add(new Reflector(hs[i], ks[i], ls[i], intensities[i]));
         }
 
         return refls;
@@ -572,18 +808,146 @@ public class CifLoader {
 
 
     /**
-     * Returns the space group from the CIF data.
+     * Returns the symmetry operators of the CIF data. If no operator is
+     * listed, an empty list is returned.
+     * 
+     * @param doc
+     *            CIF document
+     * @return symmetry operators or <code>null</code> if an operator cannot
+     *         be parsed exactly
+     */
+    private List<SeitzOperator> parseOperators(CifDocument doc) {
+        List<String> symEquivPositions =
+                doc.getStringValues(SYMMETRY_EQUIV_POS_AS_XYZ,
+                        SPACE_GROUP_SYMOP_OPERATION_XYZ);
+        if (symEquivPositions.isEmpty())
+            return Collections.emptyList();
+
+        List<SeitzOperator> operators =
+                new ArrayList<SeitzOperator>(symEquivPositions.size());
+        for (String pos : symEquivPositions) {
+            try {
+                operators.add(SeitzOperator.parse(pos));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Symmetry operator cannot be parsed exactly: "
+                        + pos);
+                return null;
+            }
+        }
+
+        return operators;
+    }
+
+
+
+    /**
+     * Returns the space group from the CIF data. The space group is retrieved
+     * from its number or, if the number is missing, identified from the
+     * symmetry operators. If no operator is listed either, the space group is
+     * resolved from its Hermann-Mauguin or Hall symbol (see
+     * {@link SpaceGroups#fromSymbol(String)}).
      * 
+     * @param doc
+     *            CIF document
      * @return space group
      * @throws IOException
-     *             if space group is missing
+     *             if space group is missing or cannot be identified
      */
-    private SpaceGroup parseSpaceGroup() throws IOException {
-        int index =
-                getIntegerValue(SPACE_GROUP_IT_NUMBER,
-                        SYMMETRY_INT_TABLES_NUMBER);
+    private SpaceGroup parseSpaceGroup(CifDocument doc) throws IOException {
+        if (doc.containsKey(SPACE_GROUP_IT_NUMBER)
+                || doc.containsKey(SYMMETRY_INT_TABLES_NUMBER)) {
+            int index =
+                    doc.getIntegerValue(SPACE_GROUP_IT_NUMBER,
+                            SYMMETRY_INT_TABLES_NUMBER);
+            return SpaceGroups.fromIndex(index);
+        }
+
+        List<SeitzOperator> operators = parseOperators(doc);
+        if (operators == null)
+            throw new IOException("No space group number and symmetry "
+                    + "operators cannot be parsed");
+
+        if (!operators.isEmpty()) {
+            try {
+                return SpaceGroups.fromOperators(operators);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e);
+            }
+        }
+
+        String[] keys =
+                new String[] { SPACE_GROUP_NAME_HM_ALT,
+                        SYMMETRY_SPACE_GROUP_NAME_HM, SPACE_GROUP_NAME_HALL,
+                        SYMMETRY_SPACE_GROUP_NAME_HALL };
+        IllegalArgumentException unknown = null;
+        for (String key : keys) {
+            if (!doc.containsKey(key))
+                continue;
+
+            try {
+                return SpaceGroups.fromSymbol(doc.getStringValue(key));
+            } catch (IllegalArgumentException e) {
+                unknown = e;
+            }
+        }
 
-        return SpaceGroups.fromIndex(index);
+        if (unknown != null)
+            throw new IOException(unknown);
+        else
+            throw new IOException("Space group missing: no space group "
+                    + "number, symmetry operators or symbol");
+    }
+
+
+
+    /**
+     * Returns the transformation from the setting of the CIF data to the
+     * standard setting of the space group. The setting is given by the
+     * symmetry operators or, if none is listed, by the Hall symbol. Without
+     * either, the Hermann-Mauguin symbol must be the one of the standard
+     * setting.
+     * 
+     * @param doc
+     *            CIF document
+     * @return transformation to the standard setting
+     * @throws IOException
+     *             if the setting cannot be identified
+     */
+    private CellTransformation parseSetting(CifDocument doc)
+            throws IOException {
+        List<SeitzOperator> operators = parseOperators(doc);
+        if (operators == null)
+            throw new IOException("Symmetry operators cannot be parsed");
+
+        if (operators.isEmpty()) {
+            if (doc.containsKey(SPACE_GROUP_NAME_HALL)
+                    || doc.containsKey(SYMMETRY_SPACE_GROUP_NAME_HALL)) {
+                String hall =
+                        doc.getStringValue(SPACE_GROUP_NAME_HALL,
+                                SYMMETRY_SPACE_GROUP_NAME_HALL);
+                try {
+                    operators = HallSymbol.parse(hall);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e);
+                }
+            } else {
+                for (String symbol : doc.getStringValues(
+                        SPACE_GROUP_NAME_HM_ALT, SYMMETRY_SPACE_GROUP_NAME_HM))
+                    if (!SpaceGroups.isStandardSymbol(symbol))
+                        throw new IOException("Symbol (" + symbol
+                                + ") is not the one of a standard setting "
+                                + "and no Hall symbol or symmetry operators "
+                                + "are listed");
+
+                return CellTransformation.IDENTITY;
+            }
+        }
+
+        try {
+            return SpaceGroups.getStandardSetting(operators);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
     }
 
 
@@ -591,17 +955,19 @@ public class CifLoader {
     /**
      * Returns the unit cell from the CIF data.
      * 
+     * @param doc
+     *            CIF document
      * @return unit cell
      * @throws IOException
      *             if a value is missing
      */
-    private UnitCell parseUnitCell() throws IOException {
-        double a = getDoubleValue(CELL_LENGTH_A);
-        double b = getDoubleValue(CELL_LENGTH_B);
-        double c = getDoubleValue(CELL_LENGTH_C);
-        double alpha = Math.toRadians(getDoubleValue(CELL_ANGLE_ALPHA));
-        double beta = Math.toRadians(getDoubleValue(CELL_ANGLE_BETA));
-        double gamma = Math.toRadians(getDoubleValue(CELL_ANGLE_GAMMA));
+    private UnitCell parseUnitCell(CifDocument doc) throws IOException {
+        double a = doc.getDoubleValue(CELL_LENGTH_A);
+        double b = doc.getDoubleValue(CELL_LENGTH_B);
+        double c = doc.getDoubleValue(CELL_LENGTH_C);
+        double alpha = Math.toRadians(doc.getDoubleValue(CELL_ANGLE_ALPHA));
+        double beta = Math.toRadians(doc.getDoubleValue(CELL_ANGLE_BETA));
+        double gamma = Math.toRadians(doc.getDoubleValue(CELL_ANGLE_GAMMA));
 
         return UnitCellFactory.triclinic(a, b, c, alpha, beta, gamma);
     }
@@ -21,6 +21,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
@@ -74,6 +75,28 @@ public class CifParser {
      *             if an error occurs while reading the data
      */
     public Map<String, List<String>> parse(Reader in) throws IOException {
+        return parse(in, new ArrayList<ColumnarLoop>());
+    }
+
+
+
+    /**
+     * Reads all CIF data from a reader and returns a map of the CIF keywords
+     * with their values. Each looped list found in the CIF is also added to
+     * the specified list of loops, so that its values can be accessed column
+     * by column. In the returned map, the values of a looped tag are a view of
+     * the corresponding column.
+     * 
+     * @param in
+     *            reader containing the CIF data
+     * @param loops
+     *            list where the looped lists are added
+     * @return Map of CIF keywords with their values
+     * @throws IOException
+     *             if an error occurs while reading the data
+     */
+    public Map<String, List<String>> parse(Reader in, List<ColumnarLoop> loops)
+            throws IOException {
         br = new BufferedReader(in);
 
         line = "";
@@ -86,7 +109,14 @@ public class CifParser {
             }
 
             if (key.startsWith("loop_")) {
-                data.putAll(getCifLoopData());
+                TypedLoop loop = getCifLoop();
+                if (loop.getColumnCount() == 0)
+                    continue;
+
+                for (int i = 0; i < loop.getColumnCount(); i++)
+                    data.put(loop.getDataTag(i),
+                            Arrays.asList(loop.getStringColumn(i)));
+                loops.add(loop);
                 continue;
             }
 
@@ -112,29 +142,28 @@ public class CifParser {
 
 
     /**
-     * Get the data from a loop in a CIF.
+     * Get the data from a loop in a CIF. The values are stored column by
+     * column.
      * 
      * @return data inside the loop
      * @throws IOException
      *             if an error occurs while parsing the data
      */
-    private Map<String, List<String>> getCifLoopData() throws IOException {
+    private TypedLoop getCifLoop() throws IOException {
         String str;
         List<String> keywords = new ArrayList<String>();
         List<String> values = new ArrayList<String>();
-        Map<String, List<String>> loopData =
-                new Hashtable<String, List<String>>();
+        TypedLoop loop = new TypedLoop();
 
         // Read keywords
         while ((str = peekToken()) != null && str.charAt(0) == '_') {
             str = getTokenPeeked().substring(1); // remove leading underscore
             keywords.add(str);
-            loopData.put(str, new ArrayList<String>());
         }
 
         int keywordsCount = keywords.size();
         if (keywordsCount == 0)
-            return loopData;
+            return loop;
 
         // Read values
         String value;
@@ -150,16 +179,22 @@ public class CifParser {
 
         // Store values
         int nbRows = valuesCount / keywordsCount;
-        List<String> datum;
+        String[] column;
         for (int i = 0; i < keywordsCount; i++) {
-            datum = loopData.get(keywords.get(i));
+            column = new String[nbRows];
 
             for (int j = 0; j < nbRows; j++) {
-                datum.add(values.get(j * keywordsCount + i));
+                column[j] = values.get(j * keywordsCount + i);
+            }
+
+            try {
+                loop.addColumn(keywords.get(i), column);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e);
             }
         }
 
-        return loopData;
+        return loop;
     }
 
 
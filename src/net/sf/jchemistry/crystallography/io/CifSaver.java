@@ -26,8 +26,8 @@ import java.util.List;
 
 import net.sf.jchemistry.core.Element;
 import net.sf.jchemistry.core.ElementComparator;
+import net.sf.jchemistry.crystallography.core.AbstractAtomSites;
 import net.sf.jchemistry.crystallography.core.AtomSite;
-import net.sf.jchemistry.crystallography.core.AtomSites;
 import net.sf.jchemistry.crystallography.core.Phase;
 import net.sf.jchemistry.crystallography.core.Reflector;
 import net.sf.jchemistry.crystallography.core.Reflectors;
@@ -36,7 +36,9 @@ import net.sf.jchemistry.crystallography.core.UnitCell;
 import static net.sf.jchemistry.crystallography.io.CifConstants.*;
 
 /**
- * Saver of a phase from a crystallography information file (CIF).
+ * Saver of a phase from a crystallography information file (CIF). The saver
+ * holds no state between calls and a single instance can be used by several
+ * threads at once.
  * 
  * @author Philippe T. Pinard
  */
@@ -85,117 +87,68 @@ public class CifSaver {
             };
 
     /**
-     * Loop to save atom positions.
+     * Creates the loop to save atom positions. The atoms are sorted by element
+     * and labelled with their symbol followed by a counter.
      * 
-     * @author ppinard
+     * @param atoms
+     *            atom sites
+     * @return loop of the atom positions
      */
-    private static class AtomsLoop implements Loop {
-
-        /** List of atom sites. */
-        private final List<AtomSite> atoms;
-
-        /** List of atom labels. */
-        private final List<String> labels;
-
-
-
-        /**
-         * Creates a new <code>AtomsLoop</code>.
-         * 
-         * @param atoms
-         *            atom sites
-         */
-        public AtomsLoop(AtomSites atoms) {
-            this.atoms = new ArrayList<AtomSite>();
-            this.atoms.addAll(atoms);
-            Collections.sort(this.atoms, ATOMSITE_COMPARATOR);
-
-            // Generate labels
-            labels = new ArrayList<String>();
-            int index = 0;
-            Element currentElement;
-            Element previousElement = null;
-            for (AtomSite atom : this.atoms) {
-                currentElement = atom.getElement();
-
-                if (currentElement == previousElement) {
-                    index += 1;
-                } else {
-                    index = 1;
-                    previousElement = currentElement;
-                }
-
-                labels.add(currentElement.symbol() + index);
-            }
-        }
-
-
-
-        @Override
-        public int getRowCount() {
-            return atoms.size();
-        }
-
-
-
-        @Override
-        public int getColumnCount() {
-            return 6;
-        }
-
-
-
-        @Override
-        public String getDataTag(int column) {
-            switch (column) {
-            case 0:
-                return ATOM_SITE_LABEL;
-            case 1:
-                return ATOM_SITE_TYPE_SYMBOL;
-            case 2:
-                return ATOM_SITE_FRACT_X;
-            case 3:
-                return ATOM_SITE_FRACT_Y;
-            case 4:
-                return ATOM_SITE_FRACT_Z;
-            case 5:
-                return ATOM_SITE_OCCUPANCY;
-            default:
-                throw new IllegalArgumentException("Column " + column
-                        + " is unknown");
+    private static ColumnarLoop createAtomsLoop(AbstractAtomSites atoms) {
+        List<AtomSite> sorted = new ArrayList<AtomSite>(atoms);
+        Collections.sort(sorted, ATOMSITE_COMPARATOR);
+
+        int size = sorted.size();
+        String[] labels = new String[size];
+        String[] symbols = new String[size];
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        double[] zs = new double[size];
+        double[] occupancies = new double[size];
+
+        int index = 0;
+        Element currentElement;
+        Element previousElement = null;
+        AtomSite atom;
+        for (int i = 0; i < size; i++) {
+            atom = sorted.get(i);
+            currentElement = atom.getElement();
+
+            // Label
+            if (currentElement == previousElement) {
+                index += 1;
+            } else {
+                index = 1;
+                previousElement = currentElement;
             }
+            labels[i] = currentElement.symbol() + index;
+
+            // Symbol
+            if (atom.getCharge() == 0)
+                symbols[i] = currentElement.symbol();
+            else if (atom.getCharge() > 0)
+                symbols[i] = currentElement.symbol() + atom.getCharge() + "+";
+            else
+                symbols[i] =
+                        currentElement.symbol() + Math.abs(atom.getCharge())
+                                + "-";
+
+            // Position and occupancy
+            xs[i] = atom.getPosition().getX();
+            ys[i] = atom.getPosition().getY();
+            zs[i] = atom.getPosition().getZ();
+            occupancies[i] = atom.getOccupancy();
         }
 
+        TypedLoop loop = new TypedLoop();
+        loop.addColumn(ATOM_SITE_LABEL, labels);
+        loop.addColumn(ATOM_SITE_TYPE_SYMBOL, symbols);
+        loop.addColumn(ATOM_SITE_FRACT_X, xs);
+        loop.addColumn(ATOM_SITE_FRACT_Y, ys);
+        loop.addColumn(ATOM_SITE_FRACT_Z, zs);
+        loop.addColumn(ATOM_SITE_OCCUPANCY, occupancies);
 
-
-        @Override
-        public String getDataValue(int row, int column) {
-            AtomSite atom = atoms.get(row);
-
-            switch (column) {
-            case 0:
-                return labels.get(row);
-            case 1:
-                if (atom.getCharge() == 0)
-                    return atom.getElement().symbol();
-                else if (atom.getCharge() > 0)
-                    return atom.getElement().symbol() + atom.getCharge() + "+";
-                else
-                    return atom.getElement().symbol()
-                            + Math.abs(atom.getCharge()) + "-";
-            case 2:
-                return FORMAT.format(atom.getPosition().getX());
-            case 3:
-                return FORMAT.format(atom.getPosition().getY());
-            case 4:
-                return FORMAT.format(atom.getPosition().getZ());
-            case 5:
-                return FORMAT.format(atom.getOccupancy());
-            default:
-                throw new IllegalArgumentException("Column " + column
-                        + " is unknown");
-            }
-        }
+        return loop;
     }
 
     /**
@@ -220,90 +173,41 @@ public class CifSaver {
             };
 
     /**
-     * Loop to save the reflectors.
+     * Creates the loop to save the reflectors. The reflectors are sorted by
+     * their indices.
      * 
-     * @author ppinard
+     * @param refls
+     *            reflectors
+     * @return loop of the reflectors
      */
-    private static class ReflectorsLoop implements Loop {
-
-        /** List of reflectors. */
-        private List<Reflector> refls;
-
-
-
-        /**
-         * Creates a new <code>ReflectorsLoop</code>.
-         * 
-         * @param refls
-         *            reflectors
-         */
-        public ReflectorsLoop(Reflectors refls) {
-            this.refls = new ArrayList<Reflector>();
-            this.refls.addAll(refls);
-            Collections.sort(this.refls, INDICES_COMPARATOR);
+    private static ColumnarLoop createReflectorsLoop(Reflectors refls) {
+        List<Reflector> sorted = new ArrayList<Reflector>(refls);
+        Collections.sort(sorted, INDICES_COMPARATOR);
+
+        int size = sorted.size();
+        int[] hs = new int[size];
+        int[] ks = new int[size];
+        int[] ls = new int[size];
+        double[] intensities = new double[size];
+
+        Reflector refl;
+        for (int i = 0; i < size; i++) {
+            refl = sorted.get(i);
+            hs[i] = refl.getH();
+            ks[i] = refl.getK();
+            ls[i] = refl.getL();
+            intensities[i] = refl.getIntensity();
         }
 
+        TypedLoop loop = new TypedLoop();
+        loop.addColumn(REFLN_INDEX_H, hs);
+        loop.addColumn(REFLN_INDEX_K, ks);
+        loop.addColumn(REFLN_INDEX_L, ls);
+        loop.addColumn(REFLN_INTENSITY_CALC, intensities);
 
-
-        @Override
-        public int getRowCount() {
-            return refls.size();
-        }
-
-
-
-        @Override
-        public int getColumnCount() {
-            return 4;
-        }
-
-
-
-        @Override
-        public String getDataTag(int column) {
-            switch (column) {
-            case 0:
-                return REFLN_INDEX_H;
-            case 1:
-                return REFLN_INDEX_K;
-            case 2:
-                return REFLN_INDEX_L;
-            case 3:
-                return REFLN_INTENSITY_CALC;
-            default:
-                throw new IllegalArgumentException("Column " + column
-                        + " is unknown");
-            }
-        }
-
-
-
-        @Override
-        public String getDataValue(int row, int column) {
-            Reflector refl = refls.get(row);
-
-            switch (column) {
-            case 0:
-                return Integer.toString(refl.getH());
-            case 1:
-                return Integer.toString(refl.getK());
-            case 2:
-                return Integer.toString(refl.getL());
-            case 3:
-                return FORMAT.format(refl.getIntensity());
-            default:
-                throw new IllegalArgumentException("Column " + column
-                        + " is unknown");
-            }
-        }
-
+        return loop;
     }
 
-    /** CIF writer. */
-    private CifWriter writer;
-
-
-
     /**
      * Writes the CIF information about the specified phase using the specified
      * writer.
@@ -320,7 +224,7 @@ public class CifSaver {
     public void save(Writer out, Phase phase, String blockCode)
             throws IOException {
         // Create writer
-        writer = new CifWriter(out);
+        CifWriter writer = new CifWriter(out);
 
         writer.writeDataBlock(blockCode);
 
@@ -349,13 +253,10 @@ public class CifSaver {
                 phase.getSpaceGroup().getSymbol(), true);
 
         // Atoms
-        writer.writeLoop(new AtomsLoop(phase.getAtoms()));
+        writer.writeLoop(createAtomsLoop(phase.getAllAtoms()));
 
         // Reflectors
-        writer.writeLoop(new ReflectorsLoop(phase.getReflectors()));
-
-        // Reset
-        writer = null;
+        writer.writeLoop(createReflectorsLoop(phase.getReflectors()));
     }
 
 
@@ -21,12 +21,14 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.regex.Pattern;
 
-import static net.sf.jchemistry.crystallography.io.CifConstants.FORMAT;
+import static net.sf.jchemistry.crystallography.io.CifConstants.getFormat;
 
 /**
  * Writer of a crystallographic information file (CIF). For the terminology used
  * in the javadoc, please refer to the International Tables for Crystallography,
  * Vol. G, Chapter 2.2, pp. 20-36.
+ * <p/>
+ * A writer is bound to one output and is not thread-safe.
  * 
  * @author ppinard
  */
@@ -110,7 +112,7 @@ public class CifWriter {
      */
     public void writeDataItem(String tag, double value) throws IOException {
         checkTag(tag);
-        writeLine("_" + tag + " " + FORMAT.format(value));
+        writeLine("_" + tag + " " + getFormat().format(value));
     }
 
 
@@ -151,7 +153,8 @@ public class CifWriter {
 
 
     /**
-     * Writes a looped list of data item.
+     * Writes a looped list of data item. If the loop is a
+     * {@link ColumnarLoop}, the values are retrieved column at a time.
      * 
      * @param loop
      *            loop
@@ -173,6 +176,23 @@ public class CifWriter {
         }
 
         // Values
+        if (loop instanceof ColumnarLoop)
+            writeColumns((ColumnarLoop) loop);
+        else
+            writeRows(loop);
+    }
+
+
+
+    /**
+     * Writes the values of a looped list one cell at a time.
+     * 
+     * @param loop
+     *            loop
+     * @throws IOException
+     *             if an error occurs while writing
+     */
+    private void writeRows(Loop loop) throws IOException {
         for (int i = 0; i < loop.getRowCount(); i++) {
             for (int j = 0; j < loop.getColumnCount(); j++) {
                 out.write(loop.getDataValue(i, j));
@@ -188,6 +208,40 @@ public class CifWriter {
 
 
 
+    /**
+     * Writes the values of a columnar looped list. All the columns are first
+     * retrieved in bulk and the rows are then assembled from them.
+     * 
+     * @param loop
+     *            loop
+     * @throws IOException
+     *             if an error occurs while writing
+     */
+    private void writeColumns(ColumnarLoop loop) throws IOException {
+        int columnCount = loop.getColumnCount();
+        String[][] columns = new String[columnCount][];
+        for (int j = 0; j < columnCount; j++)
+            columns[j] = loop.getStringColumn(j);
+
+        StringBuilder row = new StringBuilder(LINE_LENGTH);
+        for (int i = 0; i < loop.getRowCount(); i++) {
+            row.setLength(0);
+
+            for (int j = 0; j < columnCount; j++) {
+                row.append(columns[j][i]);
+
+                // do not write space after last value
+                if (j < (columnCount - 1))
+                    row.append(' ');
+            }
+
+            row.append(LINE_SEP);
+            out.write(row.toString());
+        }
+    }
+
+
+
     /**
      * Writes a comment.
      * 
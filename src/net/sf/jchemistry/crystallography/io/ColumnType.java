@@ -0,0 +1,41 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.io;
+
+/**
+ * Enumeration of the types of column in a {@link ColumnarLoop}.
+ * 
+ * @author ppinard
+ */
+public enum ColumnType {
+
+    /** Column of strings (<code>String[]</code>). */
+    STRING,
+
+    /** Column of floating point values (<code>double[]</code>). */
+    DOUBLE,
+
+    /** Column of integer values (<code>int[]</code>). */
+    INTEGER;
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+
+}
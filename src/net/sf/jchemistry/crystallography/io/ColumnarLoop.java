@@ -0,0 +1,95 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.io;
+
+/**
+ * Looped list whose data is stored column by column. Each column has a type
+ * (see {@link ColumnType}) and its values can be retrieved in bulk as a
+ * primitive array, without creating one string per value.
+ * <p/>
+ * The arrays returned by the column getters are the internal storage of the
+ * loop and must not be modified.
+ * 
+ * @author ppinard
+ */
+public interface ColumnarLoop extends Loop {
+
+    /**
+     * Returns the index of the column with the specified data tag.
+     * 
+     * @param tag
+     *            data tag (without the leading underscore)
+     * @return index of the column or <code>-1</code> if the loop does not
+     *         contain the tag
+     */
+    public int getColumnIndex(String tag);
+
+
+
+    /**
+     * Returns the type in which the values of the specified column are stored.
+     * 
+     * @param column
+     *            index of the column between 0 and {@link #getColumnCount()}
+     * @return type of the column
+     */
+    public ColumnType getColumnType(int column);
+
+
+
+    /**
+     * Returns the values of the specified column as floating point values.
+     * Integer columns are widened and string columns are parsed.
+     * 
+     * @param column
+     *            index of the column between 0 and {@link #getColumnCount()}
+     * @return values of the column (array of length {@link #getRowCount()})
+     * @throws NumberFormatException
+     *             if a string value cannot be parsed as a double
+     */
+    public double[] getDoubleColumn(int column);
+
+
+
+    /**
+     * Returns the values of the specified column as integer values. String
+     * columns are parsed.
+     * 
+     * @param column
+     *            index of the column between 0 and {@link #getColumnCount()}
+     * @return values of the column (array of length {@link #getRowCount()})
+     * @throws NumberFormatException
+     *             if a string value cannot be parsed as an integer
+     * @throws IllegalArgumentException
+     *             if the column contains floating point values
+     */
+    public int[] getIntegerColumn(int column);
+
+
+
+    /**
+     * Returns the values of the specified column as strings. Numerical columns
+     * are formatted as they would be written in a CIF.
+     * 
+     * @param column
+     *            index of the column between 0 and {@link #getColumnCount()}
+     * @return values of the column (array of length {@link #getRowCount()})
+     */
+    public String[] getStringColumn(int column);
+
+}
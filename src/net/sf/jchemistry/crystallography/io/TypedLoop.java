@@ -0,0 +1,339 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.io;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.sf.jchemistry.crystallography.io.CifConstants.getFormat;
+
+/**
+ * Implementation of a {@link ColumnarLoop} where the columns are added one at
+ * a time as primitive arrays. The values of a column are converted to another
+ * type only once, on the first request, and then kept with the column.
+ * <p/>
+ * A loop is not thread-safe.
+ * 
+ * @author ppinard
+ */
+public final class TypedLoop implements ColumnarLoop {
+
+    /**
+     * Column of the loop.
+     */
+    private static class Column {
+
+        /** Data tag. */
+        private final String tag;
+
+        /** Type in which the values were added. */
+        private final ColumnType type;
+
+        /** Values as strings. */
+        private String[] strings;
+
+        /** Values as doubles. */
+        private double[] doubles;
+
+        /** Values as integers. */
+        private int[] integers;
+
+
+
+        /**
+         * Creates a new <code>Column</code>.
+         * 
+         * @param tag
+         *            data tag
+         * @param type
+         *            type in which the values were added
+         */
+        public Column(String tag, ColumnType type) {
+            this.tag = tag;
+            this.type = type;
+        }
+    }
+
+
+
+    /**
+     * Parses a CIF numerical value as a double. The standard uncertainty
+     * between parentheses (e.g. <code>0.1234(5)</code>) is discarded.
+     * 
+     * @param value
+     *            string value
+     * @return double value
+     * @throws NumberFormatException
+     *             if the value cannot be parsed
+     */
+    protected static double parseDouble(String value) {
+        int index = value.indexOf('(');
+        if (index >= 0)
+            value = value.substring(0, index);
+
+        return Double.parseDouble(value);
+    }
+
+
+
+    /**
+     * Parses a CIF numerical value as an integer. The standard uncertainty
+     * between parentheses is discarded.
+     * 
+     * @param value
+     *            string value
+     * @return integer value
+     * @throws NumberFormatException
+     *             if the value cannot be parsed
+     */
+    protected static int parseInteger(String value) {
+        int index = value.indexOf('(');
+        if (index >= 0)
+            value = value.substring(0, index);
+
+        return Integer.parseInt(value);
+    }
+
+    /** Columns of the loop. */
+    private final List<Column> columns;
+
+    /** Index of the columns for each data tag. */
+    private final Map<String, Integer> indexes;
+
+    /** Number of rows. */
+    private int rowCount;
+
+
+
+    /**
+     * Creates a new empty <code>TypedLoop</code>.
+     */
+    public TypedLoop() {
+        columns = new ArrayList<Column>();
+        indexes = new HashMap<String, Integer>();
+        rowCount = -1;
+    }
+
+
+
+    /**
+     * Adds a column of floating point values.
+     * 
+     * @param tag
+     *            data tag (without the leading underscore)
+     * @param values
+     *            values of the column
+     * @throws IllegalArgumentException
+     *             if the tag already exists in the loop
+     * @throws IllegalArgumentException
+     *             if the number of values differs from the other columns
+     */
+    public void addColumn(String tag, double[] values) {
+        Column column = createColumn(tag, ColumnType.DOUBLE, values.length);
+        column.doubles = values;
+        columns.add(column);
+    }
+
+
+
+    /**
+     * Adds a column of integer values.
+     * 
+     * @param tag
+     *            data tag (without the leading underscore)
+     * @param values
+     *            values of the column
+     * @throws IllegalArgumentException
+     *             if the tag already exists in the loop
+     * @throws IllegalArgumentException
+     *             if the number of values differs from the other columns
+     */
+    public void addColumn(String tag, int[] values) {
+        Column column = createColumn(tag, ColumnType.INTEGER, values.length);
+        column.integers = values;
+        columns.add(column);
+    }
+
+
+
+    /**
+     * Adds a column of string values.
+     * 
+     * @param tag
+     *            data tag (without the leading underscore)
+     * @param values
+     *            values of the column
+     * @throws IllegalArgumentException
+     *             if the tag already exists in the loop
+     * @throws IllegalArgumentException
+     *             if the number of values differs from the other columns
+     */
+    public void addColumn(String tag, String[] values) {
+        Column column = createColumn(tag, ColumnType.STRING, values.length);
+        column.strings = values;
+        columns.add(column);
+    }
+
+
+
+    /**
+     * Checks the tag and the number of values of a new column and creates it.
+     * 
+     * @param tag
+     *            data tag
+     * @param type
+     *            type of the column
+     * @param length
+     *            number of values
+     * @return new column
+     */
+    private Column createColumn(String tag, ColumnType type, int length) {
+        if (tag == null)
+            throw new NullPointerException("tag == null");
+        if (indexes.containsKey(tag))
+            throw new IllegalArgumentException("Tag (" + tag
+                    + ") already exists in the loop");
+        if (rowCount >= 0 && length != rowCount)
+            throw new IllegalArgumentException("Number of values (" + length
+                    + ") of column " + tag
+                    + " does not match the number of rows (" + rowCount + ")");
+
+        rowCount = length;
+        indexes.put(tag, columns.size());
+
+        return new Column(tag, type);
+    }
+
+
+
+    @Override
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+
+
+    @Override
+    public int getColumnIndex(String tag) {
+        Integer index = indexes.get(tag);
+        if (index == null)
+            return -1;
+        else
+            return index;
+    }
+
+
+
+    @Override
+    public ColumnType getColumnType(int column) {
+        return columns.get(column).type;
+    }
+
+
+
+    @Override
+    public String getDataTag(int column) {
+        return columns.get(column).tag;
+    }
+
+
+
+    @Override
+    public String getDataValue(int row, int column) {
+        return getStringColumn(column)[row];
+    }
+
+
+
+    @Override
+    public double[] getDoubleColumn(int column) {
+        Column c = columns.get(column);
+
+        if (c.doubles == null) {
+            double[] doubles = new double[rowCount];
+
+            if (c.type == ColumnType.INTEGER) {
+                for (int i = 0; i < rowCount; i++)
+                    doubles[i] = c.integers[i];
+            } else {
+                for (int i = 0; i < rowCount; i++)
+                    doubles[i] = parseDouble(c.strings[i]);
+            }
+
+            c.doubles = doubles;
+        }
+
+        return c.doubles;
+    }
+
+
+
+    @Override
+    public int[] getIntegerColumn(int column) {
+        Column c = columns.get(column);
+
+        if (c.integers == null) {
+            if (c.type == ColumnType.DOUBLE)
+                throw new IllegalArgumentException("Column " + c.tag
+                        + " contains floating point values");
+
+            int[] integers = new int[rowCount];
+            for (int i = 0; i < rowCount; i++)
+                integers[i] = parseInteger(c.strings[i]);
+
+            c.integers = integers;
+        }
+
+        return c.integers;
+    }
+
+
+
+    @Override
+    public int getRowCount() {
+        return Math.max(rowCount, 0);
+    }
+
+
+
+    @Override
+    public String[] getStringColumn(int column) {
+        Column c = columns.get(column);
+
+        if (c.strings == null) {
+            String[] strings = new String[rowCount];
+
+            if (c.type == ColumnType.INTEGER) {
+                for (int i = 0; i < rowCount; i++)
+                    strings[i] = Integer.toString(c.integers[i]);
+            } else {
+                NumberFormat format = getFormat();
+                for (int i = 0; i < rowCount; i++)
+                    strings[i] = format.format(c.doubles[i]);
+            }
+
+            c.strings = strings;
+        }
+
+        return c.strings;
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.library;
+
+import net.sf.jchemistry.crystallography.core.UnitCell;
+
+/**
+ * Enumeration of the parameters of a unit cell that can be searched in a
+ * {@link PhaseLibrary}. Lengths are in angstroms, angles in radians and the
+ * volume in angstroms cube.
+ * 
+ * @author Philippe T. Pinard
+ */
+public enum LatticeParameter {
+
+    /** Lattice constant <code>a</code>. */
+    A {
+        @Override
+        public double getValue(UnitCell unitCell) {
+            return unitCell.getA();
+        }
+    },
+
+    /** Lattice constant <code>b</code>. */
+    B {
+        @Override
+        public double getValue(UnitCell unitCell) {
+            return unitCell.getB();
+        }
+    },
+
+    /** Lattice constant <code>c</code>. */
+    C {
+        @Override
+        public double getValue(UnitCell unitCell) {
+            return unitCell.getC();
+        }
+    },
+
+    /** Lattice angle <code>alpha</code>. */
+    ALPHA {
+        @Override
+        public double getValue(UnitCell unitCell) {
+            return unitCell.getAlpha();
+        }
+    },
+
+    /** Lattice angle <code>beta</code>. */
+    BETA {
+        @Override
+        public double getValue(UnitCell unitCell) {
+            return unitCell.getBeta();
+        }
+    },
+
+    /** Lattice angle <code>gamma</code>. */
+    GAMMA {
+        @Override
+        public double getValue(UnitCell unitCell) {
+            return unitCell.getGamma();
+        }
+    },
+
+    /** Volume of the unit cell. */
+    VOLUME {
+        @Override
+        public double getValue(UnitCell unitCell) {
+            return unitCell.getVolume();
+        }
+    };
+
+    /**
+     * Returns the value of this parameter for the specified unit cell.
+     * 
+     * @param unitCell
+     *            unit cell
+     * @return value of the parameter
+     */
+    public abstract double getValue(UnitCell unitCell);
+
+}
@@ -0,0 +1,354 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.library;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.core.Element;
+import net.sf.jchemistry.crystallography.core.AtomSite;
+import net.sf.jchemistry.crystallography.core.CrystalSystem;
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+import net.sf.jchemistry.crystallography.core.Phase;
+import net.sf.jchemistry.crystallography.core.UnitCell;
+
+import static net.sf.jchemistry.util.ArrayUtils.lowerBound;
+import static net.sf.jchemistry.util.ArrayUtils.upperBound;
+
+
+/**
+ * Index over a collection of phases to quickly find the phases matching a
+ * {@link PhaseQuery}. The presence of each element is stored as a bit set, the
+ * phases are grouped by crystal system and Laue group, and the lattice
+ * parameters are kept in sorted arrays. A query is resolved by intersecting
+ * bit sets and by a binary search on the most selective lattice parameter
+ * range, without scanning all the phases.
+ * <p/>
+ * The library is a snapshot of the phases at the time of its creation. Later
+ * modifications of the phases are not reflected in the index.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class PhaseLibrary {
+
+    /** Indexed phases. */
+    private final Phase[] phases;
+
+    /** Bit sets of the phases containing an element, by atomic number. */
+    private final BitSet[] elements;
+
+    /** Bit set of the phases of each crystal system. */
+    private final Map<CrystalSystem, BitSet> crystalSystems;
+
+    /** Bit set of the phases of each Laue group. */
+    private final Map<LaueGroup, BitSet> laueGroups;
+
+    /** Value of each lattice parameter, indexed by phase. */
+    private final double[][] values;
+
+    /** Sorted values of each lattice parameter. */
+    private final double[][] sortedValues;
+
+    /** Phase index corresponding to each sorted value. */
+    private final int[][] sortedIndexes;
+
+
+
+    /**
+     * Creates a new <code>PhaseLibrary</code> indexing the specified phases.
+     * 
+     * @param phases
+     *            phases to index
+     */
+    public PhaseLibrary(Collection<Phase> phases) {
+        if (phases == null)
+            throw new NullPointerException("phases == null");
+
+        this.phases = phases.toArray(new Phase[0]);
+        int size = this.phases.length;
+
+        // Elements, crystal systems and Laue groups
+        elements = new BitSet[Element.values().length + 1];
+        crystalSystems =
+                new EnumMap<CrystalSystem, BitSet>(CrystalSystem.class);
+        laueGroups = new EnumMap<LaueGroup, BitSet>(LaueGroup.class);
+
+        Phase phase;
+        for (int i = 0; i < size; i++) {
+            phase = this.phases[i];
+            if (phase == null)
+                throw new NullPointerException("phase == null");
+
+            for (AtomSite atom : phase.getAsymmetricUnit())
+                getBitSet(atom.getElement()).set(i);
+
+            getBitSet(crystalSystems,
+                    phase.getSpaceGroup().getCrystalSystem()).set(i);
+            getBitSet(laueGroups, phase.getSpaceGroup().getLaueGroup()).set(i);
+        }
+
+        // Lattice parameters
+        LatticeParameter[] parameters = LatticeParameter.values();
+        values = new double[parameters.length][];
+        sortedValues = new double[parameters.length][];
+        sortedIndexes = new int[parameters.length][];
+
+        for (LatticeParameter parameter : parameters)
+            indexParameter(parameter);
+    }
+
+
+
+    /**
+     * Returns the bit set of the specified element, creating it if needed.
+     * 
+     * @param element
+     *            element
+     * @return bit set
+     */
+    private BitSet getBitSet(Element element) {
+        BitSet bitSet = elements[element.z()];
+        if (bitSet == null) {
+            bitSet = new BitSet(phases.length);
+            elements[element.z()] = bitSet;
+        }
+        return bitSet;
+    }
+
+
+
+    /**
+     * Returns the bit set of the specified key, creating it if needed.
+     * 
+     * @param <K>
+     *            type of key
+     * @param map
+     *            map of bit sets
+     * @param key
+     *            key
+     * @return bit set
+     */
+    private <K> BitSet getBitSet(Map<K, BitSet> map, K key) {
+        BitSet bitSet = map.get(key);
+        if (bitSet == null) {
+            bitSet = new BitSet(phases.length);
+            map.put(key, bitSet);
+        }
+        return bitSet;
+    }
+
+
+
+    /**
+     * Stores and sorts the values of the specified lattice parameter.
+     * 
+     * @param parameter
+     *            lattice parameter
+     */
+    private void indexParameter(LatticeParameter parameter) {
+        int size = phases.length;
+        final double[] parameterValues = new double[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            UnitCell unitCell = phases[i].getUnitCell();
+            parameterValues[i] = parameter.getValue(unitCell);
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(parameterValues[o1], parameterValues[o2]);
+            }
+        });
+
+        double[] sorted = new double[size];
+        int[] indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = order[i];
+            sorted[i] = parameterValues[indexes[i]];
+        }
+
+        int ordinal = parameter.ordinal();
+        values[ordinal] = parameterValues;
+        sortedValues[ordinal] = sorted;
+        sortedIndexes[ordinal] = indexes;
+    }
+
+
+
+    /**
+     * Returns the number of indexed phases.
+     * 
+     * @return number of phases
+     */
+    public int size() {
+        return phases.length;
+    }
+
+
+
+    /**
+     * Returns the phase at the specified index.
+     * 
+     * @param index
+     *            index of the phase
+     * @return phase
+     */
+    public Phase getPhase(int index) {
+        return phases[index];
+    }
+
+
+
+    /**
+     * Returns the phases matching the specified query. The phases are
+     * returned in the order in which they were indexed.
+     * 
+     * @param query
+     *            criteria
+     * @return matching phases
+     */
+    public List<Phase> query(PhaseQuery query) {
+        BitSet matches = queryIndexes(query);
+
+        List<Phase> results = new ArrayList<Phase>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i =
+                matches.nextSetBit(i + 1))
+            results.add(phases[i]);
+
+        return Collections.unmodifiableList(results);
+    }
+
+
+
+    /**
+     * Returns a bit set of the indexes of the phases matching the specified
+     * query. The returned bit set is a new instance.
+     * 
+     * @param query
+     *            criteria
+     * @return bit set of the indexes of the matching phases
+     */
+    public BitSet queryIndexes(PhaseQuery query) {
+        if (query == null)
+            throw new NullPointerException("query == null");
+
+        BitSet candidates = new BitSet(phases.length);
+        candidates.set(0, phases.length);
+
+        // Bit set intersections
+        BitSet bitSet;
+        for (Element element : query.getRequiredElements()) {
+            bitSet = elements[element.z()];
+            if (bitSet == null)
+                return new BitSet();
+            candidates.and(bitSet);
+        }
+
+        if (query.getCrystalSystem() != null)
+            and(candidates, crystalSystems.get(query.getCrystalSystem()));
+
+        if (query.getLaueGroup() != null)
+            and(candidates, laueGroups.get(query.getLaueGroup()));
+
+        for (Element element : query.getExcludedElements()) {
+            bitSet = elements[element.z()];
+            if (bitSet != null)
+                candidates.andNot(bitSet);
+        }
+
+        if (candidates.isEmpty())
+            return candidates;
+
+        // Range searches, starting with the most selective
+        LatticeParameter[] parameters = LatticeParameter.values();
+        int[] lows = new int[parameters.length];
+        int[] highs = new int[parameters.length];
+        int selective = -1;
+        double[] range;
+        for (LatticeParameter parameter : parameters) {
+            range = query.getRange(parameter);
+            if (range == null)
+                continue;
+
+            int ordinal = parameter.ordinal();
+            lows[ordinal] = lowerBound(sortedValues[ordinal], range[0]);
+            highs[ordinal] = upperBound(sortedValues[ordinal], range[1]);
+
+            if (selective < 0
+                    || highs[ordinal] - lows[ordinal] < highs[selective]
+                            - lows[selective])
+                selective = ordinal;
+        }
+
+        if (selective < 0)
+            return candidates;
+
+        BitSet matches = new BitSet(phases.length);
+        int[] indexes = sortedIndexes[selective];
+        int index;
+        loop: for (int i = lows[selective]; i < highs[selective]; i++) {
+            index = indexes[i];
+            if (!candidates.get(index))
+                continue;
+
+            for (LatticeParameter parameter : parameters) {
+                range = query.getRange(parameter);
+                if (range == null || parameter.ordinal() == selective)
+                    continue;
+
+                double value = values[parameter.ordinal()][index];
+                if (value < range[0] || value > range[1])
+                    continue loop;
+            }
+
+            matches.set(index);
+        }
+
+        return matches;
+    }
+
+
+
+    /**
+     * Intersects the candidates with the specified bit set. If the bit set is
+     * <code>null</code>, all the candidates are removed.
+     * 
+     * @param candidates
+     *            candidates
+     * @param bitSet
+     *            bit set or <code>null</code>
+     */
+    private static void and(BitSet candidates, BitSet bitSet) {
+        if (bitSet == null)
+            candidates.clear();
+        else
+            candidates.and(bitSet);
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.library;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.jchemistry.core.Element;
+import net.sf.jchemistry.crystallography.core.CrystalSystem;
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+
+/**
+ * Criteria to search phases in a {@link PhaseLibrary}. A phase matches the
+ * query if it satisfies all the specified criteria. A query without any
+ * criterion matches all phases.
+ * 
+ * @author Philippe T. Pinard
+ */
+public class PhaseQuery {
+
+    /** Elements that must be present in the phase. */
+    private final Set<Element> requiredElements;
+
+    /** Elements that must not be present in the phase. */
+    private final Set<Element> excludedElements;
+
+    /** Crystal system or <code>null</code> if any. */
+    private CrystalSystem crystalSystem;
+
+    /** Laue group or <code>null</code> if any. */
+    private LaueGroup laueGroup;
+
+    /** Ranges of the lattice parameters: [min, max]. */
+    private final Map<LatticeParameter, double[]> ranges;
+
+
+
+    /**
+     * Creates a new <code>PhaseQuery</code> without any criterion.
+     */
+    public PhaseQuery() {
+        requiredElements = EnumSet.noneOf(Element.class);
+        excludedElements = EnumSet.noneOf(Element.class);
+        ranges =
+                new EnumMap<LatticeParameter, double[]>(LatticeParameter.class);
+    }
+
+
+
+    /**
+     * Requires the specified elements to be present in the phase.
+     * 
+     * @param elements
+     *            elements
+     * @return this query
+     */
+    public PhaseQuery requireElements(Element... elements) {
+        for (Element element : elements) {
+            if (element == null)
+                throw new NullPointerException("element == null");
+            requiredElements.add(element);
+        }
+        return this;
+    }
+
+
+
+    /**
+     * Requires the specified elements to be absent from the phase.
+     * 
+     * @param elements
+     *            elements
+     * @return this query
+     */
+    public PhaseQuery excludeElements(Element... elements) {
+        for (Element element : elements) {
+            if (element == null)
+                throw new NullPointerException("element == null");
+            excludedElements.add(element);
+        }
+        return this;
+    }
+
+
+
+    /**
+     * Requires the phase to have the specified crystal system.
+     * 
+     * @param crystalSystem
+     *            crystal system or <code>null</code> for any crystal system
+     * @return this query
+     */
+    public PhaseQuery setCrystalSystem(CrystalSystem crystalSystem) {
+        this.crystalSystem = crystalSystem;
+        return this;
+    }
+
+
+
+    /**
+     * Requires the phase to have the specified Laue group.
+     * 
+     * @param laueGroup
+     *            Laue group or <code>null</code> for any Laue group
+     * @return this query
+     */
+    public PhaseQuery setLaueGroup(LaueGroup laueGroup) {
+        this.laueGroup = laueGroup;
+        return this;
+    }
+
+
+
+    /**
+     * Requires the specified lattice parameter to be between the minimum and
+     * maximum values (inclusively).
+     * 
+     * @param parameter
+     *            lattice parameter
+     * @param min
+     *            minimum value
+     * @param max
+     *            maximum value
+     * @return this query
+     * @throws IllegalArgumentException
+     *             if the minimum is greater than the maximum
+     */
+    public PhaseQuery setRange(LatticeParameter parameter, double min,
+            double max) {
+        if (parameter == null)
+            throw new NullPointerException("parameter == null");
+        if (min > max)
+            throw new IllegalArgumentException("Minimum (" + min
+                    + ") is greater than maximum (" + max + ")");
+
+        ranges.put(parameter, new double[] { min, max });
+        return this;
+    }
+
+
+
+    /**
+     * Returns the elements that must be present in the phase.
+     * 
+     * @return required elements
+     */
+    public Set<Element> getRequiredElements() {
+        return requiredElements;
+    }
+
+
+
+    /**
+     * Returns the elements that must be absent from the phase.
+     * 
+     * @return excluded elements
+     */
+    public Set<Element> getExcludedElements() {
+        return excludedElements;
+    }
+
+
+
+    /**
+     * Returns the required crystal system.
+     * 
+     * @return crystal system or <code>null</code> if any
+     */
+    public CrystalSystem getCrystalSystem() {
+        return crystalSystem;
+    }
+
+
+
+    /**
+     * Returns the required Laue group.
+     * 
+     * @return Laue group or <code>null</code> if any
+     */
+    public LaueGroup getLaueGroup() {
+        return laueGroup;
+    }
+
+
+
+    /**
+     * Returns the range of the specified lattice parameter.
+     * 
+     * @param parameter
+     *            lattice parameter
+     * @return range [min, max] or <code>null</code> if the parameter is not
+     *         constrained
+     */
+    public double[] getRange(LatticeParameter parameter) {
+        return ranges.get(parameter);
+    }
+
+}
@@ -0,0 +1,389 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.library;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.Phase;
+import net.sf.jchemistry.crystallography.core.Reflector;
+
+import org.apache.commons.math.linear.LUDecompositionImpl;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.sqrt;
+import static net.sf.jchemistry.util.ArrayUtils.lowerBound;
+
+/**
+ * Search-match engine to identify phases from a list of measured
+ * d-spacings. The d-spacings and relative intensities of the strongest
+ * reflectors of each phase of a {@link PhaseLibrary} are precomputed once and
+ * stored in an inverted index sorted by d-spacing. A search only requires a
+ * binary search per measured d-spacing and the accumulation of the scores of
+ * the phases found in the tolerance window.
+ * <p/>
+ * The reflectors of the phases must be computed (see
+ * {@link Phase#computeReflectors}) before the creation of the engine.
+ * Reflectors with the same d-spacing (e.g. equivalent planes) are merged into
+ * a single line.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class SearchMatch {
+
+    /** Relative tolerance to consider two d-spacings of a phase as equal. */
+    private static final double D_EPSILON = 1e-6;
+
+    /** Comparator of the results by ascending score. */
+    private static final Comparator<SearchMatchResult> SCORE_COMPARATOR =
+            new Comparator<SearchMatchResult>() {
+
+                @Override
+                public int compare(SearchMatchResult o1, SearchMatchResult o2) {
+                    return Double.compare(o1.getScore(), o2.getScore());
+                }
+
+            };
+
+    /** Library of phases. */
+    private final PhaseLibrary library;
+
+    /** Sorted d-spacings of the indexed lines. */
+    private final double[] planeSpacings;
+
+    /** Relative intensity of each indexed line. */
+    private final double[] intensities;
+
+    /** Phase index of each indexed line. */
+    private final int[] phaseIndexes;
+
+    /** Sum of the relative intensities of the indexed lines of each phase. */
+    private final double[] totalIntensities;
+
+
+
+    /**
+     * Creates a new <code>SearchMatch</code> engine over the phases of the
+     * specified library.
+     * 
+     * @param library
+     *            library of phases
+     * @param maxLines
+     *            maximum number of lines (distinct d-spacings), from the most
+     *            intense one, indexed per phase
+     * @throws IllegalArgumentException
+     *             if the maximum number of lines is less than 1
+     */
+    public SearchMatch(PhaseLibrary library, int maxLines) {
+        if (library == null)
+            throw new NullPointerException("library == null");
+        if (maxLines < 1)
+            throw new IllegalArgumentException(
+                    "Maximum number of lines must be greater than 0");
+
+        this.library = library;
+
+        int size = library.size();
+        totalIntensities = new double[size];
+
+        // Strongest lines of each phase
+        double[][] lineSpacings = new double[size][];
+        double[][] lineIntensities = new double[size][];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            lineSpacings[i] = new double[maxLines];
+            lineIntensities[i] = new double[maxLines];
+            int n =
+                    computeLines(library.getPhase(i), lineSpacings[i],
+                            lineIntensities[i]);
+
+            lineSpacings[i] = copyOf(lineSpacings[i], n);
+            lineIntensities[i] = copyOf(lineIntensities[i], n);
+            for (int j = 0; j < n; j++)
+                totalIntensities[i] += lineIntensities[i][j];
+            count += n;
+        }
+
+        // Inverted index sorted by d-spacing
+        final double[] spacings = new double[count];
+        double[] relIntensities = new double[count];
+        int[] indexes = new int[count];
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < lineSpacings[i].length; j++) {
+                spacings[k] = lineSpacings[i][j];
+                relIntensities[k] = lineIntensities[i][j];
+                indexes[k] = i;
+                k++;
+            }
+        }
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(spacings[o1], spacings[o2]);
+            }
+        });
+
+        planeSpacings = new double[count];
+        intensities = new double[count];
+        phaseIndexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            planeSpacings[i] = spacings[order[i]];
+            intensities[i] = relIntensities[order[i]];
+            phaseIndexes[i] = indexes[order[i]];
+        }
+    }
+
+
+
+    /**
+     * Computes the d-spacings and relative intensities of the strongest lines
+     * of the specified phase.
+     * 
+     * @param phase
+     *            phase
+     * @param spacings
+     *            array where to store the d-spacings
+     * @param relIntensities
+     *            array where to store the intensities relative to the most
+     *            intense line
+     * @return number of lines
+     */
+    private static int computeLines(Phase phase, double[] spacings,
+            double[] relIntensities) {
+        double[][] g =
+                new LUDecompositionImpl(phase.getUnitCell()
+                        .getMetricalMatrix()).getSolver().getInverse()
+                        .getData();
+
+        int n = 0;
+        double maxIntensity = 0.0;
+        Iterator<Reflector> it = phase.getReflectors().intensityIterator(true);
+        loop: while (it.hasNext() && n < spacings.length) {
+            Reflector refl = it.next();
+            double h = refl.getH();
+            double k = refl.getK();
+            double l = refl.getL();
+
+            double sSquare =
+                    h * (g[0][0] * h + g[0][1] * k + g[0][2] * l) + k
+                            * (g[1][0] * h + g[1][1] * k + g[1][2] * l) + l
+                            * (g[2][0] * h + g[2][1] * k + g[2][2] * l);
+            double d = 1.0 / sqrt(sSquare);
+
+            // Reflectors are in descending intensity, keep the first one
+            for (int i = 0; i < n; i++)
+                if (abs(spacings[i] - d) <= D_EPSILON * d)
+                    continue loop;
+
+            if (n == 0)
+                maxIntensity = refl.getIntensity();
+
+            spacings[n] = d;
+            relIntensities[n] =
+                    maxIntensity > 0.0 ? refl.getIntensity() / maxIntensity
+                            : 1.0;
+            n++;
+        }
+
+        return n;
+    }
+
+
+
+    /**
+     * Returns a copy of the first elements of an array.
+     * 
+     * @param array
+     *            array
+     * @param length
+     *            number of elements to copy
+     * @return copy
+     */
+    private static double[] copyOf(double[] array, int length) {
+        double[] copy = new double[length];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+
+
+    /**
+     * Returns the library of phases searched by this engine.
+     * 
+     * @return library of phases
+     */
+    public PhaseLibrary getLibrary() {
+        return library;
+    }
+
+
+
+    /**
+     * Returns the number of indexed lines.
+     * 
+     * @return number of lines
+     */
+    public int getLineCount() {
+        return planeSpacings.length;
+    }
+
+
+
+    /**
+     * Searches the phases of the library that best match the measured
+     * d-spacings.
+     * 
+     * @param spacings
+     *            measured d-spacings (in angstroms)
+     * @param tolerances
+     *            absolute tolerance of each measured d-spacing (in angstroms)
+     * @param maxResults
+     *            maximum number of results
+     * @return best matching phases sorted by descending score
+     * @see #search(double[], double[], int, BitSet)
+     */
+    public List<SearchMatchResult> search(double[] spacings,
+            double[] tolerances, int maxResults) {
+        return search(spacings, tolerances, maxResults, null);
+    }
+
+
+
+    /**
+     * Searches the phases of the library that best match the measured
+     * d-spacings. Each measured d-spacing is matched with the indexed lines
+     * within its tolerance window. A line contributes its relative intensity
+     * weighted linearly by its distance to the measured d-spacing (1.0 when
+     * equal, 0.0 at the tolerance). Only the best line of a phase is counted
+     * for each measured d-spacing. The search can be restricted to the
+     * candidates of a {@link PhaseLibrary#queryIndexes(PhaseQuery)} query.
+     * 
+     * @param spacings
+     *            measured d-spacings (in angstroms)
+     * @param tolerances
+     *            absolute tolerance of each measured d-spacing (in angstroms)
+     * @param maxResults
+     *            maximum number of results
+     * @param candidates
+     *            indexes of the phases to consider or <code>null</code> to
+     *            consider all phases
+     * @return best matching phases sorted by descending score
+     * @throws IllegalArgumentException
+     *             if the number of d-spacings and tolerances differ
+     * @throws IllegalArgumentException
+     *             if a tolerance is negative
+     * @throws IllegalArgumentException
+     *             if the maximum number of results is less than 1
+     */
+    public List<SearchMatchResult> search(double[] spacings,
+            double[] tolerances, int maxResults, BitSet candidates) {
+        if (spacings == null)
+            throw new NullPointerException("spacings == null");
+        if (tolerances == null)
+            throw new NullPointerException("tolerances == null");
+        if (spacings.length != tolerances.length)
+            throw new IllegalArgumentException("Number of d-spacings ("
+                    + spacings.length + ") and tolerances ("
+                    + tolerances.length + ") differ");
+        if (maxResults < 1)
+            throw new IllegalArgumentException(
+                    "Maximum number of results must be greater than 0");
+
+        int size = library.size();
+        double[] sums = new double[size];
+        double[] best = new double[size];
+        int[] matchCounts = new int[size];
+        int[] lastPeaks = new int[size];
+        Arrays.fill(lastPeaks, -1);
+        int[] touched = new int[size];
+        int touchedCount = 0;
+
+        for (int i = 0; i < spacings.length; i++) {
+            double d = spacings[i];
+            double tolerance = tolerances[i];
+            if (tolerance < 0.0)
+                throw new IllegalArgumentException("Tolerance (" + tolerance
+                        + ") must be positive");
+
+            int start = lowerBound(planeSpacings, d - tolerance);
+            for (int j = start; j < planeSpacings.length
+                    && planeSpacings[j] <= d + tolerance; j++) {
+                int p = phaseIndexes[j];
+                if (candidates != null && !candidates.get(p))
+                    continue;
+
+                double weight = intensities[j];
+                if (tolerance > 0.0)
+                    weight *= 1.0 - abs(planeSpacings[j] - d) / tolerance;
+
+                if (lastPeaks[p] != i) {
+                    if (matchCounts[p] == 0)
+                        touched[touchedCount++] = p;
+                    lastPeaks[p] = i;
+                    matchCounts[p]++;
+                    best[p] = weight;
+                    sums[p] += weight;
+                } else if (weight > best[p]) {
+                    sums[p] += weight - best[p];
+                    best[p] = weight;
+                }
+            }
+        }
+
+        // Top results
+        PriorityQueue<SearchMatchResult> queue =
+                new PriorityQueue<SearchMatchResult>(maxResults + 1,
+                        SCORE_COMPARATOR);
+        for (int i = 0; i < touchedCount; i++) {
+            int p = touched[i];
+            double score =
+                    sums[p] / totalIntensities[p] * matchCounts[p]
+                            / spacings.length;
+            if (score <= 0.0)
+                continue;
+            if (queue.size() == maxResults
+                    && score <= queue.peek().getScore())
+                continue;
+
+            queue.add(new SearchMatchResult(p, library.getPhase(p), score,
+                    matchCounts[p]));
+            if (queue.size() > maxResults)
+                queue.poll();
+        }
+
+        List<SearchMatchResult> results =
+                new ArrayList<SearchMatchResult>(queue);
+        Collections.sort(results, Collections.reverseOrder(SCORE_COMPARATOR));
+
+        return results;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.library;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.Phase;
+
+/**
+ * Phase candidate returned by a {@link SearchMatch}.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class SearchMatchResult {
+
+    /** Index of the phase in the library. */
+    private final int index;
+
+    /** Phase. */
+    private final Phase phase;
+
+    /** Figure of merit. */
+    private final double score;
+
+    /** Number of measured d-spacings matched by the phase. */
+    private final int matchCount;
+
+
+
+    /**
+     * Creates a new <code>SearchMatchResult</code>.
+     * 
+     * @param index
+     *            index of the phase in the library
+     * @param phase
+     *            phase
+     * @param score
+     *            figure of merit, between 0 and 1
+     * @param matchCount
+     *            number of measured d-spacings matched by the phase
+     */
+    public SearchMatchResult(int index, Phase phase, double score,
+            int matchCount) {
+        if (phase == null)
+            throw new NullPointerException("phase == null");
+
+        this.index = index;
+        this.phase = phase;
+        this.score = score;
+        this.matchCount = matchCount;
+    }
+
+
+
+    @Override
+    public String toString() {
+        return phase.getName() + " (" + score + ")";
+    }
+
+
+
+    /**
+     * Returns the index of the phase in the library.
+     * 
+     * @return index of the phase
+     */
+    public int getIndex() {
+        return index;
+    }
+
+
+
+    /**
+     * Returns the phase.
+     * 
+     * @return phase
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+
+
+
+    /**
+     * Returns the figure of merit. It is the product of the fraction of the
+     * indexed intensity of the phase that was matched and the fraction of the
+     * measured d-spacings that were matched. A perfect match has a score of
+     * 1.0.
+     * 
+     * @return figure of merit, between 0 and 1
+     */
+    public double getScore() {
+        return score;
+    }
+
+
+
+    /**
+     * Returns the number of measured d-spacings matched by the phase.
+     * 
+     * @return number of matched d-spacings
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.orientation;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Coincidence site lattice (CSL) boundary, defined by its
+ * <code>&Sigma;</code> value and the rotation between the two lattices.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class CslBoundary {
+
+    /** Name (e.g. 13a). */
+    private final String name;
+
+    /** Sigma value. */
+    private final int sigma;
+
+    /** Rotation between the two lattices. */
+    private final Rotation rotation;
+
+
+
+    /**
+     * Creates a new <code>CslBoundary</code>.
+     * 
+     * @param name
+     *            name of the boundary (e.g. <code>13a</code>)
+     * @param sigma
+     *            sigma value, i.e. reciprocal density of coincidence sites
+     * @param axis
+     *            rotation axis in the Cartesian frame of the crystal
+     * @param angle
+     *            rotation angle (in radians)
+     * @throws IllegalArgumentException
+     *             if sigma is less than 1
+     */
+    public CslBoundary(String name, int sigma, Vector3D axis, double angle) {
+        if (name == null)
+            throw new NullPointerException("name == null");
+        if (axis == null)
+            throw new NullPointerException("axis == null");
+        if (sigma < 1)
+            throw new IllegalArgumentException("Sigma (" + sigma
+                    + ") must be greater or equal to 1");
+
+        this.name = name;
+        this.sigma = sigma;
+        rotation = new Rotation(axis, angle);
+    }
+
+
+
+    @Override
+    public String toString() {
+        return "Sigma" + name;
+    }
+
+
+
+    /**
+     * Returns the name of the boundary.
+     * 
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+
+
+    /**
+     * Returns the sigma value.
+     * 
+     * @return sigma value
+     */
+    public int getSigma() {
+        return sigma;
+    }
+
+
+
+    /**
+     * Returns the rotation between the two lattices.
+     * 
+     * @return rotation
+     */
+    public Rotation getRotation() {
+        return rotation;
+    }
+
+
+
+    /**
+     * Returns the maximum deviation from the boundary according to the
+     * Brandon criterion: <code>15&deg; / sqrt(&Sigma;)</code>.
+     * 
+     * @return maximum deviation (in radians)
+     */
+    public double getBrandonDeviation() {
+        return Math.toRadians(15.0) / Math.sqrt(sigma);
+    }
+
+}
@@ -0,0 +1,537 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.orientation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.CrystalSystem;
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+import net.sf.jchemistry.util.ParallelUtils;
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.toRadians;
+import static net.sf.jchemistry.util.ArrayUtils.lowerBound;
+
+/**
+ * Classifies misorientations as coincidence site lattice (CSL) boundaries
+ * with the Brandon criterion. A misorientation is classified as the
+ * boundary with the lowest <code>&Sigma;</code> whose deviation is less
+ * than <code>15&deg; / sqrt(&Sigma;)</code>.
+ * <p/>
+ * All the symmetrically equivalent variants
+ * <code>g<sub>i</sub> C g<sub>j</sub></code> of the rotation <code>C</code>
+ * of each boundary (and of its inverse) are precomputed in a flat array
+ * sorted by rotation angle. A misorientation is first reduced to its
+ * disorientation, whose vector part falls in a cell of a coarse grid. Each
+ * cell lists the variants that can be within the Brandon deviation of a
+ * rotation of the cell, sorted by boundary, so only a handful of variants are
+ * tested and the first match is the boundary with the lowest
+ * <code>&Sigma;</code>. The lists are built from the variants in the angle
+ * range of the cell the first time a cell is reached. Disorientations only
+ * fall in the cells of the fundamental zone, so few cells are ever built.
+ * <p/>
+ * The misorientations are quaternions stored in a flat array
+ * (<code>q0, q1, q2, q3</code> of each misorientation one after the other).
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class CslClassifier {
+
+    /** Default number of misorientations per chunk in parallel. */
+    public static final int CHUNK_SIZE = 65536;
+
+    /** Tolerance to consider two variants as equal. */
+    private static final double EPSILON = 1e-9;
+
+    /** Usual CSL boundaries of cubic crystals up to Sigma 29. */
+    private static final CslBoundary[] CUBIC = new CslBoundary[] {
+            new CslBoundary("3", 3, new Vector3D(1, 1, 1), toRadians(60.0)),
+            new CslBoundary("5", 5, new Vector3D(1, 0, 0), toRadians(36.87)),
+            new CslBoundary("7", 7, new Vector3D(1, 1, 1), toRadians(38.21)),
+            new CslBoundary("9", 9, new Vector3D(1, 1, 0), toRadians(38.94)),
+            new CslBoundary("11", 11, new Vector3D(1, 1, 0), toRadians(50.48)),
+            new CslBoundary("13a", 13, new Vector3D(1, 0, 0),
+                    toRadians(22.62)),
+            new CslBoundary("13b", 13, new Vector3D(1, 1, 1), toRadians(27.80)),
+            new CslBoundary("15", 15, new Vector3D(2, 1, 0), toRadians(48.19)),
+            new CslBoundary("17a", 17, new Vector3D(1, 0, 0), toRadians(28.07)),
+            new CslBoundary("17b", 17, new Vector3D(2, 2, 1), toRadians(61.93)),
+            new CslBoundary("19a", 19, new Vector3D(1, 1, 0), toRadians(26.53)),
+            new CslBoundary("19b", 19, new Vector3D(1, 1, 1), toRadians(46.83)),
+            new CslBoundary("21a", 21, new Vector3D(1, 1, 1), toRadians(21.79)),
+            new CslBoundary("21b", 21, new Vector3D(2, 1, 1), toRadians(44.42)),
+            new CslBoundary("23", 23, new Vector3D(3, 1, 1), toRadians(40.46)),
+            new CslBoundary("25a", 25, new Vector3D(1, 0, 0), toRadians(16.26)),
+            new CslBoundary("25b", 25, new Vector3D(3, 3, 1), toRadians(51.68)),
+            new CslBoundary("27a", 27, new Vector3D(1, 1, 0), toRadians(31.59)),
+            new CslBoundary("27b", 27, new Vector3D(2, 1, 0), toRadians(35.43)),
+            new CslBoundary("29a", 29, new Vector3D(1, 0, 0), toRadians(43.60)),
+            new CslBoundary("29b", 29, new Vector3D(2, 2, 1),
+                    toRadians(46.40)) };
+
+
+
+    /**
+     * Returns a classifier of the usual CSL boundaries of cubic crystals, from
+     * <code>&Sigma;3</code> to <code>&Sigma;29b</code>.
+     * 
+     * @param laueGroup
+     *            cubic Laue group
+     * @return classifier
+     * @throws IllegalArgumentException
+     *             if the Laue group is not cubic
+     */
+    public static CslClassifier cubic(LaueGroup laueGroup) {
+        if (laueGroup == null)
+            throw new NullPointerException("laue group == null");
+        if (laueGroup.getCrystalSystem() != CrystalSystem.CUBIC)
+            throw new IllegalArgumentException("Laue group (" + laueGroup
+                    + ") must be cubic");
+
+        return new CslClassifier(laueGroup, CUBIC);
+    }
+
+    /** Boundaries sorted by sigma. */
+    private final CslBoundary[] boundaries;
+
+    /** Misorientation calculator used to compute disorientations. */
+    private final MisorientationCalculator calculator;
+
+    /** Variants (q0, q1, q2, q3), sorted by angle. */
+    private final double[] variants;
+
+    /** Rotation angle of each variant. */
+    private final double[] angles;
+
+    /** Index of the boundary of each variant. */
+    private final int[] variantBoundaries;
+
+    /** Cosine of half of the Brandon deviation of each boundary. */
+    private final double[] thresholds;
+
+    /**
+     * Largest distance between the vector parts of a variant and of a
+     * rotation within the Brandon deviation, for each boundary.
+     */
+    private final double[] distances;
+
+    /** Largest Brandon deviation. */
+    private final double maxDeviation;
+
+    /** Size of the cells of the grid of vector parts. */
+    private final double cellSize;
+
+    /** Number of cells along each axis of the grid. */
+    private final int cellCount;
+
+    /** Candidate variants of each cell reached so far, sorted by boundary. */
+    private final ConcurrentHashMap<Integer, int[]> candidates =
+            new ConcurrentHashMap<Integer, int[]>();
+
+
+
+    /**
+     * Creates a new <code>CslClassifier</code>. Since the CSL boundaries of
+     * non-cubic crystals depend on the lattice parameters, the boundaries
+     * must be specified.
+     * 
+     * @param laueGroup
+     *            Laue group of the crystals
+     * @param boundaries
+     *            CSL boundaries
+     */
+    public CslClassifier(LaueGroup laueGroup, CslBoundary[] boundaries) {
+        if (laueGroup == null)
+            throw new NullPointerException("laue group == null");
+        if (boundaries == null)
+            throw new NullPointerException("boundaries == null");
+
+        this.boundaries = boundaries.clone();
+        Arrays.sort(this.boundaries, new Comparator<CslBoundary>() {
+            @Override
+            public int compare(CslBoundary o1, CslBoundary o2) {
+                return o1.getSigma() - o2.getSigma();
+            }
+        });
+
+        calculator = new MisorientationCalculator(laueGroup);
+
+        thresholds = new double[this.boundaries.length];
+        distances = new double[this.boundaries.length];
+        double max = 0.0;
+        for (int i = 0; i < this.boundaries.length; i++) {
+            double deviation = this.boundaries[i].getBrandonDeviation();
+            thresholds[i] = Math.cos(deviation / 2.0);
+            distances[i] = 2.0 * Math.sin(deviation / 4.0);
+            max = Math.max(max, deviation);
+        }
+        maxDeviation = max;
+
+        // Grid of half the largest distance, at most 1024 cells per axis
+        cellCount =
+                Math.max(1, Math.min(1024, (int) Math.ceil(2.0 / Math.sin(max
+                        / 4.0))));
+        cellSize = 2.0 / cellCount;
+
+        // Variants
+        double[] operators = MisorientationCalculator.closure(laueGroup
+                .getOperators());
+        final List<double[]> list = new ArrayList<double[]>();
+        final List<Integer> indexes = new ArrayList<Integer>();
+        for (int b = 0; b < this.boundaries.length; b++) {
+            Rotation c = this.boundaries[b].getRotation();
+            double[] q =
+                    new double[] { c.getQ0(), c.getQ1(), c.getQ2(), c.getQ3() };
+            double[] inverse = new double[] { q[0], -q[1], -q[2], -q[3] };
+
+            List<double[]> found = new ArrayList<double[]>();
+            for (double[] rotation : new double[][] { q, inverse })
+                for (int i = 0; i < operators.length; i += 4)
+                    for (int j = 0; j < operators.length; j += 4) {
+                        double[] gi = Arrays.copyOfRange(operators, i, i + 4);
+                        double[] gj = Arrays.copyOfRange(operators, j, j + 4);
+                        add(found, MisorientationCalculator.multiply(
+                                MisorientationCalculator.multiply(gi,
+                                        rotation), gj));
+                    }
+
+            for (double[] variant : found) {
+                list.add(variant);
+                indexes.add(b);
+            }
+        }
+
+        final double[] unsortedAngles = new double[list.size()];
+        Integer[] order = new Integer[list.size()];
+        for (int i = 0; i < order.length; i++) {
+            double q0 = abs(list.get(i)[0]);
+            unsortedAngles[i] = 2.0 * Math.acos(Math.min(1.0, q0));
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(unsortedAngles[o1], unsortedAngles[o2]);
+            }
+        });
+
+        variants = new double[order.length * 4];
+        angles = new double[order.length];
+        variantBoundaries = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(list.get(order[i]), 0, variants, i * 4, 4);
+            angles[i] = unsortedAngles[order[i]];
+            variantBoundaries[i] = indexes.get(order[i]);
+        }
+    }
+
+
+
+    /**
+     * Adds the quaternion to the list of variants if it is not already
+     * present.
+     * 
+     * @param variants
+     *            variants
+     * @param q
+     *            quaternion
+     */
+    private static void add(List<double[]> variants, double[] q) {
+        for (double[] variant : variants) {
+            double dot =
+                    variant[0] * q[0] + variant[1] * q[1] + variant[2] * q[2]
+                            + variant[3] * q[3];
+            if (abs(dot) > 1.0 - EPSILON)
+                return;
+        }
+        variants.add(q);
+    }
+
+
+
+    /**
+     * Returns the boundaries, sorted by sigma. The index of a boundary in this
+     * array is returned by the classification.
+     * 
+     * @return boundaries
+     */
+    public CslBoundary[] getBoundaries() {
+        return boundaries;
+    }
+
+
+
+    /**
+     * Returns the number of precomputed variants.
+     * 
+     * @return number of variants
+     */
+    public int getVariantCount() {
+        return angles.length;
+    }
+
+
+
+    /**
+     * Returns the index of the cell of the grid containing a coordinate of a
+     * vector part.
+     * 
+     * @param x
+     *            coordinate
+     * @return index of the cell
+     */
+    private int getCellIndex(double x) {
+        int i = (int) ((x + 1.0) / cellSize);
+        return i < 0 ? 0 : (i >= cellCount ? cellCount - 1 : i);
+    }
+
+
+
+    /**
+     * Returns the distance between a coordinate and a range.
+     * 
+     * @param x
+     *            coordinate
+     * @param min
+     *            lower bound of the range
+     * @param max
+     *            upper bound of the range
+     * @return distance, 0.0 if the coordinate is inside the range
+     */
+    private static double distance(double x, double min, double max) {
+        return x < min ? min - x : (x > max ? x - max : 0.0);
+    }
+
+
+
+    /**
+     * Returns the candidate variants of the cell containing the vector part
+     * of a rotation, sorted by boundary. The variants of a cell are the
+     * variants, or their opposites, whose vector part is within the distance
+     * of their boundary of the cell.
+     * 
+     * @param x
+     *            first component of the vector part
+     * @param y
+     *            second component of the vector part
+     * @param z
+     *            third component of the vector part
+     * @return indexes of the variants
+     */
+    protected int[] getCandidates(double x, double y, double z) {
+        int ix = getCellIndex(x);
+        int iy = getCellIndex(y);
+        int iz = getCellIndex(z);
+        Integer key = (ix * cellCount + iy) * cellCount + iz;
+
+        int[] cell = candidates.get(key);
+        if (cell != null)
+            return cell;
+
+        double[] min =
+                new double[] { -1.0 + ix * cellSize, -1.0 + iy * cellSize,
+                        -1.0 + iz * cellSize };
+        double[] max =
+                new double[] { min[0] + cellSize, min[1] + cellSize,
+                        min[2] + cellSize };
+
+        // Range of the norm of the vector parts in the cell
+        double near = 0.0;
+        double far = 0.0;
+        for (int i = 0; i < 3; i++) {
+            double d = distance(0.0, min[i], max[i]);
+            near += d * d;
+            d = Math.max(abs(min[i]), abs(max[i]));
+            far += d * d;
+        }
+        near = Math.sqrt(near);
+        far = Math.min(1.0, Math.sqrt(far));
+
+        double fromAngle = 2.0 * Math.asin(Math.min(1.0, near)) - maxDeviation;
+        double toAngle = 2.0 * Math.asin(far) + maxDeviation;
+
+        List<Integer> found = new ArrayList<Integer>();
+        for (int i = lowerBound(angles, fromAngle); i < angles.length
+                && angles[i] <= toAngle; i++) {
+            double limit = distances[variantBoundaries[i]];
+            int j = i * 4;
+            double plus = 0.0;
+            double minus = 0.0;
+            for (int k = 0; k < 3; k++) {
+                double v = variants[j + k + 1];
+                double d = distance(v, min[k], max[k]);
+                plus += d * d;
+                d = distance(-v, min[k], max[k]);
+                minus += d * d;
+            }
+            if (Math.min(plus, minus) <= limit * limit)
+                found.add(i);
+        }
+
+        Collections.sort(found, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return variantBoundaries[o1] - variantBoundaries[o2];
+            }
+        });
+
+        cell = new int[found.size()];
+        for (int i = 0; i < cell.length; i++)
+            cell[i] = found.get(i);
+
+        int[] previous = candidates.putIfAbsent(key, cell);
+        return previous == null ? cell : previous;
+    }
+
+
+
+    /**
+     * Classifies a disorientation.
+     * 
+     * @param d
+     *            array of disorientations
+     * @param index
+     *            index of the disorientation in the array
+     * @return index of the boundary or -1 if none
+     */
+    private int classifyDisorientation(double[] d, int index) {
+        int o = index * 4;
+        double d0 = d[o];
+        double d1 = d[o + 1];
+        double d2 = d[o + 2];
+        double d3 = d[o + 3];
+
+        for (int i : getCandidates(d1, d2, d3)) {
+            int j = i * 4;
+            double dot =
+                    abs(d0 * variants[j] + d1 * variants[j + 1] + d2
+                            * variants[j + 2] + d3 * variants[j + 3]);
+            if (dot >= thresholds[variantBoundaries[i]])
+                return variantBoundaries[i];
+        }
+
+        return -1;
+    }
+
+
+
+    /**
+     * Classifies a misorientation.
+     * 
+     * @param misorientation
+     *            misorientation
+     * @return boundary or <code>null</code> if the misorientation is not a
+     *         CSL boundary
+     */
+    public CslBoundary classify(Rotation misorientation) {
+        double[] q =
+                new double[] { misorientation.getQ0(),
+                        misorientation.getQ1(), misorientation.getQ2(),
+                        misorientation.getQ3() };
+        int index = classify(q)[0];
+        return index < 0 ? null : boundaries[index];
+    }
+
+
+
+    /**
+     * Classifies a range of misorientations.
+     * 
+     * @param misorientations
+     *            misorientations (<code>q0, q1, q2, q3</code> of each
+     *            misorientation)
+     * @param out
+     *            array where to store the index of the boundary of each
+     *            misorientation (-1 if none)
+     * @param from
+     *            index of the first misorientation (inclusive)
+     * @param to
+     *            index of the last misorientation (exclusive)
+     */
+    public void classify(double[] misorientations, int[] out, int from,
+            int to) {
+        double[] identity = new double[] { 1.0, 0.0, 0.0, 0.0 };
+        double[] disorientation = new double[4];
+        for (int i = from; i < to; i++) {
+            calculator.equivalent(identity, 0, misorientations, i,
+                    disorientation, 0);
+            out[i] = classifyDisorientation(disorientation, 0);
+        }
+    }
+
+
+
+    /**
+     * Classifies misorientations.
+     * 
+     * @param misorientations
+     *            misorientations (<code>q0, q1, q2, q3</code> of each
+     *            misorientation)
+     * @return index of the boundary of each misorientation in
+     *         {@link #getBoundaries()}, -1 if none
+     */
+    public int[] classify(double[] misorientations) {
+        FundamentalZoneReducer.checkQuaternions(misorientations);
+
+        int[] out = new int[misorientations.length / 4];
+        classify(misorientations, out, 0, out.length);
+        return out;
+    }
+
+
+
+    /**
+     * Classifies misorientations in parallel.
+     * 
+     * @param misorientations
+     *            misorientations (<code>q0, q1, q2, q3</code> of each
+     *            misorientation)
+     * @param executor
+     *            executor service running the chunks
+     * @return index of the boundary of each misorientation in
+     *         {@link #getBoundaries()}, -1 if none
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public int[] classify(final double[] misorientations,
+            ExecutorService executor) throws InterruptedException {
+        FundamentalZoneReducer.checkQuaternions(misorientations);
+
+        final int[] out = new int[misorientations.length / 4];
+        ParallelUtils.run(executor, out.length, CHUNK_SIZE, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                classify(misorientations, out, from, to);
+            }
+        });
+        return out;
+    }
+
+}
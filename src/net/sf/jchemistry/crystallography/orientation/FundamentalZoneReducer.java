@@ -0,0 +1,238 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.orientation;
+
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.Calculations;
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+import net.sf.jchemistry.util.ParallelUtils;
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+import org.apache.commons.math.geometry.Rotation;
+
+/**
+ * Reduces large numbers of orientations to the fundamental zone of a Laue
+ * group. The orientations are stored as quaternions in a flat array
+ * (<code>q0, q1, q2, q3</code> of each orientation one after the other) and
+ * reduced in place. The operators of the Laue group are expanded once into a
+ * primitive array, so that no object is allocated per orientation.
+ * <p/>
+ * The result is identical to
+ * {@link Calculations#reduce(Rotation, LaueGroup)}: the equivalent
+ * quaternion with the largest <code>|q0|</code> is kept.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class FundamentalZoneReducer {
+
+    /** Default number of orientations per chunk in parallel reductions. */
+    public static final int CHUNK_SIZE = 65536;
+
+    /** Laue group. */
+    private final LaueGroup laueGroup;
+
+    /** Operators (q0, q1, q2, q3 of each operator). */
+    private final double[] operators;
+
+
+
+    /**
+     * Creates a new <code>FundamentalZoneReducer</code>.
+     * 
+     * @param laueGroup
+     *            Laue group
+     */
+    public FundamentalZoneReducer(LaueGroup laueGroup) {
+        if (laueGroup == null)
+            throw new NullPointerException("laue group == null");
+
+        this.laueGroup = laueGroup;
+        operators = expand(laueGroup.getOperators());
+    }
+
+
+
+    /**
+     * Expands rotations into a primitive array.
+     * 
+     * @param rotations
+     *            rotations
+     * @return array with the <code>q0, q1, q2, q3</code> of each rotation
+     */
+    protected static double[] expand(Rotation[] rotations) {
+        double[] array = new double[rotations.length * 4];
+        for (int i = 0; i < rotations.length; i++) {
+            array[i * 4] = rotations[i].getQ0();
+            array[i * 4 + 1] = rotations[i].getQ1();
+            array[i * 4 + 2] = rotations[i].getQ2();
+            array[i * 4 + 3] = rotations[i].getQ3();
+        }
+        return array;
+    }
+
+
+
+    /**
+     * Checks that the array contains complete quaternions.
+     * 
+     * @param quaternions
+     *            array of quaternions
+     * @throws IllegalArgumentException
+     *             if the length of the array is not a multiple of 4
+     */
+    public static void checkQuaternions(double[] quaternions) {
+        if (quaternions == null)
+            throw new NullPointerException("quaternions == null");
+        if (quaternions.length % 4 != 0)
+            throw new IllegalArgumentException("Length of the array ("
+                    + quaternions.length + ") must be a multiple of 4");
+    }
+
+
+
+    /**
+     * Returns the Laue group.
+     * 
+     * @return Laue group
+     */
+    public LaueGroup getLaueGroup() {
+        return laueGroup;
+    }
+
+
+
+    /**
+     * Reduces all the quaternions of the array in place.
+     * 
+     * @param quaternions
+     *            quaternions (<code>q0, q1, q2, q3</code> of each orientation)
+     * @throws IllegalArgumentException
+     *             if the length of the array is not a multiple of 4
+     */
+    public void reduce(double[] quaternions) {
+        checkQuaternions(quaternions);
+        reduce(quaternions, 0, quaternions.length / 4);
+    }
+
+
+
+    /**
+     * Reduces the quaternions between the specified orientation indexes in
+     * place.
+     * 
+     * @param quaternions
+     *            quaternions (<code>q0, q1, q2, q3</code> of each orientation)
+     * @param from
+     *            index of the first orientation (inclusive)
+     * @param to
+     *            index of the last orientation (exclusive)
+     */
+    public void reduce(double[] quaternions, int from, int to) {
+        double[] ops = operators;
+        int nops = ops.length;
+
+        for (int i = from * 4, end = to * 4; i < end; i += 4) {
+            double q0 = quaternions[i];
+            double q1 = quaternions[i + 1];
+            double q2 = quaternions[i + 2];
+            double q3 = quaternions[i + 3];
+
+            double b0 = q0;
+            double b1 = q1;
+            double b2 = q2;
+            double b3 = q3;
+            double max = Math.abs(q0);
+
+            for (int j = 0; j < nops; j += 4) {
+                double o0 = ops[j];
+                double o1 = ops[j + 1];
+                double o2 = ops[j + 2];
+                double o3 = ops[j + 3];
+
+                // Same product as Rotation#applyTo(Rotation)
+                double r0 = q0 * o0 - (q1 * o1 + q2 * o2 + q3 * o3);
+                if (Math.abs(r0) <= max)
+                    continue;
+
+                max = Math.abs(r0);
+                b0 = r0;
+                b1 = q1 * o0 + q0 * o1 + (q2 * o3 - q3 * o2);
+                b2 = q2 * o0 + q0 * o2 + (q3 * o1 - q1 * o3);
+                b3 = q3 * o0 + q0 * o3 + (q1 * o2 - q2 * o1);
+            }
+
+            quaternions[i] = b0;
+            quaternions[i + 1] = b1;
+            quaternions[i + 2] = b2;
+            quaternions[i + 3] = b3;
+        }
+    }
+
+
+
+    /**
+     * Reduces all the quaternions of the array in place, in parallel chunks
+     * of {@link #CHUNK_SIZE} orientations.
+     * 
+     * @param quaternions
+     *            quaternions (<code>q0, q1, q2, q3</code> of each orientation)
+     * @param executor
+     *            executor service running the chunks
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     * @throws IllegalArgumentException
+     *             if the length of the array is not a multiple of 4
+     */
+    public void reduce(double[] quaternions, ExecutorService executor)
+            throws InterruptedException {
+        reduce(quaternions, executor, CHUNK_SIZE);
+    }
+
+
+
+    /**
+     * Reduces all the quaternions of the array in place, in parallel chunks.
+     * 
+     * @param quaternions
+     *            quaternions (<code>q0, q1, q2, q3</code> of each orientation)
+     * @param executor
+     *            executor service running the chunks
+     * @param chunkSize
+     *            number of orientations per chunk
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     * @throws IllegalArgumentException
+     *             if the length of the array is not a multiple of 4
+     */
+    public void reduce(final double[] quaternions, ExecutorService executor,
+            int chunkSize) throws InterruptedException {
+        checkQuaternions(quaternions);
+
+        ParallelUtils.run(executor, quaternions.length / 4, chunkSize,
+                new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        reduce(quaternions, from, to);
+                    }
+                });
+    }
+
+}
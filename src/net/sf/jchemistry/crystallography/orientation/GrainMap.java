@@ -0,0 +1,189 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.orientation;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Result of a {@link GrainSegmentation}: grain identifier of each pixel of a
+ * map and properties of each grain. The arrays are returned without being
+ * copied and should not be modified.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class GrainMap {
+
+    /** Width of the map. */
+    private final int width;
+
+    /** Height of the map. */
+    private final int height;
+
+    /** Grain identifier of each pixel (-1 for unindexed pixels). */
+    private final int[] grainIds;
+
+    /** Phase identifier of each grain. */
+    private final int[] grainPhases;
+
+    /** Number of pixels of each grain. */
+    private final int[] grainSizes;
+
+    /** Mean orientation of each grain (q0, q1, q2, q3). */
+    private final double[] meanOrientations;
+
+
+
+    /**
+     * Creates a new <code>GrainMap</code>.
+     * 
+     * @param width
+     *            width of the map
+     * @param height
+     *            height of the map
+     * @param grainIds
+     *            grain identifier of each pixel, row by row (-1 for unindexed
+     *            pixels)
+     * @param grainPhases
+     *            phase identifier of each grain
+     * @param grainSizes
+     *            number of pixels of each grain
+     * @param meanOrientations
+     *            mean orientation of each grain as quaternions
+     */
+    public GrainMap(int width, int height, int[] grainIds,
+            int[] grainPhases, int[] grainSizes, double[] meanOrientations) {
+        if (grainIds == null)
+            throw new NullPointerException("grain ids == null");
+        if (grainPhases == null)
+            throw new NullPointerException("grain phases == null");
+        if (grainSizes == null)
+            throw new NullPointerException("grain sizes == null");
+        if (meanOrientations == null)
+            throw new NullPointerException("mean orientations == null");
+        if (grainIds.length != width * height)
+            throw new IllegalArgumentException("Number of pixels ("
+                    + grainIds.length + ") must be equal to width * height");
+        if (grainSizes.length != grainPhases.length
+                || meanOrientations.length != grainPhases.length * 4)
+            throw new IllegalArgumentException(
+                    "Inconsistent number of grains");
+
+        this.width = width;
+        this.height = height;
+        this.grainIds = grainIds;
+        this.grainPhases = grainPhases;
+        this.grainSizes = grainSizes;
+        this.meanOrientations = meanOrientations;
+    }
+
+
+
+    /**
+     * Returns the width of the map.
+     * 
+     * @return width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+
+
+    /**
+     * Returns the height of the map.
+     * 
+     * @return height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+
+
+    /**
+     * Returns the number of grains.
+     * 
+     * @return number of grains
+     */
+    public int getGrainCount() {
+        return grainPhases.length;
+    }
+
+
+
+    /**
+     * Returns the grain identifier of each pixel, row by row. Unindexed
+     * pixels have an identifier of -1.
+     * 
+     * @return grain identifiers
+     */
+    public int[] getGrainIds() {
+        return grainIds;
+    }
+
+
+
+    /**
+     * Returns the grain identifier of a pixel.
+     * 
+     * @param x
+     *            column of the pixel
+     * @param y
+     *            row of the pixel
+     * @return grain identifier or -1 if the pixel is unindexed
+     */
+    public int getGrainId(int x, int y) {
+        return grainIds[y * width + x];
+    }
+
+
+
+    /**
+     * Returns the phase identifier of each grain.
+     * 
+     * @return phase identifiers
+     */
+    public int[] getGrainPhases() {
+        return grainPhases;
+    }
+
+
+
+    /**
+     * Returns the number of pixels of each grain.
+     * 
+     * @return grain sizes
+     */
+    public int[] getGrainSizes() {
+        return grainSizes;
+    }
+
+
+
+    /**
+     * Returns the mean orientation of each grain as quaternions
+     * (<code>q0, q1, q2, q3</code> of each grain one after the other).
+     * 
+     * @return mean orientations
+     */
+    public double[] getMeanOrientations() {
+        return meanOrientations;
+    }
+
+}
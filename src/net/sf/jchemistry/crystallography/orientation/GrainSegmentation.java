@@ -0,0 +1,412 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.orientation;
+
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+import net.sf.jchemistry.util.ParallelUtils;
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+/**
+ * Segmentation of orientation maps into grains. Two neighbouring pixels
+ * (left-right or top-bottom) belong to the same grain if they have the same
+ * phase and if their disorientation, under the Laue group of the phase, is
+ * less than a threshold angle.
+ * <p/>
+ * The map is a regular grid of quaternions stored row by row in a flat array
+ * with a phase identifier per pixel. Pixels with a negative phase identifier
+ * are considered unindexed and do not belong to any grain. The connected
+ * pixels are merged with a union-find structure stored in a single integer
+ * array, which is then relabelled in place into the grain identifiers. The
+ * root of each set is always its first pixel, so the grains are numbered in
+ * the order of their first pixel.
+ * <p/>
+ * In parallel, the map is split into tiles of rows. Each tile is segmented
+ * independently, since its union-find only refers to its own pixels, and the
+ * tiles are then merged along their boundary rows.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class GrainSegmentation {
+
+    /** Default number of rows per tile in parallel segmentations. */
+    public static final int TILE_ROWS = 256;
+
+    /** Misorientation calculators, indexed by phase identifier. */
+    private final MisorientationCalculator[] calculators;
+
+    /** Threshold angle. */
+    private final double threshold;
+
+
+
+    /**
+     * Creates a new <code>GrainSegmentation</code>.
+     * 
+     * @param laueGroups
+     *            Laue group of each phase, indexed by phase identifier
+     * @param threshold
+     *            maximum disorientation angle between neighbouring pixels of
+     *            the same grain (in radians)
+     * @throws IllegalArgumentException
+     *             if the threshold is not positive
+     */
+    public GrainSegmentation(LaueGroup[] laueGroups, double threshold) {
+        if (laueGroups == null)
+            throw new NullPointerException("laue groups == null");
+        if (threshold <= 0.0)
+            throw new IllegalArgumentException("Threshold (" + threshold
+                    + ") must be greater than 0");
+
+        calculators = new MisorientationCalculator[laueGroups.length];
+        for (int i = 0; i < laueGroups.length; i++)
+            calculators[i] = new MisorientationCalculator(laueGroups[i]);
+
+        this.threshold = threshold;
+    }
+
+
+
+    /**
+     * Returns the threshold angle.
+     * 
+     * @return maximum disorientation angle between neighbouring pixels of the
+     *         same grain (in radians)
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+
+
+    /**
+     * Segments a map into grains.
+     * 
+     * @param width
+     *            width of the map
+     * @param height
+     *            height of the map
+     * @param quaternions
+     *            orientation of each pixel, row by row (<code>q0, q1, q2,
+     *            q3</code> of each pixel one after the other)
+     * @param phases
+     *            phase identifier of each pixel, row by row (negative for
+     *            unindexed pixels)
+     * @return grains
+     * @throws IllegalArgumentException
+     *             if the size of the arrays do not match the size of the map
+     * @throws IllegalArgumentException
+     *             if a phase identifier has no Laue group
+     */
+    public GrainMap segment(int width, int height, double[] quaternions,
+            int[] phases) {
+        checkMap(width, height, quaternions, phases);
+
+        int[] parents = new int[width * height];
+        segmentTile(width, quaternions, phases, parents, 0, height);
+
+        return createGrainMap(width, height, quaternions, phases, parents);
+    }
+
+
+
+    /**
+     * Segments a map into grains in parallel tiles of {@link #TILE_ROWS}
+     * rows.
+     * 
+     * @param width
+     *            width of the map
+     * @param height
+     *            height of the map
+     * @param quaternions
+     *            orientation of each pixel, row by row
+     * @param phases
+     *            phase identifier of each pixel, row by row
+     * @param executor
+     *            executor service running the tiles
+     * @return grains
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     * @see #segment(int, int, double[], int[])
+     */
+    public GrainMap segment(int width, int height, double[] quaternions,
+            int[] phases, ExecutorService executor)
+            throws InterruptedException {
+        return segment(width, height, quaternions, phases, executor,
+                TILE_ROWS);
+    }
+
+
+
+    /**
+     * Segments a map into grains in parallel tiles.
+     * 
+     * @param width
+     *            width of the map
+     * @param height
+     *            height of the map
+     * @param quaternions
+     *            orientation of each pixel, row by row
+     * @param phases
+     *            phase identifier of each pixel, row by row
+     * @param executor
+     *            executor service running the tiles
+     * @param tileRows
+     *            number of rows per tile
+     * @return grains
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     * @see #segment(int, int, double[], int[])
+     */
+    public GrainMap segment(final int width, int height,
+            final double[] quaternions, final int[] phases,
+            ExecutorService executor, int tileRows)
+            throws InterruptedException {
+        checkMap(width, height, quaternions, phases);
+
+        final int[] parents = new int[width * height];
+        ParallelUtils.run(executor, height, tileRows, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                segmentTile(width, quaternions, phases, parents, from, to);
+            }
+        });
+
+        // Merge the tiles along their boundary rows
+        for (int y = tileRows; y < height; y += tileRows) {
+            for (int i = y * width, end = i + width; i < end; i++)
+                if (isConnected(quaternions, phases, i - width, i))
+                    union(parents, i - width, i);
+        }
+
+        return createGrainMap(width, height, quaternions, phases, parents);
+    }
+
+
+
+    /**
+     * Checks the arguments of a segmentation.
+     * 
+     * @param width
+     *            width of the map
+     * @param height
+     *            height of the map
+     * @param quaternions
+     *            orientation of each pixel
+     * @param phases
+     *            phase identifier of each pixel
+     */
+    private void checkMap(int width, int height, double[] quaternions,
+            int[] phases) {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+        if (phases == null)
+            throw new NullPointerException("phases == null");
+        if (width < 0 || height < 0)
+            throw new IllegalArgumentException("Invalid size of map ("
+                    + width + "x" + height + ")");
+        if (phases.length != width * height
+                || quaternions.length != phases.length * 4)
+            throw new IllegalArgumentException(
+                    "Size of the arrays does not match the size of the map ("
+                            + width + "x" + height + ")");
+
+        for (int phase : phases)
+            if (phase >= calculators.length)
+                throw new IllegalArgumentException("No Laue group for phase "
+                        + phase);
+    }
+
+
+
+    /**
+     * Segments the rows of a tile. Only the pixels of the tile are accessed.
+     * 
+     * @param width
+     *            width of the map
+     * @param quaternions
+     *            orientation of each pixel
+     * @param phases
+     *            phase identifier of each pixel
+     * @param parents
+     *            union-find parent of each pixel
+     * @param fromRow
+     *            first row of the tile (inclusive)
+     * @param toRow
+     *            last row of the tile (exclusive)
+     */
+    private void segmentTile(int width, double[] quaternions, int[] phases,
+            int[] parents, int fromRow, int toRow) {
+        for (int y = fromRow; y < toRow; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                parents[i] = i;
+
+                if (x > 0 && isConnected(quaternions, phases, i - 1, i))
+                    union(parents, i - 1, i);
+                if (y > fromRow
+                        && isConnected(quaternions, phases, i - width, i))
+                    union(parents, i - width, i);
+            }
+        }
+    }
+
+
+
+    /**
+     * Returns whether two pixels belong to the same grain.
+     * 
+     * @param quaternions
+     *            orientation of each pixel
+     * @param phases
+     *            phase identifier of each pixel
+     * @param i
+     *            index of the first pixel
+     * @param j
+     *            index of the second pixel
+     * @return <code>true</code> if the pixels are connected
+     */
+    private boolean isConnected(double[] quaternions, int[] phases, int i,
+            int j) {
+        int phase = phases[i];
+        if (phase < 0 || phase != phases[j])
+            return false;
+
+        double angle =
+                calculators[phase].angle(quaternions, i, quaternions, j);
+        return angle < threshold;
+    }
+
+
+
+    /**
+     * Returns the root of the set of a pixel. The path is halved on the way.
+     * 
+     * @param parents
+     *            union-find parent of each pixel
+     * @param i
+     *            index of the pixel
+     * @return index of the root
+     */
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+
+
+    /**
+     * Merges the sets of two pixels. The root with the largest index is
+     * attached to the other one, so that the root of a set is always its
+     * first pixel and every parent precedes its children.
+     * 
+     * @param parents
+     *            union-find parent of each pixel
+     * @param i
+     *            index of the first pixel
+     * @param j
+     *            index of the second pixel
+     */
+    private static void union(int[] parents, int i, int j) {
+        int ri = find(parents, i);
+        int rj = find(parents, j);
+        if (ri < rj)
+            parents[rj] = ri;
+        else if (rj < ri)
+            parents[ri] = rj;
+    }
+
+
+
+    /**
+     * Relabels the union-find parents in place into grain identifiers and
+     * computes the properties of the grains.
+     * 
+     * @param width
+     *            width of the map
+     * @param height
+     *            height of the map
+     * @param quaternions
+     *            orientation of each pixel
+     * @param phases
+     *            phase identifier of each pixel
+     * @param parents
+     *            union-find parent of each pixel
+     * @return grains
+     */
+    private GrainMap createGrainMap(int width, int height,
+            double[] quaternions, int[] phases, int[] parents) {
+        int size = parents.length;
+
+        // Since every parent precedes its children, its label is known
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (phases[i] < 0)
+                parents[i] = -1;
+            else if (parents[i] == i)
+                parents[i] = count++;
+            else
+                parents[i] = parents[parents[i]];
+        }
+        int[] grainIds = parents;
+
+        // Grain properties, relative to the first pixel of each grain
+        int[] grainPhases = new int[count];
+        int[] grainSizes = new int[count];
+        int[] firstPixels = new int[count];
+        double[] means = new double[count * 4];
+        double[] equivalent = new double[4];
+
+        for (int i = 0; i < size; i++) {
+            int grain = grainIds[i];
+            if (grain < 0)
+                continue;
+
+            if (grainSizes[grain] == 0) {
+                grainPhases[grain] = phases[i];
+                firstPixels[grain] = i;
+            }
+            grainSizes[grain]++;
+
+            calculators[phases[i]].equivalent(quaternions, firstPixels[grain],
+                    quaternions, i, equivalent, 0);
+            for (int k = 0; k < 4; k++)
+                means[grain * 4 + k] += equivalent[k];
+        }
+
+        for (int grain = 0; grain < count; grain++) {
+            int offset = grain * 4;
+            double norm =
+                    Math.sqrt(means[offset] * means[offset] + means[offset + 1]
+                            * means[offset + 1] + means[offset + 2]
+                            * means[offset + 2] + means[offset + 3]
+                            * means[offset + 3]);
+            for (int k = 0; k < 4; k++)
+                means[offset + k] /= norm;
+        }
+
+        return new GrainMap(width, height, grainIds, grainPhases, grainSizes,
+                means);
+    }
+
+}
@@ -0,0 +1,638 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.orientation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+import net.sf.jchemistry.util.ParallelUtils;
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+import org.apache.commons.math.geometry.Rotation;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.cos;
+
+/**
+ * Computes misorientations between orientations of crystals with the same
+ * Laue group. The symmetry operators are applied on the right of the
+ * orientations, as in {@link FundamentalZoneReducer}.
+ * <p/>
+ * For two orientations <code>qa</code> and <code>qb</code>, the
+ * misorientation is <code>&Delta; = qa<sup>-1</sup> qb</code>. The
+ * disorientation is the symmetrically equivalent misorientation
+ * <code>g<sub>i</sub><sup>-1</sup> &Delta; g<sub>j</sub></code> with the
+ * smallest rotation angle. Since
+ * <code>g<sub>i</sub><sup>-1</sup> &Delta; g<sub>j</sub></code> is a
+ * conjugate of <code>&Delta; g<sub>j</sub> g<sub>i</sub><sup>-1</sup></code>,
+ * the products of the operators are precomputed as the closure of the group
+ * and only <code>&Delta; g</code> is evaluated for each element
+ * <code>g</code> of the group. Only the scalar part of each product is
+ * needed to compare the angles. The search stops early once the angle is
+ * less than half of the smallest operator angle, since no other equivalent
+ * can then be smaller.
+ * <p/>
+ * Angles are in radians. The batch methods work on quaternions stored in
+ * flat arrays (<code>q0, q1, q2, q3</code> of each orientation one after
+ * the other) and do not allocate any object per orientation.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class MisorientationCalculator {
+
+    /** Default number of pairs per chunk in parallel computations. */
+    public static final int CHUNK_SIZE = 65536;
+
+    /** Tolerance to consider two operators as equal. */
+    private static final double EPSILON = 1e-9;
+
+    /** Laue group. */
+    private final LaueGroup laueGroup;
+
+    /** Elements of the group (q0, q1, q2, q3 of each operator). */
+    private final double[] operators;
+
+    /** Minimum scalar part for which no other equivalent can be smaller. */
+    private final double threshold;
+
+
+
+    /**
+     * Creates a new <code>MisorientationCalculator</code>.
+     * 
+     * @param laueGroup
+     *            Laue group of the crystals
+     */
+    public MisorientationCalculator(LaueGroup laueGroup) {
+        if (laueGroup == null)
+            throw new NullPointerException("laue group == null");
+
+        this.laueGroup = laueGroup;
+        operators = closure(laueGroup.getOperators());
+
+        // Smallest rotation angle of the operators other than identity
+        double maxQ0 = 0.0;
+        for (int i = 0; i < operators.length; i += 4) {
+            double q0 = abs(operators[i]);
+            if (q0 < 1.0 - EPSILON && q0 > maxQ0)
+                maxQ0 = q0;
+        }
+        double minAngle = 2.0 * Math.acos(maxQ0);
+
+        if (operators.length == 4)
+            threshold = 0.0;
+        else
+            threshold = cos(minAngle / 4.0);
+    }
+
+
+
+    /**
+     * Returns all the products of the rotations, i.e. the group generated by
+     * the rotations. Rotations <code>q</code> and <code>-q</code> are
+     * considered equal.
+     * 
+     * @param rotations
+     *            rotations
+     * @return flat array of the elements of the group
+     */
+    protected static double[] closure(Rotation[] rotations) {
+        List<double[]> elements = new ArrayList<double[]>();
+        add(elements, new double[] { 1.0, 0.0, 0.0, 0.0 });
+        for (Rotation rotation : rotations)
+            add(elements, new double[] { rotation.getQ0(), rotation.getQ1(),
+                    rotation.getQ2(), rotation.getQ3() });
+
+        for (int i = 0; i < elements.size(); i++)
+            for (int j = 0; j < elements.size(); j++)
+                add(elements, multiply(elements.get(i), elements.get(j)));
+
+        double[] array = new double[elements.size() * 4];
+        for (int i = 0; i < elements.size(); i++)
+            System.arraycopy(elements.get(i), 0, array, i * 4, 4);
+
+        return array;
+    }
+
+
+
+    /**
+     * Adds the quaternion to the list if it is not already present.
+     * 
+     * @param elements
+     *            list of quaternions
+     * @param q
+     *            quaternion
+     */
+    private static void add(List<double[]> elements, double[] q) {
+        for (double[] element : elements) {
+            double dot =
+                    element[0] * q[0] + element[1] * q[1] + element[2] * q[2]
+                            + element[3] * q[3];
+            if (abs(dot) > 1.0 - EPSILON)
+                return;
+        }
+        elements.add(q);
+    }
+
+
+
+    /**
+     * Returns the Hamilton product <code>p q</code>.
+     * 
+     * @param p
+     *            first quaternion
+     * @param q
+     *            second quaternion
+     * @return product
+     */
+    protected static double[] multiply(double[] p, double[] q) {
+        return new double[] {
+                p[0] * q[0] - p[1] * q[1] - p[2] * q[2] - p[3] * q[3],
+                p[0] * q[1] + p[1] * q[0] + p[2] * q[3] - p[3] * q[2],
+                p[0] * q[2] - p[1] * q[3] + p[2] * q[0] + p[3] * q[1],
+                p[0] * q[3] + p[1] * q[2] - p[2] * q[1] + p[3] * q[0] };
+    }
+
+
+
+    /**
+     * Returns the Laue group.
+     * 
+     * @return Laue group
+     */
+    public LaueGroup getLaueGroup() {
+        return laueGroup;
+    }
+
+
+
+    /**
+     * Returns the number of elements of the group.
+     * 
+     * @return order of the group
+     */
+    public int getOrder() {
+        return operators.length / 4;
+    }
+
+
+
+    /**
+     * Returns the offset of the operator <code>g</code> of the group
+     * minimizing the angle of <code>qa<sup>-1</sup> qb g</code>.
+     * 
+     * @param qa
+     *            array of the first orientation
+     * @param ia
+     *            offset of the first orientation in <code>qa</code>
+     * @param qb
+     *            array of the second orientation
+     * @param ib
+     *            offset of the second orientation in <code>qb</code>
+     * @return offset of the operator in the array of operators
+     */
+    private int search(double[] qa, int ia, double[] qb, int ib) {
+        double a0 = qa[ia];
+        double a1 = qa[ia + 1];
+        double a2 = qa[ia + 2];
+        double a3 = qa[ia + 3];
+        double b0 = qb[ib];
+        double b1 = qb[ib + 1];
+        double b2 = qb[ib + 2];
+        double b3 = qb[ib + 3];
+
+        // delta = conj(qa) qb
+        double d0 = a0 * b0 + a1 * b1 + a2 * b2 + a3 * b3;
+        double d1 = a0 * b1 - b0 * a1 - (a2 * b3 - a3 * b2);
+        double d2 = a0 * b2 - b0 * a2 - (a3 * b1 - a1 * b3);
+        double d3 = a0 * b3 - b0 * a3 - (a1 * b2 - a2 * b1);
+
+        double max = -1.0;
+        int best = 0;
+        double[] ops = operators;
+        for (int j = 0; j < ops.length; j += 4) {
+            double w =
+                    abs(d0 * ops[j] - d1 * ops[j + 1] - d2 * ops[j + 2] - d3
+                            * ops[j + 3]);
+            if (w > max) {
+                max = w;
+                best = j;
+                if (w > threshold)
+                    break;
+            }
+        }
+
+        return best;
+    }
+
+
+
+    /**
+     * Returns the absolute scalar part of <code>qa<sup>-1</sup> qb g</code>,
+     * which is also the absolute dot product of <code>qa</code> and
+     * <code>qb g</code>.
+     * 
+     * @param qa
+     *            array of the first orientation
+     * @param ia
+     *            offset of the first orientation in <code>qa</code>
+     * @param qb
+     *            array of the second orientation
+     * @param ib
+     *            offset of the second orientation in <code>qb</code>
+     * @param j
+     *            offset of the operator <code>g</code>
+     * @return absolute scalar part
+     */
+    private double scalar(double[] qa, int ia, double[] qb, int ib, int j) {
+        double[] ops = operators;
+        double b0 = qb[ib];
+        double b1 = qb[ib + 1];
+        double b2 = qb[ib + 2];
+        double b3 = qb[ib + 3];
+
+        // qb g
+        double c0 =
+                b0 * ops[j] - b1 * ops[j + 1] - b2 * ops[j + 2] - b3
+                        * ops[j + 3];
+        double c1 =
+                b0 * ops[j + 1] + b1 * ops[j] + b2 * ops[j + 3] - b3
+                        * ops[j + 2];
+        double c2 =
+                b0 * ops[j + 2] - b1 * ops[j + 3] + b2 * ops[j] + b3
+                        * ops[j + 1];
+        double c3 =
+                b0 * ops[j + 3] + b1 * ops[j + 2] - b2 * ops[j + 1] + b3
+                        * ops[j];
+
+        return abs(qa[ia] * c0 + qa[ia + 1] * c1 + qa[ia + 2] * c2
+                + qa[ia + 3] * c3);
+    }
+
+
+
+    /**
+     * Stores the symmetrically equivalent orientation <code>qb g</code>
+     * closest to a reference orientation <code>qa</code>. The sign of the
+     * stored quaternion is chosen so that its dot product with the reference
+     * is positive, which allows equivalent orientations to be averaged.
+     * 
+     * @param qa
+     *            array of the reference orientation
+     * @param a
+     *            index of the reference orientation in <code>qa</code>
+     * @param qb
+     *            array of the orientation
+     * @param b
+     *            index of the orientation in <code>qb</code>
+     * @param out
+     *            array where to store the equivalent orientation
+     * @param o
+     *            index of the equivalent orientation in <code>out</code>
+     */
+    public void equivalent(double[] qa, int a, double[] qb, int b,
+            double[] out, int o) {
+        int ia = a * 4;
+        int ib = b * 4;
+        int io = o * 4;
+        int j = search(qa, ia, qb, ib);
+
+        double[] ops = operators;
+        double b0 = qb[ib];
+        double b1 = qb[ib + 1];
+        double b2 = qb[ib + 2];
+        double b3 = qb[ib + 3];
+
+        double c0 =
+                b0 * ops[j] - b1 * ops[j + 1] - b2 * ops[j + 2] - b3
+                        * ops[j + 3];
+        double c1 =
+                b0 * ops[j + 1] + b1 * ops[j] + b2 * ops[j + 3] - b3
+                        * ops[j + 2];
+        double c2 =
+                b0 * ops[j + 2] - b1 * ops[j + 3] + b2 * ops[j] + b3
+                        * ops[j + 1];
+        double c3 =
+                b0 * ops[j + 3] + b1 * ops[j + 2] - b2 * ops[j + 1] + b3
+                        * ops[j];
+
+        double dot =
+                qa[ia] * c0 + qa[ia + 1] * c1 + qa[ia + 2] * c2 + qa[ia + 3]
+                        * c3;
+        double sign = dot < 0.0 ? -1.0 : 1.0;
+
+        out[io] = sign * c0;
+        out[io + 1] = sign * c1;
+        out[io + 2] = sign * c2;
+        out[io + 3] = sign * c3;
+    }
+
+
+
+    /**
+     * Returns the disorientation angle for an absolute scalar part.
+     * 
+     * @param w
+     *            absolute scalar part
+     * @return angle (in radians)
+     */
+    private static double toAngle(double w) {
+        return w >= 1.0 ? 0.0 : 2.0 * Math.acos(w);
+    }
+
+
+
+    /**
+     * Returns the disorientation angle between two orientations stored in
+     * arrays.
+     * 
+     * @param qa
+     *            array of quaternions
+     * @param a
+     *            index of the first orientation in <code>qa</code>
+     * @param qb
+     *            array of quaternions
+     * @param b
+     *            index of the second orientation in <code>qb</code>
+     * @return disorientation angle (in radians)
+     */
+    public double angle(double[] qa, int a, double[] qb, int b) {
+        int ia = a * 4;
+        int ib = b * 4;
+        return toAngle(scalar(qa, ia, qb, ib, search(qa, ia, qb, ib)));
+    }
+
+
+
+    /**
+     * Returns the disorientation angle between two orientations.
+     * 
+     * @param qa
+     *            first orientation
+     * @param qb
+     *            second orientation
+     * @return disorientation angle (in radians)
+     */
+    public double angle(Rotation qa, Rotation qb) {
+        return angle(toArray(qa), 0, toArray(qb), 0);
+    }
+
+
+
+    /**
+     * Returns the disorientation between two orientations, i.e. an
+     * equivalent misorientation with the smallest rotation angle. The
+     * returned rotation has a positive scalar part. Its axis is not reduced
+     * to the standard stereographic triangle.
+     * 
+     * @param qa
+     *            first orientation
+     * @param qb
+     *            second orientation
+     * @return disorientation
+     */
+    public Rotation disorientation(Rotation qa, Rotation qb) {
+        double[] a = toArray(qa);
+        double[] b = toArray(qb);
+        int j = search(a, 0, b, 0);
+
+        double[] delta =
+                multiply(new double[] { a[0], -a[1], -a[2], -a[3] }, b);
+        double[] q =
+                multiply(delta, new double[] { operators[j],
+                        operators[j + 1], operators[j + 2], operators[j + 3] });
+        if (q[0] < 0.0)
+            for (int i = 0; i < 4; i++)
+                q[i] = -q[i];
+
+        return new Rotation(q[0], q[1], q[2], q[3], true);
+    }
+
+
+
+    /**
+     * Returns the components of a rotation as an array.
+     * 
+     * @param q
+     *            rotation
+     * @return array
+     */
+    private static double[] toArray(Rotation q) {
+        return new double[] { q.getQ0(), q.getQ1(), q.getQ2(), q.getQ3() };
+    }
+
+
+
+    /**
+     * Computes the disorientation angles between the orientations with the
+     * same index in two arrays.
+     * 
+     * @param qa
+     *            first orientations
+     * @param qb
+     *            second orientations
+     * @param angles
+     *            array where to store the angles (in radians)
+     * @param from
+     *            index of the first orientation (inclusive)
+     * @param to
+     *            index of the last orientation (exclusive)
+     */
+    public void angles(double[] qa, double[] qb, double[] angles, int from,
+            int to) {
+        for (int i = from; i < to; i++)
+            angles[i] = angle(qa, i, qb, i);
+    }
+
+
+
+    /**
+     * Computes the disorientation angles between the orientations with the
+     * same index in two arrays.
+     * 
+     * @param qa
+     *            first orientations
+     * @param qb
+     *            second orientations
+     * @return angles (in radians)
+     * @throws IllegalArgumentException
+     *             if the arrays have different lengths
+     */
+    public double[] angles(double[] qa, double[] qb) {
+        checkArrays(qa, qb);
+
+        double[] angles = new double[qa.length / 4];
+        angles(qa, qb, angles, 0, angles.length);
+        return angles;
+    }
+
+
+
+    /**
+     * Computes in parallel the disorientation angles between the
+     * orientations with the same index in two arrays.
+     * 
+     * @param qa
+     *            first orientations
+     * @param qb
+     *            second orientations
+     * @param executor
+     *            executor service running the chunks
+     * @return angles (in radians)
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     * @throws IllegalArgumentException
+     *             if the arrays have different lengths
+     */
+    public double[] angles(final double[] qa, final double[] qb,
+            ExecutorService executor) throws InterruptedException {
+        checkArrays(qa, qb);
+
+        final double[] angles = new double[qa.length / 4];
+        ParallelUtils.run(executor, angles.length, CHUNK_SIZE,
+                new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        angles(qa, qb, angles, from, to);
+                    }
+                });
+        return angles;
+    }
+
+
+
+    /**
+     * Computes the disorientation angles between pairs of orientations of
+     * the same array, e.g. neighbouring pixels of a map.
+     * 
+     * @param quaternions
+     *            orientations
+     * @param pairs
+     *            indexes of the orientations of each pair (first and second
+     *            orientation of each pair one after the other)
+     * @param angles
+     *            array where to store the angle of each pair (in radians)
+     * @param from
+     *            index of the first pair (inclusive)
+     * @param to
+     *            index of the last pair (exclusive)
+     */
+    public void pairAngles(double[] quaternions, int[] pairs,
+            double[] angles, int from, int to) {
+        for (int i = from; i < to; i++)
+            angles[i] =
+                    angle(quaternions, pairs[i * 2], quaternions,
+                            pairs[i * 2 + 1]);
+    }
+
+
+
+    /**
+     * Computes the disorientation angles between pairs of orientations of
+     * the same array.
+     * 
+     * @param quaternions
+     *            orientations
+     * @param pairs
+     *            indexes of the orientations of each pair (first and second
+     *            orientation of each pair one after the other)
+     * @return angle of each pair (in radians)
+     */
+    public double[] pairAngles(double[] quaternions, int[] pairs) {
+        checkPairs(quaternions, pairs);
+
+        double[] angles = new double[pairs.length / 2];
+        pairAngles(quaternions, pairs, angles, 0, angles.length);
+        return angles;
+    }
+
+
+
+    /**
+     * Computes in parallel the disorientation angles between pairs of
+     * orientations of the same array.
+     * 
+     * @param quaternions
+     *            orientations
+     * @param pairs
+     *            indexes of the orientations of each pair (first and second
+     *            orientation of each pair one after the other)
+     * @param executor
+     *            executor service running the chunks
+     * @return angle of each pair (in radians)
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public double[] pairAngles(final double[] quaternions, final int[] pairs,
+            ExecutorService executor) throws InterruptedException {
+        checkPairs(quaternions, pairs);
+
+        final double[] angles = new double[pairs.length / 2];
+        ParallelUtils.run(executor, angles.length, CHUNK_SIZE,
+                new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        pairAngles(quaternions, pairs, angles, from, to);
+                    }
+                });
+        return angles;
+    }
+
+
+
+    /**
+     * Checks that two arrays of quaternions have the same length.
+     * 
+     * @param qa
+     *            first orientations
+     * @param qb
+     *            second orientations
+     */
+    private static void checkArrays(double[] qa, double[] qb) {
+        FundamentalZoneReducer.checkQuaternions(qa);
+        FundamentalZoneReducer.checkQuaternions(qb);
+        if (qa.length != qb.length)
+            throw new IllegalArgumentException("Arrays have different lengths ("
+                    + qa.length + " != " + qb.length + ")");
+    }
+
+
+
+    /**
+     * Checks the arrays of quaternions and pairs.
+     * 
+     * @param quaternions
+     *            orientations
+     * @param pairs
+     *            pairs of indexes
+     */
+    private static void checkPairs(double[] quaternions, int[] pairs) {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+        if (pairs == null)
+            throw new NullPointerException("pairs == null");
+        if (pairs.length % 2 != 0)
+            throw new IllegalArgumentException("Length of the pairs ("
+                    + pairs.length + ") must be a multiple of 2");
+    }
+
+}
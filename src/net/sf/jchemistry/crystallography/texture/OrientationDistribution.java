@@ -0,0 +1,525 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.texture;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.orientation.MisorientationCalculator;
+import net.sf.jchemistry.util.ParallelUtils;
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+import org.apache.commons.math.geometry.Rotation;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.exp;
+
+/**
+ * Orientation distribution function (ODF) estimated on the cells of an
+ * {@link OrientationGrid}. The orientations are first counted in the cells
+ * of the fundamental zone and the counts are then smoothed with a Gaussian
+ * kernel on the misorientation angle between cell centres (kernel density
+ * estimation). The kernel of each cell of the fundamental zone is evaluated
+ * on its neighbouring cells of the full grid within three half-widths and
+ * each neighbour contributes to the cell of the fundamental zone
+ * representing it. A neighbour stands for all the cells of the full grid of
+ * its representative, so its weight is multiplied by their number: a
+ * uniform distribution then remains uniform even though the cells of the
+ * fundamental zone represent different numbers of cells. The kernels are
+ * normalized so that the number of orientations is preserved.
+ * <p/>
+ * The misorientation angle between two cells only depends on their offsets
+ * along the axes of the grid and on their position along
+ * <code>cos(PHI)</code>, so the weights are computed once per division of
+ * <code>cos(PHI)</code>. Only the cells of the fundamental zone are smoothed
+ * and they can be smoothed in parallel chunks.
+ * <p/>
+ * The density of each cell is expressed in multiples of a uniform
+ * distribution (MUD): a random texture has a density of 1 everywhere.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class OrientationDistribution {
+
+    /** Default number of cells per chunk in parallel smoothing. */
+    public static final int CHUNK_SIZE = 16384;
+
+    /** Grid. */
+    private final OrientationGrid grid;
+
+    /** Fraction of the orientations in each cell. */
+    private final double[] fractions;
+
+    /** Density of each cell (MUD). */
+    private final double[] densities;
+
+
+
+    /**
+     * Estimates the ODF of orientations.
+     * 
+     * @param grid
+     *            grid of the orientation space
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each orientation)
+     * @param halfWidth
+     *            standard deviation of the Gaussian kernel (in radians), 0.0
+     *            for no smoothing
+     * @return ODF
+     * @throws IllegalArgumentException
+     *             if the half-width is negative
+     */
+    public static OrientationDistribution estimate(OrientationGrid grid,
+            double[] quaternions, double halfWidth) {
+        if (grid == null)
+            throw new NullPointerException("grid == null");
+        if (halfWidth < 0.0)
+            throw new IllegalArgumentException("Half-width (" + halfWidth
+                    + ") must be positive");
+
+        return new OrientationDistribution(grid, grid.histogram(quaternions),
+                halfWidth);
+    }
+
+
+
+    /**
+     * Estimates the ODF of orientations, counted in parallel.
+     * 
+     * @param grid
+     *            grid of the orientation space
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each orientation)
+     * @param halfWidth
+     *            standard deviation of the Gaussian kernel (in radians), 0.0
+     *            for no smoothing
+     * @param executor
+     *            executor service running the chunks
+     * @return ODF
+     * @throws IllegalArgumentException
+     *             if the half-width is negative
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public static OrientationDistribution estimate(OrientationGrid grid,
+            double[] quaternions, double halfWidth, ExecutorService executor)
+            throws InterruptedException {
+        if (grid == null)
+            throw new NullPointerException("grid == null");
+        if (halfWidth < 0.0)
+            throw new IllegalArgumentException("Half-width (" + halfWidth
+                    + ") must be positive");
+
+        double[] counts = grid.histogram(quaternions, executor);
+        if (halfWidth > 0.0)
+            counts = smooth(grid, counts, halfWidth, executor);
+
+        return new OrientationDistribution(grid, counts, 0.0);
+    }
+
+
+
+    /**
+     * Creates a new <code>OrientationDistribution</code> from the number of
+     * orientations in each cell of the fundamental zone.
+     * 
+     * @param grid
+     *            grid of the orientation space
+     * @param counts
+     *            number of orientations in each cell
+     * @param halfWidth
+     *            standard deviation of the Gaussian kernel (in radians), 0.0
+     *            for no smoothing
+     * @throws IllegalArgumentException
+     *             if the number of counts does not match the grid
+     * @throws IllegalArgumentException
+     *             if the half-width is negative
+     */
+    public OrientationDistribution(OrientationGrid grid, double[] counts,
+            double halfWidth) {
+        if (grid == null)
+            throw new NullPointerException("grid == null");
+        if (counts == null)
+            throw new NullPointerException("counts == null");
+        if (counts.length != grid.getCellCount())
+            throw new IllegalArgumentException("Number of counts ("
+                    + counts.length + ") must be equal to number of cells ("
+                    + grid.getCellCount() + ")");
+        if (halfWidth < 0.0)
+            throw new IllegalArgumentException("Half-width (" + halfWidth
+                    + ") must be positive");
+
+        this.grid = grid;
+
+        double[] smoothed;
+        if (halfWidth > 0.0)
+            smoothed = smooth(grid, counts, halfWidth);
+        else
+            smoothed = counts.clone();
+
+        double total = 0.0;
+        for (double count : smoothed)
+            total += count;
+
+        fractions = new double[smoothed.length];
+        densities = new double[smoothed.length];
+        if (total > 0.0) {
+            for (int i = 0; i < smoothed.length; i++) {
+                fractions[i] = smoothed[i] / total;
+                densities[i] = fractions[i] / grid.getVolumeFraction(i);
+            }
+        }
+    }
+
+
+
+    /**
+     * Kernel of the smoothing. The neighbours of a cell are stored for each
+     * division of <code>cos(PHI)</code> as offsets along the axes of the grid
+     * with their weight.
+     */
+    private static final class Kernel {
+
+        /** Grid. */
+        private final OrientationGrid grid;
+
+        /** Offsets along phi1 of the neighbours, for each division. */
+        private final int[][] offsets1;
+
+        /** Indexes along cos(PHI) of the neighbours, for each division. */
+        private final int[][] indexesCos;
+
+        /** Offsets along phi2 of the neighbours, for each division. */
+        private final int[][] offsets2;
+
+        /** Weights of the neighbours, for each division. */
+        private final double[][] weights;
+
+        /** Largest number of neighbours. */
+        private final int maxSize;
+
+
+
+        /**
+         * Creates a new <code>Kernel</code>.
+         * 
+         * @param grid
+         *            grid of the orientation space
+         * @param halfWidth
+         *            standard deviation of the Gaussian kernel (in radians)
+         */
+        public Kernel(OrientationGrid grid, double halfWidth) {
+            this.grid = grid;
+
+            int nPhi = grid.getPhiDivisions();
+            int nCos = grid.getCosDivisions();
+            int k1 = (int) Math.ceil(3.0 * halfWidth * nPhi / (2.0 * Math.PI));
+            k1 = Math.min((nPhi - 1) / 2, k1);
+            int kc = (int) Math.ceil(3.0 * halfWidth * nCos / 2.0);
+            double cutoff = 3.0 * halfWidth;
+            double factor = -0.5 / (halfWidth * halfWidth);
+
+            offsets1 = new int[nCos][];
+            indexesCos = new int[nCos][];
+            offsets2 = new int[nCos][];
+            weights = new double[nCos][];
+
+            int window = (2 * k1 + 1) * (2 * kc + 1) * (2 * k1 + 1);
+            int[] d1s = new int[window];
+            int[] jcs = new int[window];
+            int[] d2s = new int[window];
+            double[] ws = new double[window];
+            double[] centre = new double[4];
+            double[] neighbour = new double[4];
+            int max = 0;
+
+            for (int ic = 0; ic < nCos; ic++) {
+                grid.getCentre(grid.getFullCell(0, ic, 0), centre, 0);
+
+                int n = 0;
+                for (int d1 = -k1; d1 <= k1; d1++) {
+                    for (int dc = -kc; dc <= kc; dc++) {
+                        int jc = ic + dc;
+                        if (jc < 0 || jc >= nCos)
+                            continue;
+
+                        for (int d2 = -k1; d2 <= k1; d2++) {
+                            grid.getCentre(grid.getFullCell(d1, jc, d2),
+                                    neighbour, 0);
+
+                            double dot =
+                                    abs(centre[0] * neighbour[0] + centre[1]
+                                            * neighbour[1] + centre[2]
+                                            * neighbour[2] + centre[3]
+                                            * neighbour[3]);
+                            double angle =
+                                    dot >= 1.0 ? 0.0 : 2.0 * Math.acos(dot);
+                            if (angle > cutoff)
+                                continue;
+
+                            d1s[n] = d1;
+                            jcs[n] = jc;
+                            d2s[n] = d2;
+                            ws[n] = exp(factor * angle * angle);
+                            n++;
+                        }
+                    }
+                }
+
+                offsets1[ic] = Arrays.copyOf(d1s, n);
+                indexesCos[ic] = Arrays.copyOf(jcs, n);
+                offsets2[ic] = Arrays.copyOf(d2s, n);
+                weights[ic] = Arrays.copyOf(ws, n);
+                max = Math.max(max, n);
+            }
+
+            maxSize = max;
+        }
+
+
+
+        /**
+         * Spreads the counts of the cells of the fundamental zone between the
+         * specified indexes over their neighbours.
+         * 
+         * @param counts
+         *            number of orientations in each cell
+         * @param smoothed
+         *            array where to add the smoothed counts
+         * @param from
+         *            index of the first cell (inclusive)
+         * @param to
+         *            index of the last cell (exclusive)
+         */
+        public void smooth(double[] counts, double[] smoothed, int from,
+                int to) {
+            int nPhi = grid.getPhiDivisions();
+            int nCos = grid.getCosDivisions();
+            int[] neighbours = new int[maxSize];
+            double[] volumes = new double[maxSize];
+            double[] buffer = new double[maxSize * 4];
+
+            for (int cell = from; cell < to; cell++) {
+                if (counts[cell] == 0.0)
+                    continue;
+
+                int full = grid.getFullCell(cell);
+                int i2 = full % nPhi;
+                int ic = (full / nPhi) % nCos;
+                int i1 = full / (nPhi * nCos);
+
+                int n = weights[ic].length;
+                for (int i = 0; i < n; i++)
+                    neighbours[i] =
+                            grid.getFullCell(i1 + offsets1[ic][i],
+                                    indexesCos[ic][i], i2 + offsets2[ic][i]);
+                grid.getRepresentatives(neighbours, neighbours, n, buffer);
+
+                double sum = 0.0;
+                for (int i = 0; i < n; i++) {
+                    volumes[i] =
+                            weights[ic][i]
+                                    * grid.getMultiplicity(neighbours[i]);
+                    sum += volumes[i];
+                }
+
+                for (int i = 0; i < n; i++)
+                    smoothed[neighbours[i]] += counts[cell] * volumes[i] / sum;
+            }
+        }
+    }
+
+
+
+    /**
+     * Smooths the counts with a Gaussian kernel evaluated on the neighbouring
+     * cells.
+     * 
+     * @param grid
+     *            grid of the orientation space
+     * @param counts
+     *            number of orientations in each cell
+     * @param halfWidth
+     *            standard deviation of the Gaussian kernel (in radians)
+     * @return smoothed counts
+     */
+    private static double[] smooth(OrientationGrid grid, double[] counts,
+            double halfWidth) {
+        double[] smoothed = new double[counts.length];
+        new Kernel(grid, halfWidth).smooth(counts, smoothed, 0, counts.length);
+        return smoothed;
+    }
+
+
+
+    /**
+     * Smooths the counts with a Gaussian kernel evaluated on the neighbouring
+     * cells, in parallel chunks of {@link #CHUNK_SIZE} cells. Each chunk is
+     * smoothed in its own array, which is then added to the result.
+     * 
+     * @param grid
+     *            grid of the orientation space
+     * @param counts
+     *            number of orientations in each cell
+     * @param halfWidth
+     *            standard deviation of the Gaussian kernel (in radians)
+     * @param executor
+     *            executor service running the chunks
+     * @return smoothed counts
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    private static double[] smooth(OrientationGrid grid,
+            final double[] counts, double halfWidth, ExecutorService executor)
+            throws InterruptedException {
+        final Kernel kernel = new Kernel(grid, halfWidth);
+        final double[] smoothed = new double[counts.length];
+        ParallelUtils.run(executor, counts.length, CHUNK_SIZE,
+                new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        double[] local = new double[smoothed.length];
+                        kernel.smooth(counts, local, from, to);
+                        synchronized (smoothed) {
+                            for (int i = 0; i < smoothed.length; i++)
+                                smoothed[i] += local[i];
+                        }
+                    }
+                });
+        return smoothed;
+    }
+
+
+
+    /**
+     * Returns the grid.
+     * 
+     * @return grid of the orientation space
+     */
+    public OrientationGrid getGrid() {
+        return grid;
+    }
+
+
+
+    /**
+     * Returns the density of each cell of the fundamental zone, in multiples
+     * of a uniform distribution. The returned array is a copy.
+     * 
+     * @return densities
+     */
+    public double[] getDensities() {
+        return densities.clone();
+    }
+
+
+
+    /**
+     * Returns the density at an orientation, in multiples of a uniform
+     * distribution.
+     * 
+     * @param q
+     *            orientation
+     * @return density
+     */
+    public double getDensity(Rotation q) {
+        double[] array =
+                new double[] { q.getQ0(), q.getQ1(), q.getQ2(), q.getQ3() };
+        return densities[grid.getCell(array, 0)];
+    }
+
+
+
+    /**
+     * Returns the maximum density, in multiples of a uniform distribution.
+     * 
+     * @return maximum density
+     */
+    public double getMaximumDensity() {
+        double max = 0.0;
+        for (double density : densities)
+            max = Math.max(max, density);
+        return max;
+    }
+
+
+
+    /**
+     * Returns the index of the cell with the maximum density.
+     * 
+     * @return index of the cell
+     */
+    public int getMaximumCell() {
+        int index = 0;
+        for (int i = 1; i < densities.length; i++)
+            if (densities[i] > densities[index])
+                index = i;
+        return index;
+    }
+
+
+
+    /**
+     * Returns the texture index, i.e. the integral of the square of the
+     * density over the orientation space. It is 1 for a random texture.
+     * 
+     * @return texture index
+     */
+    public double getTextureIndex() {
+        double index = 0.0;
+        for (int i = 0; i < densities.length; i++)
+            index += densities[i] * densities[i] * grid.getVolumeFraction(i);
+        return index;
+    }
+
+
+
+    /**
+     * Returns the volume fraction of a texture component, i.e. the fraction
+     * of the orientations in the cells whose centre is within the tolerance
+     * of the component, taking into account the symmetry.
+     * 
+     * @param component
+     *            orientation of the component
+     * @param tolerance
+     *            maximum disorientation angle from the component (in radians)
+     * @return volume fraction
+     */
+    public double getVolumeFraction(Rotation component, double tolerance) {
+        if (component == null)
+            throw new NullPointerException("component == null");
+
+        MisorientationCalculator calc =
+                new MisorientationCalculator(grid.getLaueGroup());
+        double[] q =
+                new double[] { component.getQ0(), component.getQ1(),
+                        component.getQ2(), component.getQ3() };
+
+        double fraction = 0.0;
+        for (int i = 0; i < fractions.length; i++) {
+            if (fractions[i] == 0.0)
+                continue;
+            if (calc.angle(grid.getCentre(i), 0, q, 0) <= tolerance)
+                fraction += fractions[i];
+        }
+        return fraction;
+    }
+
+}
@@ -0,0 +1,558 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.texture;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+import net.sf.jchemistry.crystallography.orientation.FundamentalZoneReducer;
+import net.sf.jchemistry.util.ParallelUtils;
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.atan2;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+
+/**
+ * Discretisation of the orientation space restricted to the fundamental
+ * zone of a Laue group. The orientations are parametrised by the Euler
+ * angles <code>(phi1, PHI, phi2)</code> of the rotation matrix
+ * <code>Rz(phi1) Rx(PHI) Rz(phi2)</code> of their quaternion. The grid is
+ * uniform in <code>phi1</code>, <code>cos(PHI)</code> and <code>phi2</code>,
+ * so that all its cells have the same volume in orientation space.
+ * <p/>
+ * The centre of each cell of the full grid is reduced with the
+ * {@link FundamentalZoneReducer} and the cell containing the reduced centre
+ * is its representative. The representatives are the cells of the
+ * fundamental zone; they are numbered from 0 in the order of the full grid.
+ * Only the cells of the fundamental zone are stored: the full grid is
+ * streamed through the reducer in blocks when the grid is created, and the
+ * representative of a cell is found again by reducing its centre. Since
+ * symmetrically equivalent cells share the same representative, an
+ * orientation is binned in the cell of its representative whatever its
+ * equivalent. The volume of a cell of the fundamental zone is given by the
+ * number of cells of the full grid it represents. Cells on the boundary of
+ * the fundamental zone represent fewer cells and are therefore noisier.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class OrientationGrid {
+
+    /** Default number of orientations per chunk in parallel accumulations. */
+    public static final int CHUNK_SIZE = 262144;
+
+    /** Number of cells reduced at once. */
+    private static final int BLOCK_SIZE = 4096;
+
+    /** Laue group. */
+    private final LaueGroup laueGroup;
+
+    /** Number of divisions along phi1 and phi2. */
+    private final int nPhi;
+
+    /** Number of divisions along cos(PHI). */
+    private final int nCos;
+
+    /** Size of a division of phi1 and phi2. */
+    private final double deltaPhi;
+
+    /** Size of a division of cos(PHI). */
+    private final double deltaCos;
+
+    /** Reducer of the centres of the cells. */
+    private final FundamentalZoneReducer reducer;
+
+    /** Index in the full grid of each cell, in increasing order. */
+    private final int[] cells;
+
+    /** Number of cells of the full grid represented by each cell. */
+    private final int[] multiplicities;
+
+
+
+    /**
+     * Creates a new <code>OrientationGrid</code>.
+     * 
+     * @param laueGroup
+     *            Laue group
+     * @param resolution
+     *            approximate size of the cells (in radians)
+     * @throws IllegalArgumentException
+     *             if the resolution is not between 0 and PI
+     */
+    public OrientationGrid(LaueGroup laueGroup, double resolution) {
+        if (laueGroup == null)
+            throw new NullPointerException("laue group == null");
+        if (resolution <= 0.0 || resolution > PI)
+            throw new IllegalArgumentException("Resolution (" + resolution
+                    + ") must be between ]0, PI]");
+
+        this.laueGroup = laueGroup;
+        nPhi = Math.max(1, (int) Math.round(2.0 * PI / resolution));
+        nCos = Math.max(1, (int) Math.round(2.0 / resolution));
+        deltaPhi = 2.0 * PI / nPhi;
+        deltaCos = 2.0 / nCos;
+
+        reducer = new FundamentalZoneReducer(laueGroup);
+
+        // Representatives of the full grid, chunk by chunk
+        int size = getFullCellCount();
+        int[] zoneCells = new int[0];
+        int[] counts = new int[0];
+        int[] images = new int[Math.min(size, CHUNK_SIZE)];
+        double[] buffer = new double[BLOCK_SIZE * 4];
+        for (int from = 0; from < size; from += CHUNK_SIZE) {
+            int n = Math.min(CHUNK_SIZE, size - from);
+            for (int i = 0; i < n; i++)
+                images[i] = from + i;
+            for (int i = 0; i < n; i += BLOCK_SIZE)
+                getFullRepresentatives(images, i, Math.min(n, i + BLOCK_SIZE),
+                        buffer);
+            Arrays.sort(images, 0, n);
+
+            // Merge the sorted chunk with the cells found so far
+            int[] mergedCells = new int[zoneCells.length + n];
+            int[] mergedCounts = new int[zoneCells.length + n];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < zoneCells.length || j < n) {
+                int cell;
+                if (j < n
+                        && (i >= zoneCells.length || images[j] < zoneCells[i]))
+                    cell = images[j];
+                else
+                    cell = zoneCells[i];
+
+                int multiplicity = 0;
+                if (i < zoneCells.length && zoneCells[i] == cell)
+                    multiplicity += counts[i++];
+                while (j < n && images[j] == cell) {
+                    multiplicity++;
+                    j++;
+                }
+
+                mergedCells[count] = cell;
+                mergedCounts[count] = multiplicity;
+                count++;
+            }
+
+            zoneCells = Arrays.copyOf(mergedCells, count);
+            counts = Arrays.copyOf(mergedCounts, count);
+        }
+
+        cells = zoneCells;
+        multiplicities = counts;
+    }
+
+
+
+    /**
+     * Returns the Laue group.
+     * 
+     * @return Laue group
+     */
+    public LaueGroup getLaueGroup() {
+        return laueGroup;
+    }
+
+
+
+    /**
+     * Returns the number of cells of the full grid.
+     * 
+     * @return number of cells of the full grid
+     */
+    public int getFullCellCount() {
+        return nPhi * nCos * nPhi;
+    }
+
+
+
+    /**
+     * Returns the number of cells of the fundamental zone.
+     * 
+     * @return number of cells
+     */
+    public int getCellCount() {
+        return cells.length;
+    }
+
+
+
+    /**
+     * Returns the fraction of the orientation space covered by a cell of the
+     * fundamental zone, including its symmetric equivalents.
+     * 
+     * @param cell
+     *            index of the cell
+     * @return volume fraction
+     */
+    public double getVolumeFraction(int cell) {
+        return multiplicities[cell] / (double) getFullCellCount();
+    }
+
+
+
+    /**
+     * Returns the number of cells of the full grid represented by a cell of
+     * the fundamental zone.
+     * 
+     * @param cell
+     *            index of the cell
+     * @return number of cells of the full grid
+     */
+    protected int getMultiplicity(int cell) {
+        return multiplicities[cell];
+    }
+
+
+
+    /**
+     * Returns the number of divisions along <code>phi1</code> and
+     * <code>phi2</code>.
+     * 
+     * @return number of divisions
+     */
+    public int getPhiDivisions() {
+        return nPhi;
+    }
+
+
+
+    /**
+     * Returns the number of divisions along <code>cos(PHI)</code>.
+     * 
+     * @return number of divisions
+     */
+    public int getCosDivisions() {
+        return nCos;
+    }
+
+
+
+    /**
+     * Returns the index in the full grid of a cell from its indexes along
+     * each axis. The indexes along <code>phi1</code> and <code>phi2</code>
+     * are periodic.
+     * 
+     * @param i1
+     *            index along phi1
+     * @param ic
+     *            index along cos(PHI)
+     * @param i2
+     *            index along phi2
+     * @return index in the full grid
+     */
+    protected int getFullCell(int i1, int ic, int i2) {
+        i1 = ((i1 % nPhi) + nPhi) % nPhi;
+        i2 = ((i2 % nPhi) + nPhi) % nPhi;
+        return (i1 * nCos + ic) * nPhi + i2;
+    }
+
+
+
+    /**
+     * Returns the index in the full grid of the cell containing an
+     * orientation.
+     * 
+     * @param q0
+     *            scalar part of the quaternion
+     * @param q1
+     *            first component of the vector part
+     * @param q2
+     *            second component of the vector part
+     * @param q3
+     *            third component of the vector part
+     * @return index in the full grid
+     */
+    protected int getFullCell(double q0, double q1, double q2, double q3) {
+        double r02 = 2.0 * (q1 * q3 + q0 * q2);
+        double r12 = 2.0 * (q2 * q3 - q0 * q1);
+        double r22 = 1.0 - 2.0 * (q1 * q1 + q2 * q2);
+        double r20 = 2.0 * (q1 * q3 - q0 * q2);
+        double r21 = 2.0 * (q2 * q3 + q0 * q1);
+
+        double phi1;
+        double phi2;
+        if (r02 * r02 + r12 * r12 < 1e-20) {
+            double r00 = 1.0 - 2.0 * (q2 * q2 + q3 * q3);
+            double r10 = 2.0 * (q1 * q2 + q0 * q3);
+            phi1 = atan2(r10, r00);
+            phi2 = 0.0;
+        } else {
+            phi1 = atan2(r02, -r12);
+            phi2 = atan2(r20, r21);
+        }
+        if (phi1 < 0.0)
+            phi1 += 2.0 * PI;
+        if (phi2 < 0.0)
+            phi2 += 2.0 * PI;
+
+        int i1 = Math.min(nPhi - 1, (int) (phi1 / deltaPhi));
+        int i2 = Math.min(nPhi - 1, (int) (phi2 / deltaPhi));
+        int ic = (int) ((r22 + 1.0) / deltaCos);
+        if (ic >= nCos)
+            ic = nCos - 1;
+        else if (ic < 0)
+            ic = 0;
+
+        return (i1 * nCos + ic) * nPhi + i2;
+    }
+
+
+
+    /**
+     * Returns the index of the cell of the fundamental zone containing an
+     * orientation.
+     * 
+     * @param quaternions
+     *            array of quaternions
+     * @param index
+     *            index of the orientation in the array
+     * @return index of the cell
+     */
+    public int getCell(double[] quaternions, int index) {
+        int i = index * 4;
+        return getRepresentative(getFullCell(quaternions[i],
+                quaternions[i + 1], quaternions[i + 2], quaternions[i + 3]));
+    }
+
+
+
+    /**
+     * Returns the index of the cell of the fundamental zone of a cell of the
+     * full grid.
+     * 
+     * @param fullCell
+     *            index in the full grid
+     * @return index of the cell
+     */
+    protected int getRepresentative(int fullCell) {
+        int[] fullCells = new int[] { fullCell };
+        getRepresentatives(fullCells, fullCells, 1, new double[4]);
+        return fullCells[0];
+    }
+
+
+
+    /**
+     * Replaces cells of the full grid by the index of the cell of the
+     * fundamental zone representing them. Their centres are reduced together.
+     * 
+     * @param fullCells
+     *            indexes in the full grid
+     * @param out
+     *            array where to store the indexes of the cells (can be
+     *            <code>fullCells</code>)
+     * @param n
+     *            number of cells
+     * @param buffer
+     *            array of at least <code>4 n</code> doubles used to reduce
+     *            the centres
+     */
+    protected void getRepresentatives(int[] fullCells, int[] out, int n,
+            double[] buffer) {
+        System.arraycopy(fullCells, 0, out, 0, n);
+        getFullRepresentatives(out, 0, n, buffer);
+        for (int i = 0; i < n; i++)
+            out[i] = Arrays.binarySearch(cells, out[i]);
+    }
+
+
+
+    /**
+     * Replaces cells of the full grid by the cell of the full grid containing
+     * their reduced centre.
+     * 
+     * @param fullCells
+     *            indexes in the full grid
+     * @param from
+     *            index of the first cell (inclusive)
+     * @param to
+     *            index of the last cell (exclusive)
+     * @param buffer
+     *            array of at least <code>4 (to - from)</code> doubles used to
+     *            reduce the centres
+     */
+    private void getFullRepresentatives(int[] fullCells, int from, int to,
+            double[] buffer) {
+        int n = to - from;
+        for (int i = 0; i < n; i++)
+            getCentre(fullCells[from + i], buffer, i);
+        reducer.reduce(buffer, 0, n);
+        for (int i = 0; i < n; i++)
+            fullCells[from + i] =
+                    getFullCell(buffer[i * 4], buffer[i * 4 + 1],
+                            buffer[i * 4 + 2], buffer[i * 4 + 3]);
+    }
+
+
+
+    /**
+     * Returns the index in the full grid of a cell of the fundamental zone.
+     * 
+     * @param cell
+     *            index of the cell
+     * @return index in the full grid
+     */
+    protected int getFullCell(int cell) {
+        return cells[cell];
+    }
+
+
+
+    /**
+     * Stores the quaternion of the centre of a cell of the full grid.
+     * 
+     * @param fullCell
+     *            index in the full grid
+     * @param out
+     *            array of quaternions
+     * @param index
+     *            index of the quaternion in the array
+     */
+    protected void getCentre(int fullCell, double[] out, int index) {
+        int i2 = fullCell % nPhi;
+        int ic = (fullCell / nPhi) % nCos;
+        int i1 = fullCell / (nPhi * nCos);
+
+        double phi1 = (i1 + 0.5) * deltaPhi;
+        double cosPhi = -1.0 + (ic + 0.5) * deltaCos;
+        double phi2 = (i2 + 0.5) * deltaPhi;
+
+        // qz(phi1) qx(PHI) qz(phi2)
+        double c = sqrt((1.0 + cosPhi) / 2.0);
+        double s = sqrt((1.0 - cosPhi) / 2.0);
+        double sum = (phi1 + phi2) / 2.0;
+        double diff = (phi1 - phi2) / 2.0;
+
+        int o = index * 4;
+        out[o] = c * cos(sum);
+        out[o + 1] = s * cos(diff);
+        out[o + 2] = s * sin(diff);
+        out[o + 3] = c * sin(sum);
+    }
+
+
+
+    /**
+     * Returns the quaternion of the centre of a cell of the fundamental zone.
+     * 
+     * @param cell
+     *            index of the cell
+     * @return quaternion (q0, q1, q2, q3)
+     */
+    public double[] getCentre(int cell) {
+        double[] q = new double[4];
+        getCentre(cells[cell], q, 0);
+        return q;
+    }
+
+
+
+    /**
+     * Counts the orientations in each cell of the fundamental zone.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each orientation)
+     * @param counts
+     *            array where to add the counts
+     * @param from
+     *            index of the first orientation (inclusive)
+     * @param to
+     *            index of the last orientation (exclusive)
+     */
+    public void accumulate(double[] quaternions, double[] counts, int from,
+            int to) {
+        int[] block = new int[Math.min(BLOCK_SIZE, Math.max(0, to - from))];
+        double[] buffer = new double[block.length * 4];
+        for (int start = from; start < to; start += BLOCK_SIZE) {
+            int n = Math.min(BLOCK_SIZE, to - start);
+            for (int i = 0; i < n; i++) {
+                int o = (start + i) * 4;
+                block[i] =
+                        getFullCell(quaternions[o], quaternions[o + 1],
+                                quaternions[o + 2], quaternions[o + 3]);
+            }
+
+            getRepresentatives(block, block, n, buffer);
+            for (int i = 0; i < n; i++)
+                counts[block[i]] += 1.0;
+        }
+    }
+
+
+
+    /**
+     * Returns the number of orientations in each cell of the fundamental
+     * zone.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each orientation)
+     * @return counts
+     */
+    public double[] histogram(double[] quaternions) {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+
+        double[] counts = new double[cells.length];
+        accumulate(quaternions, counts, 0, quaternions.length / 4);
+        return counts;
+    }
+
+
+
+    /**
+     * Returns the number of orientations in each cell of the fundamental
+     * zone, counted in parallel. Each chunk is counted in its own array,
+     * which is then added to the result.
+     * 
+     * @param quaternions
+     *            orientations (<code>q0, q1, q2, q3</code> of each orientation)
+     * @param executor
+     *            executor service running the chunks
+     * @return counts
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public double[] histogram(final double[] quaternions,
+            ExecutorService executor) throws InterruptedException {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+
+        final double[] counts = new double[cells.length];
+        ParallelUtils.run(executor, quaternions.length / 4, CHUNK_SIZE,
+                new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        double[] local = new double[counts.length];
+                        accumulate(quaternions, local, from, to);
+                        synchronized (counts) {
+                            for (int i = 0; i < counts.length; i++)
+                                counts[i] += local[i];
+                        }
+                    }
+                });
+        return counts;
+    }
+
+}
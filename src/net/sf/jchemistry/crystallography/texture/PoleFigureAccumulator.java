@@ -0,0 +1,570 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.texture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.jcip.annotations.Immutable;
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.core.UnitCell;
+import net.sf.jchemistry.crystallography.orientation.FundamentalZoneReducer;
+import net.sf.jchemistry.util.ParallelUtils;
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+import org.apache.commons.math.linear.LUDecompositionImpl;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.sqrt;
+
+/**
+ * Accumulates pole figures and inverse pole figures from large numbers of
+ * orientations. The orientations are quaternions stored in a flat array
+ * (<code>q0, q1, q2, q3</code> of each orientation one after the other),
+ * following the convention of {@link Rotation}: an orientation
+ * <code>q</code> transforms a direction of the sample into the crystal
+ * (<code>q.applyTo(sample) = crystal</code>) and the symmetry operators of
+ * the Laue group are applied after it, as in
+ * {@link FundamentalZoneReducer}.
+ * <p/>
+ * The directions are projected on the upper hemisphere with the Lambert
+ * equal-area projection, scaled so that the equator is the unit circle, and
+ * counted in a square grid of <code>size x size</code> bins covering
+ * <code>[-1, 1] x [-1, 1]</code>. The grid is a flat array stored row by row
+ * (y) then column by column (x). In parallel, each chunk of orientations is
+ * accumulated in its own grid, which is then added to the result.
+ * 
+ * @author Philippe T. Pinard
+ */
+@Immutable
+public class PoleFigureAccumulator {
+
+    /** Default number of orientations per chunk in parallel accumulations. */
+    public static final int CHUNK_SIZE = 262144;
+
+    /** Tolerance to consider two directions as equal. */
+    private static final double EPSILON = 1e-9;
+
+    /** Number of bins along each axis of the grid. */
+    private final int size;
+
+
+
+    /**
+     * Creates a new <code>PoleFigureAccumulator</code>.
+     * 
+     * @param size
+     *            number of bins along each axis of the grid
+     * @throws IllegalArgumentException
+     *             if the size is less than 1
+     */
+    public PoleFigureAccumulator(int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("Size (" + size
+                    + ") must be greater than 0");
+        this.size = size;
+    }
+
+
+
+    /**
+     * Returns the number of bins along each axis of the grid.
+     * 
+     * @return size of the grid
+     */
+    public int getSize() {
+        return size;
+    }
+
+
+
+    /**
+     * Returns the index of the bin of a unit direction. The direction is
+     * first brought to the upper hemisphere.
+     * 
+     * @param x
+     *            x component
+     * @param y
+     *            y component
+     * @param z
+     *            z component
+     * @return index of the bin in the grid
+     */
+    public int getBin(double x, double y, double z) {
+        if (z < 0.0) {
+            x = -x;
+            y = -y;
+            z = -z;
+        }
+
+        // Lambert equal-area projection scaled to the unit disc
+        double factor = 1.0 / sqrt(1.0 + z);
+        int px = (int) ((x * factor + 1.0) * 0.5 * size);
+        int py = (int) ((y * factor + 1.0) * 0.5 * size);
+        if (px >= size)
+            px = size - 1;
+        else if (px < 0)
+            px = 0;
+        if (py >= size)
+            py = size - 1;
+        else if (py < 0)
+            py = 0;
+
+        return py * size + px;
+    }
+
+
+
+    /**
+     * Returns the rotation matrices of the operators of a Laue group, as
+     * used by {@link Rotation#applyTo(Vector3D)}.
+     * 
+     * @param laueGroup
+     *            Laue group
+     * @return flat array of the 3x3 matrices, row by row
+     */
+    private static double[] getMatrices(LaueGroup laueGroup) {
+        Rotation[] operators = laueGroup.getOperators();
+        double[] matrices = new double[operators.length * 9];
+        for (int i = 0; i < operators.length; i++) {
+            double[][] m = operators[i].getMatrix();
+            for (int r = 0; r < 3; r++)
+                System.arraycopy(m[r], 0, matrices, i * 9 + r * 3, 3);
+        }
+        return matrices;
+    }
+
+
+
+    /**
+     * Returns the unit symmetric equivalents of the normal of a plane in the
+     * Cartesian frame of the crystal. Opposite directions are only included
+     * once since they project on the same pole.
+     * 
+     * @param plane
+     *            plane
+     * @param unitCell
+     *            unit cell
+     * @param laueGroup
+     *            Laue group
+     * @return flat array of the equivalent directions (x, y, z)
+     */
+    private static double[] getEquivalentNormals(Reflector plane,
+            UnitCell unitCell, LaueGroup laueGroup) {
+        double[][] b =
+                new LUDecompositionImpl(unitCell.getCartesianMatrix()
+                        .transpose()).getSolver().getInverse().getData();
+        double h = plane.getH();
+        double k = plane.getK();
+        double l = plane.getL();
+        Vector3D normal =
+                new Vector3D(b[0][0] * h + b[0][1] * k + b[0][2] * l, b[1][0]
+                        * h + b[1][1] * k + b[1][2] * l, b[2][0] * h + b[2][1]
+                        * k + b[2][2] * l).normalize();
+
+        List<Vector3D> equivalents = new ArrayList<Vector3D>();
+        loop: for (Rotation op : laueGroup.getOperators()) {
+            Vector3D v = op.applyTo(normal);
+            for (Vector3D other : equivalents)
+                if (Math.abs(Vector3D.dotProduct(v, other)) > 1.0 - EPSILON)
+                    continue loop;
+            equivalents.add(v);
+        }
+
+        double[] array = new double[equivalents.size() * 3];
+        for (int i = 0; i < equivalents.size(); i++) {
+            array[i * 3] = equivalents.get(i).getX();
+            array[i * 3 + 1] = equivalents.get(i).getY();
+            array[i * 3 + 2] = equivalents.get(i).getZ();
+        }
+        return array;
+    }
+
+
+
+    /**
+     * Accumulates the pole figure of a plane for a range of orientations.
+     * 
+     * @param quaternions
+     *            orientations
+     * @param normals
+     *            equivalent plane normals in the crystal frame
+     * @param bins
+     *            grid where to add the counts
+     * @param from
+     *            index of the first orientation (inclusive)
+     * @param to
+     *            index of the last orientation (exclusive)
+     */
+    private void accumulatePoles(double[] quaternions, double[] normals,
+            double[] bins, int from, int to) {
+        for (int i = from * 4, end = to * 4; i < end; i += 4) {
+            double q0 = quaternions[i];
+            double q1 = quaternions[i + 1];
+            double q2 = quaternions[i + 2];
+            double q3 = quaternions[i + 3];
+
+            // Matrix of Rotation#applyInverseTo(Vector3D)
+            double m00 = 1.0 - 2.0 * (q2 * q2 + q3 * q3);
+            double m01 = 2.0 * (q1 * q2 - q0 * q3);
+            double m02 = 2.0 * (q1 * q3 + q0 * q2);
+            double m10 = 2.0 * (q1 * q2 + q0 * q3);
+            double m11 = 1.0 - 2.0 * (q1 * q1 + q3 * q3);
+            double m12 = 2.0 * (q2 * q3 - q0 * q1);
+            double m20 = 2.0 * (q1 * q3 - q0 * q2);
+            double m21 = 2.0 * (q2 * q3 + q0 * q1);
+            double m22 = 1.0 - 2.0 * (q1 * q1 + q2 * q2);
+
+            for (int j = 0; j < normals.length; j += 3) {
+                double x = normals[j];
+                double y = normals[j + 1];
+                double z = normals[j + 2];
+                bins[getBin(m00 * x + m01 * y + m02 * z, m10 * x + m11 * y
+                        + m12 * z, m20 * x + m21 * y + m22 * z)] += 1.0;
+            }
+        }
+    }
+
+
+
+    /**
+     * Accumulates the inverse pole figure of a sample direction for a range
+     * of orientations.
+     * 
+     * @param quaternions
+     *            orientations
+     * @param direction
+     *            unit sample direction
+     * @param operators
+     *            matrices of the symmetry operators
+     * @param bins
+     *            grid where to add the counts
+     * @param from
+     *            index of the first orientation (inclusive)
+     * @param to
+     *            index of the last orientation (exclusive)
+     */
+    private void accumulateDirections(double[] quaternions,
+            double[] direction, double[] operators, double[] bins, int from,
+            int to) {
+        double x = direction[0];
+        double y = direction[1];
+        double z = direction[2];
+
+        for (int i = from * 4, end = to * 4; i < end; i += 4) {
+            double q0 = quaternions[i];
+            double q1 = quaternions[i + 1];
+            double q2 = quaternions[i + 2];
+            double q3 = quaternions[i + 3];
+
+            // Rotation#applyTo(Vector3D)
+            double s = q1 * x + q2 * y + q3 * z;
+            double cx = 2.0 * (q0 * (x * q0 - (q2 * z - q3 * y)) + s * q1) - x;
+            double cy = 2.0 * (q0 * (y * q0 - (q3 * x - q1 * z)) + s * q2) - y;
+            double cz = 2.0 * (q0 * (z * q0 - (q1 * y - q2 * x)) + s * q3) - z;
+
+            for (int j = 0; j < operators.length; j += 9)
+                bins[getBin(operators[j] * cx + operators[j + 1] * cy
+                        + operators[j + 2] * cz, operators[j + 3] * cx
+                        + operators[j + 4] * cy + operators[j + 5] * cz,
+                        operators[j + 6] * cx + operators[j + 7] * cy
+                                + operators[j + 8] * cz)] += 1.0;
+        }
+    }
+
+
+
+    /**
+     * Returns the pole figure of a plane family. Each orientation contributes
+     * one count per distinct symmetric equivalent of the plane normal.
+     * 
+     * @param quaternions
+     *            orientations
+     * @param unitCell
+     *            unit cell of the crystal
+     * @param laueGroup
+     *            Laue group of the crystal
+     * @param plane
+     *            plane of the family
+     * @return grid of counts
+     */
+    public double[] poleFigure(double[] quaternions, UnitCell unitCell,
+            LaueGroup laueGroup, Reflector plane) {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+        double[] normals = getEquivalentNormals(plane, unitCell, laueGroup);
+
+        double[] bins = new double[size * size];
+        accumulatePoles(quaternions, normals, bins, 0, quaternions.length / 4);
+        return bins;
+    }
+
+
+
+    /**
+     * Returns the pole figure of a plane family, accumulated in parallel.
+     * 
+     * @param quaternions
+     *            orientations
+     * @param unitCell
+     *            unit cell of the crystal
+     * @param laueGroup
+     *            Laue group of the crystal
+     * @param plane
+     *            plane of the family
+     * @param executor
+     *            executor service running the chunks
+     * @return grid of counts
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public double[] poleFigure(final double[] quaternions, UnitCell unitCell,
+            LaueGroup laueGroup, Reflector plane, ExecutorService executor)
+            throws InterruptedException {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+        final double[] normals =
+                getEquivalentNormals(plane, unitCell, laueGroup);
+
+        final double[] bins = new double[size * size];
+        ParallelUtils.run(executor, quaternions.length / 4, CHUNK_SIZE,
+                new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        double[] local = new double[bins.length];
+                        accumulatePoles(quaternions, normals, local, from, to);
+                        merge(bins, local);
+                    }
+                });
+        return bins;
+    }
+
+
+
+    /**
+     * Returns the inverse pole figure of a sample direction. Each orientation
+     * contributes one count per symmetry operator, so the figure shows all
+     * the symmetric equivalents of the crystal direction.
+     * 
+     * @param quaternions
+     *            orientations
+     * @param laueGroup
+     *            Laue group of the crystal
+     * @param direction
+     *            direction in the sample frame
+     * @return grid of counts
+     */
+    public double[] inversePoleFigure(double[] quaternions,
+            LaueGroup laueGroup, Vector3D direction) {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+        double[] operators = getMatrices(laueGroup);
+        double[] d = toArray(direction);
+
+        double[] bins = new double[size * size];
+        accumulateDirections(quaternions, d, operators, bins, 0,
+                quaternions.length / 4);
+        return bins;
+    }
+
+
+
+    /**
+     * Returns the inverse pole figure of a sample direction, accumulated in
+     * parallel.
+     * 
+     * @param quaternions
+     *            orientations
+     * @param laueGroup
+     *            Laue group of the crystal
+     * @param direction
+     *            direction in the sample frame
+     * @param executor
+     *            executor service running the chunks
+     * @return grid of counts
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    public double[] inversePoleFigure(final double[] quaternions,
+            LaueGroup laueGroup, Vector3D direction, ExecutorService executor)
+            throws InterruptedException {
+        FundamentalZoneReducer.checkQuaternions(quaternions);
+        final double[] operators = getMatrices(laueGroup);
+        final double[] d = toArray(direction);
+
+        final double[] bins = new double[size * size];
+        ParallelUtils.run(executor, quaternions.length / 4, CHUNK_SIZE,
+                new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        double[] local = new double[bins.length];
+                        accumulateDirections(quaternions, d, operators, local,
+                                from, to);
+                        merge(bins, local);
+                    }
+                });
+        return bins;
+    }
+
+
+
+    /**
+     * Returns the normalized components of a direction.
+     * 
+     * @param direction
+     *            direction
+     * @return array (x, y, z)
+     */
+    private static double[] toArray(Vector3D direction) {
+        if (direction == null)
+            throw new NullPointerException("direction == null");
+        Vector3D d = direction.normalize();
+        return new double[] { d.getX(), d.getY(), d.getZ() };
+    }
+
+
+
+    /**
+     * Adds a local grid to the result.
+     * 
+     * @param bins
+     *            result
+     * @param local
+     *            local grid
+     */
+    private static void merge(double[] bins, double[] local) {
+        synchronized (bins) {
+            for (int i = 0; i < bins.length; i++)
+                bins[i] += local[i];
+        }
+    }
+
+
+
+    /**
+     * Returns whether a bin lies inside the projection of the hemisphere,
+     * i.e. whether its centre is inside the unit circle.
+     * 
+     * @param index
+     *            index of the bin
+     * @return <code>true</code> if the bin is inside
+     */
+    public boolean isInside(int index) {
+        double x = ((index % size) + 0.5) * 2.0 / size - 1.0;
+        double y = ((index / size) + 0.5) * 2.0 / size - 1.0;
+        return x * x + y * y <= 1.0;
+    }
+
+
+
+    /**
+     * Returns the grid normalized in multiples of a random distribution
+     * (MRD). Since the projection preserves areas, a uniform distribution
+     * gives the same count in every bin inside the unit circle.
+     * 
+     * @param bins
+     *            grid of counts
+     * @return normalized grid
+     */
+    public double[] normalize(double[] bins) {
+        double total = 0.0;
+        int inside = 0;
+        for (int i = 0; i < bins.length; i++) {
+            total += bins[i];
+            if (isInside(i))
+                inside++;
+        }
+
+        double[] normalized = new double[bins.length];
+        if (total == 0.0)
+            return normalized;
+
+        double factor = inside / total;
+        for (int i = 0; i < bins.length; i++)
+            normalized[i] = bins[i] * factor;
+        return normalized;
+    }
+
+
+
+    /**
+     * Returns the grid smoothed with a Gaussian kernel. The kernel is
+     * separable and is applied along x then along y. It is truncated at three
+     * standard deviations and renormalized near the edges of the grid.
+     * 
+     * @param bins
+     *            grid
+     * @param sigma
+     *            standard deviation of the kernel (in bins)
+     * @return smoothed grid
+     * @throws IllegalArgumentException
+     *             if sigma is negative
+     */
+    public double[] smooth(double[] bins, double sigma) {
+        if (bins.length != size * size)
+            throw new IllegalArgumentException("Size of the grid ("
+                    + bins.length + ") must be " + size + "x" + size);
+        if (sigma < 0.0)
+            throw new IllegalArgumentException("Sigma (" + sigma
+                    + ") must be positive");
+        if (sigma == 0.0)
+            return bins.clone();
+
+        int radius = (int) Math.ceil(3.0 * sigma);
+        double[] kernel = new double[2 * radius + 1];
+        for (int i = -radius; i <= radius; i++)
+            kernel[i + radius] = exp(-0.5 * i * i / (sigma * sigma));
+
+        double[] tmp = new double[bins.length];
+        double[] out = new double[bins.length];
+
+        // Along x
+        for (int y = 0; y < size; y++)
+            for (int x = 0; x < size; x++) {
+                double sum = 0.0;
+                double weight = 0.0;
+                for (int i = -radius; i <= radius; i++) {
+                    int xi = x + i;
+                    if (xi < 0 || xi >= size)
+                        continue;
+                    sum += kernel[i + radius] * bins[y * size + xi];
+                    weight += kernel[i + radius];
+                }
+                tmp[y * size + x] = sum / weight;
+            }
+
+        // Along y
+        for (int y = 0; y < size; y++)
+            for (int x = 0; x < size; x++) {
+                double sum = 0.0;
+                double weight = 0.0;
+                for (int i = -radius; i <= radius; i++) {
+                    int yi = y + i;
+                    if (yi < 0 || yi >= size)
+                        continue;
+                    sum += kernel[i + radius] * tmp[yi * size + x];
+                    weight += kernel[i + radius];
+                }
+                out[y * size + x] = sum / weight;
+            }
+
+        return out;
+    }
+
+}
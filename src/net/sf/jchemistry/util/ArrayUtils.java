@@ -0,0 +1,130 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.util;
+
+/**
+ * Utilities to search sorted arrays. Unlike
+ * {@link java.util.Arrays#binarySearch(double[], double)}, the searches
+ * return the first position of a value among equal ones, which bounds the
+ * ranges of values of the indexes sorted on a key.
+ * 
+ * @author Philippe T. Pinard
+ */
+public final class ArrayUtils {
+
+    /**
+     * Constructor to prevent the class to be instantiated.
+     */
+    private ArrayUtils() {
+
+    }
+
+
+
+    /**
+     * Returns the index of the first value greater or equal to the key.
+     * 
+     * @param sorted
+     *            sorted values
+     * @param key
+     *            key
+     * @return index, <code>sorted.length</code> if all the values are less
+     *         than the key
+     */
+    public static int lowerBound(double[] sorted, double key) {
+        return lowerBound(sorted, 0, sorted.length, key);
+    }
+
+
+
+    /**
+     * Returns the index of the first value greater or equal to the key in a
+     * range of the array.
+     * 
+     * @param sorted
+     *            sorted values
+     * @param from
+     *            first index (inclusive)
+     * @param to
+     *            last index (exclusive)
+     * @param key
+     *            key
+     * @return index, <code>to</code> if all the values of the range are less
+     *         than the key
+     */
+    public static int lowerBound(double[] sorted, int from, int to,
+            double key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+
+
+    /**
+     * Returns the index of the first value strictly greater than the key.
+     * 
+     * @param sorted
+     *            sorted values
+     * @param key
+     *            key
+     * @return index, <code>sorted.length</code> if no value is greater than
+     *         the key
+     */
+    public static int upperBound(double[] sorted, double key) {
+        return upperBound(sorted, 0, sorted.length, key);
+    }
+
+
+
+    /**
+     * Returns the index of the first value strictly greater than the key in a
+     * range of the array.
+     * 
+     * @param sorted
+     *            sorted values
+     * @param from
+     *            first index (inclusive)
+     * @param to
+     *            last index (exclusive)
+     * @param key
+     *            key
+     * @return index, <code>to</code> if no value of the range is greater than
+     *         the key
+     */
+    public static int upperBound(double[] sorted, int from, int to,
+            double key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
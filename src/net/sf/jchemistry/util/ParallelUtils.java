@@ -0,0 +1,132 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Utilities to process large arrays in parallel chunks.
+ * 
+ * @author Philippe T. Pinard
+ */
+public final class ParallelUtils {
+
+    /**
+     * Task operating on a range of indexes.
+     */
+    public static interface RangeTask {
+
+        /**
+         * Processes the items between the specified indexes.
+         * 
+         * @param from
+         *            first index (inclusive)
+         * @param to
+         *            last index (exclusive)
+         */
+        public void run(int from, int to);
+    }
+
+
+
+    /**
+     * Constructor to prevent the class to be instantiated.
+     */
+    private ParallelUtils() {
+
+    }
+
+
+
+    /**
+     * Splits the range <code>[0, size[</code> in chunks and runs the task on
+     * each chunk with the executor. The method returns once all the chunks
+     * are processed. If a chunk fails, the remaining chunks are cancelled and
+     * the exception is rethrown.
+     * 
+     * @param executor
+     *            executor service
+     * @param size
+     *            number of items
+     * @param chunkSize
+     *            number of items per chunk
+     * @param task
+     *            task to run on each chunk
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     * @throws IllegalArgumentException
+     *             if the chunk size is less than 1
+     */
+    public static void run(ExecutorService executor, int size,
+            int chunkSize, final RangeTask task) throws InterruptedException {
+        if (executor == null)
+            throw new NullPointerException("executor == null");
+        if (task == null)
+            throw new NullPointerException("task == null");
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("Chunk size (" + chunkSize
+                    + ") must be greater than 0");
+
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (int start = 0; start < size; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(size, start + chunkSize);
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    task.run(from, to);
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Future<Object> future : futures)
+                future.get();
+        } catch (ExecutionException e) {
+            cancel(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            cancel(futures);
+            throw e;
+        }
+    }
+
+
+
+    /**
+     * Cancels the futures.
+     * 
+     * @param futures
+     *            futures
+     */
+    private static void cancel(List<Future<Object>> futures) {
+        for (Future<Object> future : futures)
+            future.cancel(true);
+    }
+}
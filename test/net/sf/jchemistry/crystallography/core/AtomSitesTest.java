@@ -76,6 +76,63 @@ public class AtomSitesTest {
 
 
 
+    @Test
+    public void testAddAtomSitePeriodic() {
+        AtomSite atom = new AtomSite(Element.Fe, new Vector3D(0.9999999, 0, 0));
+        assertFalse(atoms.add(atom));
+
+        atom = new AtomSite(Element.Fe, new Vector3D(0.5, 0.9999999, 1e-7));
+        assertTrue(atoms.add(atom));
+        atom = new AtomSite(Element.Fe, new Vector3D(0.5, 0.0, 0.9999999));
+        assertFalse(atoms.add(atom));
+        assertEquals(2, atoms.size());
+    }
+
+
+
+    @Test
+    public void testAddAtomSiteBucketBorder() {
+        double border = 1.0 / 1024.0;
+        assertTrue(atoms.add(new AtomSite(Element.Fe, new Vector3D(
+                border - 1e-7, 0.5, 0.5))));
+        assertFalse(atoms.add(new AtomSite(Element.Fe, new Vector3D(
+                border + 1e-7, 0.5, 0.5))));
+        assertTrue(atoms.add(new AtomSite(Element.Fe, new Vector3D(
+                border + 1e-5, 0.5, 0.5))));
+    }
+
+
+
+    @Test
+    public void testAddAtomSiteMany() {
+        atoms.clear();
+        for (int i = 0; i < 50; i++)
+            for (int j = 0; j < 50; j++)
+                for (int k = 0; k < 50; k++)
+                    assertTrue(atoms.add(new AtomSite(Element.Fe,
+                            new Vector3D(i / 50.0, j / 50.0, k / 50.0))));
+        assertEquals(125000, atoms.size());
+
+        assertFalse(atoms.add(new AtomSite(Element.Fe, new Vector3D(0.5,
+                0.5, 0.5))));
+    }
+
+
+
+    @Test
+    public void testRemoveAdd() {
+        assertTrue(atoms.remove(atom1));
+        assertTrue(atoms.add(new AtomSite(Element.Fe, Vector3D.ZERO)));
+
+        Iterator<AtomSite> it = atoms.iterator();
+        it.next();
+        it.remove();
+        assertTrue(atoms.isEmpty());
+        assertTrue(atoms.add(new AtomSite(Element.Fe, Vector3D.ZERO)));
+    }
+
+
+
     @Test
     public void testIterator() {
         Iterator<AtomSite> it = atoms.iterator();
@@ -730,6 +730,61 @@ public class CalculationsTest {
 
 
 
+    @Test
+    public void testMultiplicity() {
+        SpaceGroup sg = SpaceGroups2.SG225;
+        assertEquals(4, Calculations.multiplicity(Vector3D.ZERO, sg));
+        assertEquals(8, Calculations.multiplicity(new Vector3D(0.25, 0.25,
+                0.25), sg));
+        assertEquals(24, Calculations.multiplicity(new Vector3D(0.0, 0.25,
+                0.25), sg));
+        assertEquals(32, Calculations.multiplicity(new Vector3D(0.1, 0.1,
+                0.1), sg));
+        assertEquals(192, Calculations.multiplicity(new Vector3D(0.05, 0.13,
+                0.31), sg));
+    }
+
+
+
+    @Test
+    public void testOrbit() {
+        AtomSite atom = new AtomSite(Element.Si, new Vector3D(0.1, 0.1, 0.1));
+
+        for (int index = 1; index <= 230; index++) {
+            SpaceGroup sg = SpaceGroups.fromIndex(index);
+            AtomSite[] orbit = Calculations.orbit(atom, sg);
+
+            AtomSites expected = new AtomSites();
+            for (Generator generator : sg.getGenerators())
+                expected.add(generator.apply(atom));
+
+            assertEquals(expected.size(), orbit.length);
+            assertTrue(orbit[0] == atom);
+
+            AtomSites actual = new AtomSites();
+            for (AtomSite equivalent : orbit) {
+                assertTrue(actual.add(equivalent));
+                assertFalse(expected.add(equivalent));
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testSiteSymmetry() {
+        SpaceGroup sg = SpaceGroups2.SG225;
+        int[] stabilizer = Calculations.siteSymmetry(Vector3D.ZERO, sg);
+        assertEquals(48, stabilizer.length);
+        assertEquals(0, stabilizer[0]);
+
+        stabilizer =
+                Calculations.siteSymmetry(new Vector3D(0.05, 0.13, 0.31), sg);
+        assertEquals(1, stabilizer.length);
+    }
+
+
+
     @Test
     public void testPlaneSpacing() {
         // Example 2.3
@@ -0,0 +1,239 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import net.sf.jchemistry.core.Element;
+
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Test;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.acos;
+import static java.lang.Math.sqrt;
+import static java.lang.Math.toRadians;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CellTransformationTest {
+
+    private static void assertCell(UnitCell expected, UnitCell actual) {
+        assertEquals(expected.getA(), actual.getA(), 1e-6);
+        assertEquals(expected.getB(), actual.getB(), 1e-6);
+        assertEquals(expected.getC(), actual.getC(), 1e-6);
+        assertEquals(expected.getAlpha(), actual.getAlpha(), 1e-6);
+        assertEquals(expected.getBeta(), actual.getBeta(), 1e-6);
+        assertEquals(expected.getGamma(), actual.getGamma(), 1e-6);
+    }
+
+
+
+    @Test
+    public void testCompose() {
+        CellTransformation t = CellTransformation.primitive(SpaceGroups.SG225);
+        CellTransformation identity = t.compose(t.inverse());
+
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                assertEquals(i == j ? 1.0 : 0.0, identity.getMatrix().getEntry(
+                        i, j), 1e-10);
+    }
+
+
+
+    @Test
+    public void testComposeShift() {
+        CellTransformation t =
+                new CellTransformation(new double[][] { { 0, 1, 0 },
+                        { 0, 0, 1 }, { 1, 0, 0 } }, new double[] { 0.25, 0,
+                        0.5 });
+        CellTransformation identity = t.compose(t.inverse());
+
+        Vector3D shift = identity.getShift();
+        assertEquals(0.0, shift.getX(), 1e-10);
+        assertEquals(0.0, shift.getY(), 1e-10);
+        assertEquals(0.0, shift.getZ(), 1e-10);
+
+        Vector3D position =
+                t.inverse().transformPosition(
+                        t.transformPosition(new Vector3D(0.1, 0.2, 0.3)));
+        assertEquals(0.1, position.getX(), 1e-10);
+        assertEquals(0.2, position.getY(), 1e-10);
+        assertEquals(0.3, position.getZ(), 1e-10);
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorException() {
+        new CellTransformation(new double[][] { { 1, 0, 0 }, { 0, 1, 0 },
+                { 1, 1, 0 } });
+    }
+
+
+
+    @Test
+    public void testNiggli() {
+        UnitCell unitCell = UnitCellFactory.orthorhombic(3.0, 4.0, 5.0);
+        CellTransformation skew =
+                new CellTransformation(new double[][] { { 1, 2, -1 },
+                        { 0, 1, 1 }, { 0, 0, 1 } });
+        UnitCell skewed = skew.transform(unitCell);
+
+        CellTransformation t = CellTransformation.niggli(skewed);
+        assertEquals(1.0, t.getDeterminant(), 1e-10);
+        assertCell(unitCell, t.transform(skewed));
+    }
+
+
+
+    @Test
+    public void testNiggliFCC() {
+        UnitCell primitive =
+                UnitCellFactory.primitive(UnitCellFactory.cubic(4.0),
+                        SpaceGroups.SG225);
+        UnitCell reduced = UnitCellFactory.niggli(primitive);
+
+        double a = 4.0 / sqrt(2);
+        double angle = PI / 3;
+        assertCell(UnitCellFactory.triclinic(a, a, a, angle, angle, angle),
+                reduced);
+    }
+
+
+
+    @Test
+    public void testNiggliBCC() {
+        UnitCell primitive =
+                UnitCellFactory.primitive(UnitCellFactory.cubic(2.0),
+                        SpaceGroups.SG229);
+        UnitCell reduced = UnitCellFactory.niggli(primitive);
+
+        double a = sqrt(3);
+        double angle = acos(-1.0 / 3.0);
+        assertCell(UnitCellFactory.triclinic(a, a, a, angle, angle, angle),
+                reduced);
+    }
+
+
+
+    @Test
+    public void testPrimitive() {
+        UnitCell unitCell = UnitCellFactory.cubic(4.0);
+
+        CellTransformation t = CellTransformation.primitive(SpaceGroups.SG225);
+        UnitCell primitive = t.transform(unitCell);
+        assertEquals(0.25, t.getDeterminant(), 1e-10);
+        assertEquals(16.0, primitive.getVolume(), 1e-6);
+        assertEquals(4.0 / sqrt(2), primitive.getA(), 1e-6);
+        assertEquals(toRadians(60), primitive.getAlpha(), 1e-6);
+
+        t = CellTransformation.primitive(SpaceGroups.SG229);
+        assertEquals(0.5, t.getDeterminant(), 1e-10);
+        assertEquals(32.0, t.transform(unitCell).getVolume(), 1e-6);
+
+        t = CellTransformation.primitive(SpaceGroups.SG63);
+        assertEquals(0.5, t.getDeterminant(), 1e-10);
+
+        t = CellTransformation.primitive(SpaceGroups.SG221);
+        assertEquals(1.0, t.getDeterminant(), 1e-10);
+    }
+
+
+
+    @Test
+    public void testPrimitiveRhombohedral() {
+        UnitCell unitCell = UnitCellFactory.hexagonal(3.0, 10.0);
+        CellTransformation t = CellTransformation.primitive(SpaceGroups.SG166);
+        UnitCell primitive = t.transform(unitCell);
+
+        assertEquals(unitCell.getVolume() / 3, primitive.getVolume(), 1e-6);
+        assertEquals(primitive.getA(), primitive.getB(), 1e-6);
+        assertEquals(primitive.getA(), primitive.getC(), 1e-6);
+        assertEquals(primitive.getAlpha(), primitive.getBeta(), 1e-6);
+        assertEquals(primitive.getAlpha(), primitive.getGamma(), 1e-6);
+    }
+
+
+
+    @Test
+    public void testTransformAtoms() {
+        CellTransformation t = CellTransformation.primitive(SpaceGroups.SG225);
+        AtomSites atoms = AtomSitesFactory.atomSitesFCC(Element.Cu);
+        assertEquals(1, t.transform(atoms).size());
+
+        Phase phase =
+                new Phase("NaCl", SpaceGroups.SG225, UnitCellFactory
+                        .cubic(5.64));
+        phase.getAsymmetricUnit().add(new AtomSite(Element.Na, Vector3D.ZERO));
+        phase.getAsymmetricUnit().add(
+                new AtomSite(Element.Cl, new Vector3D(0.5, 0.5, 0.5)));
+        assertEquals(8, phase.getAllAtoms().size());
+        assertEquals(2, phase.getPrimitiveAtoms().size());
+    }
+
+
+
+    @Test
+    public void testTransformIndices() {
+        CellTransformation t = CellTransformation.primitive(SpaceGroups.SG225);
+
+        Vector3D plane = t.transformIndices(new Vector3D(2, 0, 0));
+        assertEquals(0.0, plane.getX(), 1e-10);
+        assertEquals(1.0, plane.getY(), 1e-10);
+        assertEquals(1.0, plane.getZ(), 1e-10);
+
+        plane = t.transformIntegerIndices(1, 1, 1);
+        assertEquals(1.0, plane.getX(), 1e-10);
+        assertEquals(1.0, plane.getY(), 1e-10);
+        assertEquals(1.0, plane.getZ(), 1e-10);
+
+        assertNull(t.transformIntegerIndices(1, 0, 0));
+        assertNull(t.transformIntegerIndices(1, 1, 0));
+
+        plane = t.inverse().transformIndices(new Vector3D(0, 1, 1));
+        assertEquals(2.0, plane.getX(), 1e-10);
+        assertEquals(0.0, plane.getY(), 1e-10);
+        assertEquals(0.0, plane.getZ(), 1e-10);
+    }
+
+
+
+    @Test
+    public void testTransformPosition() {
+        CellTransformation t = CellTransformation.primitive(SpaceGroups.SG229);
+        Vector3D position = t.transformPosition(new Vector3D(0.5, 0.5, 0.5));
+        assertEquals(1.0, position.getX(), 1e-10);
+        assertEquals(1.0, position.getY(), 1e-10);
+        assertEquals(1.0, position.getZ(), 1e-10);
+    }
+
+
+
+    @Test
+    public void testTransformPositionShift() {
+        CellTransformation t =
+                new CellTransformation(new double[][] { { 0, 1, 0 },
+                        { 0, 0, 1 }, { 1, 0, 0 } }, new double[] { 0.25, 0,
+                        0.5 });
+        Vector3D position = t.transformPosition(new Vector3D(0.5, 0.2, 0.75));
+        assertEquals(0.25, position.getX(), 1e-10);
+        assertEquals(0.25, position.getY(), 1e-10);
+        assertEquals(0.2, position.getZ(), 1e-10);
+    }
+
+}
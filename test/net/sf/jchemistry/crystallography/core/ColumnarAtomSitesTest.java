@@ -0,0 +1,214 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import net.sf.jchemistry.core.Element;
+
+import org.apache.commons.math.complex.Complex;
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarAtomSitesTest {
+
+    private ColumnarAtomSites atoms;
+
+    private AtomSite atom1;
+
+    private AtomSite atom2;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        atom1 = new AtomSite(Element.Al, Vector3D.ZERO);
+        atom2 = new AtomSite(Element.Si, -2, new Vector3D(0.1, 0.2, 0.3), 0.5);
+
+        atoms = new ColumnarAtomSites(1);
+        atoms.add(atom1);
+    }
+
+
+
+    @Test
+    public void testAdd() {
+        assertFalse(atoms.add(atom1));
+        assertFalse(atoms.add(new AtomSite(Element.Fe, new Vector3D(
+                0.9999999, 0.0, 1e-7))));
+        assertTrue(atoms.add(atom2));
+        assertEquals(2, atoms.size());
+
+        assertTrue(atoms.add(Element.Fe, 3, 1.5, -0.25, 0.0, 1.0));
+        assertEquals(0.5, atoms.getXs()[2], 1e-12);
+        assertEquals(0.75, atoms.getYs()[2], 1e-12);
+        assertEquals(26, atoms.getAtomicNumbers()[2]);
+        assertEquals(3, atoms.getCharges()[2]);
+    }
+
+
+
+    @Test
+    public void testContains() {
+        assertTrue(atoms.contains(atom1));
+        assertTrue(atoms.contains(new AtomSite(Element.Al, Vector3D.ZERO)));
+        assertFalse(atoms.contains(new AtomSite(Element.Fe, Vector3D.ZERO)));
+        assertFalse(atoms.contains(atom2));
+    }
+
+
+
+    @Test
+    public void testGet() {
+        atoms.add(atom2);
+        AtomSite atom = atoms.get(1);
+        assertEquals(Element.Si, atom.getElement());
+        assertEquals(-2, atom.getCharge());
+        assertEquals(0.5, atom.getOccupancy(), 1e-12);
+        assertEquals(0.3, atom.getPosition().getZ(), 1e-12);
+    }
+
+
+
+    @Test
+    public void testGetRefined() {
+        AtomSite atom = new AtomSite(Element.Si, new Vector3D(1.25, -0.5, 0.0));
+        assertTrue(atoms.add(atom));
+
+        assertEquals(0.25, atoms.get(1).getPosition().getX(), 1e-12);
+        assertEquals(0.5, atoms.get(1).getPosition().getY(), 1e-12);
+        assertTrue(atoms.contains(atom));
+        assertTrue(atoms.remove(atom));
+    }
+
+
+
+    @Test
+    public void testRemove() {
+        atoms.add(atom2);
+        assertTrue(atoms.remove(atom1));
+        assertFalse(atoms.remove(atom1));
+        assertEquals(1, atoms.size());
+        assertTrue(atoms.contains(atom2));
+        assertTrue(atoms.add(atom1));
+    }
+
+
+
+    @Test
+    public void testIteratorRemove() {
+        atoms.add(atom2);
+        atoms.add(new AtomSite(Element.O, new Vector3D(0.5, 0.5, 0.5)));
+
+        Iterator<AtomSite> it = atoms.iterator();
+        int count = 0;
+        while (it.hasNext()) {
+            AtomSite atom = it.next();
+            count++;
+            if (atom.getElement() != Element.O)
+                it.remove();
+        }
+
+        assertEquals(3, count);
+        assertEquals(1, atoms.size());
+        assertEquals(Element.O, atoms.get(0).getElement());
+    }
+
+
+
+    @Test
+    public void testClear() {
+        atoms.clear();
+        assertTrue(atoms.isEmpty());
+        assertTrue(atoms.add(atom1));
+    }
+
+
+
+    @Test
+    public void testEquals() {
+        AtomSites other = new AtomSites();
+        other.add(atom1);
+        assertTrue(atoms.equals(other));
+    }
+
+
+
+    @Test
+    public void testMany() {
+        Random random = new Random(3);
+        AtomSites reference = new AtomSites();
+        atoms.clear();
+        for (int i = 0; i < 20000; i++) {
+            // Coarse positions to create duplicates
+            Vector3D pos =
+                    new Vector3D(random.nextInt(40) / 40.0,
+                            random.nextInt(40) / 40.0,
+                            random.nextInt(40) / 40.0);
+            AtomSite atom = new AtomSite(Element.Fe, pos);
+            assertEquals(reference.add(atom), atoms.add(atom));
+
+            if (i % 7 == 0) {
+                AtomSite removed = atoms.get(random.nextInt(atoms.size()));
+                assertTrue(atoms.remove(removed));
+                for (AtomSite a : reference)
+                    if (a.getPosition().equals(removed.getPosition())) {
+                        reference.remove(a);
+                        break;
+                    }
+            }
+        }
+
+        assertEquals(reference.size(), atoms.size());
+        for (AtomSite atom : reference)
+            assertTrue(atoms.contains(atom));
+    }
+
+
+
+    @Test
+    public void testFormFactor() {
+        AtomSites fcc = AtomSitesFactory.atomSitesFCC(Element.Cu);
+        ColumnarAtomSites columnar = new ColumnarAtomSites();
+        columnar.addAll(fcc);
+        columnar.add(new AtomSite(Element.O, -2, new Vector3D(0.25, 0.25,
+                0.25), 1.0));
+        fcc.add(new AtomSite(Element.O, -2, new Vector3D(0.25, 0.25, 0.25),
+                1.0));
+
+        UnitCell unitCell = UnitCellFactory.cubic(3.61);
+        for (Vector3D plane : new Vector3D[] { new Vector3D(1, 1, 1),
+                new Vector3D(1, 0, 0), new Vector3D(3, 1, 1) }) {
+            Complex expected =
+                    Calculations.formFactor(plane, unitCell, fcc,
+                            ScatteringFactorsFactory.XRAY_TABULATED);
+            Complex actual =
+                    Calculations.formFactor(plane, unitCell, columnar,
+                            ScatteringFactorsFactory.XRAY_TABULATED);
+            assertEquals(expected.getReal(), actual.getReal(), 1e-9);
+            assertEquals(expected.getImaginary(), actual.getImaginary(), 1e-9);
+        }
+    }
+
+}
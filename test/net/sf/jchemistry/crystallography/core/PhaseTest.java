@@ -17,6 +17,17 @@
  */
 package net.sf.jchemistry.crystallography.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import net.sf.jchemistry.core.Element;
 
 import org.apache.commons.math.geometry.Vector3D;
@@ -24,6 +35,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class PhaseTest {
 
@@ -50,7 +64,7 @@ public class PhaseTest {
         sg = SpaceGroups2.SG216;
 
         phase = new Phase(name, citation, sg, unitCell);
-        phase.getAtoms().addAll(atoms);
+        phase.getAllAtoms().addAll(atoms);
     }
 
 
@@ -58,7 +72,7 @@ public class PhaseTest {
     @Test
     public void testPhase() {
         assertEquals(2.0, phase.getUnitCell().getA(), 1e-7);
-        assertEquals(4, phase.getAtoms().size());
+        assertEquals(4, phase.getAllAtoms().size());
         assertEquals(name, phase.getName());
         assertEquals(citation, phase.getCitation());
     }
@@ -108,25 +122,188 @@ public class PhaseTest {
 
 
     @Test
-    public void testGetAtoms1() {
-        phase.getAtoms().clear();
-        assertEquals(0, phase.getAtoms().size());
+    public void testGetAllAtoms1() {
+        phase.getAllAtoms().clear();
+        assertEquals(0, phase.getAllAtoms().size());
 
-        phase.getAtoms().add(new AtomSite(Element.Si, Vector3D.ZERO));
-        assertEquals(4, phase.getAtoms().size());
+        phase.getAllAtoms().add(new AtomSite(Element.Si, Vector3D.ZERO));
+        assertEquals(4, phase.getAllAtoms().size());
     }
 
 
 
     @Test
-    public void testGetAtoms2() {
-        AtomSites atoms = phase.getAtoms();
+    public void testGetAllAtoms2() {
+        AbstractAtomSites atoms = phase.getAllAtoms();
 
         atoms.clear();
-        assertEquals(0, phase.getAtoms().size());
+        assertEquals(0, phase.getAllAtoms().size());
 
         atoms.add(new AtomSite(Element.Si, Vector3D.ZERO));
-        assertEquals(4, phase.getAtoms().size());
+        assertEquals(4, phase.getAllAtoms().size());
+    }
+
+
+
+    @Test
+    public void testGetAllAtomsCached() {
+        AbstractAtomSites atoms = phase.getAllAtoms();
+        AtomSite atom = atoms.iterator().next();
+        assertSame(atom, phase.getAllAtoms().iterator().next());
+
+        phase.getAsymmetricUnit().add(
+                new AtomSite(Element.O, new Vector3D(0.5, 0.5, 0.5)));
+        assertEquals(8, phase.getAllAtoms().size());
+    }
+
+
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testGetAtoms() {
+        AtomSites atoms = phase.getAtoms();
+        assertEquals(4, atoms.size());
+        assertEquals(phase.getAllAtoms(), atoms);
+
+        AtomSite atom = new AtomSite(Element.Si, Vector3D.ZERO);
+        atoms.clear();
+        atoms.add(atom);
+        assertEquals(1, phase.getAsymmetricUnit().size());
+        assertEquals(4, atoms.size());
+        assertTrue(atoms.contains(atom));
+    }
+
+
+
+    @Test
+    public void testGetAsymmetricUnit() {
+        phase.getAllAtoms().clear();
+        phase.getAllAtoms().add(new AtomSite(Element.Si, Vector3D.ZERO));
+
+        assertEquals(1, phase.getAsymmetricUnit().size());
+        assertEquals(4, phase.getAllAtoms().size());
+    }
+
+
+
+    @Test
+    public void testGetAllAtomsRemove() {
+        phase.getAllAtoms().clear();
+        AtomSite atom = new AtomSite(Element.Si, Vector3D.ZERO);
+        phase.getAllAtoms().add(atom);
+        assertTrue(phase.getAllAtoms().contains(atom));
+
+        assertTrue(phase.getAllAtoms().remove(atom));
+        assertEquals(0, phase.getAllAtoms().size());
+    }
+
+
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetAllAtomsRemoveGenerated() {
+        phase.getAllAtoms().clear();
+        phase.getAllAtoms().add(new AtomSite(Element.Si, Vector3D.ZERO));
+
+        for (AtomSite atom : phase.getAllAtoms())
+            if (!phase.getAsymmetricUnit().contains(atom))
+                phase.getAllAtoms().remove(atom);
+    }
+
+
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetAllAtomsIteratorRemoveGenerated() {
+        phase.getAllAtoms().clear();
+        phase.getAllAtoms().add(new AtomSite(Element.Si, Vector3D.ZERO));
+
+        Iterator<AtomSite> it = phase.getAllAtoms().iterator();
+        while (it.hasNext())
+            if (!phase.getAsymmetricUnit().contains(it.next()))
+                it.remove();
+    }
+
+
+
+    @Test
+    public void testGetAllAtomsRemoveMissing() {
+        AtomSite atom = new AtomSite(Element.O, new Vector3D(0.5, 0.5, 0.5));
+        assertFalse(phase.getAllAtoms().remove(atom));
+        assertEquals(4, phase.getAllAtoms().size());
+    }
+
+
+
+    @Test
+    public void testComputeReflectorsPrimitive() {
+        UnitCell cubic = UnitCellFactory.cubic(3.61);
+        AtomSites cu = AtomSitesFactory.atomSitesFCC(Element.Cu);
+        ScatteringFactors scatter = ScatteringFactorsFactory.XRAY_TABULATED;
+
+        Phase copper = new Phase("copper", citation, SpaceGroups2.SG225, cubic);
+        copper.getAllAtoms().addAll(cu);
+        copper.computeReflectors(scatter, 4, 0.01);
+        Reflectors refls = copper.getReflectors();
+
+        // Conventional cell, without the primitive transformation
+        Reflectors expected =
+                Reflectors.generate(cubic, copper.getAllAtoms(), scatter, 4,
+                        0.01);
+
+        assertFalse(expected.size() == 0);
+        assertEquals(expected.size(), refls.size());
+        for (Reflector refl : expected)
+            assertEquals(refl.getIntensity(), refls.get(refl.getH(),
+                    refl.getK(), refl.getL()).getIntensity(), 1e-6);
+
+        assertEquals(countFamilies(expected), countFamilies(refls));
+    }
+
+
+
+    private Map<String, Integer> countFamilies(Reflectors refls) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+
+        for (Reflector refl : refls) {
+            int[] family =
+                    new int[] { Math.abs(refl.getH()), Math.abs(refl.getK()),
+                            Math.abs(refl.getL()) };
+            Arrays.sort(family);
+
+            String key = Arrays.toString(family);
+            Integer count = counts.get(key);
+            counts.put(key, count == null ? 1 : count + 1);
+        }
+
+        return counts;
+    }
+
+
+
+    @Test
+    public void testGetAllAtomsConcurrent() throws Exception {
+        phase.getAsymmetricUnit().add(
+                new AtomSite(Element.O, new Vector3D(0.5, 0.5, 0.5)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 16; i++)
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int count = 0;
+                        for (AtomSite atom : phase.getAllAtoms())
+                            if (atom != null)
+                                count++;
+                        return count;
+                    }
+                }));
+
+            for (Future<Integer> future : futures)
+                assertEquals(8, future.get().intValue());
+        } finally {
+            executor.shutdown();
+        }
     }
 
 }
@@ -51,6 +51,28 @@ public class ReflectorsTest {
 
 
 
+    @Test
+    public void testGeneratePrimitive() {
+        UnitCell unitCell = UnitCellFactory.cubic(3.61);
+        AtomSites atoms = AtomSitesFactory.atomSitesFCC(Element.Cu);
+        ScatteringFactors scatter = ScatteringFactorsFactory.XRAY_TABULATED;
+
+        Reflectors expected =
+                Reflectors.generate(unitCell, atoms, scatter, 3, 0.01);
+
+        CellTransformation t = CellTransformation.primitive(SpaceGroups.SG225);
+        Reflectors refls =
+                Reflectors.generate(t.transform(unitCell), t.transform(atoms),
+                        t, scatter, 3, 0.01);
+
+        assertEquals(expected.size(), refls.size());
+        for (Reflector refl : expected)
+            assertEquals(refl.getIntensity(), refls.get(refl.getH(),
+                    refl.getK(), refl.getL()).getIntensity(), 1e-6);
+    }
+
+
+
     @Test
     public void testGenerateBCC() {
         // Create reflectors
@@ -0,0 +1,198 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.jchemistry.core.Element;
+
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static net.sf.jchemistry.crystallography.core.Constants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SeitzOperatorTest {
+
+    private SeitzOperator op1;
+
+    private SeitzOperator op2;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        op1 = new Generator(ROT_mY_X_Z, TR_0_0_14).toSeitzOperator();
+        op2 = new Generator(ROT_mX_Y_mZ, TR_12_12_0).toSeitzOperator();
+    }
+
+
+
+    @Test
+    public void testApply() {
+        AtomSite atom = new AtomSite(Element.Fe, new Vector3D(0.1, 0.2, 0.3));
+        AtomSite expected = new Generator(ROT_mY_X_Z, TR_0_0_14).apply(atom);
+        AtomSite actual = op1.apply(atom);
+
+        assertEquals(expected.getPosition().getX(), actual.getPosition()
+                .getX(), 1e-12);
+        assertEquals(expected.getPosition().getY(), actual.getPosition()
+                .getY(), 1e-12);
+        assertEquals(expected.getPosition().getZ(), actual.getPosition()
+                .getZ(), 1e-12);
+    }
+
+
+
+    @Test
+    public void testClosure() {
+        List<SeitzOperator> ops =
+                SeitzOperator.closure(Arrays.asList(op1, op1));
+        assertEquals(4, ops.size());
+        assertEquals(op1, ops.get(0));
+        assertTrue(ops.contains(SeitzOperator.IDENTITY));
+    }
+
+
+
+    @Test
+    public void testCompose() {
+        SeitzOperator op = op1.compose(op2);
+        assertEquals("-y+1/2,-x+1/2,-z+1/4", op.toString());
+
+        double[] tmp = new double[3];
+        double[] expected = new double[3];
+        op2.apply(0.1, 0.2, 0.3, tmp);
+        op1.apply(tmp[0], tmp[1], tmp[2], expected);
+
+        double[] actual = new double[3];
+        op.apply(0.1, 0.2, 0.3, actual);
+
+        for (int i = 0; i < 3; i++) {
+            double d = actual[i] - expected[i];
+            assertEquals(0.0, d - Math.floor(d + 0.5), 1e-12);
+        }
+    }
+
+
+
+    @Test
+    public void testEquals() {
+        SeitzOperator other =
+                new SeitzOperator(new int[][] { { 0, -1, 0 }, { 1, 0, 0 },
+                        { 0, 0, 1 } }, new int[] { 12, -12, 3 });
+
+        assertTrue(op1.equals(other));
+        assertEquals(op1.hashCode(), other.hashCode());
+        assertFalse(op1.equals(op2));
+    }
+
+
+
+    @Test
+    public void testFromCode() {
+        assertEquals(op1, SeitzOperator.fromCode(op1.getCode()));
+        assertEquals(op2, SeitzOperator.fromCode(op2.getCode()));
+        assertTrue(SeitzOperator.fromCode(SeitzOperator.IDENTITY.getCode())
+                .isIdentity());
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromDoublesException() {
+        new Generator(ROT_X_Y_Z, new double[] { 0.125, 0.0, 0.0 })
+                .toSeitzOperator();
+    }
+
+
+
+    @Test
+    public void testGetDeterminant() {
+        assertEquals(1, op1.getDeterminant());
+        assertEquals(1, op2.getDeterminant());
+        assertEquals(-1, new Generator(ROT_mX_mY_mZ, TR_0_0_0)
+                .toSeitzOperator().getDeterminant());
+    }
+
+
+
+    @Test
+    public void testGetTranslation() {
+        assertEquals(0, op1.getTranslation(0));
+        assertEquals(0, op1.getTranslation(1));
+        assertEquals(3, op1.getTranslation(2));
+    }
+
+
+
+    @Test
+    public void testInverse() {
+        assertTrue(op1.compose(op1.inverse()).isIdentity());
+        assertTrue(op1.inverse().compose(op1).isIdentity());
+        assertTrue(op2.compose(op2.inverse()).isIdentity());
+        assertEquals("y,-x,z+3/4", op1.inverse().toString());
+    }
+
+
+
+    @Test
+    public void testParse() {
+        assertEquals(op1, SeitzOperator.parse("-y,x,z+1/4"));
+        assertEquals(op1, SeitzOperator.parse(" -Y , X , 0.25+Z "));
+        assertEquals(op2, SeitzOperator.parse("1/2-x,1/2+y,-z"));
+        assertEquals(SeitzOperator.IDENTITY, SeitzOperator.parse("x,y,z"));
+        assertEquals("x-y,x,z+1/3", SeitzOperator.parse("x-y,x,z+0.3333")
+                .toString());
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseException1() {
+        SeitzOperator.parse("x,y");
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseException2() {
+        SeitzOperator.parse("x,y,2*z");
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseException3() {
+        SeitzOperator.parse("x,y,z+0.1");
+    }
+
+
+
+    @Test
+    public void testToString() {
+        assertEquals("-y,x,z+1/4", op1.toString());
+        assertEquals("-x+1/2,y+1/2,-z", op2.toString());
+        assertEquals("x,y,z", SeitzOperator.IDENTITY.toString());
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import net.sf.jchemistry.util.IOUtils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class SpaceGroupsTableWriterTest {
+
+    private static byte[] write(Reader reader) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SpaceGroupsTableWriter.write(reader, out);
+        reader.close();
+        return out.toByteArray();
+    }
+
+
+
+    @Test
+    public void testWrite() throws IOException {
+        byte[] expected =
+                write(new FileReader(
+                        "src/net/sf/jchemistry/crystallography/data/space_groups.txt"));
+
+        InputStream in =
+                IOUtils.getURL(
+                        "net/sf/jchemistry/crystallography/data/space_groups.bin")
+                        .openStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = in.read(buffer)) != -1)
+            out.write(buffer, 0, length);
+        in.close();
+
+        assertTrue(Arrays.equals(expected, out.toByteArray()));
+    }
+
+
+
+    @Test
+    public void testWriteSorted() throws IOException {
+        byte[] actual =
+                write(new StringReader("# Comment\n2 P-1 LG1\n    x,y,z\n"
+                        + "    -x,-y,-z\n1 P1 LG1\n    x,y,z\n"));
+        byte[] expected =
+                write(new StringReader("1 P1 LG1\n    x,y,z\n2 P-1 LG1\n"
+                        + "    x,y,z\n    -x,-y,-z\n"));
+
+        assertTrue(Arrays.equals(expected, actual));
+    }
+
+
+
+    @Test(expected = IOException.class)
+    public void testWriteOperatorException() throws IOException {
+        write(new StringReader("    x,y,z\n1 P1 LG1\n"));
+    }
+
+
+
+    @Test(expected = IOException.class)
+    public void testWriteDuplicateException() throws IOException {
+        write(new StringReader("1 P1 LG1\n    x,y,z\n1 P1 LG1\n    x,y,z\n"));
+    }
+
+
+
+    @Test(expected = IOException.class)
+    public void testWriteLaueGroupException() throws IOException {
+        write(new StringReader("1 P1 LG0\n    x,y,z\n"));
+    }
+
+}
@@ -17,14 +17,66 @@
  */
 package net.sf.jchemistry.crystallography.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math.geometry.Vector3D;
 import org.junit.Test;
 
 import static net.sf.jchemistry.crystallography.core.CrystalSystem.*;
 import static net.sf.jchemistry.crystallography.core.LaueGroup.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class SpaceGroupsTest {
 
+    @Test
+    public void testCayleyTable() {
+        for (int index = 1; index <= 230; index++) {
+            SpaceGroup sg = SpaceGroups.fromIndex(index);
+            SeitzOperator[] ops = sg.getSeitzOperators();
+            int[][] table = sg.getCayleyTable();
+            int n = sg.getOrder();
+
+            assertEquals(sg.getGenerators().length, n);
+            assertTrue(ops[0].isIdentity());
+
+            for (int i = 0; i < n; i++) {
+                boolean[] seen = new boolean[n];
+                for (int j = 0; j < n; j++) {
+                    assertEquals(ops[i].compose(ops[j]), ops[table[i][j]]);
+                    assertEquals(table[i][j], sg.getProduct(i, j));
+                    seen[table[i][j]] = true;
+                }
+                for (int j = 0; j < n; j++)
+                    assertTrue(seen[j]);
+
+                assertEquals(0, sg.getProduct(i, sg.getInverse(i)));
+                assertEquals(i, sg.indexOf(ops[i]));
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testSeitzOperatorsIdentityFirst() {
+        Generator inversion =
+                new Generator(new double[][] { { -1, 0, 0 }, { 0, -1, 0 },
+                        { 0, 0, -1 } }, new double[] { 0, 0, 0 });
+        SpaceGroup sg =
+                new SpaceGroup(2, "P-1", LG1, new Generator[] { inversion });
+
+        SeitzOperator[] ops = sg.getSeitzOperators();
+        assertEquals(2, ops.length);
+        assertTrue(ops[0].isIdentity());
+        assertEquals(1, sg.indexOf(inversion.toSeitzOperator()));
+    }
+
+
     @Test
     public void testCrystalSystem() {
         assertEquals(TRICLINIC, SpaceGroups.SG1.getCrystalSystem());
@@ -276,6 +328,158 @@ public class SpaceGroupsTest {
 
 
 
+    @Test
+    public void testFromIndexConstants() {
+        assertSame(SpaceGroups.SG1, SpaceGroups.fromIndex(1));
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromIndex(225));
+        assertSame(SpaceGroups.SG1146, SpaceGroups.fromIndex(1146));
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromIndexException() {
+        SpaceGroups.fromIndex(231);
+    }
+
+
+
+    @Test
+    public void testFromOperators() {
+        SpaceGroup sg;
+        for (int i = 1; i <= 230; i++) {
+            sg = SpaceGroups.fromIndex(i);
+            assertSame(sg, SpaceGroups.fromOperators(Arrays.asList(sg
+                    .getSeitzOperators())));
+        }
+        assertSame(SpaceGroups.SG1166, SpaceGroups.fromOperators(Arrays
+                .asList(SpaceGroups.SG1166.getSeitzOperators())));
+    }
+
+
+
+    private static boolean isEquivalent(Vector3D position, Vector3D other,
+            SpaceGroup sg) {
+        double[] out = new double[3];
+        for (SeitzOperator op : sg.getSeitzOperators()) {
+            op.apply(other.getX(), other.getY(), other.getZ(), out);
+            double dx = position.getX() - out[0];
+            double dy = position.getY() - out[1];
+            double dz = position.getZ() - out[2];
+            if (Math.abs(dx - Math.rint(dx)) < 1e-6
+                    && Math.abs(dy - Math.rint(dy)) < 1e-6
+                    && Math.abs(dz - Math.rint(dz)) < 1e-6)
+                return true;
+        }
+
+        return false;
+    }
+
+
+
+    @Test
+    public void testGetStandardSetting() {
+        Vector3D position = new Vector3D(0.1, 0.2, 0.3);
+        double[] out = new double[3];
+
+        // Pnma, Pbnm and Pnma with its origin shifted by 1/4 along c
+        for (String symbol : new String[] { "-P 2ac 2n", "-P 2c 2ab",
+                "-P 2ac 2n (0 0 3)" }) {
+            List<SeitzOperator> ops = HallSymbol.parse(symbol);
+            CellTransformation setting = SpaceGroups.getStandardSetting(ops);
+            Vector3D standard = setting.transformPosition(position);
+
+            for (SeitzOperator op : ops) {
+                op.apply(position.getX(), position.getY(), position.getZ(),
+                        out);
+                assertTrue(symbol, isEquivalent(setting
+                        .transformPosition(new Vector3D(out[0], out[1],
+                                out[2])), standard, SpaceGroups.SG62));
+            }
+        }
+
+        assertSame(CellTransformation.IDENTITY, SpaceGroups
+                .getStandardSetting(HallSymbol.parse("-P 2ac 2n")));
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetStandardSettingException() {
+        List<SeitzOperator> ops = new ArrayList<SeitzOperator>();
+        ops.add(SeitzOperator.parse("x,y,z"));
+        ops.add(SeitzOperator.parse("x+1/3,y,z"));
+        SpaceGroups.getStandardSetting(ops);
+    }
+
+
+
+    @Test
+    public void testIsStandardSymbol() {
+        assertTrue(SpaceGroups.isStandardSymbol("P n m a"));
+        assertTrue(SpaceGroups.isStandardSymbol("C 1 2/m 1"));
+        assertFalse(SpaceGroups.isStandardSymbol("P b n m"));
+        assertFalse(SpaceGroups.isStandardSymbol("Pbnm"));
+        assertFalse(SpaceGroups.isStandardSymbol("F d -3 m:2"));
+        assertFalse(SpaceGroups.isStandardSymbol("F d -3 m :1"));
+    }
+
+
+
+    @Test
+    public void testFromOperatorsGenerators() {
+        // Fm-3m without the centring translations
+        List<SeitzOperator> ops = new ArrayList<SeitzOperator>();
+        ops.add(SeitzOperator.parse("x,y,z"));
+        ops.add(SeitzOperator.parse("x+1/2,y+1/2,z"));
+        ops.add(SeitzOperator.parse("-y,x,z"));
+        ops.add(SeitzOperator.parse("z,x,y"));
+        ops.add(SeitzOperator.parse("-x,-y,-z"));
+        ops.add(SeitzOperator.parse("x,z+1/2,y+1/2"));
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromOperators(ops));
+    }
+
+
+
+    @Test
+    public void testFromOperatorsOriginShift() {
+        // P-1 with the inversion centre at (1/4,1/4,1/4)
+        List<SeitzOperator> ops = new ArrayList<SeitzOperator>();
+        ops.add(SeitzOperator.parse("x,y,z"));
+        ops.add(SeitzOperator.parse("-x+1/2,-y+1/2,-z+1/2"));
+        assertSame(SpaceGroups.SG2, SpaceGroups.fromOperators(ops));
+    }
+
+
+
+    @Test
+    public void testFromOperatorsSetting() {
+        // Pbnm setting of Pnma
+        List<SeitzOperator> ops = new ArrayList<SeitzOperator>();
+        ops.add(SeitzOperator.parse("x,y,z"));
+        ops.add(SeitzOperator.parse("x,y,1/2-z"));
+        ops.add(SeitzOperator.parse("-x,-y,1/2+z"));
+        ops.add(SeitzOperator.parse("1/2+x,1/2-y,1/2+z"));
+        ops.add(SeitzOperator.parse("1/2-x,1/2+y,1/2-z"));
+        ops.add(SeitzOperator.parse("1/2-x,1/2+y,z"));
+        ops.add(SeitzOperator.parse("1/2+x,1/2-y,-z"));
+        ops.add(SeitzOperator.parse("-x,-y,-z"));
+        assertSame(SpaceGroups.SG62, SpaceGroups.fromOperators(ops));
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromOperatorsException() {
+        // Translation which is not a lattice vector of any space group
+        List<SeitzOperator> ops = new ArrayList<SeitzOperator>();
+        ops.add(SeitzOperator.parse("x,y,z"));
+        ops.add(SeitzOperator.parse("x+1/3,y,z"));
+        SpaceGroups.fromOperators(ops);
+    }
+
+
+
     @Test
     public void testFromSymbol() {
         SpaceGroup sg;
@@ -287,6 +491,153 @@ public class SpaceGroupsTest {
 
 
 
+    @Test
+    public void testFromSymbolConstants() {
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromSymbol("Fm-3m"));
+        assertSame(SpaceGroups.SG1166, SpaceGroups.fromSymbol("R-3m"));
+        assertSame(SpaceGroups.SG166, SpaceGroups.fromSymbol("H-3m"));
+    }
+
+
+
+    @Test
+    public void testFromSymbolFull() {
+        assertSame(SpaceGroups.SG14, SpaceGroups.fromSymbol("P121/c1"));
+        assertSame(SpaceGroups.SG14, SpaceGroups.fromSymbol("P 1 21/c 1"));
+        assertSame(SpaceGroups.SG12, SpaceGroups.fromSymbol("C 1 2/m 1"));
+        assertSame(SpaceGroups.SG62, SpaceGroups
+                .fromSymbol("P 21/n 21/m 21/a"));
+        assertSame(SpaceGroups.SG63, SpaceGroups.fromSymbol("C 2/m 2/c 21/m"));
+        assertSame(SpaceGroups.SG141, SpaceGroups
+                .fromSymbol("I 41/a 2/m 2/d"));
+        assertSame(SpaceGroups.SG194, SpaceGroups
+                .fromSymbol("P 63/m 2/m 2/c"));
+        assertSame(SpaceGroups.SG164, SpaceGroups.fromSymbol("P -3 2/m 1"));
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromSymbol("F 4/m -3 2/m"));
+        assertSame(SpaceGroups.SG227, SpaceGroups
+                .fromSymbol("F 41/d -3 2/m"));
+        assertSame(SpaceGroups.SG205, SpaceGroups.fromSymbol("P 21/a -3"));
+    }
+
+
+
+    @Test
+    public void testFromSymbolHall() {
+        assertSame(SpaceGroups.SG2, SpaceGroups.fromSymbol("-P 1"));
+        assertSame(SpaceGroups.SG14, SpaceGroups.fromSymbol("-P 2ybc"));
+        assertSame(SpaceGroups.SG19, SpaceGroups.fromSymbol("P 2ac 2ab"));
+        assertSame(SpaceGroups.SG62, SpaceGroups.fromSymbol("-P 2ac 2n"));
+        assertSame(SpaceGroups.SG150, SpaceGroups.fromSymbol("P 3 2\""));
+        assertSame(SpaceGroups.SG151, SpaceGroups
+                .fromSymbol("P 31 2c (0 0 1)"));
+        assertSame(SpaceGroups.SG166, SpaceGroups.fromSymbol("-R 3 2\""));
+        assertSame(SpaceGroups.SG194, SpaceGroups.fromSymbol("-P 6c 2c"));
+        assertSame(SpaceGroups.SG198, SpaceGroups.fromSymbol("P 2ac 2ab 3"));
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromSymbol("-F 4 2 3"));
+        assertSame(SpaceGroups.SG230, SpaceGroups
+                .fromSymbol("-I 4bd 2c 3"));
+    }
+
+
+
+    @Test
+    public void testFromSymbolNormalized() {
+        assertSame(SpaceGroups.SG14, SpaceGroups.fromSymbol("P 21/c"));
+        assertSame(SpaceGroups.SG14, SpaceGroups.fromSymbol(" p 21/C "));
+        assertSame(SpaceGroups.SG14, SpaceGroups.fromSymbol("P2_1/c"));
+        assertSame(SpaceGroups.SG14, SpaceGroups.fromSymbol("P2_{1}/c"));
+        assertSame(SpaceGroups.SG14, SpaceGroups.fromSymbol("P2\u2081/c"));
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromSymbol("F m -3 m"));
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromSymbol("Fm3m"));
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromSymbol("Fm3\u0305m"));
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromSymbol("Fm\u22123m"));
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromSymbol("Fmbar3m"));
+        assertSame(SpaceGroups.SG227, SpaceGroups.fromSymbol("F d -3 m :2"));
+        assertSame(SpaceGroups.SG166, SpaceGroups.fromSymbol("R -3 m :H"));
+        assertSame(SpaceGroups.SG1166, SpaceGroups.fromSymbol("R -3 m :R"));
+    }
+
+
+
+    @Test
+    public void testFromSymbolHallGenerators() {
+        assertSame(SpaceGroups.SG89, SpaceGroups.fromSymbol("P 4 2"));
+        assertSame(SpaceGroups.SG149, SpaceGroups.fromSymbol("P 3 2"));
+        assertSame(SpaceGroups.SG177, SpaceGroups.fromSymbol("P 6 2"));
+    }
+
+
+
+    @Test
+    public void testFromSymbolSeparatedDirections() {
+        assertSame(SpaceGroups.SG77, SpaceGroups.fromSymbol("P 42"));
+        assertSame(SpaceGroups.SG89, SpaceGroups.fromSymbol("P 4 2 2"));
+        assertSame(SpaceGroups.SG93, SpaceGroups.fromSymbol("P 42 2 2"));
+        assertSame(SpaceGroups.SG150, SpaceGroups.fromSymbol("P 3 2 1"));
+        assertSame(SpaceGroups.SG152, SpaceGroups.fromSymbol("P 31 2 1"));
+        assertSame(SpaceGroups.SG1146, SpaceGroups.fromSymbol("R 3"));
+        assertSame(SpaceGroups.SG1155, SpaceGroups.fromSymbol("R 3 2"));
+        assertSame(SpaceGroups.SG177, SpaceGroups.fromSymbol("P 6 2 2"));
+        assertSame(SpaceGroups.SG195, SpaceGroups.fromSymbol("P 2 3"));
+        assertSame(SpaceGroups.SG207, SpaceGroups.fromSymbol("P 4 3 2"));
+    }
+
+
+
+    @Test
+    public void testFromSymbolCompactDirections() {
+        assertSame(SpaceGroups.SG194, SpaceGroups.fromSymbol("P 63/mmc"));
+        assertSame(SpaceGroups.SG139, SpaceGroups.fromSymbol("I 4/mmm"));
+        assertSame(SpaceGroups.SG141, SpaceGroups.fromSymbol("I 41/amd"));
+        assertSame(SpaceGroups.SG136, SpaceGroups.fromSymbol("P 42/mnm"));
+        assertSame(SpaceGroups.SG225, SpaceGroups.fromSymbol("F m-3m"));
+        assertSame(SpaceGroups.SG227, SpaceGroups.fromSymbol("F d -3m"));
+        assertSame(SpaceGroups.SG1166, SpaceGroups.fromSymbol("R -3m"));
+        assertSame(SpaceGroups.SG99, SpaceGroups.fromSymbol("P 4mm"));
+        assertSame(SpaceGroups.SG22, SpaceGroups.fromSymbol("F 222"));
+        assertSame(SpaceGroups.SG18, SpaceGroups.fromSymbol("P 21212"));
+        assertSame(SpaceGroups.SG184, SpaceGroups.fromSymbol("P 6cc"));
+        assertSame(SpaceGroups.SG122, SpaceGroups.fromSymbol("I -42d"));
+        assertSame(SpaceGroups.SG106, SpaceGroups.fromSymbol("P 42bc"));
+        assertSame(SpaceGroups.SG1167, SpaceGroups.fromSymbol("R -3c"));
+    }
+
+
+
+    @Test
+    public void testFromSymbolHallSingleGenerator() {
+        assertSame(SpaceGroups.SG4, SpaceGroups.fromSymbol("P 2yb"));
+        assertSame(SpaceGroups.SG5, SpaceGroups.fromSymbol("C 2y"));
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSymbolSeparatedScrewException() {
+        SpaceGroups.fromSymbol("P 6 3");
+    }
+
+
+
+    @Test
+    public void testFromSymbolAliases() {
+        assertSame(SpaceGroups.SG39, SpaceGroups.fromSymbol("Aem2"));
+        assertSame(SpaceGroups.SG41, SpaceGroups.fromSymbol("Aea2"));
+        assertSame(SpaceGroups.SG64, SpaceGroups.fromSymbol("C m c e"));
+        assertSame(SpaceGroups.SG67, SpaceGroups.fromSymbol("Cmme"));
+        assertSame(SpaceGroups.SG68, SpaceGroups.fromSymbol("Ccce"));
+        assertSame(SpaceGroups.SG62, SpaceGroups.fromSymbol("P b n m"));
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSymbolException() {
+        SpaceGroups.fromSymbol("P 1 1 21/b");
+    }
+
+
+
     @Test
     public void testGenerators() {
         assertEquals(1, SpaceGroups.SG1.getGenerators().length);
@@ -0,0 +1,146 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.core.Element;
+import net.sf.jchemistry.crystallography.core.Supercell.SiteConsumer;
+
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.lang.Math.sqrt;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SupercellTest {
+
+    private Phase phase;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        phase =
+                new Phase("NaCl", SpaceGroups.SG225, UnitCellFactory
+                        .cubic(5.64));
+        phase.getAsymmetricUnit().add(new AtomSite(Element.Na, Vector3D.ZERO));
+        phase.getAsymmetricUnit().add(
+                new AtomSite(Element.Cl, new Vector3D(0.5, 0.5, 0.5)));
+    }
+
+
+
+    @Test
+    public void testSupercell() {
+        Supercell supercell = new Supercell(phase, 2, 3, 4);
+
+        assertEquals(24, supercell.getCellCount());
+        assertEquals(192, supercell.size());
+        assertEquals(11.28, supercell.getUnitCell().getA(), 1e-6);
+        assertEquals(16.92, supercell.getUnitCell().getB(), 1e-6);
+        assertEquals(22.56, supercell.getUnitCell().getC(), 1e-6);
+
+        // All sites are distinct and inside the supercell
+        double[] coords = supercell.getCoordinates(false);
+        ColumnarAtomSites sites = new ColumnarAtomSites(supercell.size());
+        byte[] zs = supercell.getAtomicNumbers();
+        for (int i = 0; i < supercell.size(); i++) {
+            for (int j = 0; j < 3; j++)
+                assertTrue(coords[3 * i + j] >= 0 && coords[3 * i + j] < 1);
+            assertTrue(sites.add(new AtomSite(Element.fromZ(zs[i]),
+                    new Vector3D(coords[3 * i], coords[3 * i + 1],
+                            coords[3 * i + 2]))));
+        }
+    }
+
+
+
+    @Test
+    public void testSupercellMatrix() {
+        Supercell supercell =
+                new Supercell(phase, new int[][] { { 1, -1, 0 }, { 1, 1, 0 },
+                        { 0, 0, 1 } });
+
+        assertEquals(2, supercell.getCellCount());
+        assertEquals(16, supercell.size());
+        assertEquals(5.64 * sqrt(2), supercell.getUnitCell().getA(), 1e-6);
+        assertEquals(5.64 * sqrt(2), supercell.getUnitCell().getB(), 1e-6);
+        assertEquals(5.64, supercell.getUnitCell().getC(), 1e-6);
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSupercellException1() {
+        new Supercell(phase, 0, 1, 1);
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSupercellException2() {
+        new Supercell(phase, new int[][] { { 1, 0, 0 }, { 0, 1, 0 },
+                { 1, 1, 0 } });
+    }
+
+
+
+    @Test
+    public void testForEach() {
+        Supercell supercell = new Supercell(phase, 2, 2, 2);
+        final double[] expected = supercell.getCoordinates(true);
+        final int[] count = new int[1];
+
+        supercell.forEach(new SiteConsumer() {
+
+            @Override
+            public void accept(int index, Element element, int charge,
+                    double occupancy, double x, double y, double z) {
+                assertEquals(expected[3 * index], x, 1e-10);
+                assertEquals(expected[3 * index + 1], y, 1e-10);
+                assertEquals(expected[3 * index + 2], z, 1e-10);
+                assertTrue(x >= 0 && x < 11.28);
+                count[0]++;
+            }
+
+        }, true);
+
+        assertEquals(64, count[0]);
+    }
+
+
+
+    @Test
+    public void testGetCoordinatesParallel() throws Exception {
+        Supercell supercell = new Supercell(phase, 20, 20, 10);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            assertArrayEquals(supercell.getCoordinates(true), supercell
+                    .getCoordinates(true, executor), 0.0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
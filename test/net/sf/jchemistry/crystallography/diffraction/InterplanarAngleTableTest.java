@@ -0,0 +1,169 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import net.sf.jchemistry.crystallography.core.Calculations;
+import net.sf.jchemistry.crystallography.core.Phase;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.core.Reflectors;
+import net.sf.jchemistry.crystallography.core.UnitCell;
+import net.sf.jchemistry.crystallography.test.PhaseFactory;
+
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.lang.Math.toRadians;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InterplanarAngleTableTest {
+
+    private UnitCell unitCell;
+
+    private Reflectors reflectors;
+
+    private InterplanarAngleTable table;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        Phase ferrite = PhaseFactory.ferrite();
+        unitCell = ferrite.getUnitCell();
+        reflectors = ferrite.getReflectors();
+        table = new InterplanarAngleTable(unitCell, reflectors);
+    }
+
+
+
+    private double angle(Reflector refl1, Reflector refl2) {
+        return Calculations.interplanarAngle(new Vector3D(refl1.getH(),
+                refl1.getK(), refl1.getL()), new Vector3D(refl2.getH(),
+                refl2.getK(), refl2.getL()), unitCell);
+    }
+
+
+
+    private double spacing(int h, int k, int l) {
+        return Calculations.planeSpacing(new Vector3D(h, k, l), unitCell);
+    }
+
+
+
+    @Test
+    public void testInterplanarAngleTable() {
+        int size = reflectors.size();
+        assertEquals(size, table.getPlaneCount());
+        assertEquals(size * (size - 1) / 2, table.getPairCount());
+
+        for (int i = 0; i < size; i++)
+            assertEquals(Calculations.planeSpacing(new Vector3D(table
+                    .getPlane(i).getH(), table.getPlane(i).getK(), table
+                    .getPlane(i).getL()), unitCell),
+                    table.getPlaneSpacing(i), 1e-9);
+
+        double[] spacings = table.getSpacings();
+        for (int i = 1; i < spacings.length; i++)
+            assertTrue(spacings[i] > spacings[i - 1]);
+    }
+
+
+
+    @Test
+    public void testAngle() {
+        for (int i = 0; i < table.getPlaneCount(); i++)
+            for (int j = 0; j < table.getPlaneCount(); j++)
+                if (i != j)
+                    assertEquals(
+                            angle(table.getPlane(i), table.getPlane(j)),
+                            table.angle(i, j), 1e-9);
+    }
+
+
+
+    @Test
+    public void testFindPairsAngle() {
+        double angle = toRadians(60.0);
+        int[][] pairs = table.findPairs(angle, 1e-4);
+        assertTrue(pairs.length > 0);
+
+        int expected = 0;
+        for (int i = 0; i < table.getPlaneCount(); i++)
+            for (int j = i + 1; j < table.getPlaneCount(); j++)
+                if (Math.abs(table.angle(i, j) - angle) <= 1e-4)
+                    expected++;
+        assertEquals(expected, pairs.length);
+
+        for (int[] pair : pairs)
+            assertEquals(angle, table.angle(pair[0], pair[1]), 1e-4);
+    }
+
+
+
+    @Test
+    public void testFindPairsSpacings() {
+        double d110 = spacing(1, 1, 0);
+        double d200 = spacing(2, 0, 0);
+        double angle = toRadians(45.0);
+
+        int[][] pairs = table.findPairs(d110, d200, 1e-3, angle, 1e-4);
+        assertTrue(pairs.length > 0);
+
+        int expected = 0;
+        for (int i = 0; i < table.getPlaneCount(); i++)
+            for (int j = 0; j < table.getPlaneCount(); j++)
+                if (i != j
+                        && Math.abs(table.getPlaneSpacing(i) - d110) <= 1e-3
+                        && Math.abs(table.getPlaneSpacing(j) - d200) <= 1e-3
+                        && Math.abs(table.angle(i, j) - angle) <= 1e-4)
+                    expected++;
+        assertEquals(expected, pairs.length);
+
+        for (int[] pair : pairs) {
+            assertEquals(d110, table.getPlaneSpacing(pair[0]), 1e-3);
+            assertEquals(d200, table.getPlaneSpacing(pair[1]), 1e-3);
+        }
+    }
+
+
+
+    @Test
+    public void testFindTriplets() {
+        double d110 = spacing(1, 1, 0);
+        double d200 = spacing(2, 0, 0);
+        double d211 = spacing(2, 1, 1);
+
+        // (110), (200) and (211)
+        double angle12 = toRadians(45.0);
+        double angle13 = Math.acos(3.0 / Math.sqrt(12.0));
+        double angle23 = Math.acos(2.0 / Math.sqrt(6.0));
+
+        int[][] triplets =
+                table.findTriplets(d110, d200, d211, 1e-3, angle12, angle13,
+                        angle23, 1e-4);
+        assertTrue(triplets.length > 0);
+
+        for (int[] triplet : triplets) {
+            assertEquals(angle12, table.angle(triplet[0], triplet[1]), 1e-4);
+            assertEquals(angle13, table.angle(triplet[0], triplet[2]), 1e-4);
+            assertEquals(angle23, table.angle(triplet[1], triplet[2]), 1e-4);
+        }
+    }
+
+}
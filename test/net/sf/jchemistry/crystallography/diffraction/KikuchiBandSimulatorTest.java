@@ -0,0 +1,208 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.crystallography.core.Calculations;
+import net.sf.jchemistry.crystallography.core.Phase;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.test.PhaseFactory;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KikuchiBandSimulatorTest {
+
+    private double wavelength;
+
+    private KikuchiBandSimulator simulator;
+
+    private double[] quaternions;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        Phase ferrite = PhaseFactory.ferrite();
+        wavelength = Calculations.electronWavelength(20e3);
+        simulator =
+                new KikuchiBandSimulator(ferrite.getUnitCell(),
+                        ferrite.getReflectors(), wavelength, 10);
+
+        Random random = new Random(7);
+        quaternions = new double[3000 * 4];
+        for (int i = 0; i < quaternions.length; i += 4) {
+            Rotation r =
+                    new Rotation(random.nextGaussian(), random.nextGaussian(),
+                            random.nextGaussian(), random.nextGaussian(),
+                            true);
+            quaternions[i] = r.getQ0();
+            quaternions[i + 1] = r.getQ1();
+            quaternions[i + 2] = r.getQ2();
+            quaternions[i + 3] = r.getQ3();
+        }
+    }
+
+
+
+    private Vector3D normal(Rotation r, Reflector refl) {
+        Vector3D n =
+                new Vector3D(refl.getH(), refl.getK(), refl.getL())
+                        .normalize();
+        return r.applyInverseTo(n);
+    }
+
+
+
+    @Test
+    public void testKikuchiBandSimulator() {
+        assertEquals(10, simulator.getBandCount());
+        assertEquals(1.0, simulator.getIntensity(0), 1e-9);
+        for (int i = 1; i < simulator.getBandCount(); i++)
+            assertTrue(simulator.getIntensity(i) <= simulator
+                    .getIntensity(i - 1));
+
+        Reflector refl = simulator.getReflector(0);
+        double d =
+                Calculations.planeSpacing(new Vector3D(refl.getH(), refl
+                        .getK(), refl.getL()), PhaseFactory.ferrite()
+                        .getUnitCell());
+        assertEquals(Calculations.diffractionAngle(d, wavelength),
+                simulator.getBraggAngle(0), 1e-12);
+    }
+
+
+
+    @Test
+    public void testGetBands() {
+        for (int n = 0; n < 20; n++) {
+            Rotation r =
+                    new Rotation(quaternions[n * 4], quaternions[n * 4 + 1],
+                            quaternions[n * 4 + 2], quaternions[n * 4 + 3],
+                            false);
+            double[] bands = simulator.getBands(r);
+
+            for (int i = 0; i < simulator.getBandCount(); i++) {
+                Vector3D normal = normal(r, simulator.getReflector(i));
+                int o = i * KikuchiBandSimulator.BAND_SIZE;
+                double phi = bands[o];
+                double rho = bands[o + 1];
+                double cos = Math.cos(phi);
+                double sin = Math.sin(phi);
+
+                // Centre line
+                Vector3D p = new Vector3D(rho * cos, rho * sin, 1.0);
+                assertEquals(0.0, Vector3D.dotProduct(normal, p), 1e-9);
+
+                // Edges
+                double sinTheta = Math.sin(simulator.getBraggAngle(i));
+                for (int j = 2; j < 4; j++) {
+                    p =
+                            new Vector3D(bands[o + j] * cos, bands[o + j]
+                                    * sin, 1.0).normalize();
+                    assertEquals(sinTheta, Math.abs(Vector3D.dotProduct(
+                            normal, p)), 1e-9);
+                }
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testGetBandsIdentity() {
+        double[] bands = simulator.getBands(Rotation.IDENTITY);
+
+        for (int i = 0; i < simulator.getBandCount(); i++) {
+            Reflector refl = simulator.getReflector(i);
+            int o = i * KikuchiBandSimulator.BAND_SIZE;
+            if (refl.getH() == 0 && refl.getK() == 0)
+                assertTrue(Double.isNaN(bands[o]));
+            else if (refl.getL() == 0) {
+                double tan = Math.tan(simulator.getBraggAngle(i));
+                assertEquals(0.0, bands[o + 1], 1e-12);
+                assertEquals(-tan, bands[o + 2], 1e-12);
+                assertEquals(tan, bands[o + 3], 1e-12);
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testGetBandsParallel() throws InterruptedException {
+        double[] expected = simulator.getBands(quaternions);
+        assertEquals(3000 * 10 * KikuchiBandSimulator.BAND_SIZE,
+                expected.length);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertArrayEquals(expected,
+                    simulator.getBands(quaternions, executor), 0.0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+
+    @Test
+    public void testRasterize() {
+        double[] raster =
+                simulator.rasterize(quaternions, 0, 40, 30, 20.0, 15.0, 25.0);
+        assertEquals(40 * 30, raster.length);
+
+        Rotation r =
+                new Rotation(quaternions[0], quaternions[1], quaternions[2],
+                        quaternions[3], false);
+        for (int py = 0; py < 30; py += 7)
+            for (int px = 0; px < 40; px += 5) {
+                Vector3D p =
+                        new Vector3D((px - 20.0) / 25.0, (py - 15.0) / 25.0,
+                                1.0).normalize();
+                double expected = 0.0;
+                for (int i = 0; i < simulator.getBandCount(); i++) {
+                    double dot =
+                            Vector3D.dotProduct(normal(r, simulator
+                                    .getReflector(i)), p);
+                    if (Math.abs(dot) <= Math.sin(simulator.getBraggAngle(i)))
+                        expected += simulator.getIntensity(i);
+                }
+                assertEquals(expected, raster[py * 40 + px], 1e-9);
+            }
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKikuchiBandSimulatorException() {
+        Phase ferrite = PhaseFactory.ferrite();
+        new KikuchiBandSimulator(ferrite.getUnitCell(),
+                ferrite.getReflectors(), wavelength, 0);
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import net.sf.jchemistry.crystallography.core.Phase;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.test.PhaseFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.lang.Math.toRadians;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PowderPatternSimulatorTest {
+
+    private static final double WAVELENGTH = 1.5406;
+
+    private PowderPatternSimulator simulator;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        Phase ferrite = PhaseFactory.ferrite();
+        simulator =
+                new PowderPatternSimulator(ferrite.getUnitCell(),
+                        ferrite.getReflectors(), true);
+    }
+
+
+
+    @Test
+    public void testFamilies() {
+        assertEquals(5, simulator.getFamilyCount());
+
+        Reflector refl = simulator.getFamily(0);
+        assertEquals(1, refl.getH());
+        assertEquals(1, refl.getK());
+        assertEquals(0, refl.getL());
+        assertEquals(12, simulator.getMultiplicity(0));
+        assertEquals(2.87 / Math.sqrt(2.0), simulator.getPlaneSpacing(0),
+                1e-9);
+
+        assertEquals(6, simulator.getMultiplicity(1));
+        assertEquals(24, simulator.getMultiplicity(2));
+        assertEquals(12, simulator.getMultiplicity(3));
+        assertEquals(8, simulator.getMultiplicity(4));
+
+        for (int i = 1; i < simulator.getFamilyCount(); i++)
+            assertTrue(simulator.getPlaneSpacing(i) < simulator
+                    .getPlaneSpacing(i - 1));
+    }
+
+
+
+    @Test
+    public void testGetPeakPositions() {
+        double[] positions = simulator.getPeakPositions(WAVELENGTH);
+        assertEquals(toRadians(44.61), positions[0], toRadians(0.01));
+
+        positions = simulator.getPeakPositions(5.0);
+        assertTrue(Double.isNaN(positions[4]));
+    }
+
+
+
+    @Test
+    public void testGetPeakIntensities() {
+        Phase ferrite = PhaseFactory.ferrite();
+        PowderPatternSimulator noLp =
+                new PowderPatternSimulator(ferrite.getUnitCell(),
+                        ferrite.getReflectors(), false);
+
+        double[] lp = simulator.getPeakIntensities(WAVELENGTH);
+        double[] raw = noLp.getPeakIntensities(WAVELENGTH);
+
+        double theta = simulator.getPeakPositions(WAVELENGTH)[0] / 2.0;
+        double factor =
+                (1 + Math.pow(Math.cos(2 * theta), 2))
+                        / (Math.pow(Math.sin(theta), 2) * Math.cos(theta));
+        assertEquals(raw[0] * factor, lp[0], 1e-9 * lp[0]);
+        assertEquals(12 * simulator.getFamily(0).getIntensity(), raw[0],
+                1e-9 * raw[0]);
+    }
+
+
+
+    @Test
+    public void testSimulate() {
+        double start = toRadians(20.0);
+        double step = toRadians(0.01);
+        int count = 10000;
+        double[] pattern =
+                simulator.simulate(WAVELENGTH, start, step, count,
+                        toRadians(0.1), 0.0, 1000.0);
+        assertEquals(count, pattern.length);
+
+        // Maximum at the 110 peak
+        int max = 0;
+        for (int i = 0; i < count; i++)
+            if (pattern[i] > pattern[max])
+                max = i;
+        assertEquals(toRadians(44.61), start + max * step, toRadians(0.02));
+
+        // Integrated intensity of the peaks inside the grid
+        double sum = 0.0;
+        for (double value : pattern)
+            sum += value * step;
+        double expected = 0.0;
+        double[] positions = simulator.getPeakPositions(WAVELENGTH);
+        double[] peaks = simulator.getPeakIntensities(WAVELENGTH);
+        for (int i = 0; i < peaks.length; i++)
+            if (positions[i] < start + count * step)
+                expected += peaks[i];
+        assertEquals(expected, sum, 1e-3 * expected);
+    }
+
+
+
+    @Test
+    public void testSimulateTruncated() {
+        double start = toRadians(20.0);
+        double step = toRadians(0.01);
+        double[] full =
+                simulator.simulate(WAVELENGTH, start, step, 10000,
+                        toRadians(0.1), 0.0, 1000.0);
+        double[] truncated =
+                simulator.simulate(WAVELENGTH, start, step, 10000,
+                        toRadians(0.1), 0.0);
+
+        for (int i = 0; i < full.length; i++)
+            assertEquals(full[i], truncated[i], 1e-9 * full[i] + 1e-12);
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSimulateException() {
+        simulator.simulate(WAVELENGTH, 0.0, 0.01, 100, 0.01, 2.0);
+    }
+
+}
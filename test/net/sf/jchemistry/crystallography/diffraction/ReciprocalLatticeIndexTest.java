@@ -0,0 +1,167 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.sf.jchemistry.crystallography.core.Calculations;
+import net.sf.jchemistry.crystallography.core.Phase;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.test.PhaseFactory;
+
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReciprocalLatticeIndexTest {
+
+    private double[] vectors;
+
+    private double wavelength;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(5);
+        vectors = new double[20000 * 3];
+        for (int i = 0; i < vectors.length; i++)
+            vectors[i] = (random.nextDouble() - 0.5) * 4.0;
+
+        wavelength = Calculations.electronWavelength(200e3);
+    }
+
+
+
+    private int[] bruteForce(double bx, double by, double bz, double eps) {
+        int size = vectors.length / 3;
+        int[] out = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            double x = vectors[i * 3];
+            double y = vectors[i * 3 + 1];
+            double z = vectors[i * 3 + 2];
+            double s =
+                    -(bx * x + by * y + bz * z + wavelength / 2.0
+                            * (x * x + y * y + z * z));
+            if (Math.abs(s) <= eps)
+                out[count++] = i;
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+
+
+    private int[] query(ReciprocalLatticeIndex index, double bx, double by,
+            double bz, double eps) {
+        int[] out = new int[index.size()];
+        int count = index.query(bx, by, bz, wavelength, eps, out);
+        int[] found = Arrays.copyOf(out, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+
+
+    @Test
+    public void testQuery() {
+        Random random = new Random(6);
+        for (int leafSize : new int[] { 1, 16, 100 }) {
+            ReciprocalLatticeIndex index =
+                    new ReciprocalLatticeIndex(vectors, leafSize);
+            assertEquals(20000, index.size());
+
+            for (int i = 0; i < 20; i++) {
+                Vector3D beam =
+                        new Vector3D(random.nextGaussian(),
+                                random.nextGaussian(), random.nextGaussian())
+                                .normalize();
+                int[] expected =
+                        bruteForce(beam.getX(), beam.getY(), beam.getZ(), 0.01);
+                int[] actual =
+                        query(index, beam.getX(), beam.getY(), beam.getZ(),
+                                0.01);
+                assertTrue(expected.length > 0);
+                assertArrayEquals(expected, actual);
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testQueryOutputTooSmall() {
+        ReciprocalLatticeIndex index = new ReciprocalLatticeIndex(vectors);
+        int[] expected = query(index, 0, 0, 1, 0.01);
+        assertTrue(expected.length > 1);
+
+        int[] out = new int[expected.length - 1];
+        assertEquals(expected.length, index.query(0, 0, 1, wavelength, 0.01,
+                out));
+        for (int i : out)
+            assertTrue(Arrays.binarySearch(expected, i) >= 0);
+
+        assertEquals(expected.length, index.query(0, 0, 1, wavelength, 0.01,
+                new int[0]));
+    }
+
+
+
+    @Test
+    public void testQueryEmpty() {
+        ReciprocalLatticeIndex index =
+                new ReciprocalLatticeIndex(new double[0]);
+        assertEquals(0, index.query(0, 0, 1, wavelength, 0.01, new int[0]));
+    }
+
+
+
+    @Test
+    public void testVectors() {
+        Phase ferrite = PhaseFactory.ferrite();
+        Reflector[] reflectors =
+                ferrite.getReflectors().toArray(new Reflector[0]);
+        double[] g =
+                ReciprocalLatticeIndex.vectors(ferrite.getUnitCell(),
+                        reflectors);
+
+        for (int i = 0; i < reflectors.length; i++) {
+            double length =
+                    Math.sqrt(g[i * 3] * g[i * 3] + g[i * 3 + 1]
+                            * g[i * 3 + 1] + g[i * 3 + 2] * g[i * 3 + 2]);
+            Vector3D plane =
+                    new Vector3D(reflectors[i].getH(), reflectors[i].getK(),
+                            reflectors[i].getL());
+            assertEquals(1.0 / Calculations.planeSpacing(plane,
+                    ferrite.getUnitCell()), length, 1e-9);
+        }
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReciprocalLatticeIndexException() {
+        new ReciprocalLatticeIndex(new double[4]);
+    }
+
+}
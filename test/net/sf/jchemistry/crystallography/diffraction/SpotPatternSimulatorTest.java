@@ -0,0 +1,165 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.diffraction;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.crystallography.core.Calculations;
+import net.sf.jchemistry.crystallography.core.Phase;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.core.ScatteringFactorsFactory;
+import net.sf.jchemistry.crystallography.test.PhaseFactory;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpotPatternSimulatorTest {
+
+    private static final double CAMERA_LENGTH = 1000.0;
+
+    private double wavelength;
+
+    private SpotPatternSimulator simulator;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        Phase ferrite = PhaseFactory.ferrite();
+        ferrite.computeReflectors(ScatteringFactorsFactory.XRAY_TABULATED, 4,
+                0.01);
+
+        wavelength = Calculations.electronWavelength(200e3);
+        simulator =
+                new SpotPatternSimulator(ferrite.getUnitCell(),
+                        ferrite.getReflectors(), wavelength, CAMERA_LENGTH,
+                        0.02);
+    }
+
+
+
+    @Test
+    public void testSimulateZoneAxis001() {
+        SpotPattern pattern =
+                simulator.simulate(simulator.getZoneAxisOrientation(0, 0, 1));
+        assertTrue(pattern.getSpotCount() > 0);
+
+        boolean found110 = false;
+        for (int i = 0; i < pattern.getSpotCount(); i++) {
+            Reflector refl = pattern.getReflector(i);
+            assertEquals(0, refl.getL());
+            assertTrue(pattern.getIntensity(i) > 0);
+            assertTrue(pattern.getIntensity(i) <= 1.0);
+
+            if (refl.equals(1, 1, 0)) {
+                found110 = true;
+                double r = Math.hypot(pattern.getX(i), pattern.getY(i));
+                double d = 2.87 / Math.sqrt(2.0);
+                assertEquals(CAMERA_LENGTH * wavelength / d, r, 1e-2);
+                assertEquals(-wavelength / (2 * d * d),
+                        pattern.getExcitationError(i), 1e-9);
+            }
+        }
+        assertTrue(found110);
+    }
+
+
+
+    @Test
+    public void testSimulateZoneAxis111() {
+        SpotPattern pattern =
+                simulator.simulate(simulator.getZoneAxisOrientation(1, 1, 1));
+        assertTrue(pattern.getSpotCount() > 0);
+
+        for (int i = 0; i < pattern.getSpotCount(); i++) {
+            Reflector refl = pattern.getReflector(i);
+            assertEquals(0, refl.getH() + refl.getK() + refl.getL());
+        }
+    }
+
+
+
+    @Test
+    public void testSimulateAllCandidates() {
+        Phase ferrite = PhaseFactory.ferrite();
+        ferrite.computeReflectors(ScatteringFactorsFactory.XRAY_TABULATED, 4,
+                0.01);
+        SpotPatternSimulator all =
+                new SpotPatternSimulator(ferrite.getUnitCell(),
+                        ferrite.getReflectors(), wavelength, CAMERA_LENGTH,
+                        100.0);
+        assertTrue(all.getReflectorCount() > 64);
+
+        double[] q = new double[] { 1, 0, 0, 0, 0, 1, 0, 0 };
+        for (SpotPattern pattern : all.simulate(q))
+            assertEquals(all.getReflectorCount(), pattern.getSpotCount());
+    }
+
+
+
+    @Test
+    public void testSimulateParallel() throws InterruptedException {
+        Random random = new Random(1);
+        double[] q = new double[500 * 4];
+        for (int i = 0; i < q.length; i += 4) {
+            Rotation r =
+                    new Rotation(random.nextGaussian(), random.nextGaussian(),
+                            random.nextGaussian(), random.nextGaussian(),
+                            true);
+            q[i] = r.getQ0();
+            q[i + 1] = r.getQ1();
+            q[i + 2] = r.getQ2();
+            q[i + 3] = r.getQ3();
+        }
+
+        SpotPattern[] expected = simulator.simulate(q);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        SpotPattern[] actual;
+        try {
+            actual = simulator.simulate(q, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getSpotCount(), actual[i].getSpotCount());
+            for (int j = 0; j < expected[i].getSpotCount(); j++) {
+                assertEquals(expected[i].getX(j), actual[i].getX(j), 0.0);
+                assertTrue(Math.abs(expected[i].getExcitationError(j)) <= 0.02);
+            }
+        }
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSpotPatternSimulatorException() {
+        Phase ferrite = PhaseFactory.ferrite();
+        new SpotPatternSimulator(ferrite.getUnitCell(),
+                ferrite.getReflectors(), 0.0, CAMERA_LENGTH, 0.02);
+    }
+
+}
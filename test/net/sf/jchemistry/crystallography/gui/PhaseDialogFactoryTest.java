@@ -21,7 +21,7 @@ import java.text.NumberFormat;
 
 import javax.swing.JComboBox;
 
-import net.sf.jchemistry.crystallography.core.AtomSites;
+import net.sf.jchemistry.crystallography.core.AbstractAtomSites;
 import net.sf.jchemistry.crystallography.core.CrystalSystem;
 import net.sf.jchemistry.crystallography.core.LaueGroup;
 import net.sf.jchemistry.crystallography.core.Phase;
@@ -89,7 +89,7 @@ public class PhaseDialogFactoryTest extends UISpecTestCase {
                 UnitCellPanelTest.testUnitCellPanel(window, phase.getUnitCell());
 
                 // Atoms
-                AtomSites atoms = phase.getAtoms();
+                AbstractAtomSites atoms = phase.getAllAtoms();
                 assertEquals(atoms.size(),
                         window.getTable("atoms").getRowCount());
 
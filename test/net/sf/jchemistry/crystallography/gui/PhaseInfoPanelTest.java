@@ -17,7 +17,7 @@
  */
 package net.sf.jchemistry.crystallography.gui;
 
-import net.sf.jchemistry.crystallography.core.AtomSites;
+import net.sf.jchemistry.crystallography.core.AbstractAtomSites;
 import net.sf.jchemistry.crystallography.core.CrystalSystem;
 import net.sf.jchemistry.crystallography.core.LaueGroup;
 import net.sf.jchemistry.crystallography.core.Phase;
@@ -88,7 +88,7 @@ public class PhaseInfoPanelTest extends UISpecTestCase {
         UnitCellPanelTest.testUnitCellPanel(panel, phase.getUnitCell());
 
         // Atoms
-        AtomSites atoms = phase.getAtoms();
+        AbstractAtomSites atoms = phase.getAllAtoms();
         assertEquals(atoms.size(), panel.getTable("atoms").getRowCount());
 
         // Reflectors
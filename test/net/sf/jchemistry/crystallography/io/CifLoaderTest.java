@@ -19,12 +19,19 @@ package net.sf.jchemistry.crystallography.io;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sf.jchemistry.core.Element;
+import net.sf.jchemistry.crystallography.core.AbstractAtomSites;
 import net.sf.jchemistry.crystallography.core.AtomSite;
-import net.sf.jchemistry.crystallography.core.AtomSites;
 import net.sf.jchemistry.crystallography.core.Phase;
 import net.sf.jchemistry.crystallography.core.Reflectors;
 import net.sf.jchemistry.crystallography.core.SpaceGroups;
@@ -39,6 +46,9 @@ import static org.junit.Assert.assertTrue;
 
 public class CifLoaderTest {
 
+    private static final String SYMMETRY_LOOP =
+            "(?s)loop_\\s+_symmetry_equiv_pos_\\w+\\s.*?(?=loop_)";
+
     private Reader reader1;
 
     private Reader reader2;
@@ -76,22 +86,22 @@ public class CifLoaderTest {
         // Space group
         assertEquals(SpaceGroups1.SG62, phase.getSpaceGroup());
 
-        // Unit cell
-        assertEquals(4.756, phase.getUnitCell().getA(), 1e-3);
-        assertEquals(10.207, phase.getUnitCell().getB(), 1e-3);
-        assertEquals(5.980, phase.getUnitCell().getC(), 1e-3);
-        assertEquals(90, Math.toDegrees(phase.getUnitCell().getAlpha()), 1e-3);
-        assertEquals(91, Math.toDegrees(phase.getUnitCell().getBeta()), 1e-3);
-        assertEquals(92, Math.toDegrees(phase.getUnitCell().getGamma()), 1e-3);
+        // Unit cell (Pbnm transformed to Pnma)
+        assertEquals(10.207, phase.getUnitCell().getA(), 1e-3);
+        assertEquals(5.980, phase.getUnitCell().getB(), 1e-3);
+        assertEquals(4.756, phase.getUnitCell().getC(), 1e-3);
+        assertEquals(91, Math.toDegrees(phase.getUnitCell().getAlpha()), 1e-3);
+        assertEquals(92, Math.toDegrees(phase.getUnitCell().getBeta()), 1e-3);
+        assertEquals(90, Math.toDegrees(phase.getUnitCell().getGamma()), 1e-3);
 
         // Atoms
-        AtomSites atoms = phase.getAtoms();
-        assertEquals(164, atoms.size());
+        AbstractAtomSites atoms = phase.getAllAtoms();
+        assertEquals(28, atoms.size());
 
         Map<Element, Integer> elementMap = createElementCountMap(atoms);
-        assertEquals(36, (int) elementMap.get(Element.Mg)); // Mg
-        assertEquals(32, (int) elementMap.get(Element.Si)); // Si
-        assertEquals(96, (int) elementMap.get(Element.O)); // O
+        assertEquals(8, (int) elementMap.get(Element.Mg)); // Mg
+        assertEquals(4, (int) elementMap.get(Element.Si)); // Si
+        assertEquals(16, (int) elementMap.get(Element.O)); // O
 
         for (AtomSite atom : atoms)
             assertEquals(0, atom.getCharge());
@@ -140,7 +150,7 @@ public class CifLoaderTest {
         assertEquals(90, Math.toDegrees(phase.getUnitCell().getGamma()), 1e-3);
 
         // Atoms
-        AtomSites atoms = phase.getAtoms();
+        AbstractAtomSites atoms = phase.getAllAtoms();
         assertEquals(20, atoms.size());
 
         Map<Element, Integer> elementMap = createElementCountMap(atoms);
@@ -166,7 +176,178 @@ public class CifLoaderTest {
 
 
 
-    private Map<Element, Integer> createElementCountMap(AtomSites atoms) {
+    @Test
+    public void testLoadConcurrent() throws Exception {
+        final String cif1 = read(reader1);
+        final String cif2 = read(reader2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Phase>> futures = new ArrayList<Future<Phase>>();
+
+        try {
+            for (int i = 0; i < 200; i++) {
+                final String cif = (i % 2 == 0) ? cif1 : cif2;
+                futures.add(executor.submit(new Callable<Phase>() {
+
+                    @Override
+                    public Phase call() throws Exception {
+                        return loader.load(new StringReader(cif));
+                    }
+
+                }));
+            }
+
+            Phase phase;
+            for (int i = 0; i < futures.size(); i++) {
+                phase = futures.get(i).get();
+
+                if (i % 2 == 0) {
+                    assertEquals("Forsterite", phase.getName());
+                    assertEquals(SpaceGroups1.SG62, phase.getSpaceGroup());
+                    assertEquals(28, phase.getAllAtoms().size());
+                    assertEquals(3, phase.getReflectors().size());
+                } else {
+                    assertEquals("Gallium Oxide - Beta", phase.getName());
+                    assertEquals(SpaceGroups.SG12, phase.getSpaceGroup());
+                    assertEquals(20, phase.getAllAtoms().size());
+                    assertEquals(0, phase.getReflectors().size());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+
+    @Test
+    public void testLoadOperators() throws IOException {
+        String cif = read(reader1).replaceAll("_space_group_IT_number.*", "");
+        Phase phase = loader.load(new StringReader(cif));
+        assertEquals(SpaceGroups1.SG62, phase.getSpaceGroup());
+    }
+
+
+
+    @Test
+    public void testLoadSymbol() throws IOException {
+        String cif = read(reader2);
+        Phase expected = loader.load(new StringReader(cif));
+
+        cif =
+                cif.replaceAll("_symmetry_Int_Tables_number.*", "")
+                        .replaceAll(SYMMETRY_LOOP, "");
+        Phase phase = loader.load(new StringReader(cif));
+
+        assertEquals(SpaceGroups.SG12, phase.getSpaceGroup());
+        assertEquals(20, phase.getAllAtoms().size());
+        assertEquals(createElementCountMap(expected.getAllAtoms()),
+                createElementCountMap(phase.getAllAtoms()));
+    }
+
+
+
+    @Test
+    public void testLoadSymbolAlias() throws IOException {
+        String cif = read(reader1);
+        Phase expected = loader.load(new StringReader(cif));
+
+        cif =
+                cif.replaceAll("_space_group_IT_number.*", "").replaceAll(
+                        SYMMETRY_LOOP, "");
+        Phase phase = loader.load(new StringReader(cif));
+
+        assertEquals(SpaceGroups1.SG62, phase.getSpaceGroup());
+        assertEquals(10.207, phase.getUnitCell().getA(), 1e-3);
+        assertEquals(28, phase.getAllAtoms().size());
+        assertEquals(createElementCountMap(expected.getAllAtoms()),
+                createElementCountMap(phase.getAllAtoms()));
+    }
+
+
+
+    @Test
+    public void testLoadSymbolHall() throws IOException {
+        String cif =
+                read(reader1).replaceAll("_space_group_IT_number.*", "")
+                        .replaceAll("_symmetry_space_group_name_H-M.*", "")
+                        .replaceAll(SYMMETRY_LOOP, "");
+        Phase phase = loader.load(new StringReader(cif));
+
+        assertEquals(SpaceGroups1.SG62, phase.getSpaceGroup());
+        assertEquals(28, phase.getAllAtoms().size());
+    }
+
+
+
+    @Test(expected = IOException.class)
+    public void testLoadSymbolNonStandard() throws IOException {
+        String cif =
+                read(reader1).replaceAll("_space_group_IT_number.*", "")
+                        .replaceAll("_symmetry_space_group_name_Hall.*", "")
+                        .replaceAll(SYMMETRY_LOOP, "");
+        loader.load(new StringReader(cif));
+    }
+
+
+
+    @Test(expected = IOException.class)
+    public void testLoadSymbolOriginChoice() throws IOException {
+        String cif =
+                read(reader2)
+                        .replaceAll("_symmetry_Int_Tables_number.*", "")
+                        .replaceAll("_symmetry_space_group_name_H-M.*",
+                                "_symmetry_space_group_name_H-M 'F d -3 m:2'")
+                        .replaceAll(SYMMETRY_LOOP, "");
+        loader.load(new StringReader(cif));
+    }
+
+
+
+    @Test(expected = IOException.class)
+    public void testLoadSpaceGroupMissing() throws IOException {
+        String cif =
+                read(reader1).replaceAll("_space_group_IT_number.*", "")
+                        .replaceAll("_symmetry_space_group_name_.*", "")
+                        .replaceAll(SYMMETRY_LOOP, "");
+        loader.load(new StringReader(cif));
+    }
+
+
+
+    @Test
+    public void testLoadExponent() throws IOException {
+        String cif =
+                read(reader1).replaceAll("_cell_length_a .*",
+                        "_cell_length_a 4.756e0(3)");
+        Phase phase = loader.load(new StringReader(cif));
+        assertEquals(4.756, phase.getUnitCell().getC(), 1e-6);
+    }
+
+
+
+    @Test(expected = IllegalStateException.class)
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedGettersAfterLoad() throws IOException {
+        loader.load(reader1);
+        loader.getStringValue(CifConstants.CHEMICAL_NAME_MINERAL);
+    }
+
+
+
+    private String read(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[4096];
+        int length;
+        while ((length = reader.read(buffer)) > 0)
+            sb.append(buffer, 0, length);
+        reader.close();
+        return sb.toString();
+    }
+
+
+
+    private Map<Element, Integer> createElementCountMap(AbstractAtomSites atoms) {
         HashMap<Element, Integer> map = new HashMap<Element, Integer>();
 
         Element element;
@@ -19,6 +19,7 @@ package net.sf.jchemistry.crystallography.io;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +28,7 @@ import net.sf.jchemistry.util.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class CifParserTest {
@@ -53,4 +55,29 @@ public class CifParserTest {
         assertEquals(34, data.size());
     }
 
+
+
+    @Test
+    public void testParseLoops() throws IOException {
+        List<ColumnarLoop> loops = new ArrayList<ColumnarLoop>();
+        Map<String, List<String>> data = parser.parse(reader, loops);
+
+        assertEquals(34, data.size());
+        assertEquals(4, loops.size());
+
+        ColumnarLoop loop = loops.get(2);
+        assertEquals(6, loop.getRowCount());
+        assertEquals(5, loop.getColumnCount());
+
+        int column = loop.getColumnIndex("atom_site_fract_y");
+        assertEquals(2, column);
+        assertArrayEquals(new double[] { 0.0, 0.2774, 0.094, 0.0913, 0.4474,
+                0.1628 }, loop.getDoubleColumn(column), 1e-6);
+        assertEquals("0.27740", data.get("atom_site_fract_y").get(1));
+
+        loop = loops.get(3);
+        assertArrayEquals(new int[] { 3, 4, 5 },
+                loop.getIntegerColumn(loop.getColumnIndex("refln_index_l")));
+    }
+
 }
@@ -21,6 +21,12 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sf.jchemistry.crystallography.core.Phase;
 import net.sf.jchemistry.crystallography.core.UnitCell;
@@ -96,9 +102,51 @@ public class CifSaverTest {
         assertEquals(unitCell.getBeta(), newUnitCell.getBeta(), 1e-3);
         assertEquals(unitCell.getGamma(), newUnitCell.getGamma(), 1e-3);
 
-        assertEquals(phase.getAtoms().size(), newPhase.getAtoms().size());
+        assertEquals(phase.getAllAtoms().size(), newPhase.getAllAtoms().size());
 
         assertEquals(phase.getReflectors().size(),
                 newPhase.getReflectors().size());
     }
+
+
+
+    @Test
+    public void testSaveConcurrent() throws Exception {
+        final Phase[] phases =
+                new Phase[] { phase, PhaseFactory.ferrite(),
+                        PhaseFactory.silicon() };
+
+        // Expected outputs
+        String[] expected = new String[phases.length];
+        for (int i = 0; i < phases.length; i++) {
+            Writer out = new StringWriter();
+            new CifSaver().save(out, phases[i]);
+            expected[i] = out.toString();
+        }
+
+        // Concurrent saves with the same saver
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+
+        try {
+            for (int i = 0; i < 150; i++) {
+                final Phase p = phases[i % phases.length];
+                futures.add(executor.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() throws Exception {
+                        Writer out = new StringWriter();
+                        saver.save(out, p);
+                        return out.toString();
+                    }
+
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++)
+                assertEquals(expected[i % phases.length], futures.get(i).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
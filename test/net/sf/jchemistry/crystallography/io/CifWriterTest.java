@@ -205,6 +205,23 @@ public class CifWriterTest {
 
 
 
+    @Test
+    public void testWriteLoopColumnar() throws IOException {
+        TypedLoop loop = new TypedLoop();
+        loop.addColumn("col0", new int[] { 1, 2 });
+        loop.addColumn("col1", new double[] { 0.5, 0.25 });
+        loop.addColumn("col2", new String[] { "a", "b" });
+        writer.writeLoop(loop);
+
+        String[] expected =
+                { "loop_", "_col0", "_col1", "_col2", "1 0.5 a", "2 0.25 b" };
+        String[] actual =
+                out.toString().split(System.getProperty("line.separator"));
+        assertArrayEquals(expected, actual);
+    }
+
+
+
     @Test
     public void testWriteCommentShort() throws IOException {
         writer.writeComment("This is a comment");
@@ -0,0 +1,147 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.io;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TypedLoopTest {
+
+    private TypedLoop loop;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        loop = new TypedLoop();
+        loop.addColumn("label", new String[] { "Si1", "O1" });
+        loop.addColumn("index", new int[] { 1, -2 });
+        loop.addColumn("fract_x", new double[] { 0.25, 0.5 });
+        loop.addColumn("fract_y", new String[] { "0.1234(5)", "-0.5" });
+    }
+
+
+
+    @Test
+    public void testGetRowCount() {
+        assertEquals(2, loop.getRowCount());
+        assertEquals(0, new TypedLoop().getRowCount());
+    }
+
+
+
+    @Test
+    public void testGetColumnCount() {
+        assertEquals(4, loop.getColumnCount());
+    }
+
+
+
+    @Test
+    public void testGetColumnIndex() {
+        assertEquals(0, loop.getColumnIndex("label"));
+        assertEquals(2, loop.getColumnIndex("fract_x"));
+        assertEquals(-1, loop.getColumnIndex("fract_z"));
+    }
+
+
+
+    @Test
+    public void testGetColumnType() {
+        assertEquals(ColumnType.STRING, loop.getColumnType(0));
+        assertEquals(ColumnType.INTEGER, loop.getColumnType(1));
+        assertEquals(ColumnType.DOUBLE, loop.getColumnType(2));
+    }
+
+
+
+    @Test
+    public void testGetDataTag() {
+        assertEquals("fract_y", loop.getDataTag(3));
+    }
+
+
+
+    @Test
+    public void testGetDataValue() {
+        assertEquals("O1", loop.getDataValue(1, 0));
+        assertEquals("-2", loop.getDataValue(1, 1));
+        assertEquals("0.25", loop.getDataValue(0, 2));
+    }
+
+
+
+    @Test
+    public void testGetDoubleColumn() {
+        assertArrayEquals(new double[] { 0.25, 0.5 }, loop.getDoubleColumn(2),
+                1e-6);
+        assertArrayEquals(new double[] { 1.0, -2.0 }, loop.getDoubleColumn(1),
+                1e-6);
+        assertArrayEquals(new double[] { 0.1234, -0.5 },
+                loop.getDoubleColumn(3), 1e-6);
+    }
+
+
+
+    @Test
+    public void testGetIntegerColumn() {
+        assertArrayEquals(new int[] { 1, -2 }, loop.getIntegerColumn(1));
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetIntegerColumnException() {
+        loop.getIntegerColumn(2);
+    }
+
+
+
+    @Test(expected = NumberFormatException.class)
+    public void testGetDoubleColumnException() {
+        loop.getDoubleColumn(0);
+    }
+
+
+
+    @Test
+    public void testGetStringColumn() {
+        assertArrayEquals(new String[] { "Si1", "O1" },
+                loop.getStringColumn(0));
+        assertArrayEquals(new String[] { "0.25", "0.5" },
+                loop.getStringColumn(2));
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddColumnException1() {
+        loop.addColumn("label", new String[] { "a", "b" });
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddColumnException2() {
+        loop.addColumn("fract_z", new double[] { 0.0 });
+    }
+
+}
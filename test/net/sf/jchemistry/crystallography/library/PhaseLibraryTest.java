@@ -0,0 +1,169 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.library;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.jchemistry.core.Element;
+import net.sf.jchemistry.crystallography.core.CrystalSystem;
+import net.sf.jchemistry.crystallography.core.Phase;
+import net.sf.jchemistry.crystallography.core.SpaceGroups;
+import net.sf.jchemistry.crystallography.test.PhaseFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PhaseLibraryTest {
+
+    private Phase ferrite;
+
+    private Phase silicon;
+
+    private Phase zirconium;
+
+    private Phase kryptonite;
+
+    private PhaseLibrary library;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        ferrite = PhaseFactory.ferrite();
+        silicon = PhaseFactory.silicon();
+        zirconium = PhaseFactory.zirconium();
+        kryptonite = PhaseFactory.kryptonite();
+
+        library =
+                new PhaseLibrary(Arrays.asList(ferrite, silicon, zirconium,
+                        kryptonite));
+    }
+
+
+
+    @Test
+    public void testSize() {
+        assertEquals(4, library.size());
+        assertSame(zirconium, library.getPhase(2));
+    }
+
+
+
+    @Test
+    public void testQueryEmpty() {
+        List<Phase> results = library.query(new PhaseQuery());
+        assertEquals(4, results.size());
+    }
+
+
+
+    @Test
+    public void testQueryElements() {
+        List<Phase> results =
+                library.query(new PhaseQuery().requireElements(Element.Fe));
+        assertEquals(1, results.size());
+        assertSame(ferrite, results.get(0));
+
+        results =
+                library.query(new PhaseQuery().requireElements(Element.Fe,
+                        Element.Si));
+        assertTrue(results.isEmpty());
+
+        results =
+                library.query(new PhaseQuery().requireElements(Element.Ni));
+        assertTrue(results.isEmpty());
+
+        results =
+                library.query(new PhaseQuery().excludeElements(Element.Fe,
+                        Element.Es));
+        assertEquals(2, results.size());
+        assertSame(silicon, results.get(0));
+        assertSame(zirconium, results.get(1));
+    }
+
+
+
+    @Test
+    public void testQuerySymmetry() {
+        List<Phase> results =
+                library.query(new PhaseQuery()
+                        .setCrystalSystem(CrystalSystem.CUBIC));
+        assertEquals(2, results.size());
+        assertSame(ferrite, results.get(0));
+        assertSame(silicon, results.get(1));
+
+        results =
+                library.query(new PhaseQuery().setLaueGroup(SpaceGroups
+                        .fromIndex(194).getLaueGroup()));
+        assertEquals(1, results.size());
+        assertSame(zirconium, results.get(0));
+
+        results =
+                library.query(new PhaseQuery()
+                        .setCrystalSystem(CrystalSystem.MONOCLINIC));
+        assertTrue(results.isEmpty());
+    }
+
+
+
+    @Test
+    public void testQueryRange() {
+        PhaseQuery query =
+                new PhaseQuery().setRange(LatticeParameter.A, 2.87, 5.0);
+        List<Phase> results = library.query(query);
+        assertEquals(2, results.size());
+        assertSame(ferrite, results.get(0));
+        assertSame(zirconium, results.get(1));
+
+        query.setRange(LatticeParameter.C, 5.0, 6.0);
+        results = library.query(query);
+        assertEquals(1, results.size());
+        assertSame(zirconium, results.get(0));
+
+        query.setRange(LatticeParameter.GAMMA, 0.0, Math.PI / 2);
+        results = library.query(query);
+        assertTrue(results.isEmpty());
+    }
+
+
+
+    @Test
+    public void testQueryCombined() {
+        PhaseQuery query =
+                new PhaseQuery().requireElements(Element.Si)
+                        .setCrystalSystem(CrystalSystem.CUBIC)
+                        .setRange(LatticeParameter.A, 5.0, 6.0)
+                        .setRange(LatticeParameter.VOLUME, 100.0, 200.0);
+        List<Phase> results = library.query(query);
+        assertEquals(1, results.size());
+        assertSame(silicon, results.get(0));
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetRangeException() {
+        new PhaseQuery().setRange(LatticeParameter.A, 2.0, 1.0);
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.library;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import net.sf.jchemistry.crystallography.core.Calculations;
+import net.sf.jchemistry.crystallography.core.Phase;
+import net.sf.jchemistry.crystallography.test.PhaseFactory;
+
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SearchMatchTest {
+
+    private Phase ferrite;
+
+    private Phase silicon;
+
+    private Phase zirconium;
+
+    private PhaseLibrary library;
+
+    private SearchMatch searchMatch;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        ferrite = PhaseFactory.ferrite();
+        silicon = PhaseFactory.silicon();
+        zirconium = PhaseFactory.zirconium();
+
+        library =
+                new PhaseLibrary(Arrays.asList(ferrite, silicon, zirconium));
+        searchMatch = new SearchMatch(library, 5);
+    }
+
+
+
+    private double planeSpacing(Phase phase, int h, int k, int l) {
+        return Calculations.planeSpacing(new Vector3D(h, k, l),
+                phase.getUnitCell());
+    }
+
+
+
+    @Test
+    public void testGetLineCount() {
+        assertTrue(searchMatch.getLineCount() > 0);
+        assertTrue(searchMatch.getLineCount() <= 15);
+    }
+
+
+
+    @Test
+    public void testSearch() {
+        double[] spacings =
+                new double[] { planeSpacing(silicon, 1, 1, 1),
+                        planeSpacing(silicon, 2, 0, 0),
+                        planeSpacing(silicon, 2, 2, 0) };
+        double[] tolerances = new double[] { 0.01, 0.01, 0.01 };
+
+        List<SearchMatchResult> results =
+                searchMatch.search(spacings, tolerances, 2);
+        assertTrue(results.size() <= 2);
+        assertSame(silicon, results.get(0).getPhase());
+        assertEquals(1, results.get(0).getIndex());
+        assertEquals(3, results.get(0).getMatchCount());
+        assertTrue(results.get(0).getScore() > 0.0);
+        assertTrue(results.get(0).getScore() <= 1.0);
+    }
+
+
+
+    @Test
+    public void testSearchFerrite() {
+        double[] spacings =
+                new double[] { planeSpacing(ferrite, 1, 1, 0),
+                        planeSpacing(ferrite, 2, 0, 0),
+                        planeSpacing(ferrite, 2, 1, 1) };
+        double[] tolerances = new double[] { 0.005, 0.005, 0.005 };
+
+        List<SearchMatchResult> results =
+                searchMatch.search(spacings, tolerances, 3);
+        assertSame(ferrite, results.get(0).getPhase());
+        for (int i = 1; i < results.size(); i++)
+            assertTrue(results.get(i - 1).getScore() >= results.get(i)
+                    .getScore());
+    }
+
+
+
+    @Test
+    public void testSearchCandidates() {
+        double[] spacings = new double[] { planeSpacing(silicon, 1, 1, 1) };
+        double[] tolerances = new double[] { 0.01 };
+
+        BitSet candidates = new BitSet();
+        candidates.set(0);
+        candidates.set(2);
+
+        List<SearchMatchResult> results =
+                searchMatch.search(spacings, tolerances, 3, candidates);
+        for (SearchMatchResult result : results)
+            assertTrue(result.getPhase() != silicon);
+    }
+
+
+
+    @Test
+    public void testSearchNoMatch() {
+        List<SearchMatchResult> results =
+                searchMatch.search(new double[] { 100.0 },
+                        new double[] { 0.1 }, 3);
+        assertTrue(results.isEmpty());
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSearchException() {
+        searchMatch.search(new double[] { 1.0 }, new double[0], 3);
+    }
+
+}
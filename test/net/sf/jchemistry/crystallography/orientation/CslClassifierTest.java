@@ -0,0 +1,229 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.orientation;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CslClassifierTest {
+
+    private CslClassifier classifier;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        classifier = CslClassifier.cubic(LaueGroup.LGm3m);
+    }
+
+
+
+    @Test
+    public void testGetBoundaries() {
+        CslBoundary[] boundaries = classifier.getBoundaries();
+        assertEquals(21, boundaries.length);
+        assertEquals(3, boundaries[0].getSigma());
+        assertEquals(29, boundaries[boundaries.length - 1].getSigma());
+        assertTrue(classifier.getVariantCount() > boundaries.length);
+    }
+
+
+
+    @Test
+    public void testGetBrandonDeviation() {
+        CslBoundary boundary = classifier.getBoundaries()[0];
+        assertEquals(Math.toRadians(15.0) / Math.sqrt(3.0),
+                boundary.getBrandonDeviation(), 1e-12);
+    }
+
+
+
+    @Test
+    public void testClassifySigma3() {
+        Rotation sigma3 =
+                new Rotation(new Vector3D(1, 1, 1), Math.toRadians(60.0));
+        assertEquals("3", classifier.classify(sigma3).getName());
+
+        // Equivalent misorientation
+        Rotation sigma3b =
+                new Rotation(new Vector3D(-1, 1, 1), Math.toRadians(-60.0));
+        assertEquals("3", classifier.classify(sigma3b).getName());
+
+        // Within the Brandon criterion (8.66 deg)
+        Rotation deviation =
+                new Rotation(new Vector3D(1, -1, 0), Math.toRadians(7.0));
+        assertEquals("3", classifier.classify(deviation.applyTo(sigma3))
+                .getName());
+
+        // Outside
+        deviation = new Rotation(new Vector3D(1, -1, 0), Math.toRadians(10.0));
+        CslBoundary boundary = classifier.classify(deviation.applyTo(sigma3));
+        assertTrue(boundary == null || boundary.getSigma() != 3);
+    }
+
+
+
+    @Test
+    public void testClassifyLowestSigma() {
+        for (CslBoundary boundary : classifier.getBoundaries()) {
+            CslBoundary actual = classifier.classify(boundary.getRotation());
+            assertTrue(actual.getSigma() <= boundary.getSigma());
+        }
+
+        Rotation sigma13b =
+                new Rotation(new Vector3D(1, 1, 1), Math.toRadians(27.80));
+        assertEquals("13b", classifier.classify(sigma13b).getName());
+    }
+
+
+
+    @Test
+    public void testClassifyIdentity() {
+        assertNull(classifier.classify(Rotation.IDENTITY));
+    }
+
+
+
+    @Test
+    public void testClassifyParallel() throws InterruptedException {
+        Random random = new Random(3);
+        double[] q = new double[5000 * 4];
+        for (int i = 0; i < q.length; i += 4) {
+            Rotation r =
+                    new Rotation(random.nextGaussian(), random.nextGaussian(),
+                            random.nextGaussian(), random.nextGaussian(),
+                            true);
+            q[i] = r.getQ0();
+            q[i + 1] = r.getQ1();
+            q[i + 2] = r.getQ2();
+            q[i + 3] = r.getQ3();
+        }
+
+        int[] expected = classifier.classify(q);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertArrayEquals(expected, classifier.classify(q, executor));
+        } finally {
+            executor.shutdown();
+        }
+
+        // Brute force on a few misorientations
+        Rotation[] operators = LaueGroup.LGm3m.getOperators();
+        CslBoundary[] boundaries = classifier.getBoundaries();
+        boolean found = false;
+        for (int i = 0; i < 200; i++) {
+            Rotation r =
+                    new Rotation(q[i * 4], q[i * 4 + 1], q[i * 4 + 2],
+                            q[i * 4 + 3], false);
+            int best = -1;
+            for (int j = 0; j < boundaries.length && best < 0; j++) {
+                Rotation c = boundaries[j].getRotation();
+                double min = Double.POSITIVE_INFINITY;
+                for (Rotation gi : operators)
+                    for (Rotation gj : operators) {
+                        Rotation v = gi.applyTo(c.applyTo(gj));
+                        min = Math.min(min, Rotation.distance(r, v));
+                        min = Math.min(min, Rotation.distance(r, v.revert()));
+                    }
+                if (min <= boundaries[j].getBrandonDeviation())
+                    best = j;
+            }
+            assertEquals(best, expected[i]);
+            found |= best >= 0;
+        }
+        assertTrue(found);
+    }
+
+
+
+    @Test
+    public void testClassifyHexagonal() {
+        CslBoundary sigma7 =
+                new CslBoundary("7", 7, Vector3D.PLUS_K, Math.toRadians(21.79));
+        CslClassifier hexagonal =
+                new CslClassifier(LaueGroup.LG6mmm,
+                        new CslBoundary[] { sigma7 });
+
+        Rotation r = new Rotation(Vector3D.PLUS_K, Math.toRadians(60 + 21.79));
+        assertEquals(sigma7, hexagonal.classify(r));
+        r = new Rotation(Vector3D.PLUS_K, Math.toRadians(30.0));
+        assertNull(hexagonal.classify(r));
+        r = new Rotation(Vector3D.PLUS_I, Math.toRadians(21.79));
+        assertFalse(sigma7.equals(hexagonal.classify(r)));
+    }
+
+
+
+    @Test
+    public void testGetCandidates() {
+        MisorientationCalculator calc =
+                new MisorientationCalculator(LaueGroup.LGm3m);
+        double[] identity = new double[] { 1.0, 0.0, 0.0, 0.0 };
+        double[] d = new double[4];
+
+        Random random = new Random(7);
+        int total = 0;
+        int max = 0;
+        for (int i = 0; i < 2000; i++) {
+            Rotation r =
+                    new Rotation(random.nextGaussian(), random.nextGaussian(),
+                            random.nextGaussian(), random.nextGaussian(),
+                            true);
+            double[] q =
+                    new double[] { r.getQ0(), r.getQ1(), r.getQ2(), r.getQ3() };
+            calc.equivalent(identity, 0, q, 0, d, 0);
+
+            int count = classifier.getCandidates(d[1], d[2], d[3]).length;
+            total += count;
+            max = Math.max(max, count);
+        }
+
+        assertTrue(total / 2000.0 < 4.0);
+        assertTrue(max < 20);
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCubicException() {
+        CslClassifier.cubic(LaueGroup.LG6mmm);
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCslBoundaryException() {
+        new CslBoundary("0", 0, Vector3D.PLUS_K, 0.0);
+    }
+
+}
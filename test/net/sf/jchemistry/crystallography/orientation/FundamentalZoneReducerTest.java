@@ -0,0 +1,105 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.orientation;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.crystallography.core.Calculations;
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FundamentalZoneReducerTest {
+
+    private double[] quaternions;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(1);
+        quaternions = new double[1000 * 4];
+        for (int i = 0; i < quaternions.length; i += 4) {
+            Rotation q =
+                    new Rotation(random.nextGaussian(), random.nextGaussian(),
+                            random.nextGaussian(), random.nextGaussian(),
+                            true);
+            quaternions[i] = q.getQ0();
+            quaternions[i + 1] = q.getQ1();
+            quaternions[i + 2] = q.getQ2();
+            quaternions[i + 3] = q.getQ3();
+        }
+    }
+
+
+
+    @Test
+    public void testReduce() {
+        for (LaueGroup lg : LaueGroup.values()) {
+            double[] reduced = quaternions.clone();
+            new FundamentalZoneReducer(lg).reduce(reduced);
+
+            for (int i = 0; i < quaternions.length; i += 4) {
+                Rotation q =
+                        new Rotation(quaternions[i], quaternions[i + 1],
+                                quaternions[i + 2], quaternions[i + 3], false);
+                Rotation expected = Calculations.reduce(q, lg);
+
+                assertEquals(expected.getQ0(), reduced[i], 1e-12);
+                assertEquals(expected.getQ1(), reduced[i + 1], 1e-12);
+                assertEquals(expected.getQ2(), reduced[i + 2], 1e-12);
+                assertEquals(expected.getQ3(), reduced[i + 3], 1e-12);
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testReduceParallel() throws InterruptedException {
+        FundamentalZoneReducer reducer =
+                new FundamentalZoneReducer(LaueGroup.LGm3m);
+
+        double[] expected = quaternions.clone();
+        reducer.reduce(expected);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            reducer.reduce(quaternions, executor, 64);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertArrayEquals(expected, quaternions, 0.0);
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReduceException() {
+        new FundamentalZoneReducer(LaueGroup.LG1).reduce(new double[5]);
+    }
+
+}
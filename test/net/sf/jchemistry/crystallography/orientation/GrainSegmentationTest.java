@@ -0,0 +1,186 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.orientation;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GrainSegmentationTest {
+
+    private static final int WIDTH = 40;
+
+    private static final int HEIGHT = 30;
+
+    private double[] quaternions;
+
+    private int[] phases;
+
+    private GrainSegmentation segmentation;
+
+
+
+    private void set(int x, int y, Rotation q, int phase) {
+        int i = y * WIDTH + x;
+        quaternions[i * 4] = q.getQ0();
+        quaternions[i * 4 + 1] = q.getQ1();
+        quaternions[i * 4 + 2] = q.getQ2();
+        quaternions[i * 4 + 3] = q.getQ3();
+        phases[i] = phase;
+    }
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        quaternions = new double[WIDTH * HEIGHT * 4];
+        phases = new int[WIDTH * HEIGHT];
+
+        Rotation grain1 = new Rotation(new Vector3D(1, 2, 3), 0.3);
+        Rotation grain2 = new Rotation(new Vector3D(3, 1, 2), 0.5);
+        Rotation cubicEquivalent =
+                new Rotation(new Vector3D(0, 0, 1), Math.PI / 2);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // Small gradient inside each grain
+                Rotation noise =
+                        new Rotation(new Vector3D(0, 1, 0), 0.001 * (x + y));
+
+                if (x < 20) {
+                    Rotation q = noise.applyTo(grain1);
+                    // Symmetrically equivalent orientation on odd rows
+                    if (y % 2 == 1)
+                        q = cubicEquivalent.applyTo(q);
+                    set(x, y, q, 0);
+                } else {
+                    set(x, y, noise.applyTo(grain2), 0);
+                }
+            }
+        }
+
+        // Unindexed column splitting the second grain in two
+        for (int y = 0; y < HEIGHT; y++)
+            set(30, y, Rotation.IDENTITY, -1);
+
+        // Hexagonal island inside the first grain
+        for (int y = 5; y < 8; y++)
+            for (int x = 5; x < 8; x++)
+                set(x, y, grain1, 1);
+
+        segmentation =
+                new GrainSegmentation(new LaueGroup[] { LaueGroup.LGm3m,
+                        LaueGroup.LG6mmm }, Math.toRadians(5.0));
+    }
+
+
+
+    @Test
+    public void testSegment() {
+        GrainMap map =
+                segmentation.segment(WIDTH, HEIGHT, quaternions, phases);
+
+        assertEquals(WIDTH, map.getWidth());
+        assertEquals(HEIGHT, map.getHeight());
+        assertEquals(4, map.getGrainCount());
+
+        assertEquals(0, map.getGrainId(0, 0));
+        assertEquals(0, map.getGrainId(19, 29));
+        assertEquals(1, map.getGrainId(20, 0));
+        assertEquals(2, map.getGrainId(31, 0));
+        assertEquals(-1, map.getGrainId(30, 10));
+        assertEquals(3, map.getGrainId(6, 6));
+
+        assertEquals(20 * HEIGHT - 9, map.getGrainSizes()[0]);
+        assertEquals(10 * HEIGHT, map.getGrainSizes()[1]);
+        assertEquals(9 * HEIGHT, map.getGrainSizes()[2]);
+        assertEquals(9, map.getGrainSizes()[3]);
+
+        assertEquals(0, map.getGrainPhases()[0]);
+        assertEquals(1, map.getGrainPhases()[3]);
+    }
+
+
+
+    @Test
+    public void testSegmentMeanOrientations() {
+        GrainMap map =
+                segmentation.segment(WIDTH, HEIGHT, quaternions, phases);
+        double[] means = map.getMeanOrientations();
+        assertEquals(map.getGrainCount() * 4, means.length);
+
+        MisorientationCalculator calc =
+                new MisorientationCalculator(LaueGroup.LGm3m);
+        Rotation grain1 = new Rotation(new Vector3D(1, 2, 3), 0.3);
+        Rotation mean =
+                new Rotation(means[0], means[1], means[2], means[3], false);
+        assertEquals(1.0, means[0] * means[0] + means[1] * means[1]
+                + means[2] * means[2] + means[3] * means[3], 1e-9);
+        assertTrue(calc.angle(grain1, mean) < 0.05);
+
+        mean = new Rotation(means[12], means[13], means[14], means[15], false);
+        assertEquals(0.0, calc.angle(grain1, mean), 1e-6);
+    }
+
+
+
+    @Test
+    public void testSegmentParallel() throws InterruptedException {
+        GrainMap expected =
+                segmentation.segment(WIDTH, HEIGHT, quaternions, phases);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            GrainMap map =
+                    segmentation.segment(WIDTH, HEIGHT, quaternions, phases,
+                            executor, 4);
+            assertArrayEquals(expected.getGrainIds(), map.getGrainIds());
+            assertArrayEquals(expected.getGrainSizes(), map.getGrainSizes());
+            assertArrayEquals(expected.getMeanOrientations(),
+                    map.getMeanOrientations(), 1e-12);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSegmentPhaseException() {
+        phases[0] = 2;
+        segmentation.segment(WIDTH, HEIGHT, quaternions, phases);
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSegmentSizeException() {
+        segmentation.segment(WIDTH, HEIGHT + 1, quaternions, phases);
+    }
+
+}
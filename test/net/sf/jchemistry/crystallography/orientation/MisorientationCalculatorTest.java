@@ -0,0 +1,188 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.orientation;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MisorientationCalculatorTest {
+
+    private Rotation[] rotations;
+
+    private double[] quaternions;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(2);
+        rotations = new Rotation[200];
+        quaternions = new double[rotations.length * 4];
+        for (int i = 0; i < rotations.length; i++) {
+            rotations[i] =
+                    new Rotation(random.nextGaussian(), random.nextGaussian(),
+                            random.nextGaussian(), random.nextGaussian(),
+                            true);
+            quaternions[i * 4] = rotations[i].getQ0();
+            quaternions[i * 4 + 1] = rotations[i].getQ1();
+            quaternions[i * 4 + 2] = rotations[i].getQ2();
+            quaternions[i * 4 + 3] = rotations[i].getQ3();
+        }
+    }
+
+
+
+    private static double bruteForce(Rotation qa, Rotation qb, LaueGroup lg) {
+        double max = 0.0;
+        for (Rotation opa : lg.getOperators()) {
+            Rotation a = opa.applyTo(qa);
+            for (Rotation opb : lg.getOperators()) {
+                Rotation b = opb.applyTo(qb);
+                double dot =
+                        Math.abs(a.getQ0() * b.getQ0() + a.getQ1()
+                                * b.getQ1() + a.getQ2() * b.getQ2()
+                                + a.getQ3() * b.getQ3());
+                max = Math.max(max, dot);
+            }
+        }
+        return 2.0 * Math.acos(Math.min(1.0, max));
+    }
+
+
+
+    @Test
+    public void testOrder() {
+        assertEquals(1, new MisorientationCalculator(LaueGroup.LG1).getOrder());
+        assertEquals(12,
+                new MisorientationCalculator(LaueGroup.LG6mmm).getOrder());
+        assertEquals(24,
+                new MisorientationCalculator(LaueGroup.LGm3m).getOrder());
+    }
+
+
+
+    @Test
+    public void testAngle() {
+        for (LaueGroup lg : LaueGroup.values()) {
+            MisorientationCalculator calc = new MisorientationCalculator(lg);
+            for (int i = 0; i + 1 < rotations.length; i += 2) {
+                double expected =
+                        bruteForce(rotations[i], rotations[i + 1], lg);
+                assertEquals(expected,
+                        calc.angle(rotations[i], rotations[i + 1]), 1e-6);
+                assertEquals(expected,
+                        calc.angle(quaternions, i, quaternions, i + 1), 1e-6);
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testAngleCubic() {
+        MisorientationCalculator calc =
+                new MisorientationCalculator(LaueGroup.LGm3m);
+
+        Rotation qa = rotations[0];
+        Rotation qb =
+                new Rotation(new Vector3D(1, 1, 1), Math.toRadians(60.0))
+                        .applyTo(qa);
+        assertEquals(Math.toRadians(60.0), calc.angle(qa, qb), 1e-6);
+
+        for (int i = 0; i < rotations.length; i += 2)
+            assertTrue(calc.angle(rotations[i], rotations[i + 1]) <= Math
+                    .toRadians(62.81));
+    }
+
+
+
+    @Test
+    public void testDisorientation() {
+        MisorientationCalculator calc =
+                new MisorientationCalculator(LaueGroup.LG6mmm);
+
+        for (int i = 0; i + 1 < rotations.length; i += 2) {
+            Rotation q = calc.disorientation(rotations[i], rotations[i + 1]);
+            assertTrue(q.getQ0() >= 0.0);
+            assertEquals(calc.angle(rotations[i], rotations[i + 1]),
+                    q.getAngle(), 1e-6);
+        }
+    }
+
+
+
+    @Test
+    public void testAngles() throws InterruptedException {
+        MisorientationCalculator calc =
+                new MisorientationCalculator(LaueGroup.LG4mmm);
+
+        double[] shifted = new double[quaternions.length];
+        System.arraycopy(quaternions, 4, shifted, 0, quaternions.length - 4);
+        System.arraycopy(quaternions, 0, shifted, quaternions.length - 4, 4);
+
+        double[] angles = calc.angles(quaternions, shifted);
+        assertEquals(rotations.length, angles.length);
+        for (int i = 0; i < rotations.length; i++)
+            assertEquals(calc.angle(rotations[i],
+                    rotations[(i + 1) % rotations.length]), angles[i], 1e-12);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertArrayEquals(angles,
+                    calc.angles(quaternions, shifted, executor), 0.0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+
+    @Test
+    public void testPairAngles() throws InterruptedException {
+        MisorientationCalculator calc =
+                new MisorientationCalculator(LaueGroup.LGm3);
+
+        int[] pairs = new int[] { 0, 1, 5, 3, 10, 10 };
+        double[] angles = calc.pairAngles(quaternions, pairs);
+        assertEquals(3, angles.length);
+        assertEquals(calc.angle(rotations[0], rotations[1]), angles[0], 1e-12);
+        assertEquals(calc.angle(rotations[5], rotations[3]), angles[1], 1e-12);
+        assertEquals(0.0, angles[2], 1e-6);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertArrayEquals(angles,
+                    calc.pairAngles(quaternions, pairs, executor), 0.0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
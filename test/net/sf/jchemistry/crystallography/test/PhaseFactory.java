@@ -33,7 +33,8 @@ public class PhaseFactory {
                 new Phase("Ferrite", SpaceGroups.fromIndex(229),
                         UnitCellFactory.cubic(2.87));
 
-        phase.getAtoms().addAll(AtomSitesFactory.atomSitesBCC(Element.Fe));
+        phase.getAsymmetricUnit().addAll(
+                AtomSitesFactory.atomSitesBCC(Element.Fe));
         phase.computeReflectors(ScatteringFactorsFactory.XRAY_TABULATED, 2,
                 0.01);
 
@@ -47,7 +48,8 @@ public class PhaseFactory {
                 new Phase("Silicon", SpaceGroups.fromIndex(216),
                         UnitCellFactory.cubic(5.43));
 
-        phase.getAtoms().addAll(AtomSitesFactory.atomSitesFCC(Element.Si));
+        phase.getAsymmetricUnit().addAll(
+                AtomSitesFactory.atomSitesFCC(Element.Si));
         phase.computeReflectors(ScatteringFactorsFactory.XRAY_TABULATED, 2,
                 0.01);
 
@@ -61,7 +63,8 @@ public class PhaseFactory {
                 new Phase("Zirconium", SpaceGroups.fromIndex(194),
                         UnitCellFactory.hexagonal(3.2, 5.15));
 
-        phase.getAtoms().addAll(AtomSitesFactory.atomSitesHCP(Element.Zr));
+        phase.getAsymmetricUnit().addAll(
+                AtomSitesFactory.atomSitesHCP(Element.Zr));
         phase.computeReflectors(ScatteringFactorsFactory.XRAY_TABULATED, 2,
                 0.01);
 
@@ -75,7 +78,7 @@ public class PhaseFactory {
                 new Phase("Kryptonite", SpaceGroups.fromIndex(1),
                         UnitCellFactory.triclinic(1, 2, 3, 0.1, 0.2, 0.3));
 
-        phase.getAtoms().addAll(
+        phase.getAsymmetricUnit().addAll(
                 AtomSitesFactory.atomSitesSingleAtom(Element.Es));
 
         Reflectors refls = phase.getReflectors();
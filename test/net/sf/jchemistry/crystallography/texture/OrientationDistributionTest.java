@@ -0,0 +1,182 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.texture;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+import net.sf.jchemistry.crystallography.orientation.MisorientationCalculator;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrientationDistributionTest {
+
+    private OrientationGrid grid;
+
+    private double[] random;
+
+    private double[] textured;
+
+    private Rotation component;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        grid = new OrientationGrid(LaueGroup.LGm3m, Math.toRadians(10.0));
+
+        Random rand = new Random(6);
+        random = new double[20000 * 4];
+        for (int i = 0; i < random.length; i += 4) {
+            Rotation q =
+                    new Rotation(rand.nextGaussian(), rand.nextGaussian(),
+                            rand.nextGaussian(), rand.nextGaussian(), true);
+            random[i] = q.getQ0();
+            random[i + 1] = q.getQ1();
+            random[i + 2] = q.getQ2();
+            random[i + 3] = q.getQ3();
+        }
+
+        // Half of the orientations close to a component
+        component = new Rotation(new Vector3D(1, 2, 3), 0.7);
+        textured = random.clone();
+        for (int i = 0; i < textured.length; i += 8) {
+            Rotation noise =
+                    new Rotation(new Vector3D(rand.nextGaussian(), rand
+                            .nextGaussian(), rand.nextGaussian()),
+                            Math.toRadians(2.0) * rand.nextDouble());
+            Rotation q = noise.applyTo(component);
+            textured[i] = q.getQ0();
+            textured[i + 1] = q.getQ1();
+            textured[i + 2] = q.getQ2();
+            textured[i + 3] = q.getQ3();
+        }
+    }
+
+
+
+    @Test
+    public void testRandom() {
+        OrientationDistribution odf =
+                OrientationDistribution.estimate(grid, random,
+                        Math.toRadians(10.0));
+        assertEquals(grid.getCellCount(), odf.getDensities().length);
+        assertEquals(1.0, odf.getTextureIndex(), 0.2);
+        assertTrue(odf.getMaximumDensity() < 2.5);
+    }
+
+
+
+    @Test
+    public void testTextured() {
+        OrientationDistribution odf =
+                OrientationDistribution.estimate(grid, textured,
+                        Math.toRadians(5.0));
+        assertTrue(odf.getTextureIndex() > 5.0);
+        assertTrue(odf.getMaximumDensity() > 10.0);
+        assertTrue(odf.getDensity(component) > 10.0);
+
+        double fraction =
+                odf.getVolumeFraction(component, Math.toRadians(15.0));
+        assertEquals(0.5, fraction, 0.05);
+
+        double[] centre = grid.getCentre(odf.getMaximumCell());
+        Rotation max =
+                new Rotation(centre[0], centre[1], centre[2], centre[3], false);
+        MisorientationCalculator calc =
+                new MisorientationCalculator(LaueGroup.LGm3m);
+        assertTrue(calc.angle(max, component) < Math.toRadians(10.0));
+    }
+
+
+
+    @Test
+    public void testNoSmoothing() throws InterruptedException {
+        OrientationDistribution odf =
+                OrientationDistribution.estimate(grid, textured, 0.0);
+
+        double[] densities = odf.getDensities();
+        double total = 0.0;
+        for (int i = 0; i < grid.getCellCount(); i++)
+            total += densities[i] * grid.getVolumeFraction(i);
+        assertEquals(1.0, total, 1e-9);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertArrayEquals(odf.getDensities(), OrientationDistribution
+                    .estimate(grid, textured, 0.0, executor).getDensities(),
+                    0.0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+
+    @Test
+    public void testSmoothingParallel() throws InterruptedException {
+        OrientationDistribution odf =
+                OrientationDistribution.estimate(grid, textured,
+                        Math.toRadians(5.0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertArrayEquals(odf.getDensities(), OrientationDistribution
+                    .estimate(grid, textured, Math.toRadians(5.0), executor)
+                    .getDensities(), 1e-9);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCountsException() {
+        new OrientationDistribution(grid, new double[3], 0.0);
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEstimateException() {
+        OrientationDistribution.estimate(grid, random, -1.0);
+    }
+
+
+
+    @Test
+    public void testGetDensitiesCopy() {
+        OrientationDistribution odf =
+                OrientationDistribution.estimate(grid, random, 0.0);
+        double density = odf.getDensities()[0];
+
+        odf.getDensities()[0] = density + 1.0;
+        assertEquals(density, odf.getDensities()[0], 0.0);
+    }
+
+}
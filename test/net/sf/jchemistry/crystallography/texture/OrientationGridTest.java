@@ -0,0 +1,139 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.texture;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrientationGridTest {
+
+    private OrientationGrid grid;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        grid = new OrientationGrid(LaueGroup.LGm3m, Math.toRadians(10.0));
+    }
+
+
+
+    private static double[] toArray(Rotation q) {
+        return new double[] { q.getQ0(), q.getQ1(), q.getQ2(), q.getQ3() };
+    }
+
+
+
+    @Test
+    public void testOrientationGrid() {
+        assertEquals(36, grid.getPhiDivisions());
+        assertEquals(11, grid.getCosDivisions());
+        assertEquals(36 * 11 * 36, grid.getFullCellCount());
+
+        // Roughly 1/24 of the cells
+        int count = grid.getCellCount();
+        assertTrue(count > grid.getFullCellCount() / 48);
+        assertTrue(count < grid.getFullCellCount() / 12);
+
+        double total = 0.0;
+        for (int i = 0; i < count; i++)
+            total += grid.getVolumeFraction(i);
+        assertEquals(1.0, total, 1e-9);
+    }
+
+
+
+    @Test
+    public void testGetFullCell() {
+        double[] q = new double[4];
+        for (int i = 0; i < grid.getFullCellCount(); i += 7) {
+            grid.getCentre(i, q, 0);
+            assertEquals(i, grid.getFullCell(q[0], q[1], q[2], q[3]));
+            assertEquals(i, grid.getFullCell(-q[0], -q[1], -q[2], -q[3]));
+        }
+    }
+
+
+
+    @Test
+    public void testGetCell() {
+        Random random = new Random(4);
+        int same = 0;
+        for (int i = 0; i < 200; i++) {
+            Rotation q =
+                    new Rotation(random.nextGaussian(), random.nextGaussian(),
+                            random.nextGaussian(), random.nextGaussian(),
+                            true);
+            Rotation equivalent =
+                    new Rotation(Vector3D.PLUS_K, Math.PI / 2).applyTo(q);
+
+            int cell = grid.getCell(toArray(q), 0);
+            assertTrue(cell >= 0 && cell < grid.getCellCount());
+            if (cell == grid.getCell(toArray(equivalent), 0))
+                same++;
+        }
+
+        // Equivalent orientations fall in the same cell, except near the
+        // boundaries of the cells
+        assertTrue(same > 150);
+    }
+
+
+
+    @Test
+    public void testHistogram() throws InterruptedException {
+        Random random = new Random(5);
+        double[] quaternions = new double[1000 * 4];
+        for (int i = 0; i < quaternions.length; i += 4) {
+            Rotation q =
+                    new Rotation(random.nextGaussian(), random.nextGaussian(),
+                            random.nextGaussian(), random.nextGaussian(),
+                            true);
+            System.arraycopy(toArray(q), 0, quaternions, i, 4);
+        }
+
+        double[] counts = grid.histogram(quaternions);
+        assertEquals(grid.getCellCount(), counts.length);
+
+        double total = 0.0;
+        for (double count : counts)
+            total += count;
+        assertEquals(1000.0, total, 1e-9);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertArrayEquals(counts, grid.histogram(quaternions, executor),
+                    0.0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.texture;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.crystallography.core.LaueGroup;
+import net.sf.jchemistry.crystallography.core.Reflector;
+import net.sf.jchemistry.crystallography.core.UnitCell;
+import net.sf.jchemistry.crystallography.core.UnitCellFactory;
+
+import org.apache.commons.math.geometry.Rotation;
+import org.apache.commons.math.geometry.Vector3D;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PoleFigureAccumulatorTest {
+
+    private PoleFigureAccumulator accumulator;
+
+    private Rotation[] rotations;
+
+    private double[] quaternions;
+
+    private UnitCell unitCell;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        accumulator = new PoleFigureAccumulator(32);
+        unitCell = UnitCellFactory.cubic(2.87);
+
+        Random random = new Random(3);
+        rotations = new Rotation[500];
+        quaternions = new double[rotations.length * 4];
+        for (int i = 0; i < rotations.length; i++) {
+            rotations[i] =
+                    new Rotation(random.nextGaussian(), random.nextGaussian(),
+                            random.nextGaussian(), random.nextGaussian(),
+                            true);
+            quaternions[i * 4] = rotations[i].getQ0();
+            quaternions[i * 4 + 1] = rotations[i].getQ1();
+            quaternions[i * 4 + 2] = rotations[i].getQ2();
+            quaternions[i * 4 + 3] = rotations[i].getQ3();
+        }
+    }
+
+
+
+    private int getBin(Vector3D v) {
+        return accumulator.getBin(v.getX(), v.getY(), v.getZ());
+    }
+
+
+
+    private static double sum(double[] bins) {
+        double total = 0.0;
+        for (double value : bins)
+            total += value;
+        return total;
+    }
+
+
+
+    @Test
+    public void testGetBin() {
+        assertEquals(16 * 32 + 16, accumulator.getBin(0, 0, 1));
+        assertEquals(16 * 32 + 16, accumulator.getBin(0, 0, -1));
+        assertEquals(16 * 32 + 31, accumulator.getBin(1, 0, 0));
+        assertEquals(16 * 32, accumulator.getBin(-1, 0, 0));
+        assertEquals(31 * 32 + 16, accumulator.getBin(0, 1, 0));
+    }
+
+
+
+    @Test
+    public void testPoleFigure() {
+        double[] bins =
+                accumulator.poleFigure(quaternions, unitCell, LaueGroup.LGm3m,
+                        new Reflector(1, 0, 0, 1.0));
+        assertEquals(32 * 32, bins.length);
+        assertEquals(3.0 * rotations.length, sum(bins), 1e-9);
+
+        double[] expected = new double[bins.length];
+        Vector3D[] poles =
+                new Vector3D[] { Vector3D.PLUS_I, Vector3D.PLUS_J,
+                        Vector3D.PLUS_K };
+        for (Rotation q : rotations)
+            for (Vector3D pole : poles)
+                expected[getBin(q.applyInverseTo(pole))] += 1.0;
+
+        assertArrayEquals(expected, bins, 0.0);
+    }
+
+
+
+    @Test
+    public void testInversePoleFigure() {
+        Vector3D direction = new Vector3D(0, 0, 2);
+        double[] bins =
+                accumulator.inversePoleFigure(quaternions, LaueGroup.LG6mmm,
+                        direction);
+        assertEquals(12.0 * rotations.length, sum(bins), 1e-9);
+
+        double[] expected = new double[bins.length];
+        for (Rotation q : rotations)
+            for (Rotation op : LaueGroup.LG6mmm.getOperators())
+                expected[getBin(op.applyTo(q.applyTo(Vector3D.PLUS_K)))] +=
+                        1.0;
+
+        assertArrayEquals(expected, bins, 0.0);
+    }
+
+
+
+    @Test
+    public void testParallel() throws InterruptedException {
+        Reflector plane = new Reflector(1, 1, 0, 1.0);
+        double[] poles =
+                accumulator.poleFigure(quaternions, unitCell, LaueGroup.LGm3m,
+                        plane);
+        double[] directions =
+                accumulator.inversePoleFigure(quaternions, LaueGroup.LGm3m,
+                        Vector3D.PLUS_I);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertArrayEquals(poles, accumulator.poleFigure(quaternions,
+                    unitCell, LaueGroup.LGm3m, plane, executor), 0.0);
+            assertArrayEquals(directions, accumulator.inversePoleFigure(
+                    quaternions, LaueGroup.LGm3m, Vector3D.PLUS_I, executor),
+                    0.0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+
+    @Test
+    public void testNormalize() {
+        double[] bins =
+                accumulator.poleFigure(quaternions, unitCell, LaueGroup.LGm3m,
+                        new Reflector(1, 1, 1, 1.0));
+        double[] mrd = accumulator.normalize(bins);
+
+        double total = 0.0;
+        int inside = 0;
+        for (int i = 0; i < mrd.length; i++)
+            if (accumulator.isInside(i)) {
+                total += mrd[i];
+                inside++;
+            }
+        assertEquals(1.0, total / inside, 0.05);
+    }
+
+
+
+    @Test
+    public void testSmooth() {
+        double[] bins = new double[32 * 32];
+        Arrays.fill(bins, 2.0);
+        assertArrayEquals(bins, accumulator.smooth(bins, 1.5), 1e-12);
+
+        bins = new double[32 * 32];
+        bins[16 * 32 + 16] = 1.0;
+        double[] smoothed = accumulator.smooth(bins, 1.0);
+        assertEquals(1.0, sum(smoothed), 1e-9);
+        assertEquals(smoothed[16 * 32 + 15], smoothed[16 * 32 + 17], 1e-12);
+        assertEquals(smoothed[15 * 32 + 16], smoothed[17 * 32 + 16], 1e-12);
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ArrayUtilsTest {
+
+    private static final double[] SORTED = new double[] { 1.0, 2.0, 2.0, 2.0,
+            3.0 };
+
+
+
+    @Test
+    public void testLowerBound() {
+        assertEquals(0, ArrayUtils.lowerBound(SORTED, 0.5));
+        assertEquals(0, ArrayUtils.lowerBound(SORTED, 1.0));
+        assertEquals(1, ArrayUtils.lowerBound(SORTED, 2.0));
+        assertEquals(4, ArrayUtils.lowerBound(SORTED, 2.5));
+        assertEquals(5, ArrayUtils.lowerBound(SORTED, 4.0));
+        assertEquals(0, ArrayUtils.lowerBound(new double[0], 1.0));
+    }
+
+
+
+    @Test
+    public void testLowerBoundRange() {
+        assertEquals(2, ArrayUtils.lowerBound(SORTED, 2, 4, 1.0));
+        assertEquals(2, ArrayUtils.lowerBound(SORTED, 2, 4, 2.0));
+        assertEquals(4, ArrayUtils.lowerBound(SORTED, 2, 4, 3.0));
+    }
+
+
+
+    @Test
+    public void testUpperBound() {
+        assertEquals(0, ArrayUtils.upperBound(SORTED, 0.5));
+        assertEquals(1, ArrayUtils.upperBound(SORTED, 1.0));
+        assertEquals(4, ArrayUtils.upperBound(SORTED, 2.0));
+        assertEquals(5, ArrayUtils.upperBound(SORTED, 3.0));
+        assertEquals(0, ArrayUtils.upperBound(new double[0], 1.0));
+    }
+
+
+
+    @Test
+    public void testUpperBoundRange() {
+        assertEquals(2, ArrayUtils.upperBound(SORTED, 2, 4, 1.0));
+        assertEquals(4, ArrayUtils.upperBound(SORTED, 2, 4, 2.0));
+        assertEquals(3, ArrayUtils.upperBound(SORTED, 0, 3, 2.0));
+    }
+
+}
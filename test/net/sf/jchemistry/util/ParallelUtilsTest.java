@@ -0,0 +1,90 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.jchemistry.util.ParallelUtils.RangeTask;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelUtilsTest {
+
+    private ExecutorService executor;
+
+
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdown();
+    }
+
+
+
+    @Test
+    public void testRun() throws InterruptedException {
+        final int[] values = new int[1003];
+        ParallelUtils.run(executor, values.length, 100, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++)
+                    values[i]++;
+            }
+        });
+
+        for (int value : values)
+            assertEquals(1, value);
+    }
+
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testRunException() throws InterruptedException {
+        ParallelUtils.run(executor, 10, 1, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                if (from == 5)
+                    throw new IllegalStateException();
+            }
+        });
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRunChunkSize() throws InterruptedException {
+        ParallelUtils.run(executor, 10, 0, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+            }
+        });
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * jChemistry
+ * Copyright (C) 2011 Philippe T. Pinard
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jchemistry.crystallography.core;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiles the text table of the space groups
+ * (<code>data/space_groups.txt</code>) into the binary table read by
+ * {@link SpaceGroups} (<code>data/space_groups.bin</code>). The layout of the
+ * binary table is described in {@link SpaceGroups}.
+ * <p/>
+ * The writer is a build tool: it is compiled apart from the library, in the
+ * same package to use the encoding of the operators, and run by the build
+ * with the text and binary filenames as arguments. It is not part of the
+ * jar.
+ * 
+ * @author Philippe T. Pinard
+ */
+final class SpaceGroupsTableWriter {
+
+    /**
+     * Space group read from the text table.
+     */
+    private static final class Row {
+
+        /** Index/number of the space group. */
+        private final int index;
+
+        /** Symbol of the space group. */
+        private final String symbol;
+
+        /** Laue group. */
+        private final LaueGroup laueGroup;
+
+        /** Codes of the operators. */
+        private final List<Integer> codes = new ArrayList<Integer>();
+
+
+
+        /**
+         * Creates a new <code>Row</code>.
+         * 
+         * @param index
+         *            index/number of the space group
+         * @param symbol
+         *            symbol of the space group
+         * @param laueGroup
+         *            Laue group
+         */
+        public Row(int index, String symbol, LaueGroup laueGroup) {
+            this.index = index;
+            this.symbol = symbol;
+            this.laueGroup = laueGroup;
+        }
+    }
+
+
+
+    /**
+     * Compiles a text table into a binary table.
+     * 
+     * @param args
+     *            filename of the text table and filename of the binary table
+     * @throws IOException
+     *             if an error occurs while reading or writing the tables
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2)
+            throw new IllegalArgumentException("Usage: "
+                    + "SpaceGroupsTableWriter <text table> <binary table>");
+
+        Reader reader = new FileReader(args[0]);
+        OutputStream out = new FileOutputStream(args[1]);
+        try {
+            write(reader, out);
+        } finally {
+            reader.close();
+            out.close();
+        }
+    }
+
+
+
+    /**
+     * Reads the space groups of a text table, sorted by index.
+     * 
+     * @param reader
+     *            reader of the text table
+     * @return space groups
+     * @throws IOException
+     *             if an error occurs while reading the table or if the table
+     *             is invalid
+     */
+    private static List<Row> read(Reader reader) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        Map<Integer, Row> rows = new TreeMap<Integer, Row>();
+
+        Row row = null;
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty() || line.startsWith("#"))
+                continue;
+
+            try {
+                if (Character.isWhitespace(line.charAt(0))) {
+                    if (row == null)
+                        throw new IOException("Operator before a space group");
+                    row.codes.add(SeitzOperator.parse(line.trim()).getCode());
+                    continue;
+                }
+
+                String[] items = line.trim().split("\\s+");
+                if (items.length != 3)
+                    throw new IOException(
+                            "Expected index, symbol and Laue group");
+
+                row =
+                        new Row(Integer.parseInt(items[0]), items[1],
+                                LaueGroup.valueOf(items[2]));
+                if (rows.put(row.index, row) != null)
+                    throw new IOException("Duplicate index (" + row.index
+                            + ")");
+            } catch (IOException e) {
+                throw new IOException(e.getMessage() + " on line "
+                        + lineNumber + ".");
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid line " + lineNumber + ": "
+                        + e.getMessage(), e);
+            }
+        }
+
+        for (Row r : rows.values())
+            if (r.codes.isEmpty() || r.codes.size() > 255)
+                throw new IOException("Space group " + r.index
+                        + " must have between 1 and 255 operators.");
+
+        return new ArrayList<Row>(rows.values());
+    }
+
+
+
+    /**
+     * Compiles a text table into a binary table.
+     * 
+     * @param reader
+     *            reader of the text table
+     * @param out
+     *            output stream of the binary table
+     * @throws IOException
+     *             if an error occurs while reading or writing the tables, or
+     *             if the text table is invalid
+     */
+    static void write(Reader reader, OutputStream out) throws IOException {
+        List<Row> rows = read(reader);
+
+        // Dictionary of the distinct operators
+        List<Integer> codes = new ArrayList<Integer>();
+        Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+        for (Row row : rows)
+            for (int code : row.codes)
+                if (!positions.containsKey(code)) {
+                    positions.put(code, codes.size());
+                    codes.add(code);
+                }
+
+        DataOutputStream data = new DataOutputStream(out);
+
+        data.writeShort(codes.size());
+        for (int code : codes)
+            data.writeInt(code);
+
+        data.writeShort(rows.size());
+        for (Row row : rows) {
+            data.writeShort(row.index);
+            data.writeByte(row.laueGroup.getIndex());
+            data.writeByte(row.codes.size());
+        }
+
+        for (Row row : rows) {
+            data.writeByte(row.symbol.length());
+            data.writeBytes(row.symbol);
+        }
+
+        for (Row row : rows)
+            for (int code : row.codes)
+                data.writeShort(positions.get(code));
+
+        data.flush();
+    }
+
+
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private SpaceGroupsTableWriter() {
+    }
+}